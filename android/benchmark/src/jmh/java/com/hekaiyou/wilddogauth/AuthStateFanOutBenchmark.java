@@ -0,0 +1,44 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** 一次认证状态改变分发给不同数量的监听句柄的开销 */
+@State(Scope.Thread)
+public class AuthStateFanOutBenchmark {
+  @Param({"1", "10", "100", "1000"})
+  public int handles;
+
+  @Param({"false", "true"})
+  public boolean multiplexed;
+
+  private StubAuthBackend backend;
+  private MethodChannel channel;
+
+  @Setup
+  public void setUp() {
+    backend = new StubAuthBackend(new BenchmarkUser("benchmark", 2));
+    channel = new MethodChannel(null, "wilddog_auth");
+    WilddogAuthPlugin plugin = new WilddogAuthPlugin(null, channel, backend);
+    // 注册指定数量的监听句柄
+    MethodCall start = new MethodCall("startListeningAuthState",
+            ImmutableMap.of("multiplexed", multiplexed));
+    LastValueResult result = new LastValueResult();
+    for (int i = 0; i < handles; i++) {
+      plugin.onMethodCall(start, result);
+    }
+  }
+
+  @Benchmark
+  public Object fanOut() {
+    backend.fire();
+    return channel.getLastArguments();
+  }
+}
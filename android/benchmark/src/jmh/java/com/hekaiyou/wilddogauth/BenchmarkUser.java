@@ -0,0 +1,120 @@
+package com.hekaiyou.wilddogauth;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** 基准测试中使用的用户，可以指定绑定的认证提供方数量 */
+final class BenchmarkUser implements AuthUser {
+  // 声明不可变的用户ID
+  private final String uid;
+  // 声明不可变的提供方数据
+  private final List<AuthUserInfo> providerData;
+  // 声明用户昵称，修改后用户词典缓存失效
+  String displayName = "Benchmark";
+
+  /**
+   * 默认的构造方法
+   * @param uid 用户ID
+   * @param providers 绑定的认证提供方数量
+   */
+  BenchmarkUser(String uid, int providers) {
+    this.uid = uid;
+    this.providerData = new ArrayList<>(providers);
+    for (int i = 0; i < providers; i++) {
+      providerData.add(new ProviderInfo("provider-" + i, uid + "-" + i));
+    }
+  }
+
+  @Override
+  public String getProviderId() {
+    return "wilddog";
+  }
+
+  @Override
+  public String getUid() {
+    return uid;
+  }
+
+  @Override
+  public String getDisplayName() {
+    return displayName;
+  }
+
+  @Override
+  public String getPhotoUrl() {
+    return "https://example.com/" + uid + ".png";
+  }
+
+  @Override
+  public String getEmail() {
+    return uid + "@example.com";
+  }
+
+  @Override
+  public String getPhone() {
+    return null;
+  }
+
+  @Override
+  public boolean isAnonymous() {
+    return false;
+  }
+
+  @Override
+  public boolean isEmailVerified() {
+    return true;
+  }
+
+  @Override
+  public boolean isPhoneVerified() {
+    return false;
+  }
+
+  @Override
+  public List<? extends AuthUserInfo> getProviderData() {
+    return providerData;
+  }
+
+  /**
+   * 一个认证提供方的用户信息
+   */
+  private static final class ProviderInfo implements AuthUserInfo {
+    private final String providerId;
+    private final String uid;
+
+    ProviderInfo(String providerId, String uid) {
+      this.providerId = providerId;
+      this.uid = uid;
+    }
+
+    @Override
+    public String getProviderId() {
+      return providerId;
+    }
+
+    @Override
+    public String getUid() {
+      return uid;
+    }
+
+    @Override
+    public String getDisplayName() {
+      return "Benchmark";
+    }
+
+    @Override
+    public String getPhotoUrl() {
+      return null;
+    }
+
+    @Override
+    public String getEmail() {
+      return uid + "@example.com";
+    }
+
+    @Override
+    public String getPhone() {
+      return "+8613800000000";
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** onMethodCall的分发开销，包括合并进行中的调用、参数解析和结果构建 */
+@State(Scope.Thread)
+public class DispatchBenchmark {
+  private WilddogAuthPlugin plugin;
+  private LastValueResult result;
+  private MethodCall currentUser;
+  private MethodCall getIdToken;
+  private MethodCall signIn;
+  private MethodCall unknown;
+
+  @Setup
+  public void setUp() {
+    StubAuthBackend backend = new StubAuthBackend(new BenchmarkUser("benchmark", 2));
+    plugin = new WilddogAuthPlugin(null, new MethodChannel(null, "wilddog_auth"), backend);
+    result = new LastValueResult();
+    currentUser = new MethodCall("currentUser", null);
+    getIdToken = new MethodCall("getIdToken", ImmutableMap.of("refresh", false));
+    signIn = new MethodCall("signInWithEmailAndPassword",
+            ImmutableMap.of("email", "benchmark@example.com", "password", "password"));
+    unknown = new MethodCall("unknownMethod", null);
+    // 预热令牌缓存
+    plugin.onMethodCall(getIdToken, result);
+  }
+
+  /** 从当前用户快照返回 */
+  @Benchmark
+  public Object currentUser() {
+    plugin.onMethodCall(currentUser, result);
+    return result.value;
+  }
+
+  /** 从令牌缓存返回 */
+  @Benchmark
+  public Object getIdToken() {
+    plugin.onMethodCall(getIdToken, result);
+    return result.value;
+  }
+
+  /** 经过后端回调和用户词典构建的完整登录路径 */
+  @Benchmark
+  public Object signInWithEmailAndPassword() {
+    plugin.onMethodCall(signIn, result);
+    return result.value;
+  }
+
+  /** 未实现的方法，只有分发本身的开销 */
+  @Benchmark
+  public Object notImplemented() {
+    plugin.onMethodCall(unknown, result);
+    return result.value;
+  }
+}
@@ -0,0 +1,24 @@
+package com.hekaiyou.wilddogauth;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/** 记录最后一次返回客户端的结果，基准测试方法返回它以免被JIT优化掉 */
+final class LastValueResult implements Result {
+  // 声明最后一次返回的结果
+  Object value;
+
+  @Override
+  public void success(Object result) {
+    value = result;
+  }
+
+  @Override
+  public void error(String errorCode, String errorMessage, Object errorDetails) {
+    value = errorCode;
+  }
+
+  @Override
+  public void notImplemented() {
+    value = this;
+  }
+}
@@ -0,0 +1,64 @@
+package com.hekaiyou.wilddogauth;
+
+import io.flutter.plugin.common.MethodChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** mapFromUser、userInfoToMap和二进制用户编码对绑定了不同数量提供方的用户的序列化开销 */
+@State(Scope.Thread)
+public class SerializationBenchmark {
+  @Param({"1", "5", "10", "20"})
+  public int providers;
+
+  private WilddogAuthPlugin plugin;
+  private BenchmarkUser user;
+  private boolean toggle;
+  private UserPayloadCodec codec;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() {
+    user = new BenchmarkUser("benchmark", providers);
+    plugin = new WilddogAuthPlugin(null, new MethodChannel(null, "wilddog_auth"),
+            new StubAuthBackend(user));
+    codec = new UserPayloadCodec();
+    encoded = codec.encode(plugin.mapFromUser(user));
+  }
+
+  /** 用户内容未改变，命中用户词典缓存 */
+  @Benchmark
+  public Object mapFromUserCached() {
+    return plugin.mapFromUser(user);
+  }
+
+  /** 每次都修改用户昵称，缓存失效后重新构建用户词典 */
+  @Benchmark
+  public Object mapFromUserRebuilt() {
+    toggle = !toggle;
+    user.displayName = toggle ? "Benchmark" : "Benchmark2";
+    return plugin.mapFromUser(user);
+  }
+
+  /** 只构建一个提供方的用户配置信息 */
+  @Benchmark
+  public Object userInfoToMap() {
+    return plugin.userInfoToMap(user.getProviderData().get(0)).build();
+  }
+
+  /** 每次都修改用户昵称，重新构建用户词典并编码为二进制格式 */
+  @Benchmark
+  public Object binaryEncodeRebuilt() {
+    toggle = !toggle;
+    user.displayName = toggle ? "Benchmark" : "Benchmark2";
+    return codec.encode(plugin.mapFromUser(user));
+  }
+
+  /** 从二进制格式解码用户词典 */
+  @Benchmark
+  public Object binaryDecode() {
+    return codec.decode(encoded);
+  }
+}
@@ -0,0 +1,29 @@
+package com.hekaiyou.wilddogauth;
+
+import io.flutter.plugin.common.MethodChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** 登录完成回调的开销，包括构建用户词典和刷新当前用户快照 */
+@State(Scope.Thread)
+public class SignInCompleteBenchmark {
+  private WilddogAuthPlugin plugin;
+  private BenchmarkUser user;
+  private LastValueResult result;
+
+  @Setup
+  public void setUp() {
+    user = new BenchmarkUser("benchmark", 2);
+    plugin = new WilddogAuthPlugin(null, new MethodChannel(null, "wilddog_auth"),
+            new StubAuthBackend(user));
+    result = new LastValueResult();
+  }
+
+  @Benchmark
+  public Object onSuccess() {
+    plugin.new SignInCompleteListener(result).onSuccess(user);
+    return result.value;
+  }
+}
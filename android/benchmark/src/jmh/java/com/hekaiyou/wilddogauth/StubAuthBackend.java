@@ -0,0 +1,156 @@
+package com.hekaiyou.wilddogauth;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基准测试中使用的身份认证后端
+ *
+ * 所有操作都在调用线程中同步成功，并返回同一个用户，只测量插件自身的开销
+ */
+final class StubAuthBackend implements AuthBackend {
+  // 声明私有、静态、不可变的令牌，过期时间在很久之后，保证令牌缓存始终命中
+  private static final String TOKEN = "eyJhbGciOiJub25lIn0."
+          + java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(
+                  ("{\"exp\":" + TimeUnit.DAYS.toSeconds(365 * 100) + "}").getBytes())
+          + ".stub";
+
+  // 声明私有、不可变的认证状态监听器列表
+  private final List<AuthStateListener> listeners = new CopyOnWriteArrayList<>();
+  // 声明私有、不可变的登录用户
+  private final BenchmarkUser user;
+
+  StubAuthBackend(BenchmarkUser user) {
+    this.user = user;
+  }
+
+  /**
+   * 通知所有认证状态监听器，模拟一次认证状态改变
+   */
+  void fire() {
+    for (AuthStateListener listener : listeners) {
+      listener.onAuthStateChanged(user);
+    }
+  }
+
+  @Override
+  public AuthUser getCurrentUser() {
+    return user;
+  }
+
+  @Override
+  public void addAuthStateListener(AuthStateListener listener) {
+    listeners.add(listener);
+    listener.onAuthStateChanged(user);
+  }
+
+  @Override
+  public void removeAuthStateListener(AuthStateListener listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public void signInAnonymously(Callback<AuthUser> callback) {
+    callback.onSuccess(user);
+  }
+
+  @Override
+  public void createUserWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    callback.onSuccess(user);
+  }
+
+  @Override
+  public void signInWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    callback.onSuccess(user);
+  }
+
+  @Override
+  public void createUserWithPhoneAndPassword(String phone, String password, Callback<AuthUser> callback) {
+    callback.onSuccess(user);
+  }
+
+  @Override
+  public void signInWithPhoneAndPassword(String phone, String password, Callback<AuthUser> callback) {
+    callback.onSuccess(user);
+  }
+
+  @Override
+  public void linkWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    callback.onSuccess(user);
+  }
+
+  @Override
+  public void signOut() {
+  }
+
+  @Override
+  public void getToken(boolean refresh, Callback<String> callback) {
+    callback.onSuccess(TOKEN);
+  }
+
+  @Override
+  public void updateProfile(String displayName, String photoUrl, Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void updatePassword(String password, Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void updateEmail(String email, Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void updatePhone(String phone, Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void delete(Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void reauthenticateEmail(String email, String password, Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void reauthenticatePhone(String phone, String password, Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void sendEmailVerification(Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void sendPhoneVerification(Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void verifyPhoneSmsCode(String smsCode, Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void sendPasswordResetEmail(String email, Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void sendPasswordResetSms(String phone, Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+
+  @Override
+  public void confirmPasswordResetSms(String phone, String smsCode, String newPassword, Callback<Void> callback) {
+    callback.onSuccess(null);
+  }
+}
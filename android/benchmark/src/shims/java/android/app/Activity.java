@@ -0,0 +1,14 @@
+package android.app;
+
+import android.content.Context;
+
+/** 基准测试中使用的Activity替身，插件只保存其引用 */
+public class Activity extends Context {
+  public Application getApplication() {
+    return null;
+  }
+
+  public boolean isFinishing() {
+    return false;
+  }
+}
@@ -0,0 +1,29 @@
+package android.app;
+
+import android.content.Context;
+import android.os.Bundle;
+
+/** 基准测试中使用的Application替身，不分发生命周期回调 */
+public class Application extends Context {
+  public void registerActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback) {
+  }
+
+  public void unregisterActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback) {
+  }
+
+  public interface ActivityLifecycleCallbacks {
+    void onActivityCreated(Activity activity, Bundle savedInstanceState);
+
+    void onActivityStarted(Activity activity);
+
+    void onActivityResumed(Activity activity);
+
+    void onActivityPaused(Activity activity);
+
+    void onActivityStopped(Activity activity);
+
+    void onActivitySaveInstanceState(Activity activity, Bundle outState);
+
+    void onActivityDestroyed(Activity activity);
+  }
+}
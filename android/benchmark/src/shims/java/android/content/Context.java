@@ -0,0 +1,10 @@
+package android.content;
+
+import java.io.File;
+
+/** 基准测试中使用的Context替身，没有应用私有存储 */
+public class Context {
+  public File getNoBackupFilesDir() {
+    return null;
+  }
+}
@@ -0,0 +1,20 @@
+package android.net;
+
+/** 基准测试中使用的Uri替身 */
+public class Uri {
+  // 声明私有、不可变的URI字符串
+  private final String uri;
+
+  private Uri(String uri) {
+    this.uri = uri;
+  }
+
+  public static Uri parse(String uri) {
+    return new Uri(uri);
+  }
+
+  @Override
+  public String toString() {
+    return uri;
+  }
+}
@@ -0,0 +1,12 @@
+package android.os;
+
+/** 基准测试中使用的Build替身，系统版本为0，依赖新版本系统的功能不会开启 */
+public class Build {
+  public static class VERSION {
+    public static final int SDK_INT = 0;
+  }
+
+  public static class VERSION_CODES {
+    public static final int M = 23;
+  }
+}
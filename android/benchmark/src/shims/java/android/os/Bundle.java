@@ -0,0 +1,5 @@
+package android.os;
+
+/** 基准测试中使用的Bundle替身，插件不读取其内容 */
+public final class Bundle {
+}
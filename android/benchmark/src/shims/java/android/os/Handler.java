@@ -0,0 +1,23 @@
+package android.os;
+
+/**
+ * 基准测试中使用的Handler替身，投递的任务在当前线程中直接执行
+ *
+ * 基准测试中没有消息循环，延迟任务（超时和重试）不会执行
+ */
+public class Handler {
+  public Handler(Looper looper) {
+  }
+
+  public final boolean post(Runnable r) {
+    r.run();
+    return true;
+  }
+
+  public final boolean postDelayed(Runnable r, long delayMillis) {
+    return true;
+  }
+
+  public final void removeCallbacks(Runnable r) {
+  }
+}
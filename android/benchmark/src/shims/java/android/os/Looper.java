@@ -0,0 +1,15 @@
+package android.os;
+
+/** 基准测试中使用的Looper替身，所有线程都视为主线程，主线程任务直接执行 */
+public class Looper {
+  // 声明私有、静态、不可变的主线程Looper
+  private static final Looper MAIN = new Looper();
+
+  public static Looper getMainLooper() {
+    return MAIN;
+  }
+
+  public static Looper myLooper() {
+    return MAIN;
+  }
+}
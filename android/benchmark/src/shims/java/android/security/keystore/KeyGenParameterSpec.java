@@ -0,0 +1,30 @@
+package android.security.keystore;
+
+import java.security.spec.AlgorithmParameterSpec;
+
+/** 基准测试中使用的KeyGenParameterSpec替身，基准测试中不会生成密钥 */
+public final class KeyGenParameterSpec implements AlgorithmParameterSpec {
+  private KeyGenParameterSpec() {
+  }
+
+  public static final class Builder {
+    public Builder(String keystoreAlias, int purposes) {
+    }
+
+    public Builder setBlockModes(String... blockModes) {
+      return this;
+    }
+
+    public Builder setEncryptionPaddings(String... paddings) {
+      return this;
+    }
+
+    public Builder setKeySize(int keySize) {
+      return this;
+    }
+
+    public KeyGenParameterSpec build() {
+      return new KeyGenParameterSpec();
+    }
+  }
+}
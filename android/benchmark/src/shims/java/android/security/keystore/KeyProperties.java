@@ -0,0 +1,13 @@
+package android.security.keystore;
+
+/** 基准测试中使用的KeyProperties替身，只提供插件使用的常量 */
+public final class KeyProperties {
+  public static final String KEY_ALGORITHM_AES = "AES";
+  public static final int PURPOSE_ENCRYPT = 1;
+  public static final int PURPOSE_DECRYPT = 2;
+  public static final String BLOCK_MODE_GCM = "GCM";
+  public static final String ENCRYPTION_PADDING_NONE = "NoPadding";
+
+  private KeyProperties() {
+  }
+}
@@ -0,0 +1,29 @@
+package android.util;
+
+/** 基准测试中使用的Base64替身，基于java.util.Base64实现插件使用的标志组合 */
+public final class Base64 {
+  public static final int DEFAULT = 0;
+  public static final int NO_PADDING = 1;
+  public static final int NO_WRAP = 2;
+  public static final int URL_SAFE = 8;
+
+  private Base64() {
+  }
+
+  public static byte[] decode(String str, int flags) {
+    // 解码器会忽略缺失的填充
+    return (flags & URL_SAFE) != 0
+            ? java.util.Base64.getUrlDecoder().decode(str)
+            : java.util.Base64.getMimeDecoder().decode(str);
+  }
+
+  public static String encodeToString(byte[] input, int flags) {
+    java.util.Base64.Encoder encoder = (flags & URL_SAFE) != 0
+            ? java.util.Base64.getUrlEncoder()
+            : java.util.Base64.getEncoder();
+    if ((flags & NO_PADDING) != 0) {
+      encoder = encoder.withoutPadding();
+    }
+    return encoder.encodeToString(input);
+  }
+}
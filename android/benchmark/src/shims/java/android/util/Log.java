@@ -0,0 +1,25 @@
+package android.util;
+
+/** 基准测试中使用的Log替身，错误日志输出到标准错误流 */
+public final class Log {
+  private Log() {
+  }
+
+  public static int e(String tag, String msg) {
+    System.err.println(tag + ": " + msg);
+    return 0;
+  }
+
+  public static int w(String tag, String msg) {
+    System.err.println(tag + ": " + msg);
+    return 0;
+  }
+
+  public static int i(String tag, String msg) {
+    return 0;
+  }
+
+  public static int d(String tag, String msg) {
+    return 0;
+  }
+}
@@ -0,0 +1,47 @@
+package android.util;
+
+import java.util.TreeMap;
+
+/** 基准测试中使用的SparseArray替身，基于TreeMap实现插件使用的方法 */
+public class SparseArray<E> {
+  // 声明私有、不可变的键值映射，按键排序
+  private final TreeMap<Integer, E> values = new TreeMap<>();
+
+  public E get(int key) {
+    return values.get(key);
+  }
+
+  public void put(int key, E value) {
+    values.put(key, value);
+  }
+
+  public void append(int key, E value) {
+    values.put(key, value);
+  }
+
+  public void remove(int key) {
+    values.remove(key);
+  }
+
+  public void removeAt(int index) {
+    values.remove(keyAt(index));
+  }
+
+  public int keyAt(int index) {
+    int i = 0;
+    for (Integer key : values.keySet()) {
+      if (i++ == index) {
+        return key;
+      }
+    }
+    throw new ArrayIndexOutOfBoundsException(index);
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  public void clear() {
+    values.clear();
+  }
+}
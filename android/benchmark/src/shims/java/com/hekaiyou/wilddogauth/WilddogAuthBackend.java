@@ -0,0 +1,11 @@
+package com.hekaiyou.wilddogauth;
+
+import android.app.Activity;
+import com.wilddog.wilddogauth.WilddogAuth;
+
+/** 基准测试中使用的WilddogAuthBackend替身，基准测试不经过registerWith，只用于满足编译 */
+class WilddogAuthBackend extends FakeAuthBackend {
+  WilddogAuthBackend(WilddogAuth wilddogAuth, Activity activity) {
+    throw new UnsupportedOperationException("Wilddog SDK is not available on the JVM.");
+  }
+}
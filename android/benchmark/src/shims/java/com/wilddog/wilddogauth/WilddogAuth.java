@@ -0,0 +1,11 @@
+package com.wilddog.wilddogauth;
+
+/** 基准测试中使用的WilddogAuth替身，JVM中没有野狗云SDK，只用于满足registerWith的编译 */
+public class WilddogAuth {
+  private WilddogAuth() {
+  }
+
+  public static WilddogAuth getInstance() {
+    throw new UnsupportedOperationException("Wilddog SDK is not available on the JVM.");
+  }
+}
@@ -0,0 +1,5 @@
+package io.flutter.plugin.common;
+
+/** 基准测试中使用的BinaryMessenger替身 */
+public interface BinaryMessenger {
+}
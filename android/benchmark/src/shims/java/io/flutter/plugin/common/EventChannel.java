@@ -0,0 +1,29 @@
+package io.flutter.plugin.common;
+
+/** 基准测试中使用的EventChannel替身，只保存流处理程序 */
+public final class EventChannel {
+  private final String name;
+  private StreamHandler handler;
+
+  public EventChannel(BinaryMessenger messenger, String name) {
+    this.name = name;
+  }
+
+  public void setStreamHandler(StreamHandler handler) {
+    this.handler = handler;
+  }
+
+  public interface StreamHandler {
+    void onListen(Object arguments, EventSink events);
+
+    void onCancel(Object arguments);
+  }
+
+  public interface EventSink {
+    void success(Object event);
+
+    void error(String errorCode, String errorMessage, Object errorDetails);
+
+    void endOfStream();
+  }
+}
@@ -0,0 +1,27 @@
+package io.flutter.plugin.common;
+
+import java.util.Map;
+
+/** 基准测试中使用的MethodCall替身，与Flutter的MethodCall行为一致 */
+public final class MethodCall {
+  public final String method;
+  public final Object arguments;
+
+  public MethodCall(String method, Object arguments) {
+    this.method = method;
+    this.arguments = arguments;
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> T arguments() {
+    return (T) arguments;
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> T argument(String key) {
+    if (arguments == null) {
+      return null;
+    }
+    return (T) ((Map<?, ?>) arguments).get(key);
+  }
+}
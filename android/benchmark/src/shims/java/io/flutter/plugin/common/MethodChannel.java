@@ -0,0 +1,50 @@
+package io.flutter.plugin.common;
+
+/**
+ * 基准测试中使用的MethodChannel替身
+ *
+ * 发送给Flutter的消息不经过编解码，只记录最后一条消息和消息数，供基准测试消费结果
+ */
+public final class MethodChannel {
+  private final String name;
+  private MethodCallHandler handler;
+  private Object lastArguments;
+  private long invocations;
+
+  public MethodChannel(BinaryMessenger messenger, String name) {
+    this.name = name;
+  }
+
+  public void setMethodCallHandler(MethodCallHandler handler) {
+    this.handler = handler;
+  }
+
+  public void invokeMethod(String method, Object arguments) {
+    this.lastArguments = arguments;
+    this.invocations++;
+  }
+
+  public void invokeMethod(String method, Object arguments, Result callback) {
+    invokeMethod(method, arguments);
+  }
+
+  public Object getLastArguments() {
+    return lastArguments;
+  }
+
+  public long getInvocations() {
+    return invocations;
+  }
+
+  public interface MethodCallHandler {
+    void onMethodCall(MethodCall call, Result result);
+  }
+
+  public interface Result {
+    void success(Object result);
+
+    void error(String errorCode, String errorMessage, Object errorDetails);
+
+    void notImplemented();
+  }
+}
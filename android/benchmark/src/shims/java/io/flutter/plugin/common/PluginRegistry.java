@@ -0,0 +1,19 @@
+package io.flutter.plugin.common;
+
+import android.app.Activity;
+import io.flutter.view.FlutterNativeView;
+
+/** 基准测试中使用的PluginRegistry替身 */
+public interface PluginRegistry {
+  interface Registrar {
+    Activity activity();
+
+    BinaryMessenger messenger();
+
+    Registrar addViewDestroyListener(ViewDestroyListener listener);
+  }
+
+  interface ViewDestroyListener {
+    boolean onViewDestroy(FlutterNativeView view);
+  }
+}
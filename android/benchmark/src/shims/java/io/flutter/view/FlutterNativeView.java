@@ -0,0 +1,5 @@
+package io.flutter.view;
+
+/** 基准测试中使用的FlutterNativeView替身，插件只在引擎销毁回调中接收它 */
+public class FlutterNativeView {
+}
@@ -0,0 +1,84 @@
+package com.hekaiyou.wilddogauth;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/** AuthErrors的错误代码和MethodMetrics的失败类型统计 */
+public class AuthErrorsTest {
+  /** 模拟野狗云SDK的两种身份认证意外 */
+  private static final class InvalidCredentialsException extends RuntimeException {
+  }
+
+  private static final class UserCollisionException extends RuntimeException {
+  }
+
+  /**
+   * 记录最后一次错误的结果回调
+   */
+  private static final class ErrorResult implements Result {
+    String code;
+    Object details;
+
+    @Override
+    public void success(Object value) {
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      code = errorCode;
+      details = errorDetails;
+    }
+
+    @Override
+    public void notImplemented() {
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> failureTypes(MethodMetrics metrics, String method) {
+    Map<String, Object> methods = (Map<String, Object>) metrics.snapshot().get("methods");
+    return (Map<String, Object>) ((Map<String, Object>) methods.get(method)).get("failureTypes");
+  }
+
+  @Test
+  public void wrappedSdkExceptionsKeepSeparateFailureBuckets() {
+    MethodMetrics metrics = new MethodMetrics();
+    ErrorResult client = new ErrorResult();
+    AuthErrors.reply(metrics.start("signIn", client), new AuthException(AuthException.WRONG_PASSWORD,
+            "wrong password", new InvalidCredentialsException()));
+    assertEquals(AuthException.WRONG_PASSWORD, client.code);
+    assertEquals(InvalidCredentialsException.class.getName(), ((Map<?, ?>) client.details).get("exception"));
+    AuthErrors.reply(metrics.start("signIn", client), new AuthException(AuthException.ACCOUNT_EXISTS,
+            "collision", new UserCollisionException()));
+    AuthErrors.reply(metrics.start("signIn", client), new AuthException(AuthException.ACCOUNT_EXISTS,
+            "collision", new UserCollisionException()));
+    Map<String, Object> types = failureTypes(metrics, "signIn");
+    assertEquals(2, types.size());
+    assertEquals(1L, types.get(InvalidCredentialsException.class.getName()));
+    assertEquals(2L, types.get(UserCollisionException.class.getName()));
+  }
+
+  @Test
+  public void pluginErrorsWithoutCauseUseTheirOwnType() {
+    MethodMetrics metrics = new MethodMetrics();
+    ErrorResult client = new ErrorResult();
+    AuthErrors.reply(metrics.start("getIdToken", client),
+            new AuthException(AuthException.NO_CURRENT_USER, "signed out"));
+    assertEquals(AuthException.NO_CURRENT_USER, client.code);
+    assertEquals(1L, failureTypes(metrics, "getIdToken").get(AuthException.class.getName()));
+  }
+
+  @Test
+  public void infersCodesFromJdkExceptions() {
+    assertEquals(AuthException.INVALID_ARGUMENT, AuthErrors.codeOf(new IllegalArgumentException()));
+    assertEquals(AuthException.NETWORK_REQUEST_FAILED,
+            AuthErrors.codeOf(new RuntimeException(new IOException("offline"))));
+    assertEquals(AuthException.UNKNOWN, AuthErrors.codeOf(new IllegalStateException()));
+  }
+}
@@ -0,0 +1,208 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** CallDeadlines的超时、取消和被丢弃的完成回调 */
+public class CallDeadlinesTest {
+  private final MethodMetrics metrics = new MethodMetrics();
+  private final CallDeadlines deadlines = new CallDeadlines(new DispatchExecutors(), metrics);
+
+  /**
+   * 记录收到的每一次返回的结果回调，可以在任意线程中返回
+   */
+  private static final class RecordingResult implements Result {
+    final List<String> calls = new ArrayList<>();
+
+    @Override
+    public synchronized void success(Object value) {
+      calls.add("success");
+    }
+
+    @Override
+    public synchronized void error(String errorCode, String errorMessage, Object errorDetails) {
+      calls.add(errorCode);
+    }
+
+    @Override
+    public synchronized void notImplemented() {
+      calls.add("notImplemented");
+    }
+
+    synchronized List<String> calls() {
+      return new ArrayList<>(calls);
+    }
+  }
+
+  private static Map<String, Object> arguments(long timeoutMillis, String requestId) {
+    ImmutableMap.Builder<String, Object> builder = ImmutableMap.<String, Object>builder()
+            .put("timeoutMs", timeoutMillis);
+    if (requestId != null) {
+      builder.put("requestId", requestId);
+    }
+    return builder.build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private long dropped(String method) {
+    Map<String, Object> methods = (Map<String, Object>) metrics.snapshot().get("methods");
+    Map<String, Object> stats = (Map<String, Object>) methods.get(method);
+    return stats != null ? (Long) stats.get("droppedLate") : 0;
+  }
+
+  /**
+   * 模拟主线程中到达的截止时间
+   */
+  private static void expire(Result deadline) {
+    ((Runnable) deadline).run();
+  }
+
+  @Test
+  public void callsWithoutDeadlineOrRequestIdAreNotWrapped() {
+    RecordingResult client = new RecordingResult();
+    assertTrue(deadlines.start("signOut", arguments(0, null), client) == client);
+  }
+
+  @Test
+  public void completionBeforeTimeoutWins() {
+    RecordingResult client = new RecordingResult();
+    Result deadline = deadlines.start("signInAnonymously", arguments(1000, null), client);
+    deadline.success("user");
+    expire(deadline);
+    assertEquals(Collections.singletonList("success"), client.calls());
+    assertEquals(0, dropped("signInAnonymously"));
+  }
+
+  @Test
+  public void completionAfterTimeoutIsDroppedAndCounted() {
+    RecordingResult client = new RecordingResult();
+    Result deadline = deadlines.start("signInAnonymously", arguments(1000, null), client);
+    expire(deadline);
+    deadline.success("late");
+    deadline.error(AuthException.UNKNOWN, "late", null);
+    assertEquals(1, client.calls().size());
+    assertEquals(AuthException.TIMEOUT, client.calls().get(0));
+    assertEquals(2, dropped("signInAnonymously"));
+  }
+
+  @Test
+  public void completionAfterCancelIsDroppedAndCounted() {
+    RecordingResult client = new RecordingResult();
+    Result deadline = deadlines.start("getIdToken", arguments(0, "request-1"), client);
+    assertTrue(deadlines.cancel("request-1"));
+    deadline.success("late");
+    assertEquals(AuthException.CANCELLED, client.calls().get(0));
+    assertEquals(1, client.calls().size());
+    assertEquals(1, dropped("getIdToken"));
+  }
+
+  @Test
+  public void cancelAfterCompletionIsNotADrop() {
+    RecordingResult client = new RecordingResult();
+    Result deadline = deadlines.start("getIdToken", arguments(0, "request-1"), client);
+    deadline.success("token");
+    assertTrue(!deadlines.cancel("request-1"));
+    expire(deadline);
+    assertEquals(1, client.calls().size());
+    assertEquals(0, dropped("getIdToken"));
+  }
+
+  @Test
+  public void abortAllOnlyCountsLaterCompletions() {
+    RecordingResult first = new RecordingResult();
+    RecordingResult second = new RecordingResult();
+    Result completed = deadlines.start("currentUser", arguments(1000, null), first);
+    Result pending = deadlines.start("currentUser", arguments(1000, null), second);
+    completed.success(null);
+    assertEquals(1, deadlines.abortAll(AuthException.DETACHED, "detached"));
+    // 再次结束时没有进行中的调用，也不记录丢弃
+    assertEquals(0, deadlines.abortAll(AuthException.DETACHED, "detached"));
+    assertEquals(0, dropped("currentUser"));
+    pending.success(null);
+    assertEquals(AuthException.DETACHED, second.calls().get(0));
+    assertEquals(1, dropped("currentUser"));
+  }
+
+  @Test
+  public void deadlineReportsWhenTheCallHasEnded() {
+    Result timed = deadlines.start("batch", arguments(1000, null), new RecordingResult());
+    CallDeadlines.Deadline deadline = deadlines.deadlineOf(timed);
+    assertTrue(!deadline.isDone());
+    expire(timed);
+    assertTrue(deadline.isDone());
+    Result cancelled = deadlines.start("batch", arguments(0, "request-1"), new RecordingResult());
+    assertTrue(!deadlines.deadlineOf(cancelled).isDone());
+    deadlines.cancel("request-1");
+    assertTrue(deadlines.deadlineOf(cancelled).isDone());
+    // 没有截止时间和请求ID的调用只由自己返回结果
+    assertTrue(deadlines.deadlineOf(deadlines.start("batch", arguments(0, null), new RecordingResult()))
+            == CallDeadlines.NONE);
+  }
+
+  @Test
+  public void timeoutRacingCompletionDeliversExactlyOnce() throws Exception {
+    final int calls = 2000;
+    final List<RecordingResult> clients = new ArrayList<>();
+    final List<Result> results = new ArrayList<>();
+    for (int i = 0; i < calls; i++) {
+      RecordingResult client = new RecordingResult();
+      clients.add(client);
+      results.add(deadlines.start("signInWithEmailAndPassword", arguments(1000, null), client));
+    }
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread timer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        await(start);
+        for (Result result : results) {
+          expire(result);
+        }
+      }
+    });
+    Thread sdk = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        await(start);
+        for (Result result : results) {
+          result.success("user");
+        }
+      }
+    });
+    timer.start();
+    sdk.start();
+    start.countDown();
+    timer.join();
+    sdk.join();
+    // 每个调用只返回一次，被超时抢先的完成回调都记录为丢弃
+    AtomicInteger timedOut = new AtomicInteger();
+    for (RecordingResult client : clients) {
+      List<String> received = client.calls();
+      assertEquals(1, received.size());
+      if (AuthException.TIMEOUT.equals(received.get(0))) {
+        timedOut.incrementAndGet();
+      }
+    }
+    assertEquals(timedOut.get(), dropped("signInWithEmailAndPassword"));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package com.hekaiyou.wilddogauth;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** CircuitBreaker在闭合、断开和半开状态之间的转换 */
+public class CircuitBreakerTest {
+  private static final long T0 = TimeUnit.SECONDS.toNanos(1000);
+
+  private static long at(long millis) {
+    return T0 + TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  private static CircuitBreaker breaker() {
+    CircuitBreaker breaker = new CircuitBreaker();
+    breaker.configure(3, 1000);
+    return breaker;
+  }
+
+  private static Object state(CircuitBreaker breaker, long nowNanos) {
+    return breaker.snapshot(nowNanos).get("state");
+  }
+
+  /**
+   * 连续失败到阈值，使断路器在给定时间断开
+   */
+  private static void trip(CircuitBreaker breaker, long nowNanos) {
+    for (int i = 0; i < 3; i++) {
+      breaker.onFailure(nowNanos);
+    }
+  }
+
+  @Test
+  public void opensAfterTheThreshold() {
+    CircuitBreaker breaker = breaker();
+    breaker.onFailure(at(0));
+    breaker.onFailure(at(0));
+    assertEquals(0, breaker.tryAcquire(at(0)));
+    assertEquals("CLOSED", state(breaker, at(0)));
+    breaker.onFailure(at(0));
+    assertEquals("OPEN", state(breaker, at(0)));
+    assertEquals(900, breaker.tryAcquire(at(100)));
+    assertEquals(900L, breaker.snapshot(at(100)).get("retryAfterMillis"));
+  }
+
+  @Test
+  public void successResetsTheFailureCount() {
+    CircuitBreaker breaker = breaker();
+    breaker.onFailure(at(0));
+    breaker.onFailure(at(0));
+    breaker.onSuccess();
+    breaker.onFailure(at(0));
+    breaker.onFailure(at(0));
+    assertEquals("CLOSED", state(breaker, at(0)));
+    assertEquals(2, breaker.snapshot(at(0)).get("consecutiveFailures"));
+  }
+
+  @Test
+  public void halfOpenAdmitsOneTrial() {
+    CircuitBreaker breaker = breaker();
+    trip(breaker, at(0));
+    assertEquals(0, breaker.tryAcquire(at(1000)));
+    assertEquals("HALF_OPEN", state(breaker, at(1000)));
+    // 试探调用完成前拒绝其它调用
+    assertEquals(500, breaker.tryAcquire(at(1500)));
+  }
+
+  @Test
+  public void successfulTrialCloses() {
+    CircuitBreaker breaker = breaker();
+    trip(breaker, at(0));
+    assertEquals(0, breaker.tryAcquire(at(1000)));
+    breaker.onSuccess();
+    assertEquals("CLOSED", state(breaker, at(1000)));
+    assertEquals(0, breaker.snapshot(at(1000)).get("consecutiveFailures"));
+    assertEquals(0, breaker.tryAcquire(at(1000)));
+    assertEquals(0, breaker.tryAcquire(at(1000)));
+  }
+
+  @Test
+  public void failedTrialReopens() {
+    CircuitBreaker breaker = breaker();
+    trip(breaker, at(0));
+    assertEquals(0, breaker.tryAcquire(at(1000)));
+    // 半开状态下一次失败即再次断开，并重新计算断开时间
+    breaker.onFailure(at(1200));
+    assertEquals("OPEN", state(breaker, at(1200)));
+    assertEquals(1000, breaker.tryAcquire(at(1200)));
+    assertEquals(0, breaker.tryAcquire(at(2200)));
+    assertEquals("HALF_OPEN", state(breaker, at(2200)));
+  }
+
+  @Test
+  public void lostTrialIsRetriedAfterTheOpenInterval() {
+    CircuitBreaker breaker = breaker();
+    trip(breaker, at(0));
+    assertEquals(0, breaker.tryAcquire(at(1000)));
+    // 试探调用没有完成回调时，超过断开时间后放行新的试探
+    assertTrue(breaker.tryAcquire(at(1999)) > 0);
+    assertEquals(0, breaker.tryAcquire(at(2000)));
+    assertEquals("HALF_OPEN", state(breaker, at(2000)));
+  }
+}
@@ -0,0 +1,98 @@
+package com.hekaiyou.wilddogauth;
+
+import android.util.Base64;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** IdTokenCache的过期时间解码和后台刷新调度 */
+public class IdTokenCacheTest {
+  private static final long NOW = 1500000000000L;
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+  private static final long FIVE_MINUTES = TimeUnit.MINUTES.toMillis(5);
+
+  /**
+   * 生成带有exp声明的未签名令牌
+   */
+  private static String token(long expiresAtMillis) throws Exception {
+    String payload = "{\"uid\":\"uid-1\",\"exp\":" + TimeUnit.MILLISECONDS.toSeconds(expiresAtMillis) + "}";
+    int flags = Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP;
+    return Base64.encodeToString("{\"alg\":\"none\"}".getBytes("UTF-8"), flags) + "."
+            + Base64.encodeToString(payload.getBytes("UTF-8"), flags) + ".signature";
+  }
+
+  private static IdTokenCache cache() {
+    return new IdTokenCache(new FakeAuthBackend(),
+            new RetryPolicy(new DispatchExecutors(), new MethodMetrics()), "test");
+  }
+
+  @Test
+  public void decodesExpiryFromPayload() throws Exception {
+    assertEquals(NOW + HOUR, IdTokenCache.decodeExpiry(token(NOW + HOUR)));
+  }
+
+  @Test
+  public void unreadableTokensHaveNoExpiry() {
+    assertEquals(0, IdTokenCache.decodeExpiry(null));
+    assertEquals(0, IdTokenCache.decodeExpiry("not-a-jwt"));
+    assertEquals(0, IdTokenCache.decodeExpiry("a.%%%.c"));
+  }
+
+  @Test
+  public void refreshStartsAtTheWindow() {
+    long validUntil = IdTokenCache.validUntilMillis(NOW + HOUR, NOW, FIVE_MINUTES);
+    assertEquals(NOW + HOUR - FIVE_MINUTES, validUntil);
+    assertEquals(HOUR - FIVE_MINUTES, IdTokenCache.refreshDelayMillis(validUntil, NOW));
+  }
+
+  @Test
+  public void windowIsCappedAtHalfTheRemainingLifetime() {
+    // 窗口不短于令牌有效期时也不会立即刷新
+    long validUntil = IdTokenCache.validUntilMillis(NOW + HOUR, NOW, 2 * HOUR);
+    assertEquals(NOW + HOUR / 2, validUntil);
+    assertEquals(HOUR / 2, IdTokenCache.refreshDelayMillis(validUntil, NOW));
+  }
+
+  @Test
+  public void refreshesAreSpacedByTheMinimumDelay() {
+    long validUntil = IdTokenCache.validUntilMillis(NOW + 2000, NOW, FIVE_MINUTES);
+    assertTrue(validUntil > NOW);
+    assertEquals(IdTokenCache.MIN_REFRESH_DELAY_MILLIS, IdTokenCache.refreshDelayMillis(validUntil, NOW));
+    assertEquals(IdTokenCache.MIN_REFRESH_DELAY_MILLIS, IdTokenCache.refreshDelayMillis(NOW - HOUR, NOW));
+  }
+
+  @Test
+  public void seedSkipsExpiredTokens() throws Exception {
+    IdTokenCache cache = cache();
+    try {
+      cache.seed("uid-1", token(System.currentTimeMillis() - 1000));
+      assertNull(cache.peek("uid-1"));
+      cache.seed("uid-2", "not-a-jwt");
+      assertNull(cache.peek("uid-2"));
+    } finally {
+      cache.shutdown();
+    }
+  }
+
+  @Test
+  public void seedKeepsValidTokensUntilInvalidated() throws Exception {
+    IdTokenCache cache = cache();
+    try {
+      String idToken = token(System.currentTimeMillis() + HOUR);
+      cache.seed("uid-1", idToken);
+      assertEquals(idToken, cache.peek("uid-1"));
+      // 已有缓存时不覆盖
+      cache.seed("uid-1", token(System.currentTimeMillis() + 2 * HOUR));
+      assertEquals(idToken, cache.peek("uid-1"));
+      cache.invalidate("uid-1");
+      assertNull(cache.peek("uid-1"));
+    } finally {
+      cache.shutdown();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.hekaiyou.wilddogauth;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** LatencyHistogram的分桶边界、百分位和统计值 */
+public class LatencyHistogramTest {
+  private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void smallValuesHaveTheirOwnBuckets() {
+    for (int nanos = 0; nanos < 16; nanos++) {
+      assertEquals(nanos, LatencyHistogram.bucketOf(nanos));
+      assertEquals(nanos, LatencyHistogram.upperBoundOf(nanos));
+    }
+    // 16开始每个子桶包含多个值
+    assertEquals(16, LatencyHistogram.bucketOf(16));
+    assertEquals(16, LatencyHistogram.bucketOf(17));
+    assertEquals(17, LatencyHistogram.bucketOf(18));
+    assertEquals(17, LatencyHistogram.upperBoundOf(16));
+  }
+
+  @Test
+  public void bucketsAreContiguous() {
+    // 每个桶的上界属于该桶，上界加一属于下一个桶
+    for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+      long upper = LatencyHistogram.upperBoundOf(bucket);
+      assertEquals(bucket, LatencyHistogram.bucketOf(upper));
+      assertEquals(bucket + 1, LatencyHistogram.bucketOf(upper + 1));
+    }
+  }
+
+  @Test
+  public void relativeErrorIsBounded() {
+    for (int bucket = 16; bucket < LatencyHistogram.BUCKETS; bucket++) {
+      long lower = LatencyHistogram.upperBoundOf(bucket - 1) + 1;
+      long upper = LatencyHistogram.upperBoundOf(bucket);
+      assertTrue("bucket " + bucket, (upper - lower + 1) * 8 <= lower);
+    }
+  }
+
+  @Test
+  public void valuesBeyondTheRangeShareTheLastBucket() {
+    int last = LatencyHistogram.BUCKETS - 1;
+    assertEquals(last, LatencyHistogram.bucketOf(LatencyHistogram.upperBoundOf(last)));
+    assertEquals(last, LatencyHistogram.bucketOf(TimeUnit.HOURS.toNanos(1)));
+    assertEquals(last, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void percentilesUseBucketUpperBoundsCappedAtMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 90; i++) {
+      histogram.record(MILLI);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(100 * MILLI);
+    }
+    long[] values = histogram.percentileMicros(50, 90, 91, 99);
+    long upper = TimeUnit.NANOSECONDS.toMicros(LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(MILLI)));
+    assertTrue(upper >= 1000 && upper <= 1125);
+    assertEquals(upper, values[0]);
+    assertEquals(upper, values[1]);
+    assertEquals(100000, values[2]);
+    assertEquals(100000, values[3]);
+  }
+
+  @Test
+  public void overflowPercentilesReportTheMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(TimeUnit.HOURS.toNanos(1));
+    assertEquals(TimeUnit.HOURS.toMicros(1), histogram.percentileMicros(100)[0]);
+  }
+
+  @Test
+  public void tracksCountMeanAndMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertArrayEquals(new long[]{0, 0}, histogram.percentileMicros(50, 99));
+    assertEquals(0, histogram.getMeanMicros());
+    histogram.record(1000);
+    histogram.record(3000);
+    // 时钟回拨按0记录
+    histogram.record(-5);
+    assertEquals(3, histogram.getCount());
+    assertEquals(1, histogram.getMeanMicros());
+    assertEquals(3, histogram.getMaxMicros());
+    assertEquals(0, histogram.percentileMicros(0)[0]);
+  }
+
+  @Test
+  public void resetClearsEverything() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(5 * MILLI);
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMaxMicros());
+    assertArrayEquals(new long[]{0}, histogram.percentileMicros(50));
+    histogram.record(MILLI);
+    assertEquals(1000, histogram.getMaxMicros());
+  }
+}
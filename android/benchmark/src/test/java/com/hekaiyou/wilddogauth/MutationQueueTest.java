@@ -0,0 +1,203 @@
+package com.hekaiyou.wilddogauth;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** MutationQueue的日志读取、压缩、合并和重放 */
+public class MutationQueueTest {
+  /**
+   * 在当前线程中执行工作线程任务的线程调度，写入在enqueue返回前完成
+   */
+  private static final class InlineExecutors extends DispatchExecutors {
+    @Override
+    void execute(Runnable task) {
+      task.run();
+    }
+  }
+
+  /**
+   * 使用JVM生成的密钥代替AndroidKeyStore的加密，多个队列共享同一个密钥
+   */
+  private static final class TestCipher extends KeystoreCipher {
+    private final SecretKey key;
+
+    TestCipher() throws GeneralSecurityException {
+      super("test");
+      KeyGenerator generator = KeyGenerator.getInstance("AES");
+      generator.init(128);
+      key = generator.generateKey();
+    }
+
+    @Override
+    SecretKey key() {
+      return key;
+    }
+  }
+
+  /**
+   * 记录发送的修改并立即成功的发送方
+   */
+  private static final class RecordingReplayer implements MutationQueue.Replayer {
+    final List<String> replayed = new ArrayList<>();
+    String uid;
+
+    RecordingReplayer(String uid) {
+      this.uid = uid;
+    }
+
+    @Override
+    public String currentUid() {
+      return uid;
+    }
+
+    @Override
+    public void replay(MutationQueue.Mutation mutation, AuthBackend.Callback<Void> callback) {
+      replayed.add(mutation.uid + ":" + mutation.method + mutation.arguments);
+      callback.onSuccess(null);
+    }
+  }
+
+  /**
+   * 忽略确认的结果回调
+   */
+  private static final Result IGNORED = new Result() {
+    @Override
+    public void success(Object value) {
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      throw new AssertionError(errorCode);
+    }
+
+    @Override
+    public void notImplemented() {
+    }
+  };
+
+  private final TestCipher cipher;
+  private final File file;
+  private final RecordingReplayer replayer = new RecordingReplayer("uid-a");
+
+  public MutationQueueTest() throws Exception {
+    cipher = new TestCipher();
+    file = File.createTempFile("mutations", ".log");
+    file.deleteOnExit();
+  }
+
+  /**
+   * 打开日志文件上的新队列并读取日志，相当于进程重启，日志文件已存在时队列视为已开启
+   */
+  private MutationQueue open() {
+    MutationQueue queue = new MutationQueue(file, cipher, new InlineExecutors(), replayer);
+    queue.load();
+    return queue;
+  }
+
+  private static void update(MutationQueue queue, String uid, String method, String value) {
+    queue.enqueue(uid, method, Arrays.asList(value), IGNORED, null);
+  }
+
+  @Test
+  public void collapsesUpdatesToTheSameMethod() {
+    MutationQueue queue = open();
+    update(queue, "uid-a", "updateProfile", "first");
+    update(queue, "uid-a", "updateEmail", "a@example.com");
+    update(queue, "uid-a", "updateProfile", "second");
+    Map<String, Object> state = queue.snapshot();
+    assertEquals(2, state.get("depth"));
+    assertEquals(1L, state.get("collapsed"));
+    assertEquals(Arrays.asList("updateEmail", "updateProfile"), state.get("pending"));
+    // 重启后只重放最后一次修改
+    open().replay();
+    assertEquals(Arrays.asList("uid-a:updateEmail[a@example.com]", "uid-a:updateProfile[second]"),
+            replayer.replayed);
+  }
+
+  @Test
+  public void truncatesATornTailRecord() throws IOException {
+    MutationQueue queue = open();
+    update(queue, "uid-a", "updateProfile", "name");
+    update(queue, "uid-a", "updateEmail", "a@example.com");
+    long validLength = file.length();
+    // 进程在写入记录时中断，只留下长度和部分密文
+    FileOutputStream output = new FileOutputStream(file, true);
+    output.write(new byte[] {0, 0, 0, 64, 1, 2, 3, 4, 5});
+    output.close();
+    MutationQueue reopened = open();
+    assertEquals(2, reopened.snapshot().get("depth"));
+    assertEquals(validLength, file.length());
+  }
+
+  @Test
+  public void compactsCompletedRecordsOnLoad() {
+    MutationQueue queue = open();
+    update(queue, "uid-a", "updateProfile", "first");
+    long singleRecord = file.length();
+    update(queue, "uid-a", "updateProfile", "second");
+    update(queue, "uid-a", "updateProfile", "third");
+    assertTrue(file.length() > 3 * singleRecord);
+    MutationQueue reopened = open();
+    assertEquals(1, reopened.snapshot().get("depth"));
+    assertEquals(singleRecord, file.length());
+  }
+
+  @Test
+  public void compactsWhileAppending() {
+    MutationQueue queue = open();
+    update(queue, "uid-a", "updateProfile", "0");
+    long singleRecord = file.length();
+    for (int i = 1; i < 300; i++) {
+      update(queue, "uid-a", "updateProfile", String.valueOf(i));
+    }
+    // 不压缩时日志有约600条记录
+    assertTrue(file.length() < 100 * singleRecord);
+    open().replay();
+    assertEquals(Arrays.asList("uid-a:updateProfile[299]"), replayer.replayed);
+  }
+
+  @Test
+  public void dropsMutationsOfAnotherUser() {
+    MutationQueue queue = open();
+    update(queue, "uid-b", "updateProfile", "name");
+    update(queue, "uid-a", "updateEmail", "a@example.com");
+    queue.replay();
+    Map<String, Object> state = queue.snapshot();
+    assertEquals(0, state.get("depth"));
+    assertEquals(1L, state.get("replayed"));
+    assertEquals(1L, state.get("dropped"));
+    assertEquals(AuthException.USER_MISMATCH, ((Map<?, ?>) state.get("lastError")).get("code"));
+    assertEquals(Arrays.asList("uid-a:updateEmail[a@example.com]"), replayer.replayed);
+    // 所有修改都已完成时删除日志
+    assertTrue(!file.exists());
+  }
+
+  @Test
+  public void waitsForSignInBeforeReplaying() {
+    replayer.uid = null;
+    MutationQueue queue = open();
+    update(queue, "uid-a", "updatePassword", "secret1");
+    queue.replay();
+    assertEquals(1, queue.snapshot().get("depth"));
+    replayer.uid = "uid-a";
+    queue.replay();
+    assertEquals(0, queue.snapshot().get("depth"));
+    assertEquals(1, replayer.replayed.size());
+  }
+}
@@ -0,0 +1,130 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/** RequestCoalescer的合并和完成 */
+public class RequestCoalescerTest {
+  private final RequestCoalescer coalescer = new RequestCoalescer();
+
+  /**
+   * 记录收到的每一次返回的结果回调
+   */
+  private static final class RecordingResult implements Result {
+    final List<String> calls = new ArrayList<>();
+
+    @Override
+    public void success(Object value) {
+      calls.add("success:" + value);
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      calls.add("error:" + errorCode);
+    }
+
+    @Override
+    public void notImplemented() {
+      calls.add("notImplemented");
+    }
+  }
+
+  private static MethodCall signIn(String email) {
+    return new MethodCall("signInWithEmailAndPassword",
+            ImmutableMap.of("email", email, "password", "secret"));
+  }
+
+  @Test
+  public void identicalCallsShareOneResult() {
+    RecordingResult first = new RecordingResult();
+    RecordingResult second = new RecordingResult();
+    Result shared = coalescer.begin(signIn("a@example.com"), first);
+    assertNotNull(shared);
+    assertNull(coalescer.begin(signIn("a@example.com"), second));
+    shared.success("user");
+    assertEquals(1, first.calls.size());
+    assertEquals("success:user", first.calls.get(0));
+    assertEquals(first.calls, second.calls);
+  }
+
+  @Test
+  public void repeatedAnonymousSignInCreatesOneAccount() {
+    RecordingResult first = new RecordingResult();
+    RecordingResult second = new RecordingResult();
+    Result shared = coalescer.begin(new MethodCall("signInAnonymously", null), first);
+    assertNotNull(shared);
+    assertNull(coalescer.begin(new MethodCall("signInAnonymously", null), second));
+    shared.success("anonymous");
+    assertEquals("success:anonymous", second.calls.get(0));
+  }
+
+  @Test
+  public void synchronousCurrentUserIsNotCoalesced() {
+    RecordingResult result = new RecordingResult();
+    assertSame(result, coalescer.begin(new MethodCall("currentUser", null), result));
+  }
+
+  @Test
+  public void differentArgumentsAreNotCoalesced() {
+    assertNotNull(coalescer.begin(signIn("a@example.com"), new RecordingResult()));
+    assertNotNull(coalescer.begin(signIn("b@example.com"), new RecordingResult()));
+  }
+
+  @Test
+  public void nonIdempotentMethodsAreNotCoalesced() {
+    RecordingResult result = new RecordingResult();
+    MethodCall delete = new MethodCall("delete", null);
+    assertSame(result, coalescer.begin(delete, result));
+    RecordingResult other = new RecordingResult();
+    assertSame(other, coalescer.begin(delete, other));
+  }
+
+  @Test
+  public void onlyFirstCompletionIsDelivered() {
+    RecordingResult waiter = new RecordingResult();
+    Result shared = coalescer.begin(signIn("a@example.com"), waiter);
+    shared.error("ERROR_NETWORK_REQUEST_FAILED", "offline", null);
+    shared.success("late");
+    shared.notImplemented();
+    assertEquals(1, waiter.calls.size());
+    assertEquals("error:ERROR_NETWORK_REQUEST_FAILED", waiter.calls.get(0));
+  }
+
+  @Test
+  public void completedCallStartsANewRequest() {
+    Result first = coalescer.begin(signIn("a@example.com"), new RecordingResult());
+    first.success("user");
+    assertNotNull(coalescer.begin(signIn("a@example.com"), new RecordingResult()));
+  }
+
+  @Test
+  public void lateCompletionDoesNotDrainNewerCall() {
+    RecordingResult oldWaiter = new RecordingResult();
+    Result old = coalescer.begin(signIn("a@example.com"), oldWaiter);
+    old.success("first");
+    RecordingResult newWaiter = new RecordingResult();
+    Result newer = coalescer.begin(signIn("a@example.com"), newWaiter);
+    RecordingResult joined = new RecordingResult();
+    assertNull(coalescer.begin(signIn("a@example.com"), joined));
+    // 旧调用的重复返回不影响新调用的等待者
+    old.success("duplicate");
+    assertEquals(0, newWaiter.calls.size());
+    assertEquals(0, joined.calls.size());
+    newer.success("second");
+    assertEquals("success:second", newWaiter.calls.get(0));
+    assertEquals("success:second", joined.calls.get(0));
+    assertEquals(1, oldWaiter.calls.size());
+  }
+}
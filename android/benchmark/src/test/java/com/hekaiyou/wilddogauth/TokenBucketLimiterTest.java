@@ -0,0 +1,85 @@
+package com.hekaiyou.wilddogauth;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/** TokenBucketLimiter的突发容量、令牌恢复和按目标限流 */
+public class TokenBucketLimiterTest {
+  private static final long T0 = TimeUnit.SECONDS.toNanos(1000);
+
+  private static long at(long millis) {
+    return T0 + TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  @Test
+  public void burstIsAllowedThenThrottled() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter();
+    limiter.configure(5, 2000, null, null);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", null, T0));
+    }
+    assertEquals(2000, limiter.tryAcquire("sendPasswordResetEmail", null, T0));
+    // 其它方法使用独立的令牌桶
+    assertEquals(0, limiter.tryAcquire("sendEmailVerification", null, T0));
+  }
+
+  @Test
+  public void tokensRefillOverTime() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter();
+    limiter.configure(1, 2000, null, null);
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", null, at(0)));
+    assertEquals(1500, limiter.tryAcquire("sendPasswordResetEmail", null, at(500)));
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", null, at(2000)));
+    assertEquals(2000, limiter.tryAcquire("sendPasswordResetEmail", null, at(2000)));
+  }
+
+  @Test
+  public void idleBucketsDoNotExceedTheBurst() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter();
+    limiter.configure(2, 1000, null, null);
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", null, at(0)));
+    long later = at(TimeUnit.HOURS.toMillis(1));
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", null, later));
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", null, later));
+    assertEquals(1000, limiter.tryAcquire("sendPasswordResetEmail", null, later));
+  }
+
+  @Test
+  public void targetsAreThrottledIndependently() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter();
+    limiter.configure(10, 1000, 2, 30000);
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", "a@example.com", T0));
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", "a@example.com", T0));
+    assertEquals(30000, limiter.tryAcquire("sendPasswordResetEmail", "a@example.com", T0));
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", "b@example.com", T0));
+    assertEquals(1, limiter.snapshot(T0).get("throttledTargets"));
+    assertEquals(2, limiter.snapshot(T0).get("trackedTargets"));
+  }
+
+  @Test
+  public void throttledCallsConsumeNoTokens() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter();
+    limiter.configure(2, 1000, 1, 30000);
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", "a@example.com", T0));
+    // 目标桶为空时不消耗方法的令牌
+    assertEquals(30000, limiter.tryAcquire("sendPasswordResetEmail", "a@example.com", T0));
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", "b@example.com", T0));
+    // 方法桶为空时不消耗新目标的令牌
+    assertEquals(1000, limiter.tryAcquire("sendPasswordResetEmail", "c@example.com", T0));
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", "c@example.com", at(1000)));
+  }
+
+  @Test
+  public void configureResetsBuckets() {
+    TokenBucketLimiter limiter = new TokenBucketLimiter();
+    limiter.configure(1, 1000, null, null);
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", null, T0));
+    assertEquals(1000, limiter.tryAcquire("sendPasswordResetEmail", null, T0));
+    limiter.configure(null, 5000, null, null);
+    assertEquals(0, limiter.tryAcquire("sendPasswordResetEmail", null, T0));
+    assertEquals(5000, limiter.tryAcquire("sendPasswordResetEmail", null, T0));
+  }
+}
@@ -0,0 +1,126 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.base.Strings;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/** UserPayloadCodec的编码和解码 */
+public class UserPayloadCodecTest {
+  private final UserPayloadCodec codec = new UserPayloadCodec();
+
+  /**
+   * 生成与插件的用户词典相同键顺序的用户词典
+   */
+  private static ImmutableMap<String, Object> user(String displayName, List<ImmutableMap<String, Object>> providerData) {
+    ImmutableMap.Builder<String, Object> builder = ImmutableMap.<String, Object>builder()
+            .put("providerId", "password")
+            .put("uid", "uid-1");
+    if (displayName != null) {
+      builder.put("displayName", displayName);
+    }
+    return builder
+            .put("email", "user@example.com")
+            .put("isAnonymous", false)
+            .put("isEmailVerified", true)
+            .put("isPhoneVerified", false)
+            .put("providerData", providerData)
+            .build();
+  }
+
+  private static ImmutableMap<String, Object> provider(String providerId, String uid) {
+    return ImmutableMap.<String, Object>of("providerId", providerId, "uid", uid);
+  }
+
+  @Test
+  public void roundTripKeepsFieldsAndOrder() {
+    ImmutableMap<String, Object> userMap = user("名字 😀", ImmutableList.of(
+            provider("password", "user@example.com"),
+            provider("github.com", "octocat")));
+    ImmutableMap<String, Object> decoded = codec.decode(codec.encode(userMap));
+    assertEquals(userMap, decoded);
+    assertEquals(ImmutableList.copyOf(userMap.keySet()), ImmutableList.copyOf(decoded.keySet()));
+  }
+
+  @Test
+  public void roundTripWithoutOptionalFields() {
+    ImmutableMap<String, Object> userMap = user(null, ImmutableList.<ImmutableMap<String, Object>>of());
+    assertEquals(userMap, codec.decode(codec.encode(userMap)));
+  }
+
+  @Test
+  public void nullUserEncodesToNull() {
+    assertNull(codec.encode(null));
+  }
+
+  @Test
+  public void sameInstanceReturnsPreviousEncoding() {
+    ImmutableMap<String, Object> userMap = user("a", ImmutableList.<ImmutableMap<String, Object>>of());
+    byte[] first = codec.encode(userMap);
+    assertSame(first, codec.encode(userMap));
+    // 内容相同的新实例重新编码
+    byte[] second = codec.encode(user("a", ImmutableList.<ImmutableMap<String, Object>>of()));
+    assertArrayEquals(first, second);
+  }
+
+  @Test
+  public void growsBufferForLargeUsers() {
+    ImmutableMap<String, Object> userMap = user(Strings.repeat("x", 60000),
+            ImmutableList.<ImmutableMap<String, Object>>of());
+    assertEquals(userMap, codec.decode(codec.encode(userMap)));
+  }
+
+  @Test
+  public void tooLongFieldIsNotEncoded() {
+    assertNull(codec.encode(user(Strings.repeat("x", 0x10000),
+            ImmutableList.<ImmutableMap<String, Object>>of())));
+  }
+
+  @Test
+  public void tooManyProvidersAreNotEncoded() {
+    List<ImmutableMap<String, Object>> providers = new ArrayList<>();
+    for (int i = 0; i < 256; i++) {
+      providers.add(provider("password", "uid-" + i));
+    }
+    assertNull(codec.encode(user("a", providers)));
+    // 超出限制后仍能编码其他用户
+    Map<String, Object> small = user("a", providers.subList(0, 255));
+    assertEquals(small, codec.decode(codec.encode(small)));
+  }
+
+  @Test
+  public void unknownVersionIsRejected() {
+    byte[] encoded = codec.encode(user("a", ImmutableList.<ImmutableMap<String, Object>>of())).clone();
+    encoded[0] = (byte) (UserPayloadCodec.FORMAT_VERSION + 1);
+    try {
+      codec.decode(encoded);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // 格式版本未知
+    }
+  }
+
+  @Test
+  public void truncatedPayloadIsRejected() {
+    byte[] encoded = codec.encode(user("a", ImmutableList.of(provider("qq", "q"))));
+    byte[] truncated = new byte[encoded.length - 1];
+    System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+    try {
+      codec.decode(truncated);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // 数据不完整
+    }
+  }
+}
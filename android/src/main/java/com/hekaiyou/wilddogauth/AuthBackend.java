@@ -0,0 +1,207 @@
+package com.hekaiyou.wilddogauth;
+
+/**
+ * 插件使用的身份认证后端
+ *
+ * 插件只通过这个接口访问身份认证服务，默认使用野狗云SDK实现的WilddogAuthBackend，
+ * 也可以替换为FakeAuthBackend，在没有野狗云服务的环境中测试插件
+ */
+public interface AuthBackend {
+  /**
+   * 异步操作的完成回调
+   * @param <T> 操作结果的类型
+   */
+  interface Callback<T> {
+    /**
+     * 操作成功时调用
+     * @param value 操作结果
+     */
+    void onSuccess(T value);
+
+    /**
+     * 操作失败时调用
+     * @param e 操作失败的意外
+     */
+    void onFailure(Exception e);
+  }
+
+  /**
+   * 认证状态监听器，在注册监听时、用户登录时、用户登出时、当前用户改变时、当前用户的token改变时调用
+   */
+  interface AuthStateListener {
+    /**
+     * 认证状态改变时调用
+     * @param currentUser 当前用户，未登录时为空值
+     */
+    void onAuthStateChanged(AuthUser currentUser);
+  }
+
+  /**
+   * 获取当前登录用户
+   * @return 当前用户，未登录时返回空值
+   */
+  AuthUser getCurrentUser();
+
+  /**
+   * 注册认证状态监听器，注册时会回调一次当前状态
+   * @param listener 认证状态监听器
+   */
+  void addAuthStateListener(AuthStateListener listener);
+
+  /**
+   * 注销认证状态监听器
+   * @param listener 认证状态监听器
+   */
+  void removeAuthStateListener(AuthStateListener listener);
+
+  /**
+   * 使用匿名方法登录
+   * @param callback 完成回调，成功时返回登录用户
+   */
+  void signInAnonymously(Callback<AuthUser> callback);
+
+  /**
+   * 使用电子邮箱和密码创建用户，创建成功后会自动登录
+   * @param email 电子邮箱
+   * @param password 密码
+   * @param callback 完成回调，成功时返回登录用户
+   */
+  void createUserWithEmailAndPassword(String email, String password, Callback<AuthUser> callback);
+
+  /**
+   * 使用电子邮箱和密码登录
+   * @param email 电子邮箱
+   * @param password 密码
+   * @param callback 完成回调，成功时返回登录用户
+   */
+  void signInWithEmailAndPassword(String email, String password, Callback<AuthUser> callback);
+
+  /**
+   * 使用手机号和密码创建用户，创建成功后会自动登录
+   * @param phone 手机号
+   * @param password 密码
+   * @param callback 完成回调，成功时返回登录用户
+   */
+  void createUserWithPhoneAndPassword(String phone, String password, Callback<AuthUser> callback);
+
+  /**
+   * 使用手机号和密码登录
+   * @param phone 手机号
+   * @param password 密码
+   * @param callback 完成回调，成功时返回登录用户
+   */
+  void signInWithPhoneAndPassword(String phone, String password, Callback<AuthUser> callback);
+
+  /**
+   * 将当前用户与电子邮箱和密码绑定
+   * @param email 电子邮箱
+   * @param password 密码
+   * @param callback 完成回调，成功时返回当前用户
+   */
+  void linkWithEmailAndPassword(String email, String password, Callback<AuthUser> callback);
+
+  /**
+   * 登出当前用户，清除登录数据
+   */
+  void signOut();
+
+  /**
+   * 获取当前用户的Wilddog Id令牌
+   * @param refresh 是否强制刷新
+   * @param callback 完成回调，成功时返回令牌
+   */
+  void getToken(boolean refresh, Callback<String> callback);
+
+  /**
+   * 更新当前用户的姓名和头像URL
+   * @param displayName 姓名
+   * @param photoUrl 头像URL
+   * @param callback 完成回调
+   */
+  void updateProfile(String displayName, String photoUrl, Callback<Void> callback);
+
+  /**
+   * 更新当前用户的密码
+   * @param password 新密码
+   * @param callback 完成回调
+   */
+  void updatePassword(String password, Callback<Void> callback);
+
+  /**
+   * 更新当前用户的邮箱地址
+   * @param email 新邮箱地址
+   * @param callback 完成回调
+   */
+  void updateEmail(String email, Callback<Void> callback);
+
+  /**
+   * 更新当前用户的手机号码
+   * @param phone 新手机号码
+   * @param callback 完成回调
+   */
+  void updatePhone(String phone, Callback<Void> callback);
+
+  /**
+   * 删除当前用户
+   * @param callback 完成回调
+   */
+  void delete(Callback<Void> callback);
+
+  /**
+   * 使用电子邮箱和密码对当前用户重新进行身份认证
+   * @param email 电子邮箱
+   * @param password 密码
+   * @param callback 完成回调
+   */
+  void reauthenticateEmail(String email, String password, Callback<Void> callback);
+
+  /**
+   * 使用手机号和密码对当前用户重新进行身份认证
+   * @param phone 手机号
+   * @param password 密码
+   * @param callback 完成回调
+   */
+  void reauthenticatePhone(String phone, String password, Callback<Void> callback);
+
+  /**
+   * 给当前用户发送邮箱验证邮件
+   * @param callback 完成回调
+   */
+  void sendEmailVerification(Callback<Void> callback);
+
+  /**
+   * 给当前用户发送手机验证码
+   * @param callback 完成回调
+   */
+  void sendPhoneVerification(Callback<Void> callback);
+
+  /**
+   * 确认当前用户的手机验证码
+   * @param smsCode 手机验证码
+   * @param callback 完成回调
+   */
+  void verifyPhoneSmsCode(String smsCode, Callback<Void> callback);
+
+  /**
+   * 发送重置密码邮件
+   * @param email 电子邮箱
+   * @param callback 完成回调
+   */
+  void sendPasswordResetEmail(String email, Callback<Void> callback);
+
+  /**
+   * 发送重置密码的手机验证码
+   * @param phone 手机号
+   * @param callback 完成回调
+   */
+  void sendPasswordResetSms(String phone, Callback<Void> callback);
+
+  /**
+   * 确认重置密码的手机验证码，并设置新密码
+   * @param phone 手机号
+   * @param smsCode 手机验证码
+   * @param newPassword 新密码
+   * @param callback 完成回调
+   */
+  void confirmPasswordResetSms(String phone, String smsCode, String newPassword, Callback<Void> callback);
+}
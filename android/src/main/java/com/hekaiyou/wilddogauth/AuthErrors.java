@@ -0,0 +1,129 @@
+package com.hekaiyou.wilddogauth;
+
+import android.util.Log;
+import com.google.common.collect.ImmutableMap;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 把操作失败的意外转换为带有错误代码的结果
+ *
+ * 失败以result.error返回给客户端，错误代码取自AuthException，后端把野狗云SDK的错误代码
+ * 经sdkCode转换后包装为AuthException；其他意外按JDK的意外类型推断，每种意外类型只推断一次
+ */
+final class AuthErrors {
+  // 声明私有、静态、不可变的日志标签
+  private static final String TAG = "wilddog_auth";
+  // 声明私有、静态、不可变的意外类型对应的错误代码
+  private static final Map<Class<?>, String> CODES = new ConcurrentHashMap<>();
+  // 声明私有、静态、不可变的与插件的错误代码不同名的SDK错误代码，其余SDK错误代码原样返回
+  private static final ImmutableMap<String, String> SDK_ALIASES = ImmutableMap.<String, String>builder()
+          .put("ERROR_ACCOUNT_EXISTS_WITH_DIFFERENT_CREDENTIAL", AuthException.ACCOUNT_EXISTS)
+          .put("ERROR_CREDENTIAL_ALREADY_IN_USE", AuthException.ACCOUNT_EXISTS)
+          .put("ERROR_NETWORK_ERROR", AuthException.NETWORK_REQUEST_FAILED)
+          .put("ERROR_INVALID_CUSTOM_TOKEN", AuthException.INVALID_CREDENTIAL)
+          .put("ERROR_USER_TOKEN_EXPIRED", AuthException.REQUIRES_RECENT_LOGIN)
+          .build();
+  // 声明私有、静态、不可变的意外类型对应的错误详情
+  private static final Map<Class<?>, ImmutableMap<String, Object>> DETAILS = new ConcurrentHashMap<>();
+
+  private AuthErrors() {
+  }
+
+  /**
+   * 返回失败结果给客户端，并按意外类型统计失败
+   * @param result 返回客户端的结果
+   * @param e 操作失败的意外
+   */
+  static void reply(Result result, Exception e) {
+    // 声明定义错误代码变量
+    String code = codeOf(e);
+    Log.w(TAG, code + ": " + e.getMessage());
+    // 按意外类型统计失败
+    MethodMetrics.failed(result, e);
+    // 返回错误代码、错误信息和意外类型给客户端
+    result.error(code, e.getMessage(), detailsOf(typeOf(e)));
+  }
+
+  /**
+   * 获取统计和返回给客户端的意外类型，后端包装的SDK意外使用原始意外的类型
+   * @param e 操作失败的意外
+   * @return 意外类型
+   */
+  static Class<?> typeOf(Throwable e) {
+    if (e instanceof AuthException && e.getCause() != null) {
+      return e.getCause().getClass();
+    }
+    return e.getClass();
+  }
+
+  /**
+   * 获取意外对应的错误代码
+   * @param e 操作失败的意外
+   * @return 错误代码
+   */
+  static String codeOf(Exception e) {
+    // 带有错误代码的意外直接使用其错误代码
+    if (e instanceof AuthException) {
+      return ((AuthException) e).getCode();
+    }
+    // 声明定义意外类型变量
+    Class<?> type = e.getClass();
+    String code = CODES.get(type);
+    if (code == null) {
+      code = infer(e);
+      CODES.put(type, code);
+    }
+    return code;
+  }
+
+  /**
+   * 把野狗云SDK的错误代码转换为插件的错误代码
+   * @param sdkCode SDK意外的错误代码，例如ERROR_WRONG_PASSWORD，可以为空值
+   * @return 插件的错误代码，SDK没有给出错误代码时返回ERROR_UNKNOWN
+   */
+  static String sdkCode(String sdkCode) {
+    if (sdkCode == null || sdkCode.isEmpty()) {
+      return AuthException.UNKNOWN;
+    }
+    String alias = SDK_ALIASES.get(sdkCode);
+    return alias != null ? alias : sdkCode;
+  }
+
+  /**
+   * 获取意外类型对应的错误详情，每种意外类型共享同一个词典
+   * @param type 意外类型
+   * @return 包含意外类名的错误详情
+   */
+  private static ImmutableMap<String, Object> detailsOf(Class<?> type) {
+    ImmutableMap<String, Object> details = DETAILS.get(type);
+    if (details == null) {
+      details = ImmutableMap.<String, Object>of("exception", type.getName());
+      DETAILS.put(type, details);
+    }
+    return details;
+  }
+
+  /**
+   * 按意外类型推断错误代码，包装了网络意外的意外同样视为网络请求失败
+   * @param e 操作失败的意外
+   * @return 错误代码
+   */
+  private static String infer(Exception e) {
+    if (e instanceof IllegalArgumentException) {
+      return AuthException.INVALID_ARGUMENT;
+    }
+    // SDK的网络意外通常包装了底层的IOException
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException || cause instanceof TimeoutException) {
+        return AuthException.NETWORK_REQUEST_FAILED;
+      }
+    }
+    return AuthException.UNKNOWN;
+  }
+}
@@ -0,0 +1,83 @@
+package com.hekaiyou.wilddogauth;
+
+/**
+ * 带有错误代码的身份认证意外
+ *
+ * 后端可以抛出或回调这个意外，插件会把其中的错误代码原样返回给客户端
+ */
+public class AuthException extends Exception {
+  private static final long serialVersionUID = 1L;
+
+  /** 当前没有登录用户 */
+  public static final String NO_CURRENT_USER = "ERROR_NO_CURRENT_USER";
+  /** 调用参数缺失或类型不符 */
+  public static final String INVALID_ARGUMENT = "ERROR_INVALID_ARGUMENT";
+  /** 凭据无效或已过期 */
+  public static final String INVALID_CREDENTIAL = "ERROR_INVALID_CREDENTIAL";
+  /** 密码错误 */
+  public static final String WRONG_PASSWORD = "ERROR_WRONG_PASSWORD";
+  /** 密码强度不够 */
+  public static final String WEAK_PASSWORD = "ERROR_WEAK_PASSWORD";
+  /** 找不到对应的用户 */
+  public static final String USER_NOT_FOUND = "ERROR_USER_NOT_FOUND";
+  /** 凭据不属于当前用户 */
+  public static final String USER_MISMATCH = "ERROR_USER_MISMATCH";
+  /** 邮箱地址已被其他帐户使用 */
+  public static final String EMAIL_ALREADY_IN_USE = "ERROR_EMAIL_ALREADY_IN_USE";
+  /** 手机号码已被其他帐户使用 */
+  public static final String PHONE_ALREADY_IN_USE = "ERROR_PHONE_ALREADY_IN_USE";
+  /** 帐户已存在 */
+  public static final String ACCOUNT_EXISTS = "ERROR_ACCOUNT_EXISTS";
+  /** 敏感操作需要重新进行身份认证 */
+  public static final String REQUIRES_RECENT_LOGIN = "ERROR_REQUIRES_RECENT_LOGIN";
+  /** 请求过于频繁 */
+  public static final String TOO_MANY_REQUESTS = "ERROR_TOO_MANY_REQUESTS";
+  /** 客户端限流，发送短信或邮件过于频繁 */
+  public static final String RATE_LIMITED = "ERROR_RATE_LIMITED";
+  /** 后端连续失败，断路器已断开 */
+  public static final String CIRCUIT_OPEN = "ERROR_CIRCUIT_OPEN";
+  /** 插件已从宿主分离，不再接受新的监听 */
+  public static final String DETACHED = "ERROR_DETACHED";
+  /** 插件的工作线程已饱和，稍后重试 */
+  public static final String BUSY = "ERROR_BUSY";
+  /** 调用在截止时间前没有完成 */
+  public static final String TIMEOUT = "ERROR_TIMEOUT";
+  /** 调用已被客户端取消 */
+  public static final String CANCELLED = "ERROR_CANCELLED";
+  /** 网络请求失败 */
+  public static final String NETWORK_REQUEST_FAILED = "ERROR_NETWORK_REQUEST_FAILED";
+  /** 未知错误 */
+  public static final String UNKNOWN = "ERROR_UNKNOWN";
+
+  // 声明私有、不可变的错误代码
+  private final String code;
+
+  /**
+   * 默认的构造方法
+   * @param code 错误代码
+   * @param message 错误信息
+   */
+  public AuthException(String code, String message) {
+    super(message);
+    this.code = code;
+  }
+
+  /**
+   * 包装其他意外的构造方法，例如野狗云SDK的意外
+   * @param code 错误代码
+   * @param message 错误信息
+   * @param cause 原始的意外
+   */
+  public AuthException(String code, String message, Throwable cause) {
+    super(message, cause);
+    this.code = code;
+  }
+
+  /**
+   * 获取错误代码
+   * @return 错误代码
+   */
+  public String getCode() {
+    return code;
+  }
+}
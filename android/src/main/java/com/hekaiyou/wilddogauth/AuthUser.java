@@ -0,0 +1,30 @@
+package com.hekaiyou.wilddogauth;
+
+import java.util.List;
+
+/** 代表一个用户，与具体的身份认证后端无关 */
+public interface AuthUser extends AuthUserInfo {
+  /**
+   * 用户是否是匿名的
+   * @return 匿名用户则返回true
+   */
+  boolean isAnonymous();
+
+  /**
+   * 用户的电子邮件是否已验证
+   * @return 已验证则返回true
+   */
+  boolean isEmailVerified();
+
+  /**
+   * 用户的手机号码是否已验证
+   * @return 已验证则返回true
+   */
+  boolean isPhoneVerified();
+
+  /**
+   * 获取用户绑定的所有认证类型的用户信息列表
+   * @return 用户信息列表
+   */
+  List<? extends AuthUserInfo> getProviderData();
+}
@@ -0,0 +1,40 @@
+package com.hekaiyou.wilddogauth;
+
+/** 从身份认证提供方返回的用户数据，与具体的身份认证后端无关 */
+public interface AuthUserInfo {
+  /**
+   * 获取身份认证提供方ID
+   * @return 身份认证提供方ID
+   */
+  String getProviderId();
+
+  /**
+   * 获取身份认证提供方用户ID
+   * @return 用户ID
+   */
+  String getUid();
+
+  /**
+   * 获取用户的名字
+   * @return 用户的名字，没有时返回空值
+   */
+  String getDisplayName();
+
+  /**
+   * 获取用户个人资料中的照片网址
+   * @return 照片网址，没有时返回空值
+   */
+  String getPhotoUrl();
+
+  /**
+   * 获取用户的电子邮件地址
+   * @return 电子邮件地址，没有时返回空值
+   */
+  String getEmail();
+
+  /**
+   * 获取用户的手机号码
+   * @return 手机号码，没有时返回空值
+   */
+  String getPhone();
+}
@@ -0,0 +1,314 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量创建测试帐号，同时进行的SDK调用数不超过并发上限
+ *
+ * 每个凭据为包含password和email或phone之一的词典，按顺序开始创建，一个调用完成后才开始下一个。
+ * 每完成chunkSize个帐号向监听器报告一次进度，全部完成后返回按凭据顺序排列的结果表：
+ * 成功的位置为用户ID，失败的位置为错误代码。SDK创建帐号后会登录它，结束时SDK的登录用户为最后创建的帐号
+ */
+class BulkCreateJob {
+  /**
+   * 批量创建的进度监听器
+   */
+  interface Listener {
+    /**
+     * 又完成了一组帐号，可以在任意线程中调用
+     * @param completed 已完成的帐号数
+     * @param total 帐号总数
+     * @param indices 这一组帐号在凭据列表中的位置
+     * @param uids 这一组帐号的用户ID，失败的位置为空值
+     * @param errors 这一组帐号的错误代码，成功的位置为空值
+     */
+    void onProgress(int completed, int total, List<Integer> indices, List<String> uids, List<String> errors);
+
+    /**
+     * 所有帐号都已完成或取消，在返回结果表之前调用
+     */
+    void onFinished();
+  }
+
+  // 声明静态、不可变的默认并发上限
+  static final int DEFAULT_CONCURRENCY = 4;
+  // 声明静态、不可变的最大并发上限
+  static final int MAX_CONCURRENCY = 32;
+  // 声明静态、不可变的默认每组帐号数
+  static final int DEFAULT_CHUNK_SIZE = 50;
+
+  // 声明私有、不可变的身份认证后端
+  private final AuthBackend backend;
+  // 声明私有、不可变的线程调度
+  private final DispatchExecutors executors;
+  // 声明私有、不可变的凭据列表
+  private final List<?> credentials;
+  // 声明私有、不可变的并发上限
+  private final int concurrency;
+  // 声明私有、不可变的每组帐号数，为0时不报告进度
+  private final int chunkSize;
+  // 声明私有、不可变的进度监听器
+  private final Listener listener;
+  // 声明私有、不可变的返回客户端的结果
+  private final Result result;
+
+  // 以下字段由this保护
+  // 声明私有、不可变的每个帐号的用户ID
+  private final String[] uids;
+  // 声明私有、不可变的每个帐号的错误代码
+  private final String[] errors;
+  // 声明私有、不可变的尚未报告的已完成帐号的位置
+  private final List<Integer> chunk = new ArrayList<>();
+  // 声明私有的下一个要开始的帐号的位置
+  private int nextIndex = 0;
+  // 声明私有的进行中的SDK调用数
+  private int inFlight = 0;
+  // 声明私有的已完成的帐号数，包括失败和取消的帐号
+  private int completed = 0;
+  // 声明私有的创建成功的帐号数
+  private int created = 0;
+  // 声明私有的是否已取消
+  private boolean cancelled = false;
+  // 声明私有的是否已有线程在开始新的调用，同步完成的回调不会递归开始调用
+  private boolean pumping = false;
+
+  /**
+   * 默认的构造方法
+   * @param backend 身份认证后端
+   * @param executors 线程调度
+   * @param credentials 凭据列表
+   * @param concurrency 并发上限，1到MAX_CONCURRENCY
+   * @param chunkSize 每组帐号数，为0时不报告进度
+   * @param listener 进度监听器
+   * @param result 返回客户端的结果
+   */
+  BulkCreateJob(AuthBackend backend, DispatchExecutors executors, List<?> credentials,
+          int concurrency, int chunkSize, Listener listener, Result result) {
+    if (concurrency < 1 || concurrency > MAX_CONCURRENCY) {
+      throw new IllegalArgumentException("concurrency must be between 1 and " + MAX_CONCURRENCY + ".");
+    }
+    if (chunkSize < 0) {
+      throw new IllegalArgumentException("progressEvery must not be negative.");
+    }
+    this.backend = backend;
+    this.executors = executors;
+    this.credentials = credentials;
+    this.concurrency = concurrency;
+    this.chunkSize = chunkSize;
+    this.listener = listener;
+    this.result = result;
+    this.uids = new String[credentials.size()];
+    this.errors = new String[credentials.size()];
+  }
+
+  /**
+   * 开始创建帐号，凭据列表为空时立即返回空的结果表
+   */
+  void start() {
+    if (credentials.isEmpty()) {
+      finish();
+      return;
+    }
+    pump();
+  }
+
+  /**
+   * 取消尚未开始的帐号，它们的错误代码为ERROR_CANCELLED；进行中的SDK调用无法中止，
+   * 完成后照常记录，之后返回结果表
+   * @return 是否取消了尚未开始的帐号
+   */
+  boolean cancel() {
+    // 声明定义是否已全部完成的变量
+    boolean done;
+    synchronized (this) {
+      if (cancelled || nextIndex >= uids.length) {
+        return false;
+      }
+      cancelled = true;
+      for (int i = nextIndex; i < uids.length; i++) {
+        errors[i] = AuthException.CANCELLED;
+        chunk.add(i);
+      }
+      completed += uids.length - nextIndex;
+      nextIndex = uids.length;
+      done = inFlight == 0;
+    }
+    if (done) {
+      finish();
+    }
+    return true;
+  }
+
+  /**
+   * 在并发上限内开始新的SDK调用。同步完成的回调在这里返回，由外层的循环继续开始调用
+   */
+  private void pump() {
+    synchronized (this) {
+      if (pumping) {
+        return;
+      }
+      pumping = true;
+    }
+    while (true) {
+      // 声明定义要开始的帐号的位置
+      int index;
+      synchronized (this) {
+        if (nextIndex >= uids.length || inFlight >= concurrency) {
+          pumping = false;
+          return;
+        }
+        index = nextIndex++;
+        inFlight++;
+      }
+      run(index);
+    }
+  }
+
+  /**
+   * 校验一个凭据并调用SDK创建帐号
+   * @param index 凭据的位置
+   */
+  private void run(final int index) {
+    Object item = credentials.get(index);
+    // 声明定义凭据中的邮箱、手机号和密码
+    String email = null;
+    String phone = null;
+    String password = null;
+    if (item instanceof Map) {
+      Map<?, ?> credential = (Map<?, ?>) item;
+      email = stringOf(credential.get("email"));
+      phone = stringOf(credential.get("phone"));
+      password = stringOf(credential.get("password"));
+    }
+    // 需要密码和邮箱、手机号中的一个，不符的凭据不调用SDK
+    if (password == null || (email == null) == (phone == null)) {
+      complete(index, null, AuthException.INVALID_ARGUMENT);
+      return;
+    }
+    AuthBackend.Callback<AuthUser> callback = executors.onWorker(new AuthBackend.Callback<AuthUser>() {
+      @Override
+      public void onSuccess(AuthUser user) {
+        complete(index, user.getUid(), null);
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        complete(index, null, AuthErrors.codeOf(e));
+      }
+    });
+    try {
+      if (email != null) {
+        backend.createUserWithEmailAndPassword(email, password, callback);
+      } else {
+        backend.createUserWithPhoneAndPassword(phone, password, callback);
+      }
+    } catch (RuntimeException e) {
+      // 一个帐号的意外不影响其余帐号
+      complete(index, null, AuthErrors.codeOf(e));
+    }
+  }
+
+  /**
+   * 记录一个帐号的结果，凑满一组时报告进度，然后开始下一个调用或返回结果表
+   * @param index 凭据的位置
+   * @param uid 用户ID，失败时为空值
+   * @param error 错误代码，成功时为空值
+   */
+  private void complete(int index, String uid, String error) {
+    // 声明定义要报告的一组进度和是否已全部完成的变量
+    Object[] report = null;
+    boolean done;
+    synchronized (this) {
+      uids[index] = uid;
+      errors[index] = error;
+      if (uid != null) {
+        created++;
+      }
+      completed++;
+      inFlight--;
+      chunk.add(index);
+      if (chunkSize > 0 && chunk.size() >= chunkSize) {
+        report = drainChunk();
+      }
+      done = completed == uids.length;
+    }
+    if (report != null) {
+      report(report);
+    }
+    if (done) {
+      finish();
+    } else {
+      pump();
+    }
+  }
+
+  /**
+   * 报告最后一组进度，通知监听器并返回结果表
+   */
+  private void finish() {
+    // 声明定义最后一组进度和结果表
+    Object[] report = null;
+    ImmutableMap<String, Object> table;
+    synchronized (this) {
+      if (chunkSize > 0 && !chunk.isEmpty()) {
+        report = drainChunk();
+      }
+      table = ImmutableMap.<String, Object>of(
+              "total", uids.length,
+              "created", created,
+              "failed", uids.length - created,
+              "uids", Collections.unmodifiableList(Arrays.asList(uids.clone())),
+              "errors", Collections.unmodifiableList(Arrays.asList(errors.clone())));
+    }
+    if (report != null) {
+      report(report);
+    }
+    listener.onFinished();
+    result.success(table);
+  }
+
+  /**
+   * 取出尚未报告的一组进度，调用时需要持有锁
+   * @return 已完成的帐号数、这一组的位置、用户ID和错误代码
+   */
+  private Object[] drainChunk() {
+    ImmutableList<Integer> indices = ImmutableList.copyOf(chunk);
+    chunk.clear();
+    // 用户ID和错误代码可以为空值，不能使用ImmutableList
+    List<String> chunkUids = new ArrayList<>(indices.size());
+    List<String> chunkErrors = new ArrayList<>(indices.size());
+    for (int index : indices) {
+      chunkUids.add(uids[index]);
+      chunkErrors.add(errors[index]);
+    }
+    return new Object[] {completed, indices, chunkUids, chunkErrors};
+  }
+
+  /**
+   * 在锁外向监听器报告一组进度
+   * @param report drainChunk取出的一组进度
+   */
+  @SuppressWarnings("unchecked")
+  private void report(Object[] report) {
+    listener.onProgress((Integer) report[0], uids.length, (List<Integer>) report[1],
+            (List<String>) report[2], (List<String>) report[3]);
+  }
+
+  /**
+   * 获取非空的字符串值
+   * @param value 凭据中的值
+   * @return 字符串，不是字符串或为空字符串时返回空值
+   */
+  private static String stringOf(Object value) {
+    return value instanceof String && !((String) value).isEmpty() ? (String) value : null;
+  }
+}
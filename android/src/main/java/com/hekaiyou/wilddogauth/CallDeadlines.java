@@ -0,0 +1,264 @@
+package com.hekaiyou.wilddogauth;
+
+import android.util.Log;
+import com.google.common.collect.ImmutableMap;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 方法调用的截止时间和取消
+ *
+ * 调用在截止时间前没有完成时以ERROR_TIMEOUT返回，带有请求ID的调用可以被取消并以ERROR_CANCELLED返回。
+ * 之后到达的SDK完成回调会被丢弃，结果回调在返回后立即释放，不再持有客户端的结果回调
+ */
+class CallDeadlines {
+  // 声明私有、静态、不可变的日志标签
+  private static final String TAG = "wilddog_auth";
+  // 声明私有、静态、不可变的截止时间参数名称，每个方法都可以传递
+  private static final String TIMEOUT_ARGUMENT = "timeoutMs";
+  // 声明私有、静态、不可变的请求ID参数名称，每个方法都可以传递
+  private static final String REQUEST_ID_ARGUMENT = "requestId";
+
+  /**
+   * 一次调用的截止状态，例如批量调用在开始每个子调用前检查
+   */
+  interface Deadline {
+    /**
+     * 调用是否已经返回、超时、被取消或因宿主销毁而结束
+     * @return 已结束时返回true
+     */
+    boolean isDone();
+  }
+
+  // 声明静态、不可变的既不设截止时间也不能取消的调用的截止状态，只有调用自己返回结果
+  static final Deadline NONE = new Deadline() {
+    @Override
+    public boolean isDone() {
+      return false;
+    }
+  };
+
+  // 声明私有、不可变的插件线程调度，超时在主线程中触发
+  private final DispatchExecutors executors;
+  // 声明私有、不可变的调用统计，记录超时或取消之后被丢弃的完成回调
+  private final MethodMetrics metrics;
+  // 声明私有、不可变的可取消的进行中调用，请求ID对应结果回调
+  private final ConcurrentMap<String, DeadlineResult> pending = new ConcurrentHashMap<>();
+  // 声明私有、不可变的所有进行中的包装结果回调，宿主销毁时统一结束
+  private final Set<DeadlineResult> inFlight =
+          Collections.newSetFromMap(new ConcurrentHashMap<DeadlineResult, Boolean>());
+
+  // 声明私有的全局默认截止毫秒数，0表示不设截止时间
+  private volatile long defaultTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+
+  /**
+   * 默认的构造方法
+   * @param executors 插件线程调度
+   * @param metrics 调用统计
+   */
+  CallDeadlines(DispatchExecutors executors, MethodMetrics metrics) {
+    this.executors = executors;
+    this.metrics = metrics;
+  }
+
+  /**
+   * 设置全局默认截止时间，只对之后开始的调用生效
+   * @param defaultTimeoutMillis 默认截止毫秒数，0表示不设截止时间
+   */
+  void setDefaultTimeoutMillis(long defaultTimeoutMillis) {
+    this.defaultTimeoutMillis = Math.max(0, defaultTimeoutMillis);
+  }
+
+  /**
+   * 开始一次调用的截止计时，并按请求ID登记
+   * @param method 方法名称
+   * @param arguments 客户端传递的原始参数，可以包含timeoutMs和requestId
+   * @param result 返回客户端的结果
+   * @return 有截止时间或请求ID时返回包装后的结果回调，否则返回原结果回调
+   */
+  Result start(String method, Object arguments, Result result) {
+    // 声明定义截止毫秒数和请求ID变量
+    long timeoutMillis = defaultTimeoutMillis;
+    String requestId = null;
+    if (arguments instanceof Map) {
+      Object timeout = ((Map<?, ?>) arguments).get(TIMEOUT_ARGUMENT);
+      if (timeout instanceof Number) {
+        timeoutMillis = Math.max(0, ((Number) timeout).longValue());
+      }
+      Object id = ((Map<?, ?>) arguments).get(REQUEST_ID_ARGUMENT);
+      if (id instanceof String) {
+        requestId = (String) id;
+      }
+    }
+    // 既不设截止时间也不能取消的调用直接使用原结果回调
+    if (timeoutMillis == 0 && requestId == null) {
+      return result;
+    }
+    // 声明定义包装后的结果回调
+    DeadlineResult deadline = new DeadlineResult(method, result, requestId, timeoutMillis);
+    inFlight.add(deadline);
+    if (requestId != null) {
+      // 相同请求ID的旧调用不再能被取消
+      pending.put(requestId, deadline);
+    }
+    if (timeoutMillis > 0) {
+      executors.runOnMainDelayed(deadline, timeoutMillis);
+    }
+    return deadline;
+  }
+
+  /**
+   * 获取start返回的结果回调的截止状态
+   * @param result start返回的结果回调，处理方法收到的正是它
+   * @return 截止状态，调用没有截止时间和请求ID时返回NONE
+   */
+  Deadline deadlineOf(Result result) {
+    return result instanceof DeadlineResult ? (DeadlineResult) result : NONE;
+  }
+
+  /**
+   * 取消请求ID对应的进行中调用
+   * @param requestId 请求ID
+   * @return 找到并取消了调用时返回true，调用已完成或不存在时返回false
+   */
+  boolean cancel(String requestId) {
+    // 声明定义进行中调用的结果回调
+    DeadlineResult deadline = pending.get(requestId);
+    return deadline != null && deadline.abort(AuthException.CANCELLED, "The call was cancelled.", null);
+  }
+
+  /**
+   * 以错误结束所有进行中的调用，之后到达的SDK完成回调会被丢弃
+   * @param code 错误代码
+   * @param message 错误信息
+   * @return 结束的调用数
+   */
+  int abortAll(String code, String message) {
+    // 声明定义结束的调用数
+    int aborted = 0;
+    for (DeadlineResult deadline : inFlight) {
+      if (deadline.abort(code, message, null)) {
+        aborted++;
+      }
+    }
+    return aborted;
+  }
+
+  /**
+   * 带有截止时间的结果回调，只有第一次返回会交给原结果回调
+   */
+  private final class DeadlineResult implements MethodMetrics.ForwardingResult, Deadline, Runnable {
+    // 声明私有、不可变的方法名称
+    private final String method;
+    // 声明私有、不可变的原结果回调，返回后置为空值
+    private final AtomicReference<Result> result;
+    // 声明私有、不可变的请求ID，可以为空值
+    private final String requestId;
+    // 声明私有、不可变的截止毫秒数
+    private final long timeoutMillis;
+
+    DeadlineResult(String method, Result result, String requestId, long timeoutMillis) {
+      this.method = method;
+      this.result = new AtomicReference<>(result);
+      this.requestId = requestId;
+      this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 截止时间到达时在主线程中执行
+     */
+    @Override
+    public void run() {
+      abort(AuthException.TIMEOUT, "The call did not complete within " + timeoutMillis + "ms.",
+              ImmutableMap.<String, Object>of(TIMEOUT_ARGUMENT, timeoutMillis));
+    }
+
+    /**
+     * 以错误结束调用
+     * @param code 错误代码
+     * @param message 错误信息
+     * @param details 错误详情，可以为空值
+     * @return 调用尚未返回时返回true
+     */
+    boolean abort(String code, String message, Object details) {
+      // 声明定义原结果回调变量，调用已返回时不是被丢弃的完成回调，不记录
+      Result target = take(false);
+      if (target == null) {
+        return false;
+      }
+      Log.w(TAG, code + ": " + message);
+      target.error(code, message, details);
+      return true;
+    }
+
+    @Override
+    public Result delegate() {
+      return result.get();
+    }
+
+    @Override
+    public boolean isDone() {
+      return result.get() == null;
+    }
+
+    @Override
+    public void success(Object value) {
+      Result target = take(true);
+      if (target != null) {
+        target.success(value);
+      }
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      Result target = take(true);
+      if (target != null) {
+        target.error(errorCode, errorMessage, errorDetails);
+      }
+    }
+
+    @Override
+    public void notImplemented() {
+      Result target = take(true);
+      if (target != null) {
+        target.notImplemented();
+      }
+    }
+
+    /**
+     * 取出原结果回调，只有第一次能取到，同时撤销超时和请求ID的登记
+     * @param completion 是否为处理方法的完成回调，超时、取消和宿主销毁时为false
+     * @return 原结果回调，调用已返回时为空值
+     */
+    private Result take(boolean completion) {
+      // 声明定义原结果回调变量，并释放对它的引用
+      Result target = result.getAndSet(null);
+      if (target == null) {
+        if (!completion) {
+          return null;
+        }
+        // 超时或取消之后到达的完成回调被丢弃，记录日志并按方法统计
+        Log.w(TAG, "Dropped a late completion of " + method
+                + (requestId != null ? " for " + requestId : "") + ".");
+        metrics.recordDropped(method);
+        return null;
+      }
+      if (timeoutMillis > 0) {
+        executors.cancelOnMain(this);
+      }
+      if (requestId != null) {
+        pending.remove(requestId, this);
+      }
+      inFlight.remove(this);
+      return target;
+    }
+  }
+}
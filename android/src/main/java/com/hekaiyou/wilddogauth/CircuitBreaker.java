@@ -0,0 +1,143 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后端连续失败时快速失败的断路器
+ *
+ * 连续失败达到阈值后断开，断开期间的调用立即失败；断开时间结束后进入半开状态，
+ * 只放行一个试探调用，试探成功则闭合，失败则再次断开
+ */
+class CircuitBreaker {
+  /**
+   * 断路器的状态
+   */
+  enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  // 声明私有的断开前允许的连续失败次数
+  private int failureThreshold = 5;
+  // 声明私有的每次断开的毫秒数
+  private long openMillis = TimeUnit.SECONDS.toMillis(30);
+
+  // 声明私有的当前状态
+  private State state = State.CLOSED;
+  // 声明私有的连续失败次数
+  private int consecutiveFailures = 0;
+  // 声明私有的断开或开始试探的时间
+  private long changedAtNanos = 0;
+  // 声明私有的半开状态下是否已放行试探调用
+  private boolean trialInFlight = false;
+
+  /**
+   * 修改断路参数，空值表示保持不变
+   * @param failureThreshold 断开前允许的连续失败次数
+   * @param openMillis 每次断开的毫秒数
+   */
+  synchronized void configure(Integer failureThreshold, Integer openMillis) {
+    if (failureThreshold != null) {
+      this.failureThreshold = Math.max(1, failureThreshold);
+    }
+    if (openMillis != null) {
+      this.openMillis = Math.max(0, openMillis);
+    }
+  }
+
+  /**
+   * 尝试放行一次调用
+   * @return 放行时返回0，否则返回断开状态剩余的毫秒数
+   */
+  long tryAcquire() {
+    return tryAcquire(System.nanoTime());
+  }
+
+  /**
+   * 按给定的当前时间尝试放行一次调用
+   * @param nowNanos 当前时间，与System.nanoTime()一致
+   * @return 放行时返回0，否则返回断开状态剩余的毫秒数
+   */
+  synchronized long tryAcquire(long nowNanos) {
+    if (state == State.CLOSED) {
+      return 0;
+    }
+    // 声明定义当前状态已持续的毫秒数
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(nowNanos - changedAtNanos);
+    if (state == State.OPEN) {
+      // 断开时间未结束时快速失败
+      if (elapsedMillis < openMillis) {
+        return openMillis - elapsedMillis;
+      }
+      state = State.HALF_OPEN;
+    } else if (trialInFlight && elapsedMillis < openMillis) {
+      // 试探调用正在进行，试探调用没有完成回调时超过断开时间后允许再次试探
+      return openMillis - elapsedMillis;
+    }
+    // 放行一个试探调用
+    trialInFlight = true;
+    changedAtNanos = nowNanos;
+    return 0;
+  }
+
+  /**
+   * 记录一次后端正常响应的调用
+   */
+  synchronized void onSuccess() {
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    trialInFlight = false;
+  }
+
+  /**
+   * 记录一次后端故障导致的失败
+   */
+  void onFailure() {
+    onFailure(System.nanoTime());
+  }
+
+  /**
+   * 按给定的当前时间记录一次后端故障导致的失败
+   * @param nowNanos 当前时间，与System.nanoTime()一致
+   */
+  synchronized void onFailure(long nowNanos) {
+    consecutiveFailures++;
+    // 试探失败或连续失败达到阈值时断开
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      state = State.OPEN;
+      changedAtNanos = nowNanos;
+      trialInFlight = false;
+    }
+  }
+
+  /**
+   * 获取断路器的状态快照
+   * @return 包含状态、连续失败次数和剩余断开时间的词典
+   */
+  ImmutableMap<String, Object> snapshot() {
+    return snapshot(System.nanoTime());
+  }
+
+  /**
+   * 按给定的当前时间获取断路器的状态快照
+   * @param nowNanos 当前时间，与System.nanoTime()一致
+   * @return 包含状态、连续失败次数和剩余断开时间的词典
+   */
+  synchronized ImmutableMap<String, Object> snapshot(long nowNanos) {
+    // 声明定义剩余断开时间
+    long retryAfterMillis = 0;
+    if (state == State.OPEN) {
+      long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(nowNanos - changedAtNanos);
+      retryAfterMillis = Math.max(0, openMillis - elapsedMillis);
+    }
+    return ImmutableMap.<String, Object>of(
+            "state", state.name(),
+            "consecutiveFailures", consecutiveFailures,
+            "failureThreshold", failureThreshold,
+            "openMillis", openMillis,
+            "retryAfterMillis", retryAfterMillis);
+  }
+}
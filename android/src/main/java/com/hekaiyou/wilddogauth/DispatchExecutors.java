@@ -0,0 +1,234 @@
+package com.hekaiyou.wilddogauth;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** 插件的线程调度，可选地把参数解析、SDK完成回调和结果构建移到有界的工作线程池中 */
+class DispatchExecutors {
+  // 声明私有、静态、不可变的工作线程数
+  private static final int WORKER_THREADS = 2;
+  // 声明私有、静态、不可变的最大工作线程数
+  private static final int MAX_WORKER_THREADS = 4;
+  // 声明私有、静态、不可变的任务队列容量，队列已满时拒绝新的调用，后台任务稍后重新提交
+  private static final int QUEUE_CAPACITY = 64;
+  // 声明私有、静态、不可变的后台任务被拒绝后重新提交的延迟
+  private static final long REQUEUE_DELAY_MILLIS = 10;
+
+  // 声明私有、不可变的主线程处理程序
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  // 声明私有、不可变的线程编号
+  private final AtomicInteger threadCount = new AtomicInteger();
+
+  // 以下字段由this保护
+  // 声明私有的有界工作线程池，第一次使用时创建，关闭后再次使用时重新创建
+  private ThreadPoolExecutor workers;
+
+  // 声明私有的是否在工作线程中处理调用
+  private volatile boolean offMainThread = false;
+
+  /**
+   * 获取工作线程池，尚未创建或已关闭时创建新的线程池
+   * @return 有界工作线程池
+   */
+  private synchronized ThreadPoolExecutor workers() {
+    if (workers == null) {
+      // 创建有界的工作线程池，使用守护线程避免阻止进程退出，空闲的线程会超时退出
+      workers = new ThreadPoolExecutor(WORKER_THREADS, MAX_WORKER_THREADS,
+              30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY),
+              new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                  Thread thread = new Thread(runnable, "wilddog_auth-worker-" + threadCount.incrementAndGet());
+                  thread.setDaemon(true);
+                  return thread;
+                }
+              },
+              new ThreadPoolExecutor.AbortPolicy());
+      workers.allowCoreThreadTimeOut(true);
+    }
+    return workers;
+  }
+
+  /**
+   * 是否在工作线程中处理调用
+   * @return 工作线程模式则返回true
+   */
+  boolean isOffMainThread() {
+    return offMainThread;
+  }
+
+  /**
+   * 设置是否在工作线程中处理调用
+   * @param offMainThread 为true时使用工作线程模式
+   */
+  void setOffMainThread(boolean offMainThread) {
+    this.offMainThread = offMainThread;
+  }
+
+  /**
+   * 在工作线程中执行后台任务，任务不会被丢弃，也不会在调用线程中执行。
+   * 线程池饱和时稍后重新提交，主线程只负责投递
+   * @param task 要执行的任务
+   */
+  void execute(final Runnable task) {
+    try {
+      workers().execute(task);
+    } catch (RejectedExecutionException e) {
+      mainHandler.postDelayed(new Runnable() {
+        @Override
+        public void run() {
+          execute(task);
+        }
+      }, REQUEUE_DELAY_MILLIS);
+    }
+  }
+
+  /**
+   * 尝试在工作线程中执行任务，线程池饱和时不执行
+   * @param task 要执行的任务
+   * @return 已提交时返回true，线程池饱和时返回false
+   */
+  boolean tryExecute(Runnable task) {
+    try {
+      workers().execute(task);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+  }
+
+  /**
+   * 关闭工作线程池，已提交的任务执行完后线程退出，之后提交任务时重新创建线程池
+   */
+  synchronized void shutdown() {
+    if (workers != null) {
+      workers.shutdown();
+      workers = null;
+    }
+  }
+
+  /**
+   * 在主线程中执行任务，当前已在主线程时直接执行
+   * @param task 要执行的任务
+   */
+  void runOnMain(Runnable task) {
+    // 当前线程是否为主线程
+    if (Looper.myLooper() == Looper.getMainLooper()) {
+      task.run();
+    } else {
+      mainHandler.post(task);
+    }
+  }
+
+  /**
+   * 在主线程中延迟执行任务
+   * @param task 要执行的任务
+   * @param delayMillis 延迟的毫秒数
+   */
+  void runOnMainDelayed(Runnable task, long delayMillis) {
+    mainHandler.postDelayed(task, delayMillis);
+  }
+
+  /**
+   * 撤销尚未执行的主线程延迟任务
+   * @param task 要撤销的任务
+   */
+  void cancelOnMain(Runnable task) {
+    mainHandler.removeCallbacks(task);
+  }
+
+  /**
+   * 包装结果回调，保证只在主线程中返回结果给Flutter客户端
+   * @param result 返回客户端的结果
+   * @return 在主线程中返回结果的结果回调
+   */
+  Result onMain(Result result) {
+    return new MainThreadResult(result);
+  }
+
+  /**
+   * 包装后端完成回调，工作线程模式下在工作线程中处理完成回调
+   * @param callback 后端完成回调
+   * @param <T> 操作结果的类型
+   * @return 工作线程模式下返回包装后的回调，否则返回原回调
+   */
+  <T> AuthBackend.Callback<T> onWorker(final AuthBackend.Callback<T> callback) {
+    // 不是工作线程模式时直接使用原回调
+    if (!offMainThread) {
+      return callback;
+    }
+    return new AuthBackend.Callback<T>() {
+      @Override
+      public void onSuccess(final T value) {
+        // 在工作线程中处理完成回调，包括构建结果词典
+        execute(new Runnable() {
+          @Override
+          public void run() {
+            callback.onSuccess(value);
+          }
+        });
+      }
+
+      @Override
+      public void onFailure(final Exception e) {
+        execute(new Runnable() {
+          @Override
+          public void run() {
+            callback.onFailure(e);
+          }
+        });
+      }
+    };
+  }
+
+  /**
+   * 在主线程中返回结果的结果回调
+   */
+  private class MainThreadResult implements Result {
+    // 声明私有、不可变的结果回调
+    private final Result result;
+
+    MainThreadResult(Result result) {
+      this.result = result;
+    }
+
+    @Override
+    public void success(final Object value) {
+      runOnMain(new Runnable() {
+        @Override
+        public void run() {
+          result.success(value);
+        }
+      });
+    }
+
+    @Override
+    public void error(final String errorCode, final String errorMessage, final Object errorDetails) {
+      runOnMain(new Runnable() {
+        @Override
+        public void run() {
+          result.error(errorCode, errorMessage, errorDetails);
+        }
+      });
+    }
+
+    @Override
+    public void notImplemented() {
+      runOnMain(new Runnable() {
+        @Override
+        public void run() {
+          result.notImplemented();
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,652 @@
+package com.hekaiyou.wilddogauth;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的模拟身份认证后端，用于在没有野狗云服务的环境中测试和压测插件
+ *
+ * 帐户只保存在内存中，可以配置每个操作的延迟，并按比例或按次数注入失败，
+ * 不依赖Android类，可以在普通的JVM中运行
+ */
+public class FakeAuthBackend implements AuthBackend {
+  // 声明私有、静态、不可变的密码认证提供方ID
+  private static final String PASSWORD_PROVIDER = "password";
+  // 声明私有、静态、不可变的匿名认证提供方ID
+  private static final String ANONYMOUS_PROVIDER = "anonymous";
+  // 声明私有、静态、不可变的令牌有效期
+  private static final long TOKEN_TTL_SECONDS = TimeUnit.HOURS.toSeconds(1);
+  // 声明私有、静态、不可变的UTF-8字符集
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  // 声明私有、静态、不可变的URL安全的Base64字符表
+  private static final char[] BASE64_URL =
+          "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+  // 声明私有、不可变的帐户，电子邮箱或手机号对应帐户
+  private final Map<String, FakeUser> accounts = new HashMap<>();
+  // 声明私有、不可变的认证状态监听器列表
+  private final List<AuthStateListener> listeners = new CopyOnWriteArrayList<>();
+  // 声明私有、不可变的用户ID生成器
+  private final AtomicLong nextUid = new AtomicLong();
+  // 声明私有、不可变的剩余的强制失败次数
+  private final AtomicInteger failNext = new AtomicInteger();
+  // 声明私有、不可变的随机数生成器
+  private final Random random = new Random();
+  // 声明私有、不可变的延迟调度器
+  private final ScheduledExecutorService scheduler;
+
+  // 声明私有的当前用户
+  private volatile FakeUser currentUser;
+  // 声明私有的每个操作的延迟
+  private volatile long latencyMillis = 0;
+  // 声明私有的失败比例
+  private volatile double failureRate = 0;
+
+  /**
+   * 默认的构造方法
+   */
+  public FakeAuthBackend() {
+    // 创建延迟调度器，使用守护线程避免阻止进程退出
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "wilddog_auth-fake-backend");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * 设置每个操作的延迟，为0时在调用线程中同步完成
+   * @param latencyMillis 延迟的毫秒数
+   */
+  public void setLatencyMillis(long latencyMillis) {
+    this.latencyMillis = latencyMillis;
+  }
+
+  /**
+   * 设置随机失败的比例
+   * @param failureRate 0到1之间的失败比例
+   */
+  public void setFailureRate(double failureRate) {
+    this.failureRate = failureRate;
+  }
+
+  /**
+   * 让接下来的指定次数的操作失败
+   * @param count 失败次数
+   */
+  public void failNext(int count) {
+    failNext.set(count);
+  }
+
+  @Override
+  public AuthUser getCurrentUser() {
+    return currentUser;
+  }
+
+  @Override
+  public void addAuthStateListener(final AuthStateListener listener) {
+    // 添加监听器
+    listeners.add(listener);
+    // 注册时回调一次当前状态
+    run(new Runnable() {
+      @Override
+      public void run() {
+        listener.onAuthStateChanged(currentUser);
+      }
+    });
+  }
+
+  @Override
+  public void removeAuthStateListener(AuthStateListener listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public void signInAnonymously(final Callback<AuthUser> callback) {
+    complete(callback, new Operation<AuthUser>() {
+      @Override
+      public AuthUser run() {
+        // 已经有匿名用户登录时返回该用户
+        FakeUser user = currentUser;
+        if (user == null || !user.anonymous) {
+          user = new FakeUser(newUid(), ANONYMOUS_PROVIDER, null, null, null);
+        }
+        return signIn(user);
+      }
+    });
+  }
+
+  @Override
+  public void createUserWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    createUser(email, null, password, callback);
+  }
+
+  @Override
+  public void signInWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    signInWithPassword(email, password, callback);
+  }
+
+  @Override
+  public void createUserWithPhoneAndPassword(String phone, String password, Callback<AuthUser> callback) {
+    createUser(null, phone, password, callback);
+  }
+
+  @Override
+  public void signInWithPhoneAndPassword(String phone, String password, Callback<AuthUser> callback) {
+    signInWithPassword(phone, password, callback);
+  }
+
+  @Override
+  public void linkWithEmailAndPassword(final String email, final String password, Callback<AuthUser> callback) {
+    complete(callback, new Operation<AuthUser>() {
+      @Override
+      public AuthUser run() throws Exception {
+        FakeUser user = requireUser();
+        synchronized (accounts) {
+          // 邮箱已被使用时绑定失败
+          if (accounts.containsKey(email)) {
+            throw new AuthException(AuthException.EMAIL_ALREADY_IN_USE, "The email address is already in use.");
+          }
+          user.email = email;
+          user.password = password;
+          user.anonymous = false;
+          accounts.put(email, user);
+        }
+        return user;
+      }
+    });
+  }
+
+  @Override
+  public void signOut() {
+    // 清除当前用户并通知监听器
+    currentUser = null;
+    notifyListeners();
+  }
+
+  @Override
+  public void getToken(boolean refresh, Callback<String> callback) {
+    complete(callback, new Operation<String>() {
+      @Override
+      public String run() throws Exception {
+        return token(requireUser());
+      }
+    });
+  }
+
+  @Override
+  public void updateProfile(final String displayName, final String photoUrl, Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        FakeUser user = requireUser();
+        user.displayName = displayName;
+        user.photoUrl = photoUrl;
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void updatePassword(final String password, Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        requireUser().password = password;
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void updateEmail(final String email, Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        FakeUser user = requireUser();
+        synchronized (accounts) {
+          // 邮箱已被使用时更新失败
+          if (accounts.containsKey(email)) {
+            throw new AuthException(AuthException.EMAIL_ALREADY_IN_USE, "The email address is already in use.");
+          }
+          accounts.remove(user.email);
+          user.email = email;
+          user.emailVerified = false;
+          accounts.put(email, user);
+        }
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void updatePhone(final String phone, Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        FakeUser user = requireUser();
+        synchronized (accounts) {
+          // 手机号已被使用时更新失败
+          if (accounts.containsKey(phone)) {
+            throw new AuthException(AuthException.PHONE_ALREADY_IN_USE, "The phone number is already in use.");
+          }
+          accounts.remove(user.phone);
+          user.phone = phone;
+          user.phoneVerified = false;
+          accounts.put(phone, user);
+        }
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void delete(Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        FakeUser user = requireUser();
+        synchronized (accounts) {
+          accounts.remove(user.email);
+          accounts.remove(user.phone);
+        }
+        // 删除后登出当前用户
+        signOut();
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void reauthenticateEmail(String email, String password, Callback<Void> callback) {
+    reauthenticate(email, password, callback);
+  }
+
+  @Override
+  public void reauthenticatePhone(String phone, String password, Callback<Void> callback) {
+    reauthenticate(phone, password, callback);
+  }
+
+  @Override
+  public void sendEmailVerification(Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        // 模拟用户立即完成邮箱验证
+        requireUser().emailVerified = true;
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void sendPhoneVerification(Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        requireUser();
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void verifyPhoneSmsCode(String smsCode, Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        requireUser().phoneVerified = true;
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void sendPasswordResetEmail(String email, Callback<Void> callback) {
+    requireAccount(email, callback);
+  }
+
+  @Override
+  public void sendPasswordResetSms(String phone, Callback<Void> callback) {
+    requireAccount(phone, callback);
+  }
+
+  @Override
+  public void confirmPasswordResetSms(final String phone, String smsCode, final String newPassword,
+                                      Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        account(phone).password = newPassword;
+        return null;
+      }
+    });
+  }
+
+  /**
+   * 创建帐户并登录
+   */
+  private void createUser(final String email, final String phone, final String password,
+                          Callback<AuthUser> callback) {
+    complete(callback, new Operation<AuthUser>() {
+      @Override
+      public AuthUser run() throws Exception {
+        // 声明定义帐户的登录名
+        String login = email != null ? email : phone;
+        FakeUser user;
+        synchronized (accounts) {
+          // 登录名已被使用时创建失败
+          if (accounts.containsKey(login)) {
+            throw new AuthException(AuthException.ACCOUNT_EXISTS, "The account already exists.");
+          }
+          user = new FakeUser(newUid(), PASSWORD_PROVIDER, email, phone, password);
+          accounts.put(login, user);
+        }
+        return signIn(user);
+      }
+    });
+  }
+
+  /**
+   * 使用登录名和密码登录
+   */
+  private void signInWithPassword(final String login, final String password, Callback<AuthUser> callback) {
+    complete(callback, new Operation<AuthUser>() {
+      @Override
+      public AuthUser run() throws Exception {
+        return signIn(checkPassword(login, password));
+      }
+    });
+  }
+
+  /**
+   * 使用登录名和密码重新进行身份认证
+   */
+  private void reauthenticate(final String login, final String password, Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        // 重新认证的帐户必须是当前用户
+        if (checkPassword(login, password) != requireUser()) {
+          throw new AuthException(AuthException.USER_MISMATCH,
+                  "The credential does not belong to the current user.");
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * 确认登录名对应的帐户存在
+   */
+  private void requireAccount(final String login, Callback<Void> callback) {
+    complete(callback, new Operation<Void>() {
+      @Override
+      public Void run() throws Exception {
+        account(login);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * 获取登录名对应的帐户并校验密码
+   */
+  private FakeUser checkPassword(String login, String password) throws Exception {
+    FakeUser user = account(login);
+    if (!user.password.equals(password)) {
+      throw new AuthException(AuthException.WRONG_PASSWORD, "The password is invalid.");
+    }
+    return user;
+  }
+
+  /**
+   * 获取登录名对应的帐户
+   */
+  private FakeUser account(String login) throws Exception {
+    synchronized (accounts) {
+      FakeUser user = accounts.get(login);
+      if (user == null) {
+        throw new AuthException(AuthException.USER_NOT_FOUND,
+                "There is no user record corresponding to this identifier.");
+      }
+      return user;
+    }
+  }
+
+  /**
+   * 获取当前用户，没有登录时抛出意外
+   */
+  private FakeUser requireUser() throws AuthException {
+    FakeUser user = currentUser;
+    if (user == null) {
+      throw new AuthException(AuthException.NO_CURRENT_USER, "No user is currently signed in.");
+    }
+    return user;
+  }
+
+  /**
+   * 设置当前用户并通知监听器
+   */
+  private FakeUser signIn(FakeUser user) {
+    currentUser = user;
+    notifyListeners();
+    return user;
+  }
+
+  /**
+   * 通知所有认证状态监听器
+   */
+  private void notifyListeners() {
+    final FakeUser user = currentUser;
+    for (final AuthStateListener listener : listeners) {
+      run(new Runnable() {
+        @Override
+        public void run() {
+          listener.onAuthStateChanged(user);
+        }
+      });
+    }
+  }
+
+  /**
+   * 生成新的用户ID
+   */
+  private String newUid() {
+    return "fake-" + nextUid.incrementAndGet();
+  }
+
+  /**
+   * 按配置的延迟和失败注入执行操作，并以结果结束回调
+   */
+  private <T> void complete(final Callback<T> callback, final Operation<T> operation) {
+    run(new Runnable() {
+      @Override
+      public void run() {
+        // 是否注入失败
+        if (shouldFail()) {
+          callback.onFailure(new IOException("Injected failure."));
+          return;
+        }
+        // 声明定义操作结果变量
+        T value;
+        try {
+          value = operation.run();
+        } catch (Exception e) {
+          callback.onFailure(e);
+          return;
+        }
+        callback.onSuccess(value);
+      }
+    });
+  }
+
+  /**
+   * 按配置的延迟执行任务，延迟为0时在调用线程中同步执行
+   */
+  private void run(Runnable task) {
+    long latency = latencyMillis;
+    if (latency <= 0) {
+      task.run();
+    } else {
+      scheduler.schedule(task, latency, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * 是否让本次操作失败
+   */
+  private boolean shouldFail() {
+    // 是否还有强制失败次数
+    while (true) {
+      int remaining = failNext.get();
+      if (remaining <= 0) {
+        break;
+      }
+      if (failNext.compareAndSet(remaining, remaining - 1)) {
+        return true;
+      }
+    }
+    // 按失败比例随机失败
+    double rate = failureRate;
+    return rate > 0 && random.nextDouble() < rate;
+  }
+
+  /**
+   * 生成带有exp声明的模拟JWT令牌
+   */
+  private static String token(FakeUser user) {
+    // 声明定义过期时间，以秒为单位
+    long exp = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + TOKEN_TTL_SECONDS;
+    // 声明定义payload部分
+    String payload = "{\"uid\":\"" + user.uid + "\",\"exp\":" + exp + "}";
+    return base64Url("{\"alg\":\"none\"}") + "." + base64Url(payload) + ".fake";
+  }
+
+  /**
+   * 使用URL安全、无填充的Base64编码字符串
+   */
+  private static String base64Url(String value) {
+    byte[] bytes = value.getBytes(UTF_8);
+    StringBuilder builder = new StringBuilder((bytes.length * 4 + 2) / 3);
+    for (int i = 0; i < bytes.length; i += 3) {
+      int b = (bytes[i] & 0xff) << 16;
+      if (i + 1 < bytes.length) {
+        b |= (bytes[i + 1] & 0xff) << 8;
+      }
+      if (i + 2 < bytes.length) {
+        b |= bytes[i + 2] & 0xff;
+      }
+      builder.append(BASE64_URL[(b >> 18) & 0x3f]).append(BASE64_URL[(b >> 12) & 0x3f]);
+      if (i + 1 < bytes.length) {
+        builder.append(BASE64_URL[(b >> 6) & 0x3f]);
+      }
+      if (i + 2 < bytes.length) {
+        builder.append(BASE64_URL[b & 0x3f]);
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * 模拟后端中的一个操作
+   * @param <T> 操作结果的类型
+   */
+  private interface Operation<T> {
+    T run() throws Exception;
+  }
+
+  /**
+   * 内存中的模拟用户
+   */
+  private static final class FakeUser implements AuthUser {
+    // 声明不可变的用户ID
+    final String uid;
+    // 声明不可变的认证提供方ID
+    final String providerId;
+    // 声明用户的其他属性
+    volatile String email;
+    volatile String phone;
+    volatile String password;
+    volatile String displayName;
+    volatile String photoUrl;
+    volatile boolean anonymous;
+    volatile boolean emailVerified;
+    volatile boolean phoneVerified;
+
+    FakeUser(String uid, String providerId, String email, String phone, String password) {
+      this.uid = uid;
+      this.providerId = providerId;
+      this.email = email;
+      this.phone = phone;
+      this.password = password;
+      this.anonymous = ANONYMOUS_PROVIDER.equals(providerId);
+    }
+
+    @Override
+    public String getProviderId() {
+      return providerId;
+    }
+
+    @Override
+    public String getUid() {
+      return uid;
+    }
+
+    @Override
+    public String getDisplayName() {
+      return displayName;
+    }
+
+    @Override
+    public String getPhotoUrl() {
+      return photoUrl;
+    }
+
+    @Override
+    public String getEmail() {
+      return email;
+    }
+
+    @Override
+    public String getPhone() {
+      return phone;
+    }
+
+    @Override
+    public boolean isAnonymous() {
+      return anonymous;
+    }
+
+    @Override
+    public boolean isEmailVerified() {
+      return emailVerified;
+    }
+
+    @Override
+    public boolean isPhoneVerified() {
+      return phoneVerified;
+    }
+
+    @Override
+    public List<? extends AuthUserInfo> getProviderData() {
+      // 模拟用户只有自身一个认证提供方
+      return Collections.singletonList(this);
+    }
+  }
+}
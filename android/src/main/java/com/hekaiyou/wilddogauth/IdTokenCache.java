@@ -0,0 +1,416 @@
+package com.hekaiyou.wilddogauth;
+
+import android.util.Base64;
+import android.util.Log;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/** 按用户ID缓存的Wilddog Id令牌，在令牌过期前由后台调度器主动刷新 */
+class IdTokenCache {
+  // 声明私有、静态、不可变的默认提前刷新窗口，即在令牌过期前5分钟刷新
+  private static final long DEFAULT_REFRESH_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  // 声明私有、静态、不可变的后台刷新失败后的重试间隔
+  private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  // 声明静态、不可变的两次后台刷新之间的最短间隔，避免刷新得到的令牌立即再次刷新
+  static final long MIN_REFRESH_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+  // 声明私有、静态、不可变的提前刷新窗口占令牌剩余有效期的最大比例
+  private static final double MAX_WINDOW_FRACTION = 0.5;
+
+  // 声明私有、不可变的身份认证后端
+  private final AuthBackend backend;
+  // 声明私有、不可变的暂时性失败的重试策略
+  private final RetryPolicy retryPolicy;
+  // 声明私有、不可变的错误的意外原因
+  private final String errorReason;
+  // 声明私有、不可变的令牌缓存，用户ID对应缓存的令牌
+  private final Map<String, CachedToken> tokens = new ConcurrentHashMap<>();
+  // 声明私有、不可变的正在进行的请求，请求键对应等待结果的客户端回调列表
+  private final Map<String, List<Result>> inFlight = new HashMap<>();
+  // 声明私有、不可变的后台刷新任务，用户ID对应已调度的刷新任务
+  private final Map<String, ScheduledFuture<?>> refreshTasks = new ConcurrentHashMap<>();
+  // 声明私有的后台刷新调度器，第一次调度时创建，关闭后再次调度时重新创建，由this保护
+  private ScheduledExecutorService scheduler;
+
+  // 声明私有的提前刷新窗口
+  private volatile long refreshWindowMillis = DEFAULT_REFRESH_WINDOW_MILLIS;
+  // 声明私有的令牌更新监听器，可以为空值
+  private volatile Listener listener;
+
+  /**
+   * 令牌更新监听器
+   */
+  interface Listener {
+    /**
+     * 从SDK获取到新的令牌时调用
+     * @param uid 用户ID
+     * @param idToken Wilddog Id令牌
+     */
+    void onTokenStored(String uid, String idToken);
+  }
+
+  /**
+   * 默认的构造方法
+   * @param backend 身份认证后端
+   * @param retryPolicy 暂时性失败的重试策略
+   * @param errorReason 返回客户端的错误的意外原因
+   */
+  IdTokenCache(AuthBackend backend, RetryPolicy retryPolicy, String errorReason) {
+    // 将身份认证后端赋予全局身份认证后端
+    this.backend = backend;
+    // 将重试策略赋予全局重试策略
+    this.retryPolicy = retryPolicy;
+    // 将错误的意外原因赋予全局错误的意外原因
+    this.errorReason = errorReason;
+  }
+
+  /**
+   * 设置令牌过期前的提前刷新窗口，对每个令牌最多为其剩余有效期的一半
+   * @param refreshWindowMillis 提前刷新窗口的毫秒数
+   */
+  void setRefreshWindowMillis(long refreshWindowMillis) {
+    this.refreshWindowMillis = Math.max(0, refreshWindowMillis);
+  }
+
+  /**
+   * 设置令牌更新监听器
+   * @param listener 令牌更新监听器
+   */
+  void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * 获取已缓存的令牌，不检查是否有效
+   * @param uid 用户ID
+   * @return 已缓存的令牌，没有缓存时返回空值
+   */
+  String peek(String uid) {
+    CachedToken cached = tokens.get(uid);
+    return cached != null ? cached.token : null;
+  }
+
+  /**
+   * 放入之前保存的令牌，例如冷启动时从会话快照中恢复，已过期的令牌不放入
+   * @param uid 用户ID
+   * @param idToken Wilddog Id令牌
+   */
+  void seed(String uid, String idToken) {
+    // 声明定义当前时间和过期时间变量
+    long now = System.currentTimeMillis();
+    long expiresAtMillis = decodeExpiry(idToken);
+    // 已有缓存或令牌已进入提前刷新窗口时不放入
+    if (tokens.containsKey(uid) || validUntilMillis(expiresAtMillis, now, refreshWindowMillis) <= now) {
+      return;
+    }
+    store(uid, idToken);
+  }
+
+  /**
+   * 获取当前用户的ID标识符，缓存有效时立即返回，否则合并到同一个SDK请求中
+   * @param refresh 是否强制刷新，为true时跳过缓存
+   * @param result 返回客户端的结果
+   */
+  void getToken(boolean refresh, Result result) {
+    // getCurrentUser()在如果有用户认证登录返回登录用户，如果没有登录，则返回为空
+    AuthUser user = backend.getCurrentUser();
+    // 当前是否没有用户登录
+    if (user == null) {
+      // 返回错误信息给客户端
+      result.error(AuthException.NO_CURRENT_USER, "No user is currently signed in.", null);
+      return;
+    }
+    // 声明定义用户ID变量
+    String uid = user.getUid();
+    // 不强制刷新时先查找缓存
+    if (!refresh) {
+      // 获取用户ID对应的缓存令牌
+      CachedToken cached = tokens.get(uid);
+      // 缓存令牌是否仍然有效
+      if (cached != null && cached.isValid(System.currentTimeMillis())) {
+        // 直接返回缓存的Wilddog Id令牌给Flutter客户端
+        result.success(cached.token);
+        return;
+      }
+    }
+    // 向SDK请求令牌，并发的相同请求会被合并，强制刷新与普通请求分开合并
+    fetch(uid, refresh, refresh ? uid + "#refresh" : uid, result);
+  }
+
+  /**
+   * 清除指定用户的缓存令牌和后台刷新任务
+   * @param uid 用户ID
+   */
+  void invalidate(String uid) {
+    // 移除缓存令牌
+    tokens.remove(uid);
+    // 取消已调度的后台刷新任务
+    ScheduledFuture<?> task = refreshTasks.remove(uid);
+    if (task != null) {
+      task.cancel(false);
+    }
+  }
+
+  /**
+   * 清除所有缓存令牌和后台刷新任务，例如在用户登出时
+   */
+  void clear() {
+    // 清除所有缓存令牌
+    tokens.clear();
+    // 取消所有已调度的后台刷新任务
+    for (ScheduledFuture<?> task : refreshTasks.values()) {
+      task.cancel(false);
+    }
+    refreshTasks.clear();
+  }
+
+  /**
+   * 取消所有后台刷新任务并关闭调度器，缓存的令牌保留到过期，例如在宿主销毁时。
+   * 之后获取新令牌时重新创建调度器
+   */
+  synchronized void shutdown() {
+    for (ScheduledFuture<?> task : refreshTasks.values()) {
+      task.cancel(false);
+    }
+    refreshTasks.clear();
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * 获取后台刷新调度器，尚未创建或已关闭时创建
+   * @return 单线程的后台刷新调度器
+   */
+  private synchronized ScheduledExecutorService scheduler() {
+    if (scheduler == null) {
+      // 创建单线程的后台刷新调度器，使用守护线程避免阻止进程退出
+      scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "wilddog_auth-token-refresh");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return scheduler;
+  }
+
+  /**
+   * 向SDK请求令牌，请求键相同的并发请求只会发起一次
+   * @param uid 当前用户的用户ID
+   * @param refresh 是否强制刷新
+   * @param key 合并并发请求的请求键
+   * @param result 返回客户端的结果，后台刷新时为空值
+   */
+  private void fetch(final String uid, final boolean refresh, final String key, Result result) {
+    synchronized (inFlight) {
+      // 获取正在进行的请求的等待列表
+      List<Result> waiters = inFlight.get(key);
+      // 是否已有相同的请求正在进行
+      if (waiters != null) {
+        // 加入等待列表，共享同一个请求的结果
+        if (result != null) {
+          waiters.add(result);
+        }
+        return;
+      }
+      // 创建新的等待列表
+      waiters = new ArrayList<>();
+      if (result != null) {
+        waiters.add(result);
+      }
+      inFlight.put(key, waiters);
+    }
+    // getToken()在身份认证成功后返回的Wilddog Id token字符串，暂时性失败时按重试策略重试
+    retryPolicy.execute("getIdToken", new RetryPolicy.Attempt<String>() {
+      @Override
+      public void run(AuthBackend.Callback<String> callback) {
+        backend.getToken(refresh, callback);
+      }
+    }, new AuthBackend.Callback<String>() {
+      // 操作成功时调用
+      @Override
+      public void onSuccess(String idToken) {
+        // 缓存令牌并调度后台刷新
+        store(uid, idToken);
+        // 通知令牌更新监听器
+        Listener current = listener;
+        if (current != null) {
+          current.onTokenStored(uid, idToken);
+        }
+        // 返回Wilddog Id令牌给所有等待的Flutter客户端
+        for (Result waiter : complete(key)) {
+          waiter.success(idToken);
+        }
+      }
+
+      // 操作失败时调用
+      @Override
+      public void onFailure(Exception e) {
+        // 声明定义等待列表变量，并移除正在进行的请求
+        List<Result> waiters = complete(key);
+        // 后台刷新失败时稍后重试
+        if (waiters.isEmpty()) {
+          Log.e(errorReason, "Background token refresh failed: " + e.getMessage());
+          schedule(uid, RETRY_DELAY_MILLIS);
+        }
+        // 返回错误信息给所有等待的客户端
+        for (Result waiter : waiters) {
+          AuthErrors.reply(waiter, e);
+        }
+      }
+    });
+  }
+
+  /**
+   * 移除正在进行的请求
+   * @param key 合并并发请求的请求键
+   * @return 等待结果的客户端回调列表
+   */
+  private List<Result> complete(String key) {
+    synchronized (inFlight) {
+      return inFlight.remove(key);
+    }
+  }
+
+  /**
+   * 缓存令牌，并在过期前调度后台刷新
+   * @param uid 用户ID
+   * @param idToken Wilddog Id令牌
+   */
+  private void store(String uid, String idToken) {
+    // 从JWT的exp声明中解码过期时间
+    long expiresAtMillis = decodeExpiry(idToken);
+    // 声明定义当前时间变量
+    long now = System.currentTimeMillis();
+    // 无法解码过期时间或已过期的令牌不缓存，也不调度刷新
+    if (expiresAtMillis <= now) {
+      invalidate(uid);
+      return;
+    }
+    // 声明定义有效期截止时间变量，窗口不超过剩余有效期的一半，新令牌总能被缓存命中
+    long validUntilMillis = validUntilMillis(expiresAtMillis, now, refreshWindowMillis);
+    // 缓存令牌
+    tokens.put(uid, new CachedToken(idToken, validUntilMillis));
+    // 在提前刷新窗口开始时调度后台刷新
+    schedule(uid, refreshDelayMillis(validUntilMillis, now));
+  }
+
+  /**
+   * 计算令牌的有效期截止时间，即过期时间减去提前刷新窗口，窗口最多为剩余有效期的MAX_WINDOW_FRACTION
+   * @param expiresAtMillis 过期时间的毫秒数
+   * @param nowMillis 当前时间的毫秒数
+   * @param refreshWindowMillis 提前刷新窗口的毫秒数
+   * @return 有效期截止时间的毫秒数
+   */
+  static long validUntilMillis(long expiresAtMillis, long nowMillis, long refreshWindowMillis) {
+    long remaining = Math.max(0, expiresAtMillis - nowMillis);
+    return expiresAtMillis - Math.min(refreshWindowMillis, (long) (remaining * MAX_WINDOW_FRACTION));
+  }
+
+  /**
+   * 计算后台刷新的延迟，与下一次刷新至少间隔MIN_REFRESH_DELAY_MILLIS
+   * @param validUntilMillis 有效期截止时间的毫秒数
+   * @param nowMillis 当前时间的毫秒数
+   * @return 延迟的毫秒数
+   */
+  static long refreshDelayMillis(long validUntilMillis, long nowMillis) {
+    return Math.max(MIN_REFRESH_DELAY_MILLIS, validUntilMillis - nowMillis);
+  }
+
+  /**
+   * 调度指定用户的后台刷新任务，替换已有的任务
+   * @param uid 用户ID
+   * @param delayMillis 延迟的毫秒数
+   */
+  private void schedule(final String uid, long delayMillis) {
+    // 声明定义后台刷新任务
+    ScheduledFuture<?> task = scheduler().schedule(new Runnable() {
+      @Override
+      public void run() {
+        // 移除已执行的刷新任务
+        refreshTasks.remove(uid);
+        // 获取当前登录用户
+        AuthUser user = backend.getCurrentUser();
+        // 当前用户是否已登出或已切换
+        if (user == null || !uid.equals(user.getUid())) {
+          tokens.remove(uid);
+          return;
+        }
+        // 强制刷新令牌，期间缓存失效的客户端请求会合并到这个请求中
+        fetch(uid, true, uid, null);
+      }
+    }, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    // 替换并取消已有的刷新任务
+    ScheduledFuture<?> previous = refreshTasks.put(uid, task);
+    if (previous != null) {
+      previous.cancel(false);
+    }
+  }
+
+  /**
+   * 从JWT的exp声明中解码过期时间
+   * @param idToken Wilddog Id令牌
+   * @return 过期时间的毫秒数，无法解码时返回0
+   */
+  static long decodeExpiry(String idToken) {
+    // 令牌是否为空值
+    if (idToken == null) {
+      return 0;
+    }
+    // JWT由header.payload.signature三部分组成
+    String[] parts = idToken.split("\\.");
+    if (parts.length < 2) {
+      return 0;
+    }
+    try {
+      // 使用URL安全的Base64解码payload部分
+      byte[] payload = Base64.decode(parts[1], Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
+      // exp声明是以秒为单位的过期时间
+      long exp = new JSONObject(new String(payload, "UTF-8")).optLong("exp", 0);
+      // 返回过期时间的毫秒数
+      return TimeUnit.SECONDS.toMillis(exp);
+    } catch (Exception e) {
+      // 令牌格式无法识别
+      return 0;
+    }
+  }
+
+  /**
+   * 缓存的令牌
+   */
+  private static final class CachedToken {
+    // 声明不可变的Wilddog Id令牌
+    final String token;
+    // 声明不可变的有效期截止时间，即过期时间减去提前刷新窗口
+    final long validUntilMillis;
+
+    CachedToken(String token, long validUntilMillis) {
+      this.token = token;
+      this.validUntilMillis = validUntilMillis;
+    }
+
+    /**
+     * 令牌在指定时间是否仍然有效
+     * @param nowMillis 当前时间的毫秒数
+     * @return 有效则返回true
+     */
+    boolean isValid(long nowMillis) {
+      return nowMillis < validUntilMillis;
+    }
+  }
+}
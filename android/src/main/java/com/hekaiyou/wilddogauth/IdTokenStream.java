@@ -0,0 +1,185 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.base.Objects;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * 通过EventChannel推送当前用户的Wilddog Id令牌，取代Flutter端定时轮询getIdToken
+ *
+ * 只在令牌改变时推送：登录、后台刷新和登出，登出时推送空值。新的订阅者立即收到最新的值。
+ * EventChannel没有流量控制，主线程来不及发送时只保留最新的值，同一时间最多只有一个待发送的任务
+ */
+class IdTokenStream implements EventChannel.StreamHandler {
+  /**
+   * 令牌的来源，由插件通过令牌缓存获取当前用户的令牌
+   */
+  interface Source {
+    /**
+     * 请求当前用户的令牌，缓存有效时立即返回，结果通过publish或fail推送
+     */
+    void request();
+  }
+
+  // 声明私有、不可变的线程调度
+  private final DispatchExecutors executors;
+  // 声明私有、不可变的令牌的来源
+  private final Source source;
+  // 声明私有、不可变的在主线程中发送最新值的任务
+  private final Runnable deliver = new Runnable() {
+    @Override
+    public void run() {
+      deliverLatest();
+    }
+  };
+
+  // 以下字段由this保护
+  // 声明私有的Flutter端的事件接收器，没有订阅者时为空值
+  private EventChannel.EventSink sink;
+  // 声明私有的是否已有最新的值
+  private boolean hasValue = false;
+  // 声明私有的最新的令牌，未登录时为空值
+  private String latest;
+  // 声明私有的是否已向当前订阅者发送过值
+  private boolean delivered = false;
+  // 声明私有的已向当前订阅者发送的令牌
+  private String deliveredValue;
+  // 声明私有的是否已有待发送的任务
+  private boolean deliveryPending = false;
+
+  /**
+   * 默认的构造方法
+   * @param executors 线程调度
+   * @param source 令牌的来源
+   */
+  IdTokenStream(DispatchExecutors executors, Source source) {
+    this.executors = executors;
+    this.source = source;
+  }
+
+  /**
+   * Flutter端开始订阅，在主线程中调用。已有最新的值时立即发送，否则请求当前用户的令牌
+   * @param arguments 订阅参数
+   * @param events 事件接收器
+   */
+  @Override
+  public void onListen(Object arguments, EventChannel.EventSink events) {
+    // 声明定义是否需要请求令牌的变量
+    boolean needsValue;
+    synchronized (this) {
+      sink = events;
+      delivered = false;
+      needsValue = !hasValue;
+      if (hasValue) {
+        scheduleDelivery();
+      }
+    }
+    if (needsValue) {
+      source.request();
+    }
+  }
+
+  /**
+   * Flutter端取消订阅，在主线程中调用
+   * @param arguments 取消参数
+   */
+  @Override
+  public synchronized void onCancel(Object arguments) {
+    sink = null;
+  }
+
+  /**
+   * 推送当前用户的令牌，与最新的值相同时不推送，可以在任意线程中调用
+   * @param idToken Wilddog Id令牌，未登录时为空值
+   */
+  synchronized void publish(String idToken) {
+    if (hasValue && Objects.equal(latest, idToken)) {
+      return;
+    }
+    hasValue = true;
+    latest = idToken;
+    if (sink != null) {
+      scheduleDelivery();
+    }
+  }
+
+  /**
+   * SDK的登录用户改变，登出时推送空值，登录时有订阅者则请求新用户的令牌
+   * @param uid 新的登录用户的用户ID，未登录时为空值
+   */
+  void onUserChanged(String uid) {
+    if (uid == null) {
+      publish(null);
+      return;
+    }
+    // 声明定义是否有订阅者的变量
+    boolean listening;
+    synchronized (this) {
+      // 上一个用户的令牌已不是最新的值
+      hasValue = false;
+      listening = sink != null;
+    }
+    if (listening) {
+      source.request();
+    }
+  }
+
+  /**
+   * 获取令牌失败，在主线程中把错误发送给订阅者，订阅保持有效
+   * @param code 错误代码
+   * @param message 错误信息
+   */
+  void fail(final String code, final String message) {
+    executors.runOnMain(new Runnable() {
+      @Override
+      public void run() {
+        EventChannel.EventSink current;
+        synchronized (IdTokenStream.this) {
+          current = sink;
+        }
+        if (current != null) {
+          current.error(code, message, null);
+        }
+      }
+    });
+  }
+
+  /**
+   * 宿主销毁时丢弃事件接收器，之后的值在Flutter端重新订阅时发送
+   */
+  synchronized void detach() {
+    sink = null;
+  }
+
+  /**
+   * 安排在主线程中发送最新的值，已有待发送的任务时由它发送，调用时需要持有锁
+   */
+  private void scheduleDelivery() {
+    if (deliveryPending) {
+      return;
+    }
+    deliveryPending = true;
+    // 始终投递到主线程的消息队列，不在持有锁时调用事件接收器
+    executors.runOnMainDelayed(deliver, 0);
+  }
+
+  /**
+   * 在主线程中发送最新的值，与已发送的值相同时不发送
+   */
+  private void deliverLatest() {
+    // 声明定义事件接收器和要发送的值
+    EventChannel.EventSink current;
+    String value;
+    synchronized (this) {
+      deliveryPending = false;
+      if (sink == null || !hasValue || (delivered && Objects.equal(deliveredValue, latest))) {
+        return;
+      }
+      current = sink;
+      value = latest;
+      delivered = true;
+      deliveredValue = value;
+    }
+    current.success(value);
+  }
+}
@@ -0,0 +1,114 @@
+package com.hekaiyou.wilddogauth;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * 使用AndroidKeyStore中的AES-GCM密钥加密保存在应用私有存储中的数据
+ *
+ * 密封后的格式为：IV长度、IV、密文，附加认证数据由调用方提供。需要Android 6.0
+ */
+class KeystoreCipher {
+  // 声明私有、静态、不可变的AndroidKeyStore提供方名称
+  private static final String KEYSTORE = "AndroidKeyStore";
+  // 声明私有、静态、不可变的加密算法
+  private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+  // 声明私有、静态、不可变的GCM认证标签位数
+  private static final int GCM_TAG_BITS = 128;
+
+  // 声明私有、不可变的密钥别名
+  private final String alias;
+
+  // 声明私有的已缓存的加密密钥
+  private SecretKey key;
+
+  /**
+   * 默认的构造方法
+   * @param alias 密钥别名
+   */
+  KeystoreCipher(String alias) {
+    this.alias = alias;
+  }
+
+  /**
+   * 加密数据
+   * @param plain 明文
+   * @param aad 附加认证数据
+   * @return IV长度、IV和密文
+   * @throws GeneralSecurityException 密钥库不可用时
+   * @throws IOException 密钥库无法加载时
+   */
+  synchronized byte[] seal(byte[] plain, byte[] aad) throws GeneralSecurityException, IOException {
+    Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+    cipher.init(Cipher.ENCRYPT_MODE, key());
+    cipher.updateAAD(aad);
+    byte[] iv = cipher.getIV();
+    byte[] sealed = cipher.doFinal(plain);
+    // 声明定义输出字节数组
+    byte[] output = new byte[1 + iv.length + sealed.length];
+    output[0] = (byte) iv.length;
+    System.arraycopy(iv, 0, output, 1, iv.length);
+    System.arraycopy(sealed, 0, output, 1 + iv.length, sealed.length);
+    return output;
+  }
+
+  /**
+   * 解密数据
+   * @param data 包含密封数据的字节数组
+   * @param offset 密封数据的起始位置
+   * @param length 密封数据的长度
+   * @param aad 附加认证数据
+   * @return 明文
+   * @throws GeneralSecurityException 数据被篡改或密钥已失效时
+   * @throws IOException 密钥库无法加载时
+   */
+  synchronized byte[] open(byte[] data, int offset, int length, byte[] aad)
+          throws GeneralSecurityException, IOException {
+    int ivLength = data[offset];
+    if (length < 1 + ivLength) {
+      throw new IOException("Truncated sealed data.");
+    }
+    Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+    cipher.init(Cipher.DECRYPT_MODE, key(), new GCMParameterSpec(GCM_TAG_BITS, data, offset + 1, ivLength));
+    cipher.updateAAD(aad);
+    return cipher.doFinal(data, offset + 1 + ivLength, length - 1 - ivLength);
+  }
+
+  /**
+   * 获取AndroidKeyStore中的加密密钥，第一次使用时生成，密钥不能导出，调用时需要持有锁
+   * @return 加密密钥
+   * @throws GeneralSecurityException 密钥库不可用时
+   * @throws IOException 密钥库无法加载时
+   */
+  SecretKey key() throws GeneralSecurityException, IOException {
+    if (key != null) {
+      return key;
+    }
+    KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+    keyStore.load(null);
+    Key existing = keyStore.getKey(alias, null);
+    if (existing instanceof SecretKey) {
+      key = (SecretKey) existing;
+      return key;
+    }
+    KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+    generator.init(new KeyGenParameterSpec.Builder(alias,
+            KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+            .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+            .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+            .setKeySize(256)
+            .build());
+    key = generator.generateKey();
+    return key;
+  }
+}
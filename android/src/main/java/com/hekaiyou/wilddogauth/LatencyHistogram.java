@@ -0,0 +1,159 @@
+package com.hekaiyou.wilddogauth;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的对数-线性延迟直方图，与HdrHistogram的分桶方式相同
+ *
+ * 每个2的幂区间再等分为8个子桶，相对误差不超过12.5%，记录时只做原子递增，不分配对象
+ */
+class LatencyHistogram {
+  // 声明私有、静态、不可变的子桶位数，每个2的幂区间分为2^3个子桶
+  private static final int SUB_BUCKET_BITS = 3;
+  // 声明私有、静态、不可变的子桶数
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // 声明私有、静态、不可变的最大记录值的位数，超过约68秒的延迟记录在最后一个桶中
+  private static final int MAX_BITS = 36;
+  // 声明静态、不可变的桶数
+  static final int BUCKETS = (MAX_BITS - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  // 声明私有、不可变的每个桶的计数
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  // 声明私有、不可变的记录次数
+  private final AtomicLong count = new AtomicLong();
+  // 声明私有、不可变的延迟总和，以纳秒为单位
+  private final AtomicLong totalNanos = new AtomicLong();
+  // 声明私有、不可变的最大延迟，以纳秒为单位
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /**
+   * 记录一次延迟
+   * @param nanos 延迟的纳秒数
+   */
+  void record(long nanos) {
+    // 时钟回拨时按0记录
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    counts.incrementAndGet(bucketOf(nanos));
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+    // 更新最大延迟
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+      max = maxNanos.get();
+    }
+  }
+
+  /**
+   * 清零所有计数，与并发的记录不是原子的，清零期间的记录可能部分丢失
+   */
+  void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    count.set(0);
+    totalNanos.set(0);
+    maxNanos.set(0);
+  }
+
+  /**
+   * 获取记录次数
+   * @return 记录次数
+   */
+  long getCount() {
+    return count.get();
+  }
+
+  /**
+   * 获取平均延迟
+   * @return 平均延迟的微秒数，没有记录时返回0
+   */
+  long getMeanMicros() {
+    long n = count.get();
+    return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / n);
+  }
+
+  /**
+   * 获取最大延迟
+   * @return 最大延迟的微秒数
+   */
+  long getMaxMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+  }
+
+  /**
+   * 计算多个百分位的延迟，只复制一次计数
+   * @param percentiles 0到100之间的百分位，按从小到大排列
+   * @return 每个百分位对应的延迟的微秒数，取所在桶的上界，不超过最大延迟
+   */
+  long[] percentileMicros(double... percentiles) {
+    // 复制当前计数，保证各个百分位基于同一份数据
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    long[] values = new long[percentiles.length];
+    // 没有记录时全部返回0
+    if (total == 0) {
+      return values;
+    }
+    // 桶的上界可能超过实际的最大延迟，以最大延迟为上限
+    long max = maxNanos.get();
+    int bucket = 0;
+    long seen = snapshot[0];
+    for (int p = 0; p < percentiles.length; p++) {
+      // 声明定义百分位对应的排名，至少为1
+      long rank = Math.max(1, (long) Math.ceil(percentiles[p] / 100.0 * total));
+      // 向后查找累计计数达到排名的桶
+      while (seen < rank && bucket < BUCKETS - 1) {
+        seen += snapshot[++bucket];
+      }
+      // 最后一个桶没有上界，直接取最大延迟
+      long upper = bucket == BUCKETS - 1 ? max : Math.min(upperBoundOf(bucket), max);
+      values[p] = TimeUnit.NANOSECONDS.toMicros(upper);
+    }
+    return values;
+  }
+
+  /**
+   * 获取延迟所在的桶
+   * @param nanos 延迟的纳秒数
+   * @return 桶的索引
+   */
+  static int bucketOf(long nanos) {
+    // 小于子桶数的值逐个分桶
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+    // 最高位的位置
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    // 超出范围的值记录在最后一个桶中
+    if (exponent > MAX_BITS) {
+      return BUCKETS - 1;
+    }
+    // 最高位之后的几位作为子桶
+    int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * 获取桶的上界
+   * @param bucket 桶的索引
+   * @return 桶中最大的纳秒数
+   */
+  static long upperBoundOf(int bucket) {
+    // 逐个分桶的值
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    // 桶所在的2的幂区间和子桶
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    int subBucket = bucket % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+}
@@ -0,0 +1,208 @@
+package com.hekaiyou.wilddogauth;
+
+import android.util.Log;
+import com.google.common.base.Supplier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟初始化的身份认证后端，第一次需要后端时才创建真正的后端和野狗云SDK实例
+ *
+ * 初始化之前注册的认证状态监听器会暂存，在初始化后按注册顺序注册到真正的后端
+ */
+final class LazyAuthBackend implements AuthBackend {
+  // 声明私有、静态、不可变的日志标签
+  private static final String TAG = "wilddog_auth";
+
+  // 声明私有、不可变的真正后端的创建方法
+  private final Supplier<AuthBackend> factory;
+  // 声明私有、不可变的初始化之前注册的认证状态监听器
+  private final List<AuthStateListener> pendingListeners = new ArrayList<>();
+
+  // 声明私有的真正的后端，初始化之前为空值
+  private volatile AuthBackend backend;
+
+  /**
+   * 默认的构造方法
+   * @param factory 真正后端的创建方法，只会调用一次
+   */
+  LazyAuthBackend(Supplier<AuthBackend> factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * 是否已初始化
+   * @return 已创建真正的后端时返回true
+   */
+  boolean isInitialized() {
+    return backend != null;
+  }
+
+  /**
+   * 初始化真正的后端，已初始化时直接返回，并把耗时报告给启动跟踪
+   * @return 真正的后端
+   */
+  AuthBackend backend() {
+    // 已初始化时不加锁
+    AuthBackend current = backend;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (backend != null) {
+        return backend;
+      }
+      // 创建真正的后端，并计时
+      long startNanos = System.nanoTime();
+      current = factory.get();
+      long durationNanos = System.nanoTime() - startNanos;
+      Log.i(TAG, "Backend initialized in " + TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms on "
+              + Thread.currentThread().getName() + ".");
+      WilddogAuthPlugin.tracePhase(StartupTrace.BACKEND_INIT, startNanos, durationNanos);
+      // 先公开后端，监听器在注册时同步回调并访问后端也不会重复初始化
+      backend = current;
+      // 注册暂存的监听器
+      for (AuthStateListener listener : pendingListeners) {
+        current.addAuthStateListener(listener);
+      }
+      pendingListeners.clear();
+    }
+    return current;
+  }
+
+  @Override
+  public void addAuthStateListener(AuthStateListener listener) {
+    synchronized (this) {
+      // 未初始化时暂存，不触发初始化
+      if (backend == null) {
+        pendingListeners.add(listener);
+        return;
+      }
+    }
+    backend.addAuthStateListener(listener);
+  }
+
+  @Override
+  public void removeAuthStateListener(AuthStateListener listener) {
+    synchronized (this) {
+      // 未初始化时从暂存的监听器中移除
+      if (backend == null) {
+        pendingListeners.remove(listener);
+        return;
+      }
+    }
+    backend.removeAuthStateListener(listener);
+  }
+
+  @Override
+  public AuthUser getCurrentUser() {
+    return backend().getCurrentUser();
+  }
+
+  @Override
+  public void signInAnonymously(Callback<AuthUser> callback) {
+    backend().signInAnonymously(callback);
+  }
+
+  @Override
+  public void createUserWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    backend().createUserWithEmailAndPassword(email, password, callback);
+  }
+
+  @Override
+  public void signInWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    backend().signInWithEmailAndPassword(email, password, callback);
+  }
+
+  @Override
+  public void createUserWithPhoneAndPassword(String phone, String password, Callback<AuthUser> callback) {
+    backend().createUserWithPhoneAndPassword(phone, password, callback);
+  }
+
+  @Override
+  public void signInWithPhoneAndPassword(String phone, String password, Callback<AuthUser> callback) {
+    backend().signInWithPhoneAndPassword(phone, password, callback);
+  }
+
+  @Override
+  public void linkWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    backend().linkWithEmailAndPassword(email, password, callback);
+  }
+
+  @Override
+  public void signOut() {
+    backend().signOut();
+  }
+
+  @Override
+  public void getToken(boolean refresh, Callback<String> callback) {
+    backend().getToken(refresh, callback);
+  }
+
+  @Override
+  public void updateProfile(String displayName, String photoUrl, Callback<Void> callback) {
+    backend().updateProfile(displayName, photoUrl, callback);
+  }
+
+  @Override
+  public void updatePassword(String password, Callback<Void> callback) {
+    backend().updatePassword(password, callback);
+  }
+
+  @Override
+  public void updateEmail(String email, Callback<Void> callback) {
+    backend().updateEmail(email, callback);
+  }
+
+  @Override
+  public void updatePhone(String phone, Callback<Void> callback) {
+    backend().updatePhone(phone, callback);
+  }
+
+  @Override
+  public void delete(Callback<Void> callback) {
+    backend().delete(callback);
+  }
+
+  @Override
+  public void reauthenticateEmail(String email, String password, Callback<Void> callback) {
+    backend().reauthenticateEmail(email, password, callback);
+  }
+
+  @Override
+  public void reauthenticatePhone(String phone, String password, Callback<Void> callback) {
+    backend().reauthenticatePhone(phone, password, callback);
+  }
+
+  @Override
+  public void sendEmailVerification(Callback<Void> callback) {
+    backend().sendEmailVerification(callback);
+  }
+
+  @Override
+  public void sendPhoneVerification(Callback<Void> callback) {
+    backend().sendPhoneVerification(callback);
+  }
+
+  @Override
+  public void verifyPhoneSmsCode(String smsCode, Callback<Void> callback) {
+    backend().verifyPhoneSmsCode(smsCode, callback);
+  }
+
+  @Override
+  public void sendPasswordResetEmail(String email, Callback<Void> callback) {
+    backend().sendPasswordResetEmail(email, callback);
+  }
+
+  @Override
+  public void sendPasswordResetSms(String phone, Callback<Void> callback) {
+    backend().sendPasswordResetSms(phone, callback);
+  }
+
+  @Override
+  public void confirmPasswordResetSms(String phone, String smsCode, String newPassword, Callback<Void> callback) {
+    backend().confirmPasswordResetSms(phone, smsCode, newPassword, callback);
+  }
+}
@@ -0,0 +1,237 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程安全的认证状态监听器注册表
+ *
+ * 句柄由原子计数器分配，独立模式的句柄按键存放在并发词典中，注销是O(1)的；
+ * 多路复用模式的句柄保存在写时复制的不可变集合中，SDK回调遍历快照时不需要加锁。
+ * 宿主销毁时可以从后端分离所有监听器并保留句柄，重新附加时按句柄恢复，每个监听器只注册一次
+ */
+class ListenerRegistry {
+  // 声明私有、不可变的身份认证后端
+  private final AuthBackend backend;
+  // 声明私有、不可变的多路复用模式的共享监听器
+  private final AuthBackend.AuthStateListener sharedListener;
+  // 声明私有、不可变的句柄分配器
+  private final AtomicInteger nextHandle = new AtomicInteger();
+  // 声明私有、不可变的独立模式的监听器，句柄对应监听器
+  private final ConcurrentMap<Integer, AuthBackend.AuthStateListener> listeners = new ConcurrentHashMap<>();
+  // 声明私有、不可变的注册和注销的锁，保证与后端的注册状态一致，读取快照不需要加锁
+  private final Object lock = new Object();
+
+  // 声明私有的多路复用模式的句柄快照，每次修改时整体替换
+  private volatile ImmutableSet<Integer> multiplexed = ImmutableSet.of();
+  // 声明私有的监听器是否已注册到后端，宿主销毁后为false
+  private boolean attached = true;
+
+  /**
+   * 默认的构造方法
+   * @param backend 身份认证后端
+   * @param sharedListener 多路复用模式的共享监听器，第一个多路复用句柄注册时注册到后端
+   */
+  ListenerRegistry(AuthBackend backend, AuthBackend.AuthStateListener sharedListener) {
+    this.backend = backend;
+    this.sharedListener = sharedListener;
+  }
+
+  /**
+   * 分配一个新的句柄
+   * @return 句柄
+   */
+  int allocate() {
+    return nextHandle.getAndIncrement();
+  }
+
+  /**
+   * 是否已附加到宿主
+   * @return 已附加时返回true
+   */
+  boolean isAttached() {
+    synchronized (lock) {
+      return attached;
+    }
+  }
+
+  /**
+   * 注册独立模式的监听器
+   * @param handle 句柄
+   * @param listener 认证状态监听器
+   * @throws IllegalStateException 已从宿主分离时
+   */
+  void add(int handle, AuthBackend.AuthStateListener listener) {
+    synchronized (lock) {
+      requireAttached();
+      listeners.put(handle, listener);
+      // addAuthStateListener方法注册一个认证状态的监听
+      backend.addAuthStateListener(listener);
+    }
+  }
+
+  /**
+   * 获取独立模式的句柄对应的监听器
+   * @param handle 句柄
+   * @return 监听器，句柄不存在或属于多路复用模式时返回空值
+   */
+  AuthBackend.AuthStateListener get(int handle) {
+    return listeners.get(handle);
+  }
+
+  /**
+   * 句柄是否属于多路复用模式
+   * @param handle 句柄
+   * @return 属于多路复用模式时返回true
+   */
+  boolean isMultiplexed(int handle) {
+    return multiplexed.contains(handle);
+  }
+
+  /**
+   * 注册多路复用模式的句柄，第一个句柄注册时注册共享的SDK监听器
+   * @param handle 句柄
+   * @return 共享监听器之前已注册时返回true，此时新句柄不会收到SDK的初始回调
+   * @throws IllegalStateException 已从宿主分离时
+   */
+  boolean addMultiplexed(int handle) {
+    synchronized (lock) {
+      requireAttached();
+      // 声明定义共享监听器是否已注册的变量
+      boolean registered = !multiplexed.isEmpty();
+      multiplexed = ImmutableSet.<Integer>builder().addAll(multiplexed).add(handle).build();
+      if (!registered) {
+        // 注册时会回调一次当前状态，回调读取的是已包含新句柄的快照
+        backend.addAuthStateListener(sharedListener);
+      }
+      return registered;
+    }
+  }
+
+  /**
+   * 注销句柄，最后一个多路复用句柄注销时注销共享的SDK监听器
+   * @param handle 句柄
+   * @return 句柄已注册时返回true
+   */
+  boolean remove(int handle) {
+    synchronized (lock) {
+      // 声明定义独立模式的监听器，按键移除
+      AuthBackend.AuthStateListener listener = listeners.remove(handle);
+      if (listener != null) {
+        if (attached) {
+          // removeAuthStateListener方法注销认证状态的监听
+          backend.removeAuthStateListener(listener);
+        }
+        return true;
+      }
+      if (!multiplexed.contains(handle)) {
+        return false;
+      }
+      // 声明定义移除句柄后的快照的构造器
+      ImmutableSet.Builder<Integer> builder = ImmutableSet.builder();
+      for (Integer id : multiplexed) {
+        if (id != handle) {
+          builder.add(id);
+        }
+      }
+      multiplexed = builder.build();
+      if (multiplexed.isEmpty() && attached) {
+        backend.removeAuthStateListener(sharedListener);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * 注销所有的句柄和监听器
+   * @return 注销的句柄数
+   */
+  int removeAll() {
+    synchronized (lock) {
+      // 声明定义注销的句柄数
+      int removed = size();
+      if (attached) {
+        unregisterAll();
+      }
+      listeners.clear();
+      multiplexed = ImmutableSet.of();
+      return removed;
+    }
+  }
+
+  /**
+   * 宿主销毁时从后端注销所有监听器，句柄保持不变
+   * @return 之前已附加时返回true
+   */
+  boolean detach() {
+    synchronized (lock) {
+      if (!attached) {
+        return false;
+      }
+      attached = false;
+      unregisterAll();
+      return true;
+    }
+  }
+
+  /**
+   * 宿主重新附加时把所有句柄的监听器注册到后端，已附加时不重复注册
+   * @return 之前已分离时返回true
+   */
+  boolean reattach() {
+    synchronized (lock) {
+      if (attached) {
+        return false;
+      }
+      attached = true;
+      for (AuthBackend.AuthStateListener listener : listeners.values()) {
+        backend.addAuthStateListener(listener);
+      }
+      if (!multiplexed.isEmpty()) {
+        backend.addAuthStateListener(sharedListener);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * 分离后不接受新的监听器，它们不会收到任何回调，调用时需要持有锁
+   */
+  private void requireAttached() {
+    if (!attached) {
+      throw new IllegalStateException("The plugin is detached from its host.");
+    }
+  }
+
+  /**
+   * 从后端注销所有监听器，调用时需要持有锁
+   */
+  private void unregisterAll() {
+    for (AuthBackend.AuthStateListener listener : listeners.values()) {
+      backend.removeAuthStateListener(listener);
+    }
+    if (!multiplexed.isEmpty()) {
+      backend.removeAuthStateListener(sharedListener);
+    }
+  }
+
+  /**
+   * 获取多路复用模式的句柄快照，供共享监听器扇出时遍历
+   * @return 不可变的句柄列表
+   */
+  ImmutableList<Integer> multiplexedHandles() {
+    return multiplexed.asList();
+  }
+
+  /**
+   * 获取已注册的句柄数
+   * @return 独立模式和多路复用模式的句柄数之和
+   */
+  int size() {
+    return listeners.size() + multiplexed.size();
+  }
+}
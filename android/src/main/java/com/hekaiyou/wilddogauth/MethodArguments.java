@@ -0,0 +1,65 @@
+package com.hekaiyou.wilddogauth;
+
+/**
+ * 按MethodSpec的参数表校验并解析后的调用参数，按参数的声明顺序读取
+ */
+public final class MethodArguments {
+  // 声明静态、不可变的没有参数时使用的实例
+  static final MethodArguments EMPTY = new MethodArguments(new Object[0], null);
+
+  // 声明私有、不可变的参数值，按声明顺序排列，缺省的可选参数为空值或默认值
+  private final Object[] values;
+  // 声明私有、不可变的客户端传递的原始参数
+  private final Object raw;
+
+  MethodArguments(Object[] values, Object raw) {
+    this.values = values;
+    this.raw = raw;
+  }
+
+  /**
+   * 获取字符串参数
+   * @param index 参数的声明顺序
+   * @return 参数值，缺省时为空值
+   */
+  public String getString(int index) {
+    return (String) values[index];
+  }
+
+  /**
+   * 获取布尔参数
+   * @param index 参数的声明顺序
+   * @return 参数值，缺省时为false
+   */
+  public boolean getBoolean(int index) {
+    return Boolean.TRUE.equals(values[index]);
+  }
+
+  /**
+   * 获取整数参数
+   * @param index 参数的声明顺序
+   * @return 参数值，缺省时为空值
+   */
+  public Integer getInteger(int index) {
+    return (Integer) values[index];
+  }
+
+  /**
+   * 获取任意类型的参数
+   * @param index 参数的声明顺序
+   * @param <T> 参数的类型
+   * @return 参数值，缺省时为空值
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(int index) {
+    return (T) values[index];
+  }
+
+  /**
+   * 获取客户端传递的原始参数
+   * @return 原始参数
+   */
+  public Object raw() {
+    return raw;
+  }
+}
@@ -0,0 +1,17 @@
+package com.hekaiyou.wilddogauth;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * 方法通道中一个方法的处理程序
+ *
+ * 收到的参数已经按MethodSpec声明的参数表校验并解析，按声明顺序读取
+ */
+public interface MethodHandler {
+  /**
+   * 处理方法调用
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  void onMethodCall(MethodArguments arguments, Result result);
+}
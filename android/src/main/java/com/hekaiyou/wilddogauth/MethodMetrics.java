@@ -0,0 +1,291 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按方法名称统计的调用次数、结果和延迟
+ *
+ * 延迟从分发调用开始，到返回结果给客户端为止。记录只使用原子计数，
+ * 除了每次调用的计时结果回调和第一次出现的方法名称、失败类型外不分配对象
+ */
+class MethodMetrics {
+  // 声明私有、静态、不可变的最多统计的方法数，超出的方法统计到OTHER_METHOD中
+  private static final int MAX_METHODS = 64;
+  // 声明私有、静态、不可变的超出数量的方法的统计名称
+  private static final String OTHER_METHOD = "<other>";
+  // 声明私有、静态、不可变的最多统计的失败类型数，超出的类型统计到OTHER_FAILURE中
+  private static final int MAX_FAILURE_TYPES = 32;
+  // 声明私有、静态、不可变的超出数量的失败类型的统计名称
+  private static final String OTHER_FAILURE = "<other>";
+
+  /**
+   * 包装其他结果回调的结果回调，例如截止时间的结果回调，记录失败类型时沿着包装链查找计时的结果回调
+   */
+  interface ForwardingResult extends Result {
+    /**
+     * 获取被包装的结果回调
+     * @return 被包装的结果回调，已返回结果时为空值
+     */
+    Result delegate();
+  }
+
+  // 声明私有、不可变的方法统计，方法名称对应统计
+  private final ConcurrentMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+  // 声明私有的统计开始时间
+  private volatile long sinceMillis = System.currentTimeMillis();
+
+  /**
+   * 开始一次调用的计时
+   * @param method 方法名称
+   * @param result 返回客户端的结果
+   * @return 在返回结果时记录延迟和结果的结果回调
+   */
+  Result start(String method, Result result) {
+    // 声明定义方法统计变量
+    MethodStats stats = statsOf(method);
+    stats.calls.incrementAndGet();
+    return new TimedResult(stats, result, System.nanoTime());
+  }
+
+  /**
+   * 记录一次被合并到进行中调用的调用，它共享进行中调用的结果，不单独计时
+   * @param method 方法名称
+   */
+  void recordCoalesced(String method) {
+    // 声明定义方法统计变量
+    MethodStats stats = statsOf(method);
+    stats.calls.incrementAndGet();
+    stats.coalesced.incrementAndGet();
+  }
+
+  /**
+   * 记录一次暂时性失败后的重试
+   * @param method 方法名称
+   */
+  void recordRetry(String method) {
+    statsOf(method).retries.incrementAndGet();
+  }
+
+  /**
+   * 标记本次调用因指定的意外而失败，之后返回的结果按这个意外类型统计为失败
+   * @param result 处理方法收到的结果回调
+   * @param e 失败的意外
+   */
+  static void failed(Result result, Throwable e) {
+    // 处理方法收到的可能是截止时间等包装后的结果回调，找到其中的计时的结果回调
+    while (result instanceof ForwardingResult) {
+      result = ((ForwardingResult) result).delegate();
+    }
+    // 只有计时的结果回调需要记录失败类型，后端包装的SDK意外按原始意外的类型统计
+    if (result instanceof TimedResult) {
+      ((TimedResult) result).failure = AuthErrors.typeOf(e).getName();
+    }
+  }
+
+  /**
+   * 记录一次在超时或取消之后才到达、已被丢弃的完成回调
+   * @param method 方法名称
+   */
+  void recordDropped(String method) {
+    statsOf(method).dropped.incrementAndGet();
+  }
+
+  /**
+   * 获取所有方法的统计快照
+   * @return 包含统计开始时间和每个方法统计的词典
+   */
+  ImmutableMap<String, Object> snapshot() {
+    // 声明定义方法统计词典的构造器
+    ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+    for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+      builder.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return ImmutableMap.<String, Object>of(
+            "sinceMillis", sinceMillis,
+            "methods", builder.build());
+  }
+
+  /**
+   * 清零所有统计，保留已出现的方法名称和失败类型
+   */
+  void reset() {
+    for (MethodStats stats : methods.values()) {
+      stats.reset();
+    }
+    sinceMillis = System.currentTimeMillis();
+  }
+
+  /**
+   * 获取方法名称对应的统计，第一次出现时创建
+   * @param method 方法名称
+   * @return 方法统计
+   */
+  private MethodStats statsOf(String method) {
+    // 已有统计时直接返回，不分配对象
+    MethodStats stats = methods.get(method);
+    if (stats != null) {
+      return stats;
+    }
+    // 方法数量已达上限时统计到其他方法中
+    if (methods.size() >= MAX_METHODS) {
+      method = OTHER_METHOD;
+    }
+    stats = new MethodStats();
+    MethodStats previous = methods.putIfAbsent(method, stats);
+    return previous != null ? previous : stats;
+  }
+
+  /**
+   * 一个方法的统计
+   */
+  private static final class MethodStats {
+    // 声明不可变的调用次数，包括被合并的调用
+    final AtomicLong calls = new AtomicLong();
+    // 声明不可变的被合并的调用次数
+    final AtomicLong coalesced = new AtomicLong();
+    // 声明不可变的成功次数
+    final AtomicLong successes = new AtomicLong();
+    // 声明不可变的失败次数
+    final AtomicLong failures = new AtomicLong();
+    // 声明不可变的未实现次数
+    final AtomicLong notImplemented = new AtomicLong();
+    // 声明不可变的暂时性失败后的重试次数
+    final AtomicLong retries = new AtomicLong();
+    // 声明不可变的超时或取消之后才到达、已被丢弃的完成回调次数
+    final AtomicLong dropped = new AtomicLong();
+    // 声明不可变的失败类型统计，意外类名或错误代码对应次数
+    final ConcurrentMap<String, AtomicLong> failureTypes = new ConcurrentHashMap<>();
+    // 声明不可变的延迟直方图
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * 记录一次失败
+     * @param type 意外类名或错误代码
+     */
+    void recordFailure(String type) {
+      failures.incrementAndGet();
+      // 声明定义失败类型的计数
+      AtomicLong counter = failureTypes.get(type);
+      if (counter == null) {
+        // 失败类型数量已达上限时统计到其他类型中
+        if (failureTypes.size() >= MAX_FAILURE_TYPES) {
+          type = OTHER_FAILURE;
+        }
+        counter = new AtomicLong();
+        AtomicLong previous = failureTypes.putIfAbsent(type, counter);
+        if (previous != null) {
+          counter = previous;
+        }
+      }
+      counter.incrementAndGet();
+    }
+
+    /**
+     * 清零统计
+     */
+    void reset() {
+      calls.set(0);
+      coalesced.set(0);
+      successes.set(0);
+      failures.set(0);
+      notImplemented.set(0);
+      retries.set(0);
+      dropped.set(0);
+      for (AtomicLong counter : failureTypes.values()) {
+        counter.set(0);
+      }
+      latency.reset();
+    }
+
+    /**
+     * 获取统计快照
+     * @return 统计词典
+     */
+    ImmutableMap<String, Object> snapshot() {
+      // 声明定义失败类型词典的构造器，不包含已清零的类型
+      ImmutableMap.Builder<String, Object> types = ImmutableMap.builder();
+      for (Map.Entry<String, AtomicLong> entry : failureTypes.entrySet()) {
+        long count = entry.getValue().get();
+        if (count > 0) {
+          types.put(entry.getKey(), count);
+        }
+      }
+      // 声明定义百分位延迟
+      long[] percentiles = latency.percentileMicros(50, 90, 99);
+      return ImmutableMap.<String, Object>builder()
+              .put("calls", calls.get())
+              .put("coalesced", coalesced.get())
+              .put("successes", successes.get())
+              .put("failures", failures.get())
+              .put("notImplemented", notImplemented.get())
+              .put("retries", retries.get())
+              .put("droppedLate", dropped.get())
+              .put("failureTypes", types.build())
+              .put("latencyMicros", ImmutableMap.<String, Object>builder()
+                      .put("count", latency.getCount())
+                      .put("mean", latency.getMeanMicros())
+                      .put("p50", percentiles[0])
+                      .put("p90", percentiles[1])
+                      .put("p99", percentiles[2])
+                      .put("max", latency.getMaxMicros())
+                      .build())
+              .build();
+    }
+  }
+
+  /**
+   * 计时的结果回调，返回结果时记录延迟和结果，再交给原结果回调
+   */
+  private static final class TimedResult implements Result {
+    // 声明私有、不可变的方法统计
+    private final MethodStats stats;
+    // 声明私有、不可变的原结果回调
+    private final Result result;
+    // 声明私有、不可变的开始时间
+    private final long startNanos;
+    // 声明失败的意外类名，处理方法以成功结果返回失败信息时使用
+    volatile String failure;
+
+    TimedResult(MethodStats stats, Result result, long startNanos) {
+      this.stats = stats;
+      this.result = result;
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void success(Object value) {
+      stats.latency.record(System.nanoTime() - startNanos);
+      // 声明定义失败的意外类名
+      String type = failure;
+      if (type != null) {
+        stats.recordFailure(type);
+      } else {
+        stats.successes.incrementAndGet();
+      }
+      result.success(value);
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      stats.latency.record(System.nanoTime() - startNanos);
+      // 没有意外类名时按错误代码统计
+      String type = failure;
+      stats.recordFailure(type != null ? type : String.valueOf(errorCode));
+      result.error(errorCode, errorMessage, errorDetails);
+    }
+
+    @Override
+    public void notImplemented() {
+      stats.latency.record(System.nanoTime() - startNanos);
+      stats.notImplemented.incrementAndGet();
+      result.notImplemented();
+    }
+  }
+}
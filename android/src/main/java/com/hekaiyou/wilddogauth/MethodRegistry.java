@@ -0,0 +1,27 @@
+package com.hekaiyou.wilddogauth;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** 方法名称对应方法注册项的注册表，分发调用时只需一次哈希查找 */
+class MethodRegistry {
+  // 声明私有、不可变的方法注册项，方法名称对应注册项
+  private final Map<String, MethodSpec> specs = new ConcurrentHashMap<>();
+
+  /**
+   * 注册方法，同名的已有方法会被替换
+   * @param spec 方法注册项
+   */
+  void register(MethodSpec spec) {
+    specs.put(spec.getMethod(), spec);
+  }
+
+  /**
+   * 获取方法注册项
+   * @param method 方法名称
+   * @return 方法注册项，未注册时返回空值
+   */
+  MethodSpec get(String method) {
+    return specs.get(method);
+  }
+}
@@ -0,0 +1,209 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 方法注册表中的一项，声明方法名称、参数表、结果类型和处理程序
+ *
+ * 参数表在每次调用时只校验一次，每个参数只从参数词典中读取一次
+ */
+public final class MethodSpec {
+  /**
+   * 参数的类型
+   */
+  public enum ArgumentType {
+    STRING(String.class),
+    BOOLEAN(Boolean.class),
+    INTEGER(Number.class),
+    LIST(List.class),
+    MAP(Map.class);
+
+    // 声明私有、不可变的接受的Java类型
+    private final Class<?> javaType;
+
+    ArgumentType(Class<?> javaType) {
+      this.javaType = javaType;
+    }
+  }
+
+  // 声明私有、不可变的方法名称
+  private final String method;
+  // 声明私有、不可变的参数表
+  private final ImmutableList<Argument> arguments;
+  // 声明私有、不可变的结果类型
+  private final ResultShape resultShape;
+  // 声明私有、不可变的处理程序
+  private final MethodHandler handler;
+
+  private MethodSpec(String method, ImmutableList<Argument> arguments, ResultShape resultShape,
+                     MethodHandler handler) {
+    this.method = method;
+    this.arguments = arguments;
+    this.resultShape = resultShape;
+    this.handler = handler;
+  }
+
+  /**
+   * 创建方法注册项的构造器
+   * @param method 方法名称
+   * @return 构造器
+   */
+  public static Builder builder(String method) {
+    return new Builder(method);
+  }
+
+  /**
+   * 获取方法名称
+   * @return 方法名称
+   */
+  public String getMethod() {
+    return method;
+  }
+
+  /**
+   * 获取结果类型
+   * @return 结果类型
+   */
+  public ResultShape getResultShape() {
+    return resultShape;
+  }
+
+  /**
+   * 获取处理程序
+   * @return 处理程序
+   */
+  public MethodHandler getHandler() {
+    return handler;
+  }
+
+  /**
+   * 按参数表校验并解析客户端传递的参数
+   * @param raw 客户端传递的原始参数
+   * @return 已校验的调用参数
+   * @throws IllegalArgumentException 参数缺失或类型不符时
+   */
+  MethodArguments parse(Object raw) {
+    // 没有声明参数的方法不读取参数
+    if (arguments.isEmpty()) {
+      return raw == null ? MethodArguments.EMPTY : new MethodArguments(new Object[0], raw);
+    }
+    // 参数必须是词典，没有传递参数时视为空词典
+    if (raw != null && !(raw instanceof Map)) {
+      throw new IllegalArgumentException(
+              String.format("Arguments of '%s' must be a map.", method));
+    }
+    // 声明定义参数词典变量
+    Map<?, ?> map = (Map<?, ?>) raw;
+    // 声明定义参数值数组，按声明顺序排列
+    Object[] values = new Object[arguments.size()];
+    for (int i = 0; i < values.length; i++) {
+      Argument argument = arguments.get(i);
+      Object value = map != null ? map.get(argument.name) : null;
+      // 参数是否缺失
+      if (value == null) {
+        if (argument.required) {
+          throw new IllegalArgumentException(
+                  String.format("Missing argument '%s' for '%s'.", argument.name, method));
+        }
+        values[i] = argument.defaultValue;
+        continue;
+      }
+      // 参数类型是否不符
+      if (!argument.type.javaType.isInstance(value)) {
+        throw new IllegalArgumentException(String.format("Argument '%s' for '%s' must be %s.",
+                argument.name, method, argument.type.name().toLowerCase()));
+      }
+      // Dart的整数可能以Long传递，统一为Integer
+      values[i] = argument.type == ArgumentType.INTEGER ? ((Number) value).intValue() : value;
+    }
+    return new MethodArguments(values, raw);
+  }
+
+  /**
+   * 参数表中的一个参数
+   */
+  private static final class Argument {
+    final String name;
+    final ArgumentType type;
+    final boolean required;
+    final Object defaultValue;
+
+    Argument(String name, ArgumentType type, boolean required, Object defaultValue) {
+      this.name = name;
+      this.type = type;
+      this.required = required;
+      this.defaultValue = defaultValue;
+    }
+  }
+
+  /**
+   * 方法注册项的构造器，按调用参数的读取顺序声明参数
+   */
+  public static final class Builder {
+    // 声明私有、不可变的方法名称
+    private final String method;
+    // 声明私有、不可变的参数表构造器
+    private final ImmutableList.Builder<Argument> arguments = ImmutableList.builder();
+    // 声明私有的结果类型
+    private ResultShape resultShape = ResultShape.NONE;
+
+    private Builder(String method) {
+      this.method = method;
+    }
+
+    /**
+     * 声明一个必需的参数
+     * @param name 参数名称
+     * @param type 参数类型
+     * @return 构造器
+     */
+    public Builder required(String name, ArgumentType type) {
+      arguments.add(new Argument(name, type, true, null));
+      return this;
+    }
+
+    /**
+     * 声明一个可选的参数，缺省时为空值
+     * @param name 参数名称
+     * @param type 参数类型
+     * @return 构造器
+     */
+    public Builder optional(String name, ArgumentType type) {
+      return optional(name, type, null);
+    }
+
+    /**
+     * 声明一个可选的参数
+     * @param name 参数名称
+     * @param type 参数类型
+     * @param defaultValue 缺省时的默认值
+     * @return 构造器
+     */
+    public Builder optional(String name, ArgumentType type, Object defaultValue) {
+      arguments.add(new Argument(name, type, false, defaultValue));
+      return this;
+    }
+
+    /**
+     * 声明结果类型
+     * @param resultShape 结果类型
+     * @return 构造器
+     */
+    public Builder returns(ResultShape resultShape) {
+      this.resultShape = resultShape;
+      return this;
+    }
+
+    /**
+     * 使用处理程序创建方法注册项
+     * @param handler 处理程序
+     * @return 方法注册项
+     */
+    public MethodSpec handledBy(MethodHandler handler) {
+      return new MethodSpec(method, arguments.build(), resultShape, handler);
+    }
+  }
+}
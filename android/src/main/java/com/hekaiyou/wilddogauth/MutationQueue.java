@@ -0,0 +1,705 @@
+package com.hekaiyou.wilddogauth;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离线时的用户资料和帐号修改的预写队列
+ *
+ * 修改在网络失败后追加到应用私有存储中的加密日志，日志同步到磁盘后在本地确认，
+ * 之后按顺序重放。同一个用户对同一个方法的连续修改在发送前合并为最后一次。
+ * 追加由单个写入任务批量完成，一批记录只同步一次磁盘。需要Android 6.0
+ */
+class MutationQueue {
+  /**
+   * 把队列中的修改发送给后端
+   */
+  interface Replayer {
+    /**
+     * 获取当前用户的ID
+     * @return 当前用户的ID，未登录时为空值
+     */
+    String currentUid();
+
+    /**
+     * 发送一个修改
+     * @param mutation 修改
+     * @param callback 完成回调
+     */
+    void replay(Mutation mutation, AuthBackend.Callback<Void> callback);
+  }
+
+  // 声明私有、静态、不可变的日志标签
+  private static final String TAG = "wilddog_auth";
+  // 声明私有、静态、不可变的日志文件名
+  private static final String FILE_NAME = "wilddog_auth.mutations";
+  // 声明私有、静态、不可变的密钥别名
+  private static final String KEY_ALIAS = "wilddog_auth.mutations";
+  // 声明私有、静态、不可变的日志格式版本，作为每条记录的附加认证数据
+  private static final byte FORMAT_VERSION = 1;
+  // 声明私有、静态、不可变的修改记录类型
+  private static final byte RECORD_MUTATION = 1;
+  // 声明私有、静态、不可变的完成记录类型，修改已发送、已被合并或已丢弃
+  private static final byte RECORD_DONE = 2;
+  // 声明私有、静态、不可变的日志文件的最大字节数，更大的文件视为损坏
+  private static final int MAX_FILE_BYTES = 1024 * 1024;
+  // 声明私有、静态、不可变的触发压缩的日志记录数
+  private static final int COMPACT_RECORDS = 256;
+  // 声明私有、静态、不可变的最小重放退避毫秒数
+  private static final long MIN_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(2);
+  // 声明私有、静态、不可变的最大重放退避毫秒数
+  private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  // 声明私有、不可变的日志文件，不支持保存日志时为空值
+  private final File file;
+  // 声明私有、不可变的AndroidKeyStore加密
+  private final KeystoreCipher cipher;
+  // 声明私有、不可变的插件线程调度，写入在工作线程中进行，重放在主线程中进行
+  private final DispatchExecutors executors;
+  // 声明私有、不可变的修改的发送方
+  private final Replayer replayer;
+  // 声明私有、不可变的待发送的修改，按序号排列
+  private final Map<Long, Mutation> pending = new LinkedHashMap<>();
+  // 声明私有、不可变的待写入的记录
+  private final List<byte[]> outbox = new ArrayList<>();
+  // 声明私有、不可变的待写入记录同步后需要确认的调用
+  private final List<Ack> acks = new ArrayList<>();
+  // 声明私有、不可变的重放任务，在主线程中执行
+  private final Runnable replayTask = new Runnable() {
+    @Override
+    public void run() {
+      replayNext();
+    }
+  };
+
+  // 声明私有的是否使用队列，已有日志文件时视为已开启
+  private volatile boolean enabled;
+  // 声明私有的日志是否已读取
+  private boolean loaded;
+  // 声明私有的写入任务是否在运行
+  private boolean writing;
+  // 声明私有的下一个修改的序号
+  private long nextSequence = 1;
+  // 声明私有的日志文件中的记录数
+  private int fileRecords;
+  // 声明私有的正在发送的修改，没有时为空值
+  private Mutation inFlight;
+  // 声明私有的当前的重放退避毫秒数
+  private long backoffMillis = MIN_BACKOFF_MILLIS;
+  // 声明私有的下一次重放的时间，没有安排重放时为0
+  private long nextReplayAtMillis;
+  // 声明私有的已发送的修改数
+  private long replayed;
+  // 声明私有的已合并的修改数
+  private long collapsed;
+  // 声明私有的被后端拒绝或用户已改变而丢弃的修改数
+  private long dropped;
+  // 声明私有的最近一次被丢弃的修改的错误，没有时为空值
+  private ImmutableMap<String, Object> lastError;
+
+  /**
+   * 默认的构造方法
+   * @param context 应用上下文，可以为空值
+   * @param executors 插件线程调度
+   * @param replayer 修改的发送方
+   */
+  MutationQueue(Context context, DispatchExecutors executors, Replayer replayer) {
+    // 只在有上下文且支持AndroidKeyStore对称密钥时保存日志，日志不参与应用备份
+    this(context != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+            ? new File(context.getNoBackupFilesDir(), FILE_NAME) : null,
+            new KeystoreCipher(KEY_ALIAS), executors, replayer);
+  }
+
+  /**
+   * 指定日志文件和加密的构造方法
+   * @param file 日志文件，不支持保存日志时为空值
+   * @param cipher 日志记录的加密
+   * @param executors 插件线程调度
+   * @param replayer 修改的发送方
+   */
+  MutationQueue(File file, KeystoreCipher cipher, DispatchExecutors executors, Replayer replayer) {
+    this.file = file;
+    this.cipher = cipher;
+    this.executors = executors;
+    this.replayer = replayer;
+    this.enabled = file != null && file.exists();
+  }
+
+  /**
+   * 是否使用队列
+   * @return 已开启且支持保存日志时返回true
+   */
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * 开启或关闭队列，开启时读取已有的日志并开始重放，关闭时删除日志并丢弃未发送的修改，
+   * 需要在工作线程中调用
+   * @param enabled 为true时开启
+   */
+  void setEnabled(boolean enabled) {
+    synchronized (this) {
+      this.enabled = enabled && file != null;
+      if (!this.enabled) {
+        pending.clear();
+        outbox.clear();
+        fileRecords = 0;
+        loaded = false;
+        executors.cancelOnMain(replayTask);
+        nextReplayAtMillis = 0;
+        if (file != null && file.exists() && !file.delete()) {
+          Log.w(TAG, "Cannot delete mutation log.");
+        }
+        return;
+      }
+    }
+    load();
+    replay();
+  }
+
+  /**
+   * 读取已有的日志，只读取一次，需要在工作线程中调用。
+   * 不完整的最后一条记录被截掉，已完成的记录在读取后压缩掉
+   */
+  synchronized void load() {
+    if (!enabled || loaded) {
+      return;
+    }
+    loaded = true;
+    if (!file.exists()) {
+      return;
+    }
+    // 声明定义完整记录的结束位置和记录数
+    long validLength = 0;
+    int records = 0;
+    try {
+      RandomAccessFile input = new RandomAccessFile(file, "rw");
+      try {
+        long length = input.length();
+        if (length > MAX_FILE_BYTES) {
+          throw new IOException("Mutation log is too large.");
+        }
+        // 一次读取整个文件
+        byte[] data = new byte[(int) length];
+        input.readFully(data);
+        // 每条记录为：密封数据长度、密封数据
+        int offset = 0;
+        while (offset + 4 <= data.length) {
+          int size = ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                  | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+          if (size <= 0 || offset + 4 + size > data.length) {
+            break;
+          }
+          applyRecord(cipher.open(data, offset + 4, size, new byte[] {FORMAT_VERSION}));
+          offset += 4 + size;
+          records++;
+        }
+        validLength = offset;
+        // 截掉进程中断时留下的不完整记录
+        if (validLength < length) {
+          Log.w(TAG, "Truncating " + (length - validLength) + " byte(s) of a torn mutation log record.");
+          input.setLength(validLength);
+        }
+      } finally {
+        input.close();
+      }
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      // 日志损坏或密钥已失效时丢弃日志，已确认的修改无法恢复
+      Log.w(TAG, "Discarding mutation log: " + e);
+      pending.clear();
+      if (!file.delete()) {
+        Log.w(TAG, "Cannot delete mutation log.");
+      }
+      return;
+    }
+    fileRecords = records;
+    // 有已完成的记录时压缩日志
+    if (records > pending.size()) {
+      compact();
+    }
+  }
+
+  /**
+   * 同一个用户是否有待发送的修改，新的修改需要排在它们后面以保持顺序
+   * @param uid 用户ID
+   * @return 有待发送的修改时返回true
+   */
+  synchronized boolean hasPending(String uid) {
+    for (Mutation mutation : pending.values()) {
+      if (mutation.uid.equals(uid)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 把修改追加到日志，日志同步到磁盘后以成功返回给客户端，之后安排重放。
+   * 同一个用户对同一个方法尚未发送的修改被这个修改替换
+   * @param uid 用户ID
+   * @param method 方法名称
+   * @param arguments 方法参数，可以包含空值
+   * @param result 返回客户端的结果
+   * @param cause 直接调用失败的意外，写入日志失败时返回给客户端，可以为空值
+   */
+  void enqueue(String uid, String method, List<String> arguments, Result result, Exception cause) {
+    // 声明定义是否需要启动写入任务的变量
+    boolean startWriter;
+    synchronized (this) {
+      // 日志通常在插件创建时已在工作线程中读取，还未读取时先读取，避免序号冲突
+      if (!loaded) {
+        load();
+      }
+      // 合并同一个用户对同一个方法尚未发送的修改
+      for (Iterator<Mutation> it = pending.values().iterator(); it.hasNext(); ) {
+        Mutation previous = it.next();
+        if (previous != inFlight && previous.uid.equals(uid) && previous.method.equals(method)) {
+          it.remove();
+          outbox.add(doneRecord(previous.sequence));
+          collapsed++;
+        }
+      }
+      Mutation mutation = new Mutation(nextSequence++, uid, method, arguments);
+      pending.put(mutation.sequence, mutation);
+      outbox.add(mutationRecord(mutation));
+      acks.add(new Ack(mutation, result, cause));
+      startWriter = !writing;
+      writing = true;
+    }
+    if (startWriter) {
+      executors.execute(new Runnable() {
+        @Override
+        public void run() {
+          flush();
+        }
+      });
+    }
+  }
+
+  /**
+   * 立即开始重放，已在发送或没有待发送的修改时没有效果
+   */
+  void replay() {
+    synchronized (this) {
+      nextReplayAtMillis = 0;
+      backoffMillis = MIN_BACKOFF_MILLIS;
+    }
+    executors.cancelOnMain(replayTask);
+    executors.runOnMain(replayTask);
+  }
+
+  /**
+   * 获取队列的状态快照
+   * @return 包含队列深度和重放进度的词典
+   */
+  synchronized ImmutableMap<String, Object> snapshot() {
+    // 声明定义待发送的方法列表的构造器
+    ImmutableList.Builder<String> methods = ImmutableList.builder();
+    for (Mutation mutation : pending.values()) {
+      methods.add(mutation.method);
+    }
+    ImmutableMap.Builder<String, Object> builder = ImmutableMap.<String, Object>builder()
+            .put("enabled", enabled)
+            .put("depth", pending.size())
+            .put("pending", methods.build())
+            .put("replaying", inFlight != null)
+            .put("replayed", replayed)
+            .put("collapsed", collapsed)
+            .put("dropped", dropped)
+            .put("nextReplayInMillis", nextReplayAtMillis == 0
+                    ? 0 : Math.max(0, nextReplayAtMillis - System.currentTimeMillis()));
+    if (lastError != null) {
+      builder.put("lastError", lastError);
+    }
+    return builder.build();
+  }
+
+  /**
+   * 发送下一个修改，在主线程中执行
+   */
+  private void replayNext() {
+    // 声明定义要发送的修改
+    final Mutation mutation;
+    synchronized (this) {
+      nextReplayAtMillis = 0;
+      if (!enabled || !loaded || inFlight != null || pending.isEmpty()) {
+        return;
+      }
+      mutation = pending.values().iterator().next();
+      inFlight = mutation;
+    }
+    // 声明定义当前用户的ID
+    String uid = replayer.currentUid();
+    // 未登录时等待用户登录后再重放
+    if (uid == null) {
+      synchronized (this) {
+        inFlight = null;
+      }
+      return;
+    }
+    // 修改属于其他用户时丢弃
+    if (!uid.equals(mutation.uid)) {
+      finish(mutation, AuthException.USER_MISMATCH, "The mutation belongs to another user.");
+      executors.runOnMain(replayTask);
+      return;
+    }
+    replayer.replay(mutation, new AuthBackend.Callback<Void>() {
+      @Override
+      public void onSuccess(Void value) {
+        finish(mutation, null, null);
+        executors.runOnMain(replayTask);
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        // 仍然离线时按退避时间稍后重放
+        if (AuthException.NETWORK_REQUEST_FAILED.equals(AuthErrors.codeOf(e))) {
+          long delayMillis;
+          synchronized (MutationQueue.this) {
+            inFlight = null;
+            delayMillis = backoffMillis;
+            backoffMillis = Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+            nextReplayAtMillis = System.currentTimeMillis() + delayMillis;
+          }
+          executors.runOnMainDelayed(replayTask, delayMillis);
+          return;
+        }
+        // 后端拒绝的修改被丢弃，继续发送下一个
+        finish(mutation, AuthErrors.codeOf(e), e.getMessage());
+        executors.runOnMain(replayTask);
+      }
+    });
+  }
+
+  /**
+   * 结束一个修改，追加完成记录
+   * @param mutation 修改
+   * @param code 丢弃时的错误代码，发送成功时为空值
+   * @param message 丢弃时的错误信息
+   */
+  private void finish(Mutation mutation, String code, String message) {
+    // 声明定义是否需要启动写入任务的变量
+    boolean startWriter;
+    synchronized (this) {
+      inFlight = null;
+      // 队列已关闭时不再写入
+      if (pending.remove(mutation.sequence) == null) {
+        return;
+      }
+      if (code == null) {
+        replayed++;
+        backoffMillis = MIN_BACKOFF_MILLIS;
+      } else {
+        dropped++;
+        Log.w(TAG, "Dropped queued " + mutation.method + ": " + code);
+        lastError = ImmutableMap.<String, Object>of(
+                "method", mutation.method,
+                "code", code,
+                "message", message != null ? message : "");
+      }
+      outbox.add(doneRecord(mutation.sequence));
+      startWriter = !writing;
+      writing = true;
+    }
+    if (startWriter) {
+      executors.execute(new Runnable() {
+        @Override
+        public void run() {
+          flush();
+        }
+      });
+    }
+  }
+
+  /**
+   * 写入任务，一次取出所有待写入的记录，追加后只同步一次磁盘，直到没有待写入的记录
+   */
+  private void flush() {
+    while (true) {
+      // 声明定义这一批的记录和确认
+      List<byte[]> records;
+      List<Ack> batchAcks;
+      // 声明定义队列是否已清空
+      boolean empty;
+      synchronized (this) {
+        if (outbox.isEmpty() || !enabled) {
+          outbox.clear();
+          writing = false;
+          // 队列已关闭时没有写入的调用仍需确认
+          batchAcks = new ArrayList<>(acks);
+          acks.clear();
+          if (!batchAcks.isEmpty()) {
+            confirm(batchAcks, false);
+          }
+          return;
+        }
+        records = new ArrayList<>(outbox);
+        outbox.clear();
+        batchAcks = new ArrayList<>(acks);
+        acks.clear();
+        empty = pending.isEmpty();
+      }
+      // 声明定义写入是否成功
+      boolean durable = append(records, empty);
+      confirm(batchAcks, durable);
+      // 写入失败的修改不会重放
+      if (!durable) {
+        synchronized (this) {
+          for (Ack ack : batchAcks) {
+            pending.remove(ack.mutation.sequence);
+          }
+        }
+      } else if (!batchAcks.isEmpty()) {
+        // 新的修改已保存，按退避时间安排重放
+        scheduleReplay();
+      }
+    }
+  }
+
+  /**
+   * 追加一批记录并同步磁盘，队列已清空时删除日志，记录过多时压缩日志，需要在写入任务中调用
+   * @param records 记录的明文
+   * @param empty 队列是否已清空
+   * @return 记录已同步到磁盘时返回true
+   */
+  private boolean append(List<byte[]> records, boolean empty) {
+    // 所有修改都已完成时不需要保留日志
+    if (empty) {
+      synchronized (this) {
+        if (pending.isEmpty() && outbox.isEmpty()) {
+          fileRecords = 0;
+          if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Cannot delete mutation log.");
+          }
+          return true;
+        }
+      }
+    }
+    try {
+      FileOutputStream output = new FileOutputStream(file, true);
+      try {
+        DataOutputStream data = new DataOutputStream(output);
+        for (byte[] record : records) {
+          byte[] sealed = cipher.seal(record, new byte[] {FORMAT_VERSION});
+          data.writeInt(sealed.length);
+          data.write(sealed);
+        }
+        data.flush();
+        // 一批记录只同步一次磁盘
+        output.getFD().sync();
+      } finally {
+        output.close();
+      }
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      Log.w(TAG, "Cannot append to mutation log: " + e);
+      return false;
+    }
+    synchronized (this) {
+      fileRecords += records.size();
+      if (fileRecords > COMPACT_RECORDS && fileRecords > pending.size() * 2) {
+        compact();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 只用待发送的修改重写日志，调用时需要持有锁
+   */
+  private void compact() {
+    try {
+      // 先写入临时文件再替换，避免进程中断时丢失日志
+      File temp = new File(file.getPath() + ".tmp");
+      FileOutputStream output = new FileOutputStream(temp);
+      try {
+        DataOutputStream data = new DataOutputStream(output);
+        for (Mutation mutation : pending.values()) {
+          byte[] sealed = cipher.seal(mutationRecord(mutation), new byte[] {FORMAT_VERSION});
+          data.writeInt(sealed.length);
+          data.write(sealed);
+        }
+        data.flush();
+        output.getFD().sync();
+      } finally {
+        output.close();
+      }
+      if (!temp.renameTo(file)) {
+        throw new IOException("Cannot replace mutation log.");
+      }
+      fileRecords = pending.size();
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      Log.w(TAG, "Cannot compact mutation log: " + e);
+    }
+  }
+
+  /**
+   * 按退避时间安排重放，已在发送或已安排时没有效果
+   */
+  private void scheduleReplay() {
+    // 声明定义退避毫秒数
+    long delayMillis;
+    synchronized (this) {
+      if (inFlight != null || nextReplayAtMillis != 0 || pending.isEmpty()) {
+        return;
+      }
+      delayMillis = backoffMillis;
+      nextReplayAtMillis = System.currentTimeMillis() + delayMillis;
+    }
+    executors.runOnMainDelayed(replayTask, delayMillis);
+  }
+
+  /**
+   * 在主线程中确认一批调用
+   * @param batch 调用的确认
+   * @param durable 修改是否已保存
+   */
+  private void confirm(final List<Ack> batch, final boolean durable) {
+    executors.runOnMain(new Runnable() {
+      @Override
+      public void run() {
+        for (Ack ack : batch) {
+          if (durable) {
+            // 修改已保存，在本地确认
+            ack.result.success(null);
+          } else {
+            // 无法保存时返回直接调用的失败
+            AuthErrors.reply(ack.result, ack.cause != null ? ack.cause
+                    : new AuthException(AuthException.UNKNOWN, "Cannot queue " + ack.mutation.method + "."));
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * 应用日志中的一条记录，调用时需要持有锁
+   * @param plain 记录的明文
+   * @throws IOException 记录不完整时
+   */
+  private void applyRecord(byte[] plain) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(plain));
+    byte type = input.readByte();
+    long sequence = input.readLong();
+    nextSequence = Math.max(nextSequence, sequence + 1);
+    if (type == RECORD_DONE) {
+      pending.remove(sequence);
+      return;
+    }
+    if (type != RECORD_MUTATION) {
+      throw new IOException("Unknown mutation log record " + type + ".");
+    }
+    String uid = input.readUTF();
+    String method = input.readUTF();
+    int count = input.readUnsignedByte();
+    String[] arguments = new String[count];
+    for (int i = 0; i < count; i++) {
+      arguments[i] = input.readBoolean() ? input.readUTF() : null;
+    }
+    pending.put(sequence, new Mutation(sequence, uid, method, Arrays.asList(arguments)));
+  }
+
+  /**
+   * 编码修改记录
+   * @param mutation 修改
+   * @return 记录的明文
+   */
+  private static byte[] mutationRecord(Mutation mutation) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+      DataOutputStream output = new DataOutputStream(bytes);
+      output.writeByte(RECORD_MUTATION);
+      output.writeLong(mutation.sequence);
+      output.writeUTF(mutation.uid);
+      output.writeUTF(mutation.method);
+      output.writeByte(mutation.arguments.size());
+      for (String argument : mutation.arguments) {
+        output.writeBoolean(argument != null);
+        if (argument != null) {
+          output.writeUTF(argument);
+        }
+      }
+      output.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      // 写入内存不会失败
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * 编码完成记录
+   * @param sequence 修改的序号
+   * @return 记录的明文
+   */
+  private static byte[] doneRecord(long sequence) {
+    byte[] record = new byte[9];
+    record[0] = RECORD_DONE;
+    for (int i = 0; i < 8; i++) {
+      record[1 + i] = (byte) (sequence >>> (56 - 8 * i));
+    }
+    return record;
+  }
+
+  /**
+   * 队列中的一个修改
+   */
+  static final class Mutation {
+    // 声明不可变的序号
+    final long sequence;
+    // 声明不可变的用户ID
+    final String uid;
+    // 声明不可变的方法名称
+    final String method;
+    // 声明不可变的方法参数，可以包含空值
+    final List<String> arguments;
+
+    Mutation(long sequence, String uid, String method, List<String> arguments) {
+      this.sequence = sequence;
+      this.uid = uid;
+      this.method = method;
+      this.arguments = Collections.unmodifiableList(new ArrayList<>(arguments));
+    }
+  }
+
+  /**
+   * 修改保存后需要确认的调用
+   */
+  private static final class Ack {
+    // 声明私有、不可变的修改
+    private final Mutation mutation;
+    // 声明私有、不可变的返回客户端的结果
+    private final Result result;
+    // 声明私有、不可变的直接调用失败的意外，可以为空值
+    private final Exception cause;
+
+    Ack(Mutation mutation, Result result, Exception cause) {
+      this.mutation = mutation;
+      this.result = result;
+      this.cause = cause;
+    }
+  }
+}
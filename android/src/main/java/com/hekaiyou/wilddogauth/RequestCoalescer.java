@@ -0,0 +1,166 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** 合并相同的进行中方法调用，让方法名称和参数都相同的调用共享同一个SDK任务 */
+class RequestCoalescer {
+  // 声明私有、静态、不可变的可合并方法集合，只包含读取和幂等的方法
+  // 匿名登录没有参数，连续点击时合并为一次，不会创建两个匿名帐号；
+  // 创建用户、修改资料、删除、发送短信或邮件等方法每次调用都是独立的用户操作，不合并；
+  // 获取当前用户从快照同步返回，监听认证状态的方法每次调用都需要独立的句柄，登出方法是同步完成的，也不合并
+  private static final ImmutableSet<String> COALESCED_METHODS = ImmutableSet.of(
+          "signInAnonymously",
+          "getIdToken",
+          "signInWithEmailAndPassword",
+          "signInWithPhoneAndPassword",
+          "reauthenticateEmail",
+          "reauthenticatePhone");
+
+  // 声明私有、不可变的进行中的调用，调用键对应等待结果的客户端回调列表
+  private final Map<CallKey, List<Result>> inFlight = new HashMap<>();
+
+  /**
+   * 开始一个方法调用，如果已有相同的调用正在进行，则加入其等待列表
+   * @param call 客户端传递的调用参数
+   * @param result 返回客户端的结果
+   * @return 应交给处理方法的结果回调，已加入进行中的调用时返回空值
+   */
+  Result begin(MethodCall call, Result result) {
+    // 不可合并的方法直接使用原结果回调
+    if (!COALESCED_METHODS.contains(call.method)) {
+      return result;
+    }
+    // 声明定义调用键变量
+    CallKey key = new CallKey(call.method, call.arguments);
+    // 声明定义这个调用的等待列表变量
+    List<Result> waiters;
+    synchronized (inFlight) {
+      // 获取进行中的调用的等待列表
+      waiters = inFlight.get(key);
+      // 是否已有相同的调用正在进行
+      if (waiters != null) {
+        // 加入等待列表，共享同一个调用的结果
+        waiters.add(result);
+        return null;
+      }
+      // 创建新的等待列表
+      waiters = new ArrayList<>();
+      waiters.add(result);
+      inFlight.put(key, waiters);
+    }
+    // 返回把结果分发给所有等待者的结果回调
+    return new SharedResult(key, waiters);
+  }
+
+  /**
+   * 移除调用自己的等待列表，之后相同的调用会开始新的SDK任务
+   * @param key 调用键
+   * @param waiters 这个调用的等待列表
+   */
+  private void complete(CallKey key, List<Result> waiters) {
+    synchronized (inFlight) {
+      // 只移除自己的等待列表，不影响之后开始的相同调用
+      if (inFlight.get(key) == waiters) {
+        inFlight.remove(key);
+      }
+    }
+  }
+
+  /**
+   * 把同一个结果分发给所有等待者的结果回调，只有第一次返回有效
+   */
+  private class SharedResult implements Result {
+    // 声明私有、不可变的调用键
+    private final CallKey key;
+    // 声明私有、不可变的这个调用的等待列表，由inFlight保护
+    private final List<Result> waiters;
+    // 声明私有、不可变的是否已返回结果
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    SharedResult(CallKey key, List<Result> waiters) {
+      this.key = key;
+      this.waiters = waiters;
+    }
+
+    /**
+     * 第一次返回时移除等待列表，并取出其中的等待者
+     * @return 等待结果的客户端回调列表，已返回过结果时为空列表
+     */
+    private List<Result> drain() {
+      if (!completed.compareAndSet(false, true)) {
+        return Collections.emptyList();
+      }
+      complete(key, waiters);
+      synchronized (inFlight) {
+        return new ArrayList<>(waiters);
+      }
+    }
+
+    @Override
+    public void success(Object value) {
+      // 返回结果给所有等待的Flutter客户端
+      for (Result waiter : drain()) {
+        waiter.success(value);
+      }
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      // 返回错误信息给所有等待的客户端
+      for (Result waiter : drain()) {
+        waiter.error(errorCode, errorMessage, errorDetails);
+      }
+    }
+
+    @Override
+    public void notImplemented() {
+      // 返回未实现方法的提示给所有等待的客户端
+      for (Result waiter : drain()) {
+        waiter.notImplemented();
+      }
+    }
+  }
+
+  /**
+   * 由方法名称和参数组成的调用键
+   */
+  private static final class CallKey {
+    // 声明不可变的方法名称
+    final String method;
+    // 声明不可变的方法参数
+    final Object arguments;
+
+    CallKey(String method, Object arguments) {
+      this.method = method;
+      this.arguments = arguments;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CallKey)) {
+        return false;
+      }
+      CallKey other = (CallKey) o;
+      return method.equals(other.method) && Objects.equal(arguments, other.arguments);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(method, arguments);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package com.hekaiyou.wilddogauth;
+
+/**
+ * 方法成功时返回给客户端的结果类型
+ */
+public enum ResultShape {
+  /** 不返回结果，即空值 */
+  NONE,
+  /** 用户词典，未登录时为空值 */
+  USER,
+  /** 字符串 */
+  STRING,
+  /** 布尔值 */
+  BOOLEAN,
+  /** 整数 */
+  INTEGER,
+  /** 词典 */
+  MAP,
+  /** 列表 */
+  LIST
+}
@@ -0,0 +1,178 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 幂等操作的重试策略，在暂时性的后端失败后按指数退避和去相关抖动重试
+ *
+ * 只有网络失败和服务端限流会重试，每次调用有总的截止时间，
+ * 下一次重试会超过截止时间时直接返回最后一次失败。非幂等的操作默认不重试
+ */
+class RetryPolicy {
+  /**
+   * 一次可以重复执行的后端操作
+   * @param <T> 操作结果的类型
+   */
+  interface Attempt<T> {
+    /**
+     * 执行一次操作
+     * @param callback 这一次执行的完成回调
+     */
+    void run(AuthBackend.Callback<T> callback);
+  }
+
+  // 声明私有、静态、不可变的默认重试的方法，创建用户等非幂等的方法不在其中
+  private static final ImmutableSet<String> DEFAULT_METHODS = ImmutableSet.of(
+          "getIdToken",
+          "sendEmailVerification",
+          "reauthenticateEmail",
+          "reauthenticatePhone");
+
+  // 声明私有、不可变的插件线程调度，重试在主线程中延迟执行
+  private final DispatchExecutors executors;
+  // 声明私有、不可变的按方法统计的调用次数，记录重试次数
+  private final MethodMetrics metrics;
+  // 声明私有、不可变的抖动的随机数生成器
+  private final Random random = new Random();
+
+  // 声明私有的重试的方法
+  private volatile ImmutableSet<String> methods = DEFAULT_METHODS;
+  // 声明私有的每次调用最多执行的次数，包括第一次执行
+  private volatile int maxAttempts = 4;
+  // 声明私有的最小退避毫秒数
+  private volatile long baseDelayMillis = 200;
+  // 声明私有的最大退避毫秒数
+  private volatile long maxDelayMillis = TimeUnit.SECONDS.toMillis(5);
+  // 声明私有的每次调用从第一次执行开始的截止毫秒数
+  private volatile long deadlineMillis = TimeUnit.SECONDS.toMillis(15);
+
+  /**
+   * 默认的构造方法
+   * @param executors 插件线程调度
+   * @param metrics 按方法统计的调用次数
+   */
+  RetryPolicy(DispatchExecutors executors, MethodMetrics metrics) {
+    this.executors = executors;
+    this.metrics = metrics;
+  }
+
+  /**
+   * 修改重试参数
+   * @param options 参数词典，可以包含maxAttempts、baseDelayMillis、maxDelayMillis、deadlineMillis
+   *                和methods（重试的方法名称列表），未包含的参数保持不变
+   */
+  void configure(Map<String, Object> options) {
+    if (options.get("maxAttempts") instanceof Number) {
+      maxAttempts = Math.max(1, ((Number) options.get("maxAttempts")).intValue());
+    }
+    if (options.get("baseDelayMillis") instanceof Number) {
+      baseDelayMillis = Math.max(1, ((Number) options.get("baseDelayMillis")).longValue());
+    }
+    if (options.get("maxDelayMillis") instanceof Number) {
+      maxDelayMillis = Math.max(1, ((Number) options.get("maxDelayMillis")).longValue());
+    }
+    if (options.get("deadlineMillis") instanceof Number) {
+      deadlineMillis = Math.max(0, ((Number) options.get("deadlineMillis")).longValue());
+    }
+    if (options.get("methods") instanceof List) {
+      // 声明定义重试的方法集合的构造器
+      ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+      for (Object method : (List<?>) options.get("methods")) {
+        builder.add(String.valueOf(method));
+      }
+      methods = builder.build();
+    }
+  }
+
+  /**
+   * 执行操作，方法需要重试时在暂时性失败后重试
+   * @param method 方法名称
+   * @param attempt 可以重复执行的操作
+   * @param callback 最终结果的完成回调
+   * @param <T> 操作结果的类型
+   */
+  <T> void execute(String method, Attempt<T> attempt, AuthBackend.Callback<T> callback) {
+    // 不重试的方法直接执行，不分配对象
+    if (!methods.contains(method)) {
+      attempt.run(callback);
+      return;
+    }
+    new RetryingCallback<>(method, attempt, callback).run();
+  }
+
+  /**
+   * 意外是否是暂时性的失败
+   * @param e 操作失败的意外
+   * @return 网络失败或服务端限流时返回true
+   */
+  static boolean isRetryable(Exception e) {
+    // 声明定义错误代码变量
+    String code = AuthErrors.codeOf(e);
+    return AuthException.NETWORK_REQUEST_FAILED.equals(code)
+            || AuthException.TOO_MANY_REQUESTS.equals(code);
+  }
+
+  /**
+   * 一次调用的重试状态，作为每一次执行的完成回调
+   * @param <T> 操作结果的类型
+   */
+  private final class RetryingCallback<T> implements AuthBackend.Callback<T>, Runnable {
+    // 声明私有、不可变的方法名称
+    private final String method;
+    // 声明私有、不可变的可以重复执行的操作
+    private final Attempt<T> attempt;
+    // 声明私有、不可变的最终结果的完成回调
+    private final AuthBackend.Callback<T> callback;
+    // 声明私有、不可变的第一次执行的时间
+    private final long startNanos = System.nanoTime();
+    // 声明私有的已执行次数
+    private volatile int attempts = 0;
+    // 声明私有的上一次退避的毫秒数
+    private volatile long lastDelayMillis = baseDelayMillis;
+
+    RetryingCallback(String method, Attempt<T> attempt, AuthBackend.Callback<T> callback) {
+      this.method = method;
+      this.attempt = attempt;
+      this.callback = callback;
+    }
+
+    @Override
+    public void run() {
+      attempts++;
+      attempt.run(this);
+    }
+
+    @Override
+    public void onSuccess(T value) {
+      callback.onSuccess(value);
+    }
+
+    @Override
+    public void onFailure(Exception e) {
+      // 非暂时性失败或已达到最多执行次数时返回失败
+      if (attempts >= maxAttempts || !isRetryable(e)) {
+        callback.onFailure(e);
+        return;
+      }
+      // 去相关抖动：在最小退避和上一次退避的3倍之间随机取值，不超过最大退避
+      long upper = Math.max(baseDelayMillis + 1, lastDelayMillis * 3);
+      long delayMillis = Math.min(maxDelayMillis,
+              baseDelayMillis + (long) (random.nextDouble() * (upper - baseDelayMillis)));
+      // 下一次重试会超过截止时间时返回失败
+      long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      if (elapsedMillis + delayMillis > deadlineMillis) {
+        callback.onFailure(e);
+        return;
+      }
+      lastDelayMillis = delayMillis;
+      metrics.recordRetry(method);
+      // 在主线程中延迟重新执行，与第一次执行保持相同的线程
+      executors.runOnMainDelayed(this, delayMillis);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package com.hekaiyou.wilddogauth;
+
+import android.util.Log;
+import com.google.common.collect.ImmutableMap;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 发送短信和邮件的方法的限流和断路保护
+ *
+ * 调用先经过方法的断路器，再消耗方法和目标的令牌，被拒绝的调用不会到达SDK，
+ * 立即以ERROR_CIRCUIT_OPEN或ERROR_RATE_LIMITED返回，错误详情中包含建议的重试等待时间
+ */
+class SendGuard {
+  // 声明私有、静态、不可变的日志标签
+  private static final String TAG = "wilddog_auth";
+
+  // 声明私有、不可变的令牌桶限流器
+  private final TokenBucketLimiter limiter = new TokenBucketLimiter();
+  // 声明私有、不可变的断路器，受保护的方法名称对应断路器
+  private final ImmutableMap<String, CircuitBreaker> breakers;
+
+  /**
+   * 默认的构造方法
+   * @param methods 受保护的方法名称，每个方法有独立的断路器
+   */
+  SendGuard(String... methods) {
+    // 声明定义断路器词典的构造器
+    ImmutableMap.Builder<String, CircuitBreaker> builder = ImmutableMap.builder();
+    for (String method : methods) {
+      builder.put(method, new CircuitBreaker());
+    }
+    this.breakers = builder.build();
+  }
+
+  /**
+   * 修改限流和断路参数
+   * @param options 参数词典，可以包含methodBurst、methodRefillMillis、targetBurst、
+   *                targetRefillMillis、breakerFailureThreshold和breakerOpenMillis，未包含的参数保持不变
+   */
+  void configure(Map<String, Object> options) {
+    limiter.configure(intOption(options, "methodBurst"), intOption(options, "methodRefillMillis"),
+            intOption(options, "targetBurst"), intOption(options, "targetRefillMillis"));
+    for (CircuitBreaker breaker : breakers.values()) {
+      breaker.configure(intOption(options, "breakerFailureThreshold"), intOption(options, "breakerOpenMillis"));
+    }
+  }
+
+  /**
+   * 尝试放行一次发送调用，被拒绝时直接返回错误信息给客户端
+   * @param method 方法名称
+   * @param target 目标手机号或邮箱，没有目标时为空值
+   * @param result 返回客户端的结果
+   * @return 放行时返回true
+   */
+  boolean tryAcquire(String method, String target, Result result) {
+    // 断路器断开时快速失败，不消耗令牌
+    long wait = breakers.get(method).tryAcquire();
+    if (wait > 0) {
+      reject(result, AuthException.CIRCUIT_OPEN,
+              "Sending is paused after repeated backend failures.", wait);
+      return false;
+    }
+    // 同一目标不区分大小写和首尾空白
+    String key = target == null ? null : target.trim().toLowerCase(Locale.ROOT);
+    wait = limiter.tryAcquire(method, key);
+    if (wait > 0) {
+      reject(result, AuthException.RATE_LIMITED, "Too many send requests, try again later.", wait);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * 包装发送调用的完成回调，按结果更新方法的断路器
+   * @param method 方法名称
+   * @param callback 原完成回调
+   * @return 包装后的完成回调
+   */
+  AuthBackend.Callback<Void> watch(String method, final AuthBackend.Callback<Void> callback) {
+    // 声明定义方法的断路器变量
+    final CircuitBreaker breaker = breakers.get(method);
+    return new AuthBackend.Callback<Void>() {
+      @Override
+      public void onSuccess(Void value) {
+        breaker.onSuccess();
+        callback.onSuccess(value);
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        // 只有后端故障计入断路器，参数或帐户错误说明后端仍在正常响应
+        if (isBackendFailure(AuthErrors.codeOf(e))) {
+          breaker.onFailure();
+        } else {
+          breaker.onSuccess();
+        }
+        callback.onFailure(e);
+      }
+    };
+  }
+
+  /**
+   * 获取限流器和断路器的状态快照
+   * @return 包含limiter和breakers的词典
+   */
+  ImmutableMap<String, Object> snapshot() {
+    // 声明定义每个方法的断路器状态词典的构造器
+    ImmutableMap.Builder<String, Object> states = ImmutableMap.builder();
+    for (Map.Entry<String, CircuitBreaker> entry : breakers.entrySet()) {
+      states.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return ImmutableMap.<String, Object>of(
+            "limiter", limiter.snapshot(),
+            "breakers", states.build());
+  }
+
+  /**
+   * 错误代码是否表示后端故障
+   * @param code 错误代码
+   * @return 网络失败、服务端限流或未知错误时返回true
+   */
+  private static boolean isBackendFailure(String code) {
+    return AuthException.NETWORK_REQUEST_FAILED.equals(code)
+            || AuthException.TOO_MANY_REQUESTS.equals(code)
+            || AuthException.UNKNOWN.equals(code);
+  }
+
+  /**
+   * 返回被拒绝的错误信息给客户端
+   * @param result 返回客户端的结果
+   * @param code 错误代码
+   * @param message 错误信息
+   * @param retryAfterMillis 建议的重试等待毫秒数
+   */
+  private static void reject(Result result, String code, String message, long retryAfterMillis) {
+    Log.w(TAG, code + ": retry after " + retryAfterMillis + "ms");
+    result.error(code, message, ImmutableMap.<String, Object>of("retryAfterMillis", retryAfterMillis));
+  }
+
+  /**
+   * 读取整数参数
+   * @param options 参数词典
+   * @param name 参数名称
+   * @return 参数值，未包含或不是数字时为空值
+   */
+  private static Integer intOption(Map<String, Object> options, String name) {
+    Object value = options.get(name);
+    return value instanceof Number ? ((Number) value).intValue() : null;
+  }
+}
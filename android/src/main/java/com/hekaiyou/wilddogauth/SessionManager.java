@@ -0,0 +1,410 @@
+package com.hekaiyou.wilddogauth;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 多个帐号的会话缓存，用于在已登录过的帐号之间快速切换
+ *
+ * 会话包含用户词典和Wilddog Id令牌，按最近使用顺序保存在有界的LRU词典中，超出上限时淘汰最久未使用的会话，
+ * 并以SessionSnapshotStore相同的用户编码加密保存在应用私有存储中。野狗云SDK同时只有一个登录用户，
+ * 切换会话只改变插件向Flutter端呈现的当前用户和令牌，不会改变SDK的登录用户
+ */
+class SessionManager {
+  // 声明私有、静态、不可变的日志标签
+  private static final String TAG = "wilddog_auth";
+  // 声明私有、静态、不可变的会话文件名
+  private static final String FILE_NAME = "wilddog_auth.sessions";
+  // 声明私有、静态、不可变的密钥别名
+  private static final String KEY_ALIAS = "wilddog_auth.sessions";
+  // 声明私有、静态、不可变的会话文件格式版本，同时作为附加认证数据
+  private static final byte FORMAT_VERSION = 1;
+  // 声明私有、静态、不可变的会话文件的最大字节数，更大的文件视为损坏
+  private static final int MAX_FILE_BYTES = 512 * 1024;
+  // 声明私有、静态、不可变的会话数上限的最大值
+  private static final int MAX_SESSIONS_LIMIT = 64;
+
+  // 声明私有、不可变的会话文件，不支持保存会话时为空值
+  private final File file;
+  // 声明私有、不可变的AndroidKeyStore加密
+  private final KeystoreCipher cipher = new KeystoreCipher(KEY_ALIAS);
+  // 声明私有、不可变的会话，用户ID对应会话，按访问顺序排列，最久未使用的在最前
+  private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+  // 声明私有、不可变的写入会话文件的锁，编码和写入文件时不持有会话的锁
+  private final Object writeLock = new Object();
+
+  // 声明私有的会话数上限，0表示不缓存会话
+  private int maxSessions;
+  // 声明私有的切换到的会话的用户ID，为空值时呈现SDK的登录用户
+  private volatile String activeUid;
+  // 声明私有的内存中的会话是否已改变但还未写入文件
+  private boolean dirty = false;
+  // 声明私有的会话文件是否已读取
+  private boolean loaded = false;
+  // 声明私有的是否已由configure设置会话数上限
+  private boolean configured = false;
+
+  /**
+   * 默认的构造方法
+   * @param context 应用上下文，可以为空值
+   */
+  SessionManager(Context context) {
+    // 只在有上下文且支持AndroidKeyStore对称密钥时保存会话，会话不参与应用备份
+    this.file = context != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+            ? new File(context.getNoBackupFilesDir(), FILE_NAME) : null;
+    // 已有会话文件时视为已开启，读取文件后使用其中保存的上限
+    this.maxSessions = file != null && file.exists() ? 1 : 0;
+  }
+
+  /**
+   * 是否缓存会话
+   * @return 会话数上限大于0时返回true
+   */
+  synchronized boolean isEnabled() {
+    return maxSessions > 0;
+  }
+
+  /**
+   * 设置会话数上限，超出的最久未使用的会话被淘汰，0表示关闭并删除所有会话
+   * @param max 会话数上限
+   */
+  synchronized void setMaxSessions(int max) {
+    if (max < 0 || max > MAX_SESSIONS_LIMIT) {
+      throw new IllegalArgumentException("maxSessions must be between 0 and " + MAX_SESSIONS_LIMIT + ".");
+    }
+    maxSessions = max;
+    configured = true;
+    if (max == 0) {
+      sessions.clear();
+      activeUid = null;
+    } else {
+      trim();
+    }
+    dirty = true;
+  }
+
+  /**
+   * 读取已保存的会话，只读取一次，需要在工作线程中调用。内存中已有的会话比文件中的更新
+   */
+  void load() {
+    // 声明定义读取的会话数上限和会话列表
+    int savedMax;
+    List<Session> saved;
+    synchronized (this) {
+      if (loaded) {
+        return;
+      }
+      loaded = true;
+    }
+    if (file == null || !file.exists()) {
+      return;
+    }
+    try {
+      // 一次读取整个文件
+      byte[] data;
+      RandomAccessFile input = new RandomAccessFile(file, "r");
+      try {
+        long length = input.length();
+        if (length > MAX_FILE_BYTES) {
+          throw new IOException("Session file is too large.");
+        }
+        data = new byte[(int) length];
+        input.readFully(data);
+      } finally {
+        input.close();
+      }
+      // 文件格式为：版本、IV长度、IV、密文
+      if (data.length < 2 || data[0] != FORMAT_VERSION) {
+        throw new IOException("Unknown session file format.");
+      }
+      DataInputStream plain = new DataInputStream(new ByteArrayInputStream(
+              cipher.open(data, 1, data.length - 1, new byte[] {FORMAT_VERSION})));
+      savedMax = plain.readUnsignedByte();
+      int count = plain.readUnsignedByte();
+      saved = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        long lastUsedMillis = plain.readLong();
+        String idToken = SessionSnapshotStore.readString(plain);
+        saved.add(new Session(SessionSnapshotStore.readUser(plain), idToken, lastUsedMillis));
+      }
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      // 文件损坏或密钥已失效时删除会话文件
+      Log.w(TAG, "Discarding cached sessions: " + e);
+      delete();
+      return;
+    }
+    synchronized (this) {
+      // 读取期间已关闭时不恢复
+      if (maxSessions == 0) {
+        return;
+      }
+      // 还未设置上限时使用文件中保存的上限
+      if (!configured) {
+        maxSessions = Math.max(1, Math.min(savedMax, MAX_SESSIONS_LIMIT));
+      }
+      // 文件中的会话按最久未使用到最近使用排列，先放入旧的会话，再放回内存中更新的会话
+      LinkedHashMap<String, Session> newer = new LinkedHashMap<>(sessions);
+      sessions.clear();
+      for (Session session : saved) {
+        sessions.put(session.uid(), session);
+      }
+      for (Session session : newer.values()) {
+        sessions.put(session.uid(), session);
+      }
+      trim();
+    }
+  }
+
+  /**
+   * 记录SDK登录用户的会话，已有的会话移到最近使用的位置
+   * @param userMap 用户词典
+   * @param idToken Wilddog Id令牌，为空值时保留之前的令牌
+   */
+  synchronized void record(ImmutableMap<String, Object> userMap, String idToken) {
+    if (maxSessions == 0) {
+      return;
+    }
+    String uid = (String) userMap.get("uid");
+    Session previous = sessions.get(uid);
+    // 内容未改变时不重复写入文件
+    if (previous != null && previous.userMap.equals(userMap)
+            && (idToken == null || idToken.equals(previous.idToken))) {
+      return;
+    }
+    sessions.put(uid, new Session(userMap,
+            idToken != null ? idToken : previous != null ? previous.idToken : null, System.currentTimeMillis()));
+    trim();
+    dirty = true;
+  }
+
+  /**
+   * 更新已缓存的会话的令牌，不改变最近使用顺序
+   * @param uid 用户ID
+   * @param idToken Wilddog Id令牌
+   */
+  synchronized void updateToken(String uid, String idToken) {
+    // 按键遍历不改变访问顺序
+    for (Session session : sessions.values()) {
+      if (session.uid().equals(uid)) {
+        if (!idToken.equals(session.idToken)) {
+          session.idToken = idToken;
+          dirty = true;
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * 切换到已缓存的会话
+   * @param uid 用户ID
+   * @return 切换到的会话，没有缓存时返回空值
+   */
+  synchronized Session switchTo(String uid) {
+    Session session = sessions.get(uid);
+    if (session == null) {
+      return null;
+    }
+    session.lastUsedMillis = System.currentTimeMillis();
+    activeUid = uid;
+    dirty = true;
+    return session;
+  }
+
+  /**
+   * 获取切换到的会话
+   * @return 切换到的会话，呈现SDK的登录用户时返回空值
+   */
+  synchronized Session active() {
+    if (activeUid == null) {
+      return null;
+    }
+    // 按键遍历不改变访问顺序
+    for (Session session : sessions.values()) {
+      if (session.uid().equals(activeUid)) {
+        return session;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 获取切换到的会话的用户ID，不需要加锁
+   * @return 用户ID，呈现SDK的登录用户时返回空值
+   */
+  String activeUid() {
+    return activeUid;
+  }
+
+  /**
+   * 回到呈现SDK的登录用户，例如在SDK的登录用户改变或登出时
+   */
+  void clearActive() {
+    activeUid = null;
+  }
+
+  /**
+   * 移除已缓存的会话，切换到的会话被移除时回到呈现SDK的登录用户
+   * @param uid 用户ID
+   * @return 会话已缓存时返回true
+   */
+  synchronized boolean evict(String uid) {
+    if (sessions.remove(uid) == null) {
+      return false;
+    }
+    if (uid.equals(activeUid)) {
+      activeUid = null;
+    }
+    dirty = true;
+    return true;
+  }
+
+  /**
+   * 获取所有已缓存的会话，最近使用的在最前，不包含令牌
+   * @param sdkUid SDK的登录用户的用户ID，可以为空值
+   * @return 每个会话包含uid、user、lastUsedMillis、active和signedIn
+   */
+  synchronized ImmutableList<ImmutableMap<String, Object>> list(String sdkUid) {
+    // 声明定义呈现的用户ID，未切换时为SDK的登录用户
+    String presented = activeUid != null ? activeUid : sdkUid;
+    List<Session> ordered = new ArrayList<>(sessions.values());
+    ImmutableList.Builder<ImmutableMap<String, Object>> builder = ImmutableList.builder();
+    for (int i = ordered.size() - 1; i >= 0; i--) {
+      Session session = ordered.get(i);
+      builder.add(ImmutableMap.<String, Object>of(
+              "uid", session.uid(),
+              "user", session.userMap,
+              "lastUsedMillis", session.lastUsedMillis,
+              "active", session.uid().equals(presented),
+              "signedIn", session.uid().equals(sdkUid)));
+    }
+    return builder.build();
+  }
+
+  /**
+   * 把内存中的会话写入文件，未改变时不写入，关闭后删除文件，需要在工作线程中调用
+   */
+  void persist() {
+    synchronized (writeLock) {
+      // 声明定义会话数上限和会话快照
+      int max;
+      List<Session> snapshot;
+      synchronized (this) {
+        if (!dirty || file == null) {
+          return;
+        }
+        dirty = false;
+        max = maxSessions;
+        snapshot = new ArrayList<>(sessions.size());
+        for (Session session : sessions.values()) {
+          snapshot.add(session.copy());
+        }
+      }
+      if (max == 0 || snapshot.isEmpty()) {
+        delete();
+        return;
+      }
+      try {
+        // 按最久未使用到最近使用的顺序编码
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024 * snapshot.size());
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(max);
+        output.writeByte(snapshot.size());
+        for (Session session : snapshot) {
+          output.writeLong(session.lastUsedMillis);
+          SessionSnapshotStore.writeString(output, session.idToken);
+          SessionSnapshotStore.writeUser(output, session.userMap);
+        }
+        output.flush();
+        byte[] sealed = cipher.seal(bytes.toByteArray(), new byte[] {FORMAT_VERSION});
+        // 先写入临时文件再替换，避免进程中断时留下不完整的文件
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        try {
+          stream.write(FORMAT_VERSION);
+          stream.write(sealed);
+          stream.getFD().sync();
+        } finally {
+          stream.close();
+        }
+        if (!temp.renameTo(file)) {
+          throw new IOException("Cannot replace session file.");
+        }
+      } catch (IOException | GeneralSecurityException | RuntimeException e) {
+        Log.w(TAG, "Cannot save cached sessions: " + e);
+      }
+    }
+  }
+
+  /**
+   * 淘汰超出上限的最久未使用的会话，切换到的会话不被淘汰，调用时需要持有锁
+   */
+  private void trim() {
+    Iterator<Session> iterator = sessions.values().iterator();
+    while (sessions.size() > maxSessions && iterator.hasNext()) {
+      if (!iterator.next().uid().equals(activeUid)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * 删除会话文件
+   */
+  private void delete() {
+    if (file != null && file.exists() && !file.delete()) {
+      Log.w(TAG, "Cannot delete cached sessions.");
+    }
+  }
+
+  /**
+   * 已缓存的会话
+   */
+  static final class Session {
+    // 声明不可变的用户词典
+    final ImmutableMap<String, Object> userMap;
+    // 声明Wilddog Id令牌，可以为空值
+    volatile String idToken;
+    // 声明最近一次登录或切换的时间
+    volatile long lastUsedMillis;
+
+    Session(ImmutableMap<String, Object> userMap, String idToken, long lastUsedMillis) {
+      this.userMap = userMap;
+      this.idToken = idToken;
+      this.lastUsedMillis = lastUsedMillis;
+    }
+
+    /**
+     * 获取用户ID
+     * @return 用户ID
+     */
+    String uid() {
+      return (String) userMap.get("uid");
+    }
+
+    /**
+     * 复制会话，供在锁外编码
+     * @return 会话的副本
+     */
+    Session copy() {
+      return new Session(userMap, idToken, lastUsedMillis);
+    }
+  }
+}
@@ -0,0 +1,317 @@
+package com.hekaiyou.wilddogauth;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 保存在应用私有存储中的加密会话快照，供冷启动时立即返回上次的当前用户
+ *
+ * 快照包含用户词典和Wilddog Id令牌，以紧凑的二进制格式编码，使用AndroidKeyStore中的
+ * AES-GCM密钥加密。AndroidKeyStore的对称密钥需要Android 6.0，更低的版本上不保存快照
+ */
+class SessionSnapshotStore {
+  // 声明私有、静态、不可变的日志标签
+  private static final String TAG = "wilddog_auth";
+  // 声明私有、静态、不可变的快照文件名
+  private static final String FILE_NAME = "wilddog_auth.session";
+  // 声明私有、静态、不可变的密钥别名
+  private static final String KEY_ALIAS = "wilddog_auth.session";
+  // 声明私有、静态、不可变的快照格式版本，同时作为附加认证数据
+  private static final byte FORMAT_VERSION = 1;
+  // 声明私有、静态、不可变的快照文件的最大字节数，更大的文件视为损坏
+  private static final int MAX_FILE_BYTES = 64 * 1024;
+  // 声明私有、静态、不可变的用户信息字段，与用户词典的键一致
+  private static final String[] INFO_KEYS = {"providerId", "uid", "displayName", "photoUrl", "email", "phone"};
+  // 声明私有、静态、不可变的用户状态字段
+  private static final String[] FLAG_KEYS = {"isAnonymous", "isEmailVerified", "isPhoneVerified"};
+
+  // 声明私有、不可变的快照文件，不支持保存快照时为空值
+  private final File file;
+  // 声明私有、不可变的AndroidKeyStore加密
+  private final KeystoreCipher cipher = new KeystoreCipher(KEY_ALIAS);
+
+  // 声明私有的是否保存快照，已有快照文件时视为已开启
+  private volatile boolean enabled;
+  // 声明私有的上次写入的用户词典，内容未改变时不重复写入
+  private ImmutableMap<String, Object> lastUserMap;
+  // 声明私有的上次写入的令牌
+  private String lastIdToken;
+
+  /**
+   * 默认的构造方法
+   * @param context 应用上下文，可以为空值
+   */
+  SessionSnapshotStore(Context context) {
+    // 只在有上下文且支持AndroidKeyStore对称密钥时保存快照，快照不参与应用备份
+    this.file = context != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+            ? new File(context.getNoBackupFilesDir(), FILE_NAME) : null;
+    this.enabled = file != null && file.exists();
+  }
+
+  /**
+   * 是否保存快照
+   * @return 已开启且支持保存快照时返回true
+   */
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * 开启或关闭快照，关闭时删除已保存的快照，需要在工作线程中调用
+   * @param enabled 为true时开启
+   */
+  synchronized void setEnabled(boolean enabled) {
+    this.enabled = enabled && file != null;
+    if (!this.enabled) {
+      clear();
+    }
+  }
+
+  /**
+   * 读取已保存的快照，需要在工作线程中调用
+   * @return 快照，没有快照或快照无法解密时返回空值
+   */
+  synchronized Snapshot read() {
+    if (!enabled || !file.exists()) {
+      return null;
+    }
+    try {
+      // 一次读取整个文件
+      byte[] data;
+      RandomAccessFile input = new RandomAccessFile(file, "r");
+      try {
+        long length = input.length();
+        if (length > MAX_FILE_BYTES) {
+          throw new IOException("Session snapshot is too large.");
+        }
+        data = new byte[(int) length];
+        input.readFully(data);
+      } finally {
+        input.close();
+      }
+      // 文件格式为：版本、IV长度、IV、密文
+      if (data.length < 2 || data[0] != FORMAT_VERSION) {
+        throw new IOException("Unknown session snapshot format.");
+      }
+      byte[] plain = cipher.open(data, 1, data.length - 1, new byte[] {FORMAT_VERSION});
+      Snapshot snapshot = decode(plain);
+      lastUserMap = snapshot.userMap;
+      lastIdToken = snapshot.idToken;
+      return snapshot;
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      // 快照损坏或密钥已失效时删除快照
+      Log.w(TAG, "Discarding session snapshot: " + e);
+      clear();
+      return null;
+    }
+  }
+
+  /**
+   * 保存快照，内容未改变时不写入，需要在工作线程中调用
+   * @param userMap 当前用户词典，未登录时为空值并删除快照
+   * @param idToken 当前用户的Wilddog Id令牌，可以为空值
+   */
+  synchronized void write(ImmutableMap<String, Object> userMap, String idToken) {
+    if (!enabled) {
+      return;
+    }
+    // 未登录时不保留上次的用户
+    if (userMap == null) {
+      clear();
+      return;
+    }
+    if (userMap.equals(lastUserMap) && Objects.equal(idToken, lastIdToken)) {
+      return;
+    }
+    try {
+      // 加密编码后的快照
+      byte[] sealed = cipher.seal(encode(userMap, idToken), new byte[] {FORMAT_VERSION});
+      // 先写入临时文件再替换，避免进程中断时留下不完整的快照
+      File temp = new File(file.getPath() + ".tmp");
+      FileOutputStream output = new FileOutputStream(temp);
+      try {
+        output.write(FORMAT_VERSION);
+        output.write(sealed);
+        output.getFD().sync();
+      } finally {
+        output.close();
+      }
+      if (!temp.renameTo(file)) {
+        throw new IOException("Cannot replace session snapshot.");
+      }
+      lastUserMap = userMap;
+      lastIdToken = idToken;
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      Log.w(TAG, "Cannot save session snapshot: " + e);
+    }
+  }
+
+  /**
+   * 删除已保存的快照
+   */
+  private void clear() {
+    lastUserMap = null;
+    lastIdToken = null;
+    if (file != null && file.exists() && !file.delete()) {
+      Log.w(TAG, "Cannot delete session snapshot.");
+    }
+  }
+
+  /**
+   * 把用户词典和令牌编码为紧凑的二进制格式
+   * @param userMap 用户词典
+   * @param idToken Wilddog Id令牌，可以为空值
+   * @return 编码后的字节
+   * @throws IOException 不会发生
+   */
+  private static byte[] encode(ImmutableMap<String, Object> userMap, String idToken) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+    DataOutputStream output = new DataOutputStream(bytes);
+    output.writeLong(System.currentTimeMillis());
+    writeString(output, idToken);
+    writeUser(output, userMap);
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * 写入用户词典，SessionManager保存的多个会话使用相同的编码
+   * @param output 输出流
+   * @param userMap 用户词典
+   * @throws IOException 输出流写入失败时
+   */
+  static void writeUser(DataOutputStream output, Map<String, Object> userMap) throws IOException {
+    writeInfo(output, userMap);
+    for (String flag : FLAG_KEYS) {
+      output.writeBoolean(Boolean.TRUE.equals(userMap.get(flag)));
+    }
+    // 提供方数据
+    List<?> providerData = (List<?>) userMap.get("providerData");
+    int count = providerData != null ? providerData.size() : 0;
+    output.writeByte(count);
+    for (int i = 0; i < count; i++) {
+      writeInfo(output, (Map<?, ?>) providerData.get(i));
+    }
+  }
+
+  /**
+   * 从二进制格式解码快照，词典的键顺序与插件生成的用户词典一致
+   * @param data 编码后的字节
+   * @return 快照
+   * @throws IOException 数据不完整时
+   */
+  private static Snapshot decode(byte[] data) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+    long savedAtMillis = input.readLong();
+    String idToken = readString(input);
+    return new Snapshot(readUser(input), idToken, savedAtMillis);
+  }
+
+  /**
+   * 读取用户词典，词典的键顺序与插件生成的用户词典一致
+   * @param input 输入流
+   * @return 用户词典
+   * @throws IOException 数据不完整时
+   */
+  static ImmutableMap<String, Object> readUser(DataInputStream input) throws IOException {
+    ImmutableMap.Builder<String, Object> user = readInfo(input);
+    for (String flag : FLAG_KEYS) {
+      user.put(flag, input.readBoolean());
+    }
+    int count = input.readUnsignedByte();
+    ImmutableList.Builder<ImmutableMap<String, Object>> providerData = ImmutableList.builder();
+    for (int i = 0; i < count; i++) {
+      providerData.add(readInfo(input).build());
+    }
+    user.put("providerData", providerData.build());
+    return user.build();
+  }
+
+  /**
+   * 写入AuthUserInfo字段
+   * @param output 输出流
+   * @param info 用户信息词典
+   * @throws IOException 不会发生
+   */
+  private static void writeInfo(DataOutputStream output, Map<?, ?> info) throws IOException {
+    for (String key : INFO_KEYS) {
+      Object value = info.get(key);
+      writeString(output, value != null ? value.toString() : null);
+    }
+  }
+
+  /**
+   * 读取AuthUserInfo字段
+   * @param input 输入流
+   * @return 用户信息词典的构造器
+   * @throws IOException 数据不完整时
+   */
+  private static ImmutableMap.Builder<String, Object> readInfo(DataInputStream input) throws IOException {
+    // 与userInfoToMap一致，空值字段不放入词典
+    ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+    for (String key : INFO_KEYS) {
+      String value = readString(input);
+      if (value != null) {
+        builder.put(key, value);
+      }
+    }
+    return builder;
+  }
+
+  /**
+   * 写入可以为空值的字符串
+   * @param output 输出流
+   * @param value 字符串
+   * @throws IOException 不会发生
+   */
+  static void writeString(DataOutputStream output, String value) throws IOException {
+    output.writeBoolean(value != null);
+    if (value != null) {
+      output.writeUTF(value);
+    }
+  }
+
+  /**
+   * 读取可以为空值的字符串
+   * @param input 输入流
+   * @return 字符串
+   * @throws IOException 数据不完整时
+   */
+  static String readString(DataInputStream input) throws IOException {
+    return input.readBoolean() ? input.readUTF() : null;
+  }
+
+  /**
+   * 已保存的会话快照
+   */
+  static final class Snapshot {
+    // 声明不可变的用户词典
+    final ImmutableMap<String, Object> userMap;
+    // 声明不可变的Wilddog Id令牌，可以为空值
+    final String idToken;
+    // 声明不可变的保存时间
+    final long savedAtMillis;
+
+    Snapshot(ImmutableMap<String, Object> userMap, String idToken, long savedAtMillis) {
+      this.userMap = userMap;
+      this.idToken = idToken;
+      this.savedAtMillis = savedAtMillis;
+    }
+  }
+}
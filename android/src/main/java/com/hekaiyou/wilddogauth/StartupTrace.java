@@ -0,0 +1,19 @@
+package com.hekaiyou.wilddogauth;
+
+/**
+ * 插件启动阶段的耗时回调，宿主应用可以把它接入自己的启动跟踪
+ */
+public interface StartupTrace {
+  /** 插件注册，即registerWith */
+  String REGISTER = "wilddog_auth.register";
+  /** 身份认证后端和野狗云SDK的初始化 */
+  String BACKEND_INIT = "wilddog_auth.backendInit";
+
+  /**
+   * 一个启动阶段完成时调用，调用所在的线程即执行这个阶段的线程
+   * @param phase 阶段名称
+   * @param startNanos 开始时间，与System.nanoTime()一致
+   * @param durationNanos 耗时的纳秒数
+   */
+  void onPhaseCompleted(String phase, long startNanos, long durationNanos);
+}
@@ -0,0 +1,179 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按方法和按目标的令牌桶限流器
+ *
+ * 每次调用同时消耗方法的令牌和目标的令牌，两个桶都有令牌时才放行，
+ * 目标桶按最久未使用的顺序淘汰，避免为大量不同的目标无限增长
+ */
+class TokenBucketLimiter {
+  // 声明私有、静态、不可变的最多跟踪的目标数
+  private static final int MAX_TARGETS = 64;
+
+  // 声明私有、不可变的方法令牌桶，方法名称对应令牌桶
+  private final Map<String, Bucket> methodBuckets = new HashMap<>();
+  // 声明私有、不可变的目标令牌桶，目标对应令牌桶，按访问顺序淘汰最久未使用的目标
+  private final Map<String, Bucket> targetBuckets = new LinkedHashMap<String, Bucket>(MAX_TARGETS, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+      return size() > MAX_TARGETS;
+    }
+  };
+
+  // 声明私有的每个方法的令牌桶容量，即允许的突发调用次数
+  private int methodBurst = 5;
+  // 声明私有的每个方法恢复一个令牌的毫秒数
+  private long methodRefillMillis = TimeUnit.SECONDS.toMillis(2);
+  // 声明私有的每个目标的令牌桶容量
+  private int targetBurst = 2;
+  // 声明私有的每个目标恢复一个令牌的毫秒数
+  private long targetRefillMillis = TimeUnit.SECONDS.toMillis(30);
+
+  /**
+   * 修改限流参数，空值表示保持不变，修改后所有令牌桶重新开始计数
+   * @param methodBurst 每个方法的令牌桶容量
+   * @param methodRefillMillis 每个方法恢复一个令牌的毫秒数
+   * @param targetBurst 每个目标的令牌桶容量
+   * @param targetRefillMillis 每个目标恢复一个令牌的毫秒数
+   */
+  synchronized void configure(Integer methodBurst, Integer methodRefillMillis,
+                              Integer targetBurst, Integer targetRefillMillis) {
+    if (methodBurst != null) {
+      this.methodBurst = Math.max(1, methodBurst);
+    }
+    if (methodRefillMillis != null) {
+      this.methodRefillMillis = Math.max(1, methodRefillMillis);
+    }
+    if (targetBurst != null) {
+      this.targetBurst = Math.max(1, targetBurst);
+    }
+    if (targetRefillMillis != null) {
+      this.targetRefillMillis = Math.max(1, targetRefillMillis);
+    }
+    methodBuckets.clear();
+    targetBuckets.clear();
+  }
+
+  /**
+   * 尝试为一次调用消耗令牌
+   * @param method 方法名称
+   * @param target 目标手机号或邮箱，没有目标时为空值
+   * @return 放行时返回0，否则返回至少需要等待的毫秒数
+   */
+  long tryAcquire(String method, String target) {
+    return tryAcquire(method, target, System.nanoTime());
+  }
+
+  /**
+   * 按给定的当前时间尝试为一次调用消耗令牌
+   * @param method 方法名称
+   * @param target 目标手机号或邮箱，没有目标时为空值
+   * @param nowNanos 当前时间，与System.nanoTime()一致
+   * @return 放行时返回0，否则返回至少需要等待的毫秒数
+   */
+  synchronized long tryAcquire(String method, String target, long nowNanos) {
+    // 获取方法的令牌桶，第一次调用时创建满的令牌桶
+    Bucket methodBucket = methodBuckets.get(method);
+    if (methodBucket == null) {
+      methodBucket = new Bucket(methodBurst, nowNanos);
+      methodBuckets.put(method, methodBucket);
+    }
+    long wait = methodBucket.refill(nowNanos, methodBurst, methodRefillMillis);
+    // 获取目标的令牌桶
+    Bucket targetBucket = null;
+    if (target != null) {
+      targetBucket = targetBuckets.get(target);
+      if (targetBucket == null) {
+        targetBucket = new Bucket(targetBurst, nowNanos);
+        targetBuckets.put(target, targetBucket);
+      }
+      wait = Math.max(wait, targetBucket.refill(nowNanos, targetBurst, targetRefillMillis));
+    }
+    // 任一令牌桶为空时不消耗令牌
+    if (wait > 0) {
+      return wait;
+    }
+    methodBucket.tokens -= 1;
+    if (targetBucket != null) {
+      targetBucket.tokens -= 1;
+    }
+    return 0;
+  }
+
+  /**
+   * 获取限流器的状态快照，不包含具体的目标
+   * @return 包含限流参数、每个方法的剩余整数令牌和目标统计的词典
+   */
+  ImmutableMap<String, Object> snapshot() {
+    return snapshot(System.nanoTime());
+  }
+
+  /**
+   * 按给定的当前时间获取限流器的状态快照
+   * @param nowNanos 当前时间，与System.nanoTime()一致
+   * @return 包含限流参数、每个方法的剩余整数令牌和目标统计的词典
+   */
+  synchronized ImmutableMap<String, Object> snapshot(long nowNanos) {
+    // 声明定义每个方法的剩余令牌词典的构造器
+    ImmutableMap.Builder<String, Object> methods = ImmutableMap.builder();
+    for (Map.Entry<String, Bucket> entry : methodBuckets.entrySet()) {
+      long wait = entry.getValue().refill(nowNanos, methodBurst, methodRefillMillis);
+      methods.put(entry.getKey(), ImmutableMap.<String, Object>of(
+              "tokens", (int) entry.getValue().tokens,
+              "retryAfterMillis", wait));
+    }
+    // 统计目前被限流的目标数
+    int throttled = 0;
+    for (Bucket bucket : targetBuckets.values()) {
+      if (bucket.refill(nowNanos, targetBurst, targetRefillMillis) > 0) {
+        throttled++;
+      }
+    }
+    return ImmutableMap.<String, Object>builder()
+            .put("methodBurst", methodBurst)
+            .put("methodRefillMillis", methodRefillMillis)
+            .put("targetBurst", targetBurst)
+            .put("targetRefillMillis", targetRefillMillis)
+            .put("methods", methods.build())
+            .put("trackedTargets", targetBuckets.size())
+            .put("throttledTargets", throttled)
+            .build();
+  }
+
+  /**
+   * 令牌桶，按经过的时间连续恢复令牌
+   */
+  private static final class Bucket {
+    // 声明剩余的令牌数
+    double tokens;
+    // 声明上次恢复令牌的时间
+    long updatedNanos;
+
+    Bucket(int burst, long nowNanos) {
+      this.tokens = burst;
+      this.updatedNanos = nowNanos;
+    }
+
+    /**
+     * 按经过的时间恢复令牌
+     * @param nowNanos 当前时间
+     * @param burst 令牌桶容量
+     * @param refillMillis 恢复一个令牌的毫秒数
+     * @return 至少有一个令牌时返回0，否则返回恢复一个令牌还需的毫秒数
+     */
+    long refill(long nowNanos, int burst, long refillMillis) {
+      // 声明定义经过的毫秒数
+      double elapsedMillis = (nowNanos - updatedNanos) / 1e6;
+      tokens = Math.min(burst, tokens + elapsedMillis / refillMillis);
+      updatedNanos = nowNanos;
+      return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * refillMillis);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * 认证状态消息的增量编码器
+ *
+ * 记住上一次发送的用户词典和版本号，之后只发送改变的字段和被移除的字段，
+ * 第一次发送、用户登录登出或切换、以及Flutter端报告版本不连续后发送完整快照
+ */
+class UserDeltaEncoder {
+  // 声明静态、不可变的消息版本号的键
+  static final String VERSION = "version";
+  // 声明静态、不可变的增量消息所基于的版本号的键，完整快照不包含这个键
+  static final String BASE = "base";
+  // 声明静态、不可变的完整快照的用户词典的键
+  static final String USER = "user";
+  // 声明静态、不可变的增量消息中改变的字段的键
+  static final String CHANGED = "changed";
+  // 声明静态、不可变的增量消息中被移除的字段的键
+  static final String REMOVED = "removed";
+
+  // 声明私有的上一次发送的用户词典，未登录时为空值
+  private ImmutableMap<String, Object> last;
+  // 声明私有的上一次发送的版本号
+  private int version = 0;
+  // 声明私有的下一次是否需要发送完整快照
+  private boolean needsSnapshot = true;
+
+  /**
+   * 编码一次认证状态改变
+   * @param userMap 当前用户词典，未登录时为空值
+   * @return 完整快照或增量消息的字段，由调用方添加句柄
+   */
+  synchronized ImmutableMap<String, Object> encode(ImmutableMap<String, Object> userMap) {
+    // 声明定义上一次发送的用户词典
+    ImmutableMap<String, Object> previous = last;
+    last = userMap;
+    version++;
+    // 第一次发送、登录登出或切换用户时发送完整快照
+    if (needsSnapshot || previous == null || userMap == null
+            || !Objects.equal(previous.get("uid"), userMap.get("uid"))) {
+      needsSnapshot = false;
+      return fullSnapshot();
+    }
+    // 声明定义改变的字段和被移除的字段的构造器
+    ImmutableMap.Builder<String, Object> changed = ImmutableMap.builder();
+    ImmutableList.Builder<String> removed = ImmutableList.builder();
+    // 用户词典内容未改变时复用同一个实例，不需要逐个比较
+    if (previous != userMap) {
+      for (Map.Entry<String, Object> entry : userMap.entrySet()) {
+        if (!Objects.equal(entry.getValue(), previous.get(entry.getKey()))) {
+          changed.put(entry);
+        }
+      }
+      for (String key : previous.keySet()) {
+        if (!userMap.containsKey(key)) {
+          removed.add(key);
+        }
+      }
+    }
+    return ImmutableMap.<String, Object>of(
+            VERSION, version,
+            BASE, version - 1,
+            CHANGED, changed.build(),
+            REMOVED, removed.build());
+  }
+
+  /**
+   * 获取上一次发送的用户词典的完整快照，版本号不变，用于新句柄的初始状态和Flutter端报告版本不连续后重新同步
+   * @return 完整快照的字段，还没有编码过或已清除编码状态时返回空值
+   */
+  synchronized ImmutableMap<String, Object> snapshot() {
+    return needsSnapshot ? null : fullSnapshot();
+  }
+
+  /**
+   * 清除编码状态，下一次编码发送完整快照
+   */
+  synchronized void reset() {
+    needsSnapshot = true;
+  }
+
+  /**
+   * 生成完整快照的字段，调用时需要持有锁
+   * @return 包含版本号和用户词典的字段，未登录时不包含用户词典
+   */
+  private ImmutableMap<String, Object> fullSnapshot() {
+    return last == null
+            ? ImmutableMap.<String, Object>of(VERSION, version)
+            : ImmutableMap.<String, Object>of(VERSION, version, USER, last);
+  }
+}
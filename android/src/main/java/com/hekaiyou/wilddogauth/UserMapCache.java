@@ -0,0 +1,186 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** 按用户ID缓存已序列化的用户词典，用户内容未改变时复用同一个不可变集合 */
+class UserMapCache {
+  // 声明私有、静态、不可变的最大缓存用户数
+  private static final int MAX_ENTRIES = 16;
+  // 声明私有、静态、不可变的每个AuthUserInfo的字段数
+  private static final int INFO_FIELDS = 6;
+  // 声明私有、静态、不可变的AuthUser额外的字段数
+  private static final int USER_FIELDS = 3;
+
+  // 声明私有、不可变的缓存，用户ID对应缓存项，按访问顺序淘汰最久未使用的用户
+  private final Map<String, CachedUser> entries = new LinkedHashMap<String, CachedUser>(MAX_ENTRIES, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+  // 声明私有、不可变的缓存命中次数
+  private final AtomicLong hits = new AtomicLong();
+  // 声明私有、不可变的缓存未命中次数
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * 查找内容未改变的已缓存用户词典
+   * @param user AuthUser实例对象
+   * @return 已缓存的用户词典，未命中时返回空值
+   */
+  ImmutableMap<String, Object> get(AuthUser user) {
+    // 声明定义缓存项变量
+    CachedUser entry;
+    synchronized (entries) {
+      entry = entries.get(user.getUid());
+    }
+    // 缓存项是否存在且内容未改变
+    if (entry != null && entry.matches(user)) {
+      hits.incrementAndGet();
+      return entry.userMap;
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * 缓存用户词典，并记录生成时的用户内容
+   * @param user AuthUser实例对象
+   * @param userMap 已生成的用户词典
+   */
+  void put(AuthUser user, ImmutableMap<String, Object> userMap) {
+    // 声明定义缓存项变量
+    CachedUser entry = new CachedUser(user, userMap);
+    synchronized (entries) {
+      entries.put(user.getUid(), entry);
+    }
+  }
+
+  /**
+   * 获取缓存命中次数
+   * @return 缓存命中次数
+   */
+  long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * 获取缓存未命中次数
+   * @return 缓存未命中次数
+   */
+  long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * 获取命中和未命中次数的快照
+   * @return 包含hits和misses的词典
+   */
+  ImmutableMap<String, Object> snapshot() {
+    return ImmutableMap.<String, Object>of("hits", hits.get(), "misses", misses.get());
+  }
+
+  /**
+   * 清零命中和未命中次数，保留已缓存的用户词典
+   */
+  void resetCounts() {
+    hits.set(0);
+    misses.set(0);
+  }
+
+  /**
+   * 缓存项，保存用户词典和生成时的用户内容
+   */
+  private static final class CachedUser {
+    // 声明不可变的用户内容，依次为用户字段、用户额外字段和每个提供方的字段
+    final Object[] fields;
+    // 声明不可变的用户词典
+    final ImmutableMap<String, Object> userMap;
+
+    CachedUser(AuthUser user, ImmutableMap<String, Object> userMap) {
+      // 获取在WilddogAuth中用户绑定的所有认证类型的用户信息列表
+      List<? extends AuthUserInfo> providerData = user.getProviderData();
+      // 记录用户内容
+      Object[] fields = new Object[INFO_FIELDS + USER_FIELDS + providerData.size() * INFO_FIELDS];
+      int i = copy(user, fields, 0);
+      fields[i++] = user.isAnonymous();
+      fields[i++] = user.isEmailVerified();
+      fields[i++] = user.isPhoneVerified();
+      for (AuthUserInfo userInfo : providerData) {
+        i = copy(userInfo, fields, i);
+      }
+      this.fields = fields;
+      this.userMap = userMap;
+    }
+
+    /**
+     * 用户的当前内容是否与生成时一致
+     * @param user AuthUser实例对象
+     * @return 一致则返回true
+     */
+    boolean matches(AuthUser user) {
+      // 获取在WilddogAuth中用户绑定的所有认证类型的用户信息列表
+      List<? extends AuthUserInfo> providerData = user.getProviderData();
+      // 提供方数量是否改变
+      if (fields.length != INFO_FIELDS + USER_FIELDS + providerData.size() * INFO_FIELDS) {
+        return false;
+      }
+      // 逐个比较用户字段
+      if (!matches(user, 0)) {
+        return false;
+      }
+      int i = INFO_FIELDS;
+      if (!fields[i++].equals(user.isAnonymous())
+              || !fields[i++].equals(user.isEmailVerified())
+              || !fields[i++].equals(user.isPhoneVerified())) {
+        return false;
+      }
+      // 逐个比较提供方字段
+      for (AuthUserInfo userInfo : providerData) {
+        if (!matches(userInfo, i)) {
+          return false;
+        }
+        i += INFO_FIELDS;
+      }
+      return true;
+    }
+
+    /**
+     * 指定位置的AuthUserInfo字段是否与当前内容一致
+     * @param userInfo AuthUserInfo实例
+     * @param offset 字段的起始位置
+     * @return 一致则返回true
+     */
+    private boolean matches(AuthUserInfo userInfo, int offset) {
+      return Objects.equal(fields[offset], userInfo.getProviderId())
+              && Objects.equal(fields[offset + 1], userInfo.getUid())
+              && Objects.equal(fields[offset + 2], userInfo.getDisplayName())
+              && Objects.equal(fields[offset + 3], userInfo.getPhotoUrl())
+              && Objects.equal(fields[offset + 4], userInfo.getEmail())
+              && Objects.equal(fields[offset + 5], userInfo.getPhone());
+    }
+
+    /**
+     * 把AuthUserInfo字段复制到指定位置
+     * @param userInfo AuthUserInfo实例
+     * @param fields 用户内容
+     * @param offset 字段的起始位置
+     * @return 下一个字段的位置
+     */
+    private static int copy(AuthUserInfo userInfo, Object[] fields, int offset) {
+      fields[offset] = userInfo.getProviderId();
+      fields[offset + 1] = userInfo.getUid();
+      fields[offset + 2] = userInfo.getDisplayName();
+      fields[offset + 3] = userInfo.getPhotoUrl();
+      fields[offset + 4] = userInfo.getEmail();
+      fields[offset + 5] = userInfo.getPhone();
+      return offset + INFO_FIELDS;
+    }
+  }
+}
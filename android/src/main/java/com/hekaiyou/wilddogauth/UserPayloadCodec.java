@@ -0,0 +1,272 @@
+package com.hekaiyou.wilddogauth;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户词典的紧凑二进制编码，可以代替StandardMessageCodec的嵌套词典
+ *
+ * 字段按固定顺序编码，不写入字段名；是否存在由位图表示，常见的提供方ID写入为一个字节的索引。
+ * 格式为：版本、用户信息、状态位、提供方数据的个数、每个提供方的用户信息。用户信息为：
+ * 存在位图、提供方ID的索引（为0时后跟字符串）、其余存在的字段。字符串为两字节长度和UTF-8字节。
+ * 编码直接写入可复用的ByteBuffer，连续编码同一个用户词典实例时直接返回上一次的结果。
+ * 字段超过65535字节或提供方数据超过255个的用户无法编码，由调用方改为发送用户词典
+ */
+class UserPayloadCodec {
+  // 声明静态、不可变的编码格式版本
+  static final byte FORMAT_VERSION = 1;
+  // 声明私有、静态、不可变的用户信息字段，顺序即编码顺序，与用户词典的键一致
+  private static final String[] INFO_KEYS = {"providerId", "uid", "displayName", "photoUrl", "email", "phone"};
+  // 声明私有、静态、不可变的用户状态字段，顺序即状态位的顺序
+  private static final String[] FLAG_KEYS = {"isAnonymous", "isEmailVerified", "isPhoneVerified"};
+  // 声明私有、静态、不可变的常见提供方ID，编码为索引加1，0表示后跟字符串
+  private static final String[] PROVIDER_IDS = {"password", "anonymous", "phone", "qq", "weixin", "weixinmp", "weibo"};
+  // 声明私有、静态、不可变的UTF-8字符集
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  // 声明私有、静态、不可变的缓冲区的初始字节数
+  private static final int INITIAL_CAPACITY = 512;
+
+  // 以下字段由this保护
+  // 声明私有的可复用的编码缓冲区，容量不足时加倍
+  private ByteBuffer scratch = ByteBuffer.allocate(INITIAL_CAPACITY);
+  // 声明私有的上一次编码的用户词典
+  private Map<String, Object> lastUserMap;
+  // 声明私有的上一次编码的结果
+  private byte[] lastEncoded;
+
+  /**
+   * 编码用户词典，同一个用户词典实例连续编码时返回同一个结果，调用方不能修改返回的数组
+   * @param userMap 用户词典，可以为空值
+   * @return 编码后的字节，用户词典为空值或超出格式的限制时返回空值
+   */
+  synchronized byte[] encode(Map<String, Object> userMap) {
+    if (userMap == null) {
+      return null;
+    }
+    // 插件按用户内容缓存用户词典实例，扇出和重复的回调不需要重新编码
+    if (userMap == lastUserMap) {
+      return lastEncoded;
+    }
+    while (true) {
+      scratch.clear();
+      try {
+        writeUser(scratch, userMap);
+        break;
+      } catch (BufferOverflowException e) {
+        // 容量不足时加倍并重新编码
+        scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+      } catch (IllegalArgumentException e) {
+        // 超出格式的限制，不在回调线程中抛出异常
+        return null;
+      }
+    }
+    // 复制出准确长度的结果，缓冲区留给下一次编码
+    byte[] encoded = new byte[scratch.position()];
+    scratch.flip();
+    scratch.get(encoded);
+    lastUserMap = userMap;
+    lastEncoded = encoded;
+    return encoded;
+  }
+
+  /**
+   * 解码用户词典，词典的键顺序与插件生成的用户词典一致
+   * @param data 编码后的字节
+   * @return 用户词典
+   * @throws IllegalArgumentException 格式版本未知或数据不完整时
+   */
+  ImmutableMap<String, Object> decode(byte[] data) {
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    try {
+      if (buffer.get() != FORMAT_VERSION) {
+        throw new IllegalArgumentException("Unknown user payload format.");
+      }
+      ImmutableMap.Builder<String, Object> user = readInfo(buffer);
+      int flags = buffer.get();
+      for (int i = 0; i < FLAG_KEYS.length; i++) {
+        user.put(FLAG_KEYS[i], (flags & (1 << i)) != 0);
+      }
+      int count = buffer.get() & 0xFF;
+      ImmutableList.Builder<ImmutableMap<String, Object>> providerData = ImmutableList.builder();
+      for (int i = 0; i < count; i++) {
+        providerData.add(readInfo(buffer).build());
+      }
+      user.put("providerData", providerData.build());
+      return user.build();
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated user payload.", e);
+    }
+  }
+
+  /**
+   * 写入用户词典
+   * @param buffer 缓冲区
+   * @param userMap 用户词典
+   * @throws BufferOverflowException 缓冲区容量不足时
+   * @throws IllegalArgumentException 字段过长或提供方数据过多时
+   */
+  private static void writeUser(ByteBuffer buffer, Map<String, Object> userMap) {
+    buffer.put(FORMAT_VERSION);
+    writeInfo(buffer, userMap);
+    // 状态位
+    int flags = 0;
+    for (int i = 0; i < FLAG_KEYS.length; i++) {
+      if (Boolean.TRUE.equals(userMap.get(FLAG_KEYS[i]))) {
+        flags |= 1 << i;
+      }
+    }
+    buffer.put((byte) flags);
+    // 提供方数据
+    List<?> providerData = (List<?>) userMap.get("providerData");
+    int count = providerData != null ? providerData.size() : 0;
+    if (count > 0xFF) {
+      throw new IllegalArgumentException("Too many providers in user payload.");
+    }
+    buffer.put((byte) count);
+    for (int i = 0; i < count; i++) {
+      writeInfo(buffer, (Map<?, ?>) providerData.get(i));
+    }
+  }
+
+  /**
+   * 写入存在位图和AuthUserInfo字段，提供方ID写入为索引
+   * @param buffer 缓冲区
+   * @param info 用户信息词典
+   */
+  private static void writeInfo(ByteBuffer buffer, Map<?, ?> info) {
+    // 存在位图
+    int presence = 0;
+    for (int i = 0; i < INFO_KEYS.length; i++) {
+      if (info.get(INFO_KEYS[i]) != null) {
+        presence |= 1 << i;
+      }
+    }
+    buffer.put((byte) presence);
+    for (int i = 0; i < INFO_KEYS.length; i++) {
+      Object value = info.get(INFO_KEYS[i]);
+      if (value == null) {
+        continue;
+      }
+      String text = value.toString();
+      // 提供方ID优先写入索引
+      if (i == 0) {
+        int index = providerIndex(text);
+        buffer.put((byte) index);
+        if (index != 0) {
+          continue;
+        }
+      }
+      writeString(buffer, text);
+    }
+  }
+
+  /**
+   * 读取存在位图和AuthUserInfo字段
+   * @param buffer 缓冲区
+   * @return 用户信息词典的构造器，与userInfoToMap一致，不存在的字段不放入词典
+   */
+  private static ImmutableMap.Builder<String, Object> readInfo(ByteBuffer buffer) {
+    ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+    int presence = buffer.get();
+    for (int i = 0; i < INFO_KEYS.length; i++) {
+      if ((presence & (1 << i)) == 0) {
+        continue;
+      }
+      if (i == 0) {
+        int index = buffer.get() & 0xFF;
+        if (index != 0) {
+          if (index > PROVIDER_IDS.length) {
+            throw new IllegalArgumentException("Unknown provider index " + index + ".");
+          }
+          builder.put(INFO_KEYS[i], PROVIDER_IDS[index - 1]);
+          continue;
+        }
+      }
+      builder.put(INFO_KEYS[i], readString(buffer));
+    }
+    return builder;
+  }
+
+  /**
+   * 获取常见提供方ID的索引
+   * @param providerId 提供方ID
+   * @return 索引加1，不是常见的提供方ID时返回0
+   */
+  private static int providerIndex(String providerId) {
+    for (int i = 0; i < PROVIDER_IDS.length; i++) {
+      if (PROVIDER_IDS[i].equals(providerId)) {
+        return i + 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * 直接把字符串以UTF-8写入缓冲区，先预留两字节长度，写完后回填
+   * @param buffer 缓冲区
+   * @param value 字符串
+   */
+  private static void writeString(ByteBuffer buffer, String value) {
+    int lengthPosition = buffer.position();
+    buffer.putShort((short) 0);
+    int start = buffer.position();
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer.put((byte) c);
+      } else if (c < 0x800) {
+        buffer.put((byte) (0xC0 | (c >> 6)));
+        buffer.put((byte) (0x80 | (c & 0x3F)));
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+              && Character.isLowSurrogate(value.charAt(i + 1))) {
+        // 代理对编码为四字节
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer.put((byte) (0xF0 | (codePoint >> 18)));
+        buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+      } else if (Character.isSurrogate(c)) {
+        // 不成对的代理字符与String.getBytes一致替换为问号
+        buffer.put((byte) '?');
+      } else {
+        buffer.put((byte) (0xE0 | (c >> 12)));
+        buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        buffer.put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+    int length = buffer.position() - start;
+    if (length > 0xFFFF) {
+      throw new IllegalArgumentException("String field is too long for user payload.");
+    }
+    buffer.putShort(lengthPosition, (short) length);
+  }
+
+  /**
+   * 读取两字节长度和UTF-8字节组成的字符串
+   * @param buffer 缓冲区
+   * @return 字符串
+   */
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getShort() & 0xFFFF;
+    if (length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    String value;
+    if (buffer.hasArray()) {
+      value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+      buffer.position(buffer.position() + length);
+    } else {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      value = new String(bytes, UTF_8);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,456 @@
+package com.hekaiyou.wilddogauth;
+
+import android.app.Activity;
+import android.net.Uri;
+import com.wilddog.wilddogauth.WilddogAuth;
+import com.wilddog.wilddogauth.model.WilddogUser;
+import com.wilddog.wilddogauth.model.UserInfo;
+import com.wilddog.wilddogauth.core.Task;
+import com.wilddog.wilddogauth.core.credentialandprovider.AuthCredential;
+import com.wilddog.wilddogauth.core.credentialandprovider.WilddogAuthProvider;
+import com.wilddog.wilddogauth.core.exception.WilddogAuthException;
+import com.wilddog.wilddogauth.core.listener.OnCompleteListener;
+import com.wilddog.wilddogauth.core.result.AuthResult;
+import com.wilddog.wilddogauth.core.result.GetTokenResult;
+import com.wilddog.wilddogauth.core.request.UserProfileChangeRequest;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** 使用野狗云SDK实现的身份认证后端 */
+class WilddogAuthBackend implements AuthBackend {
+  // 声明私有、不可变的wilddogAuth类实例
+  private final WilddogAuth wilddogAuth;
+  // 声明私有、不可变的Activity类实例的弱引用，登录任务的完成监听器绑定到这个Activity，
+  // 后端不延长Activity的生命周期
+  private final WeakReference<Activity> activity;
+  // 声明私有、不可变的监听器映射，插件的监听器对应注册到SDK的监听器
+  private final Map<AuthStateListener, WilddogAuth.AuthStateListener> listeners = new ConcurrentHashMap<>();
+
+  // 声明私有的最近一次适配的用户，SDK返回同一个用户实例时复用
+  private volatile WilddogUserAdapter lastUser;
+
+  /**
+   * 默认的构造方法
+   * @param wilddogAuth WilddogAuth实例对象
+   * @param activity Activity类实例，可以为空值
+   */
+  WilddogAuthBackend(WilddogAuth wilddogAuth, Activity activity) {
+    // 将WilddogAuth实例对象赋予全局WilddogAuth实例对象
+    this.wilddogAuth = wilddogAuth;
+    // 将Activity类实例赋予全局Activity类实例
+    this.activity = new WeakReference<>(activity);
+  }
+
+  @Override
+  public AuthUser getCurrentUser() {
+    // getCurrentUser()方法在如果有用户认证登录时返回登录用户，如果没有登录，则返回为空值
+    return adapt(wilddogAuth.getCurrentUser());
+  }
+
+  @Override
+  public void addAuthStateListener(final AuthStateListener listener) {
+    // WilddogAuth.AuthStateListener会在身份验证状态有一个变化的时候调用
+    WilddogAuth.AuthStateListener sdkListener = new WilddogAuth.AuthStateListener() {
+      @Override
+      public void onAuthStateChanged(WilddogAuth wilddogAuth) {
+        listener.onAuthStateChanged(adapt(wilddogAuth.getCurrentUser()));
+      }
+    };
+    // 记录监听器的对应关系，用于注销
+    listeners.put(listener, sdkListener);
+    // addAuthStateListener方法注册一个认证状态的监听
+    wilddogAuth.addAuthStateListener(sdkListener);
+  }
+
+  @Override
+  public void removeAuthStateListener(AuthStateListener listener) {
+    // 获取并移除对应的SDK监听器
+    WilddogAuth.AuthStateListener sdkListener = listeners.remove(listener);
+    if (sdkListener != null) {
+      // removeAuthStateListener方法注销认证状态的监听
+      wilddogAuth.removeAuthStateListener(sdkListener);
+    }
+  }
+
+  @Override
+  public void signInAnonymously(Callback<AuthUser> callback) {
+    // signInAnonymously()使用匿名方法登录，不需要凭据，可以绑定其他认证方式
+    onSignIn(wilddogAuth.signInAnonymously(), callback);
+  }
+
+  @Override
+  public void createUserWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    // 用给定的邮箱和密码创建一个用户账号，如果成功，这个用户也将登录成功
+    onSignIn(wilddogAuth.createUserWithEmailAndPassword(email, password), callback);
+  }
+
+  @Override
+  public void signInWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    // 通过邮箱和密码进行登录认证
+    onSignIn(wilddogAuth.signInWithEmailAndPassword(email, password), callback);
+  }
+
+  @Override
+  public void createUserWithPhoneAndPassword(String phone, String password, Callback<AuthUser> callback) {
+    // 用给定的手机号和密码创建一个用户账号，如果成功，这个用户也将登录成功
+    onSignIn(wilddogAuth.createUserWithPhoneAndPassword(phone, password), callback);
+  }
+
+  @Override
+  public void signInWithPhoneAndPassword(String phone, String password, Callback<AuthUser> callback) {
+    // 将手机号码和密码传递到signInWithPhoneAndPassword即可登录此用户
+    onSignIn(wilddogAuth.signInWithPhoneAndPassword(phone, password), callback);
+  }
+
+  @Override
+  public void linkWithEmailAndPassword(String email, String password, Callback<AuthUser> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // getEmailCredential方法返回一个带有邮箱和密码的用户凭证
+    AuthCredential credential = WilddogAuthProvider.getEmailCredential(email, password);
+    // linkWithCredential方法将当前用户与给定的登录认证方式绑定
+    onSignIn(user.linkWithCredential(credential), callback);
+  }
+
+  @Override
+  public void signOut() {
+    // 登出当前用户，清除登录数据
+    wilddogAuth.signOut();
+  }
+
+  @Override
+  public void getToken(boolean refresh, final Callback<String> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // getToken()在身份认证成功后返回的Wilddog Id token字符串
+    user.getToken(refresh).addOnCompleteListener(new OnCompleteListener<GetTokenResult>() {
+      @Override
+      public void onComplete(Task<GetTokenResult> task) {
+        // 操作结果是否为成功的
+        if (task.isSuccessful()) {
+          callback.onSuccess(task.getResult().getToken());
+        } else {
+          callback.onFailure(translate(task.getException()));
+        }
+      }
+    });
+  }
+
+  @Override
+  public void updateProfile(String displayName, String photoUrl, Callback<Void> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // 用来更新用户信息的请求构建器
+    UserProfileChangeRequest profileUpdates = new UserProfileChangeRequest.Builder()
+            .setDisplayName(displayName)
+            .setPhotoUri(Uri.parse(photoUrl))
+            .build();
+    // updateProfile()方法用于更新用户属性
+    onComplete(user.updateProfile(profileUpdates), callback);
+  }
+
+  @Override
+  public void updatePassword(String password, Callback<Void> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // updatePassword()方法用于更新用户邮箱或手机号认证密码
+    onComplete(user.updatePassword(password), callback);
+  }
+
+  @Override
+  public void updateEmail(String email, Callback<Void> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // updateEmail()方法用于更新用户邮箱地址
+    onComplete(user.updateEmail(email), callback);
+  }
+
+  @Override
+  public void updatePhone(String phone, Callback<Void> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // updatePhone()方法用于更新当前用户的手机号信息
+    onComplete(user.updatePhone(phone), callback);
+  }
+
+  @Override
+  public void delete(Callback<Void> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // 通过delete()方法删除用户
+    onComplete(user.delete(), callback);
+  }
+
+  @Override
+  public void reauthenticateEmail(String email, String password, Callback<Void> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // reauthenticate(credential)方法用于对用户重新进行身份认证
+    onComplete(user.reauthenticate(WilddogAuthProvider.getEmailCredential(email, password)), callback);
+  }
+
+  @Override
+  public void reauthenticatePhone(String phone, String password, Callback<Void> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // reauthenticate(credential)方法用于对用户重新进行身份认证
+    onComplete(user.reauthenticate(WilddogAuthProvider.getPhoneCredential(phone, password)), callback);
+  }
+
+  @Override
+  public void sendEmailVerification(Callback<Void> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // 发送邮箱验证，需要登录邮箱进行验证
+    onComplete(user.sendEmailVerification(), callback);
+  }
+
+  @Override
+  public void sendPhoneVerification(Callback<Void> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // 发送验证用户的手机验证码
+    onComplete(user.sendPhoneVerification(), callback);
+  }
+
+  @Override
+  public void verifyPhoneSmsCode(String smsCode, Callback<Void> callback) {
+    // 获取当前登录用户
+    WilddogUser user = requireUser(callback);
+    if (user == null) {
+      return;
+    }
+    // 通过verifiyPhone(code)方法验证手机验证码
+    onComplete(user.verifiyPhone(smsCode), callback);
+  }
+
+  @Override
+  public void sendPasswordResetEmail(String email, Callback<Void> callback) {
+    // sendPasswordResetEmail()方法用于向用户发送重设密码邮件
+    onComplete(wilddogAuth.sendPasswordResetEmail(email), callback);
+  }
+
+  @Override
+  public void sendPasswordResetSms(String phone, Callback<Void> callback) {
+    // 发送重置密码的手机验证码
+    onComplete(wilddogAuth.sendPasswordResetSms(phone), callback);
+  }
+
+  @Override
+  public void confirmPasswordResetSms(String phone, String smsCode, String newPassword, Callback<Void> callback) {
+    // 通过confirmPasswordResetSms方法验证手机验证码并设置新密码
+    onComplete(wilddogAuth.confirmPasswordResetSms(phone, smsCode, newPassword), callback);
+  }
+
+  /**
+   * 获取当前登录用户，没有登录时以失败结束回调
+   * @param callback 完成回调
+   * @return 当前用户，没有登录时返回空值
+   */
+  private WilddogUser requireUser(Callback<?> callback) {
+    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
+    WilddogUser user = wilddogAuth.getCurrentUser();
+    // 当前是否没有用户登录
+    if (user == null) {
+      callback.onFailure(new AuthException(AuthException.NO_CURRENT_USER, "No user is currently signed in."));
+    }
+    return user;
+  }
+
+  /**
+   * 为登录任务添加完成监听器，绑定到Activity
+   * @param task 登录任务
+   * @param callback 完成回调
+   */
+  private void onSignIn(Task<AuthResult> task, final Callback<AuthUser> callback) {
+    // 声明定义登录任务的完成监听器
+    OnCompleteListener<AuthResult> listener = new OnCompleteListener<AuthResult>() {
+      @Override
+      public void onComplete(Task<AuthResult> task) {
+        // 操作结果是否为成功的
+        if (task.isSuccessful()) {
+          callback.onSuccess(adapt(task.getResult().getWilddogUser()));
+        } else {
+          callback.onFailure(translate(task.getException()));
+        }
+      }
+    };
+    // 声明定义Activity类实例，可能已被回收
+    Activity host = activity.get();
+    // 有未结束的Activity时把完成监听器绑定到Activity，Activity销毁时由SDK注销监听器
+    if (host != null && !host.isFinishing()) {
+      task.addOnCompleteListener(host, listener);
+    } else {
+      task.addOnCompleteListener(listener);
+    }
+  }
+
+  /**
+   * 为无结果的任务添加完成监听器
+   * @param task 任务
+   * @param callback 完成回调
+   */
+  private void onComplete(Task<Void> task, final Callback<Void> callback) {
+    task.addOnCompleteListener(new OnCompleteListener<Void>() {
+      @Override
+      public void onComplete(Task<Void> task) {
+        // 操作结果是否为成功的
+        if (task.isSuccessful()) {
+          callback.onSuccess(null);
+        } else {
+          callback.onFailure(translate(task.getException()));
+        }
+      }
+    });
+  }
+
+  /**
+   * 把SDK的意外转换为带有插件错误代码的意外，按SDK给出的错误代码转换，不按意外类名推断
+   * @param e 任务失败的意外
+   * @return 带有错误代码的意外，不是SDK身份认证意外时返回原意外
+   */
+  private static Exception translate(Exception e) {
+    if (e instanceof WilddogAuthException) {
+      return new AuthException(AuthErrors.sdkCode(((WilddogAuthException) e).getErrorCode()), e.getMessage(), e);
+    }
+    return e;
+  }
+
+  /**
+   * 把SDK的用户适配为插件的用户，SDK返回同一个用户实例时复用适配器
+   * @param user WilddogUser实例对象
+   * @return 插件的用户，未登录时返回空值
+   */
+  private AuthUser adapt(WilddogUser user) {
+    // 是否没有用户
+    if (user == null) {
+      return null;
+    }
+    // 声明定义最近一次适配的用户
+    WilddogUserAdapter adapter = lastUser;
+    // 是否为同一个用户实例
+    if (adapter == null || adapter.user != user) {
+      adapter = new WilddogUserAdapter(user);
+      lastUser = adapter;
+    }
+    return adapter;
+  }
+
+  /**
+   * 野狗云SDK的UserInfo适配器
+   */
+  private static class UserInfoAdapter implements AuthUserInfo {
+    // 声明不可变的UserInfo实例
+    private final UserInfo info;
+
+    UserInfoAdapter(UserInfo info) {
+      this.info = info;
+    }
+
+    @Override
+    public String getProviderId() {
+      return info.getProviderId();
+    }
+
+    @Override
+    public String getUid() {
+      return info.getUid();
+    }
+
+    @Override
+    public String getDisplayName() {
+      return info.getDisplayName();
+    }
+
+    @Override
+    public String getPhotoUrl() {
+      return info.getPhotoUrl() != null ? info.getPhotoUrl().toString() : null;
+    }
+
+    @Override
+    public String getEmail() {
+      return info.getEmail();
+    }
+
+    @Override
+    public String getPhone() {
+      return info.getPhone();
+    }
+  }
+
+  /**
+   * 野狗云SDK的WilddogUser适配器
+   */
+  private static final class WilddogUserAdapter extends UserInfoAdapter implements AuthUser {
+    // 声明不可变的WilddogUser实例
+    final WilddogUser user;
+
+    WilddogUserAdapter(WilddogUser user) {
+      super(user);
+      this.user = user;
+    }
+
+    @Override
+    public boolean isAnonymous() {
+      return user.isAnonymous();
+    }
+
+    @Override
+    public boolean isEmailVerified() {
+      return user.isEmailVerified();
+    }
+
+    @Override
+    public boolean isPhoneVerified() {
+      return user.isPhoneVerified();
+    }
+
+    @Override
+    public List<? extends AuthUserInfo> getProviderData() {
+      // 获取在WilddogAuth中用户绑定的所有认证类型的用户信息列表
+      List<? extends UserInfo> providerData = user.getProviderData();
+      List<AuthUserInfo> infos = new ArrayList<>(providerData.size());
+      for (UserInfo info : providerData) {
+        infos.add(new UserInfoAdapter(info));
+      }
+      return infos;
+    }
+  }
+}
@@ -1,69 +1,456 @@
 package com.hekaiyou.wilddogauth;
 
 import android.app.Activity;
-import android.util.SparseArray;
-import android.net.Uri;
+import android.app.Application;
+import android.os.Bundle;
+import android.util.Log;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.wilddog.wilddogauth.WilddogAuth;
-import com.wilddog.wilddogauth.model.WilddogUser;
-import com.wilddog.wilddogauth.model.UserInfo;
-import com.wilddog.wilddogauth.core.Task;
-import com.wilddog.wilddogauth.core.credentialandprovider.AuthCredential;
-import com.wilddog.wilddogauth.core.credentialandprovider.WilddogAuthProvider;
-import com.wilddog.wilddogauth.core.listener.OnCompleteListener;
-import com.wilddog.wilddogauth.core.result.AuthResult;
-import com.wilddog.wilddogauth.core.result.GetTokenResult;
-import com.wilddog.wilddogauth.core.request.UserProfileChangeRequest;
 
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.PluginRegistry.Registrar;
+import io.flutter.plugin.common.PluginRegistry.ViewDestroyListener;
+import io.flutter.view.FlutterNativeView;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import android.util.Log;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /** Flutter的野狗云身份认证插件 */
 public class WilddogAuthPlugin implements MethodCallHandler {
-  // 声明私有、不可变的Activity类实例
-  private final Activity activity;
-  // 声明私有、不可变的wilddogAuth类实例
-  private final WilddogAuth wilddogAuth;
-  // 声明私有、不可变的AuthStateListener对象稀疏数组
-  private final SparseArray<WilddogAuth.AuthStateListener> authStateListeners = new SparseArray<>();
-  // 声明私有、不可变的方法通道
-  private final MethodChannel channel;
-
-  // 声明私有的句柄，被用作索引到Activity观察者的稀疏数组中
-  private int nextHandle = 0;
+  // 声明私有的Activity类实例，宿主销毁后置为空值，避免持有已销毁的Activity
+  private volatile Activity activity;
+  // 声明私有、不可变的身份认证后端
+  private final AuthBackend backend;
+  // 声明私有、不可变的延迟初始化的身份认证后端，不是延迟初始化模式时为空值
+  private final LazyAuthBackend lazyBackend;
+  // 声明私有、不可变的认证状态监听器注册表，句柄对应监听器
+  private final ListenerRegistry listeners;
+  // 声明私有、不可变的多路复用模式的共享监听器
+  private final MultiplexedAuthStateListener multiplexedListener = new MultiplexedAuthStateListener();
+  // 声明私有的认证状态消息是否使用增量编码
+  private volatile boolean deltaEvents = false;
+  // 声明私有的用户词典是否以紧凑的二进制格式发送
+  private volatile boolean binaryUsers = false;
+  // 声明私有、不可变的用户词典的二进制编码
+  private final UserPayloadCodec userCodec = new UserPayloadCodec();
+  // 声明私有的方法通道，重新附加到新的宿主时替换
+  private volatile MethodChannel channel;
+  // 声明私有的宿主的代数，每次重新附加时加1
+  private volatile int hostGeneration = 0;
+  // 声明私有、不可变的带有requestId的进行中的批量创建，可以通过cancel取消
+  private final ConcurrentMap<String, BulkCreateJob> bulkJobs = new ConcurrentHashMap<>();
+  // 声明私有、不可变的Wilddog Id令牌缓存
+  private final IdTokenCache tokenCache;
+  // 声明私有、不可变的相同方法调用合并器
+  private final RequestCoalescer coalescer = new RequestCoalescer();
+  // 声明私有、不可变的已序列化用户词典缓存
+  private final UserMapCache userMapCache = new UserMapCache();
+  // 声明私有、不可变的插件线程调度
+  private final DispatchExecutors executors = new DispatchExecutors();
+  // 声明私有、不可变的按方法统计的调用次数、结果和延迟
+  private final MethodMetrics metrics = new MethodMetrics();
+  // 声明私有、不可变的幂等操作在暂时性失败后的重试策略
+  private final RetryPolicy retryPolicy = new RetryPolicy(executors, metrics);
+  // 声明私有、不可变的方法调用的截止时间和取消
+  private final CallDeadlines deadlines = new CallDeadlines(executors, metrics);
+  // 声明私有、不可变的方法注册表，方法名称对应处理程序
+  private final MethodRegistry registry = new MethodRegistry();
+  // 声明私有、不可变的发送短信和邮件的方法的限流和断路保护
+  private final SendGuard sendGuard = new SendGuard(
+          "sendEmailVerification", "sendPasswordResetEmail", "sendPhoneVerification", "sendPasswordResetSms");
+  // 声明私有、不可变的等待第一次认证状态回调的当前用户请求列表
+  private final List<Result> pendingCurrentUser = new ArrayList<>();
+  // 声明私有、不可变的长期的认证状态监听器，保持当前用户快照最新
+  private final AuthBackend.AuthStateListener snapshotListener = new AuthBackend.AuthStateListener() {
+    @Override
+    public void onAuthStateChanged(AuthUser currentUser) {
+      // 使用最新的当前用户更新快照
+      updateSnapshot(currentUser);
+    }
+  };
 
+  // 声明私有的当前用户快照，由长期的认证状态监听器保持最新，未登录时为空值
+  private volatile ImmutableMap<String, Object> userSnapshot;
+  // 声明私有的当前用户快照是否已初始化
+  private volatile boolean snapshotReady = false;
+  // 声明私有、不可变的加密会话快照，冷启动时在第一次认证状态回调之前返回上次的当前用户
+  private final SessionSnapshotStore sessionStore;
+  // 声明私有的从会话快照恢复的用户词典，收到第一次认证状态回调后置为空值
+  private volatile ImmutableMap<String, Object> persistedSnapshot;
+  // 声明私有、不可变的离线时的用户资料和帐号修改的预写队列
+  private final MutationQueue mutationQueue;
+  // 声明私有、不可变的多个帐号的会话缓存，用于在已登录过的帐号之间快速切换
+  private final SessionManager sessions;
+  // 声明私有、不可变的通过EventChannel推送的Wilddog Id令牌流
+  private final IdTokenStream idTokenStream;
+
+  // 声明私有、静态、不可变的日志标签
+  private static final String TAG = "wilddog_auth";
   // 声明私有、静态、不可变的错误的意外原因
   private static final String ERROR_REASON_EXCEPTION = "wilddog_auth";
+  // 声明私有、静态、不可变的宿主应用注册的扩展方法，在之后创建的插件实例中生效
+  private static final List<MethodSpec> EXTENSIONS = new CopyOnWriteArrayList<>();
+  // 声明私有、静态、不可变的不需要身份认证后端的方法，延迟初始化模式下调用它们不会初始化后端
+  private static final ImmutableSet<String> LOCAL_METHODS = ImmutableSet.of(
+          "configure", "getMetrics", "getSendLimiterState", "cancel", "getMutationQueueState",
+          "listSessions", "switchSession", "evictSession");
+  // 声明私有、静态、不可变的作用于SDK登录用户的方法，切换到其他帐号的会话时拒绝调用
+  private static final ImmutableSet<String> SDK_USER_METHODS = ImmutableSet.of(
+          "updateProfile", "updatePassword", "updateEmail", "updatePhone", "delete",
+          "reauthenticateEmail", "reauthenticatePhone", "linkWithEmailAndPassword",
+          "sendEmailVerification", "sendPhoneVerification", "verifyPhoneSmsCode");
+  // 声明私有、静态的是否延迟初始化野狗云SDK
+  private static volatile boolean lazyInitialization = false;
+  // 声明私有、静态的启动阶段的耗时回调，可以为空值
+  private static volatile StartupTrace startupTrace;
+  // 声明私有、静态的已从宿主分离、等待下一个宿主重新附加的插件实例，由WilddogAuthPlugin.class保护
+  private static WilddogAuthPlugin detachedPlugin;
+
+  /**
+   * 注册宿主应用的扩展方法，需要在插件注册之前调用，同名的内置方法会被替换
+   * @param spec 方法注册项
+   */
+  public static void registerExtension(MethodSpec spec) {
+    EXTENSIONS.add(spec);
+  }
+
+  /**
+   * 设置是否延迟初始化野狗云SDK，需要在插件注册之前调用
+   *
+   * 开启后插件注册时不创建WilddogAuth实例，第一次需要身份认证的方法调用时才创建，
+   * 也可以在首帧之后用configure的prewarm选项在后台线程中提前创建
+   * @param lazy 为true时延迟初始化
+   */
+  public static void setLazyInitialization(boolean lazy) {
+    lazyInitialization = lazy;
+  }
+
+  /**
+   * 设置启动阶段的耗时回调，需要在插件注册之前调用
+   * @param trace 耗时回调，为空值时不再报告
+   */
+  public static void setStartupTrace(StartupTrace trace) {
+    startupTrace = trace;
+  }
+
+  /**
+   * 报告一个启动阶段的耗时
+   * @param phase 阶段名称
+   * @param startNanos 开始时间
+   * @param durationNanos 耗时的纳秒数
+   */
+  static void tracePhase(String phase, long startNanos, long durationNanos) {
+    StartupTrace trace = startupTrace;
+    if (trace != null) {
+      trace.onPhaseCompleted(phase, startNanos, durationNanos);
+    }
+  }
 
   /**
    * 插件注册，即注册Android方法通道
    * @param registrar 客户端传递的通道注册信息
    */
   public static void registerWith(Registrar registrar) {
+    // 声明定义注册的开始时间
+    long startNanos = System.nanoTime();
     // 声明定义不可变的方法通道实例
     final MethodChannel channel = new MethodChannel(registrar.messenger(), "wilddog_auth");
+    // 声明定义不可变的Activity类实例
+    final Activity activity = registrar.activity();
+    // 宿主重新创建时重新附加已分离的插件实例，线程、令牌缓存和会话在进程中只有一份
+    WilddogAuthPlugin detached = takeDetachedPlugin();
+    final WilddogAuthPlugin plugin;
+    if (detached != null) {
+      plugin = detached;
+      plugin.attachToHost(activity, channel);
+    } else {
+      plugin = new WilddogAuthPlugin(activity, channel, createBackend(activity));
+    }
+    // 声明定义这一次附加的代数，之前宿主的销毁回调不会分离重新附加后的插件
+    final int generation = plugin.hostGeneration;
     // 设置方法通道实例的方法调用处理程序
-    channel.setMethodCallHandler(new WilddogAuthPlugin(registrar.activity(), channel));
+    channel.setMethodCallHandler(plugin);
+    // 注册推送Wilddog Id令牌的事件通道
+    new EventChannel(registrar.messenger(), "wilddog_auth/id_token").setStreamHandler(plugin.idTokenStream);
+    // Flutter引擎销毁时分离插件，避免监听器和结果回调在长期运行的进程中累积
+    registrar.addViewDestroyListener(new ViewDestroyListener() {
+      @Override
+      public boolean onViewDestroy(FlutterNativeView view) {
+        plugin.detachFromHost(generation);
+        // 不保留FlutterNativeView
+        return false;
+      }
+    });
+    // 宿主Activity销毁时分离插件，配置改变重新创建的Activity会重新附加这个插件实例
+    if (activity != null && activity.getApplication() != null) {
+      activity.getApplication().registerActivityLifecycleCallbacks(
+              new HostLifecycleCallbacks(activity, plugin, generation));
+    }
+    // 报告插件注册的耗时
+    tracePhase(StartupTrace.REGISTER, startNanos, System.nanoTime() - startNanos);
+  }
+
+  /**
+   * 创建野狗云身份认证后端，延迟初始化模式下第一次需要时才创建
+   * @param activity Activity类实例，可以为空值
+   * @return 身份认证后端
+   */
+  private static AuthBackend createBackend(final Activity activity) {
+    // 声明定义创建野狗云身份认证后端的方法
+    // 返回初始化后，可以用getInstance()方法获取当前WilddogAuth实例对象
+    Supplier<AuthBackend> factory = new Supplier<AuthBackend>() {
+      @Override
+      public AuthBackend get() {
+        return new WilddogAuthBackend(WilddogAuth.getInstance(), activity);
+      }
+    };
+    // 延迟初始化模式下第一次需要时才创建，否则立即创建并计时
+    AuthBackend backend;
+    if (lazyInitialization) {
+      backend = new LazyAuthBackend(factory);
+    } else {
+      long initNanos = System.nanoTime();
+      backend = factory.get();
+      tracePhase(StartupTrace.BACKEND_INIT, initNanos, System.nanoTime() - initNanos);
+    }
+    return backend;
+  }
+
+  /**
+   * 取出等待重新附加的插件实例
+   * @return 已分离的插件实例，没有时返回空值
+   */
+  private static synchronized WilddogAuthPlugin takeDetachedPlugin() {
+    WilddogAuthPlugin plugin = detachedPlugin;
+    detachedPlugin = null;
+    return plugin;
+  }
+
+  /**
+   * 保存已分离的插件实例，由下一个宿主重新附加，之前保存的实例被替换
+   * @param plugin 已分离的插件实例
+   */
+  private static synchronized void parkDetachedPlugin(WilddogAuthPlugin plugin) {
+    detachedPlugin = plugin;
   }
 
   /**
    * 方法通道的方法调用处理程序
+   * @param activity Activity类实例，可以为空值
    * @param channel 局部的方法通道实例
-   * @param activity Activity类实例
+   * @param backend 身份认证后端，例如在测试中使用的FakeAuthBackend
    */
-  private WilddogAuthPlugin(Activity activity, MethodChannel channel) {
+  public WilddogAuthPlugin(Activity activity, MethodChannel channel, AuthBackend backend) {
     // 将Activity类实例赋予全局Activity类实例
     this.activity = activity;
     // 将局部方法通道赋予全局方法通道
     this.channel = channel;
-    // 返回初始化后，可以用getInstance()方法获取当前WilddogAuth实例对象
-    this.wilddogAuth = WilddogAuth.getInstance();
+    // 将身份认证后端赋予全局身份认证后端
+    this.backend = backend;
+    // 延迟初始化的后端，其他后端为空值
+    this.lazyBackend = backend instanceof LazyAuthBackend ? (LazyAuthBackend) backend : null;
+    // 创建认证状态监听器注册表，多路复用模式的句柄共享一个监听器
+    this.listeners = new ListenerRegistry(backend, multiplexedListener);
+    // 创建按用户ID缓存的Wilddog Id令牌缓存
+    this.tokenCache = new IdTokenCache(backend, retryPolicy, ERROR_REASON_EXCEPTION);
+    // 创建Wilddog Id令牌流，订阅时通过令牌缓存获取当前用户的令牌
+    this.idTokenStream = new IdTokenStream(executors, new IdTokenStream.Source() {
+      @Override
+      public void request() {
+        tokenCache.getToken(false, new Result() {
+          @Override
+          public void success(Object idToken) {
+            idTokenStream.publish((String) idToken);
+          }
+
+          @Override
+          public void error(String errorCode, String errorMessage, Object errorDetails) {
+            // 未登录时推送空值，其他错误发送给订阅者
+            if (AuthException.NO_CURRENT_USER.equals(errorCode)) {
+              idTokenStream.publish(null);
+            } else {
+              idTokenStream.fail(errorCode, errorMessage);
+            }
+          }
+
+          @Override
+          public void notImplemented() {
+          }
+        });
+      }
+    });
+    // 令牌更新时推送令牌并保存会话快照
+    this.tokenCache.setListener(new IdTokenCache.Listener() {
+      @Override
+      public void onTokenStored(String uid, String idToken) {
+        // 推送SDK登录用户的新令牌，包括后台刷新得到的令牌
+        if (!snapshotReady || uid.equals(uidOf(userSnapshot))) {
+          idTokenStream.publish(idToken);
+        }
+        // 更新已缓存的会话的令牌
+        if (sessions.isEnabled()) {
+          sessions.updateToken(uid, idToken);
+          persistSessions();
+        }
+        // 只保存当前用户的令牌
+        ImmutableMap<String, Object> userMap = userSnapshot;
+        if (userMap != null && uid.equals(userMap.get("uid"))) {
+          persistSession(userMap, idToken);
+        }
+      }
+    });
+    // 创建保存在应用私有存储中的会话快照
+    this.sessionStore = new SessionSnapshotStore(activity);
+    // 创建离线修改队列，由后端按顺序重放
+    this.mutationQueue = new MutationQueue(activity, executors, new MutationQueue.Replayer() {
+      @Override
+      public String currentUid() {
+        // 获取当前用户
+        AuthUser user = WilddogAuthPlugin.this.backend.getCurrentUser();
+        return user != null ? user.getUid() : null;
+      }
+
+      @Override
+      public void replay(final MutationQueue.Mutation mutation, final AuthBackend.Callback<Void> callback) {
+        applyMutation(mutation.method, mutation.arguments, new AuthBackend.Callback<Void>() {
+          @Override
+          public void onSuccess(Void value) {
+            // 修改密码以外的修改会改变用户信息
+            if (!"updatePassword".equals(mutation.method)) {
+              refreshSnapshot();
+            }
+            callback.onSuccess(value);
+          }
+
+          @Override
+          public void onFailure(Exception e) {
+            callback.onFailure(e);
+          }
+        });
+      }
+    });
+    // 已有离线修改日志时在工作线程中读取并开始重放
+    if (mutationQueue.isEnabled()) {
+      executors.execute(new Runnable() {
+        @Override
+        public void run() {
+          mutationQueue.setEnabled(true);
+        }
+      });
+    }
+    // 创建多个帐号的会话缓存，已有会话文件时在工作线程中读取
+    this.sessions = new SessionManager(activity);
+    if (sessions.isEnabled()) {
+      executors.execute(new Runnable() {
+        @Override
+        public void run() {
+          sessions.load();
+        }
+      });
+    }
+    // 已开启会话快照时在工作线程中读取上次的快照
+    if (sessionStore.isEnabled()) {
+      executors.execute(new Runnable() {
+        @Override
+        public void run() {
+          restoreSession();
+        }
+      });
+    }
+    // 构建方法注册表，先注册内置方法，再注册宿主应用的扩展方法
+    registerBuiltInMethods();
+    for (MethodSpec spec : EXTENSIONS) {
+      registry.register(spec);
+    }
+    // 注册长期的认证状态监听器，保持当前用户快照最新
+    this.backend.addAuthStateListener(snapshotListener);
+  }
+
+  /**
+   * 宿主Activity或Flutter引擎销毁时分离插件
+   *
+   * 从后端注销所有认证状态监听器，句柄保持不变；进行中的调用以ERROR_CANCELLED结束，
+   * 等待第一次认证状态回调的请求被丢弃，并释放对Activity的引用。重复调用没有效果
+   */
+  public void detachFromHost() {
+    // 已分离时不重复处理
+    if (!listeners.detach()) {
+      return;
+    }
+    // 注销长期的认证状态监听器
+    backend.removeAuthStateListener(snapshotListener);
+    // 结束进行中的调用，之后到达的SDK完成回调会被丢弃
+    int aborted = deadlines.abortAll(AuthException.CANCELLED, "The host was destroyed.");
+    // 丢弃等待第一次认证状态回调的请求，它们已经随进行中的调用一起结束
+    synchronized (pendingCurrentUser) {
+      pendingCurrentUser.clear();
+    }
+    // 丢弃令牌流的事件接收器
+    idTokenStream.detach();
+    // 取消后台令牌刷新并关闭线程，重新附加后按需重新创建
+    tokenCache.shutdown();
+    executors.shutdown();
+    // 停止批量创建尚未开始的帐号
+    for (BulkCreateJob job : bulkJobs.values()) {
+      job.cancel();
+    }
+    // 释放对Activity的引用
+    activity = null;
+    Log.i(TAG, "Detached from host, " + aborted + " pending call(s) cancelled.");
+    // 等待下一个宿主重新附加，不再创建新的插件实例
+    parkDetachedPlugin(this);
+  }
+
+  /**
+   * 指定代数的宿主销毁时分离插件，插件已重新附加到之后的宿主时没有效果
+   * @param generation 注册时的宿主代数
+   */
+  private void detachFromHost(int generation) {
+    if (generation == hostGeneration) {
+      detachFromHost();
+    }
+  }
+
+  /**
+   * 宿主重新创建后重新附加插件，按已有的句柄恢复认证状态监听，每个监听器只注册一次。
+   * 插件已附加时没有效果
+   * @param activity 新的Activity类实例，可以为空值
+   * @param channel 新宿主的方法通道
+   */
+  public void attachToHost(Activity activity, MethodChannel channel) {
+    // 已附加时不重复注册
+    if (!listeners.reattach()) {
+      return;
+    }
+    hostGeneration++;
+    this.activity = activity;
+    this.channel = channel;
+    // 重新注册长期的认证状态监听器，注册时的回调会刷新当前用户快照
+    backend.addAuthStateListener(snapshotListener);
+    Log.i(TAG, "Re-attached to host with " + listeners.size() + " listener(s).");
+  }
+
+  /**
+   * 在这个插件实例中注册方法，同名的已有方法会被替换
+   * @param spec 方法注册项
+   */
+  public void registerMethod(MethodSpec spec) {
+    registry.register(spec);
   }
 
   /**
@@ -72,820 +459,1928 @@ public class WilddogAuthPlugin implements MethodCallHandler {
    * @param result 返回客户端的结果
    */
   @Override
-  public void onMethodCall(MethodCall call, Result result) {
-    // 指定字符串是否与调用方法字符串一样
-    switch (call.method) {
-      // 当前用户
-      case "currentUser":
-        // 调用处理当前用户的方法
-        handleCurrentUser(call, result);
-        break;
-      // 匿名登录
-      case "signInAnonymously":
-        // 调用处理匿名登录的方法
-        handleSignInAnonymously(call, result);
-        break;
-      // 更新用户属性
-      case "updateProfile":
-        // 调用处理更新用户属性的方法
-        handleUpdateProfile(call, result);
-        break;
-      // 更新用户邮箱或手机号认证密码
-      case "updatePassword":
-        // 调用处理更新用户邮箱或手机号认证密码的方法
-        handleUpdatePassword(call, result);
-        break;
-      // 使用电子邮箱和密码创建用户
-      case "createUserWithEmailAndPassword":
-        // 调用处理使用电子邮箱和密码创建用户的方法
-        handleCreateUserWithEmailAndPassword(call, result);
-        break;
-      // 使用电子邮箱和密码登录
-      case "signInWithEmailAndPassword":
-        // 调用处理使用电子邮箱和密码登录的方法
-        handleSignInWithEmailAndPassword(call, result);
-        break;
-      // 登出
-      case "signOut":
-        // 调用处理登出的方法
-        handleSignOut(call, result);
-        break;
-      // 删除用户
-      case "delete":
-        // 调用处理删除用户的方法
-        handleDelete(call, result);
-        break;
-      // 重新进行邮箱帐户认证
-      case "reauthenticateEmail":
-        // 调用处理重新进行邮箱帐户认证的方法
-        handleReauthenticateEmail(call, result);
-        break;
-      // 获取用户ID标识符
-      case "getIdToken":
-        // 调用处理获取用户ID标识符的方法
-        handleGetToken(call, result);
-        break;
-      // 绑定电子邮箱和密码
-      case "linkWithEmailAndPassword":
-        // 调用处理绑定电子邮箱和密码的方法
-        handleLinkWithEmailAndPassword(call, result);
-        break;
-      // 发送电子邮箱验证邮件
-      case "sendEmailVerification":
-        // 调用处理发送电子邮箱验证邮件的方法
-        handleSendEmailVerification(call, result);
-        break;
-      // 发送重置密码邮件
-      case "sendPasswordResetEmail":
-        // 调用处理发送重置密码邮件的方法
-        handleSendPasswordResetEmail(call, result);
-        break;
-      // 更新帐号邮箱
-      case "updateEmail":
-        // 调用处理更新帐号邮箱的方法
-        handleUpdateEmail(call, result);
-        break;
-      // 使用手机号和密码创建用户
-      case "createUserWithPhoneAndPassword":
-        // 调用处理使用手机号和密码创建用户的方法
-        handleCreateUserWithPhoneAndPassword(call, result);
-        break;
-      // 使用手机号和密码登录
-      case "signInWithPhoneAndPassword":
-        // 调用处理使用手机号和密码登录的方法
-        handleSignInWithPhoneAndPassword(call, result);
-        break;
-      // 发送验证用户的手机验证码
-      case "sendPhoneVerification":
-        // 调用处理发送验证用户的手机验证码的方法
-        handleSendPhoneVerification(call, result);
-        break;
-      // 确认验证用户的手机验证码
-      case "verifyPhoneSmsCode":
-        // 调用处理确认验证用户的手机验证码的方法
-        handleVerifyPhoneSmsCode(call, result);
-        break;
-      // 发送重置密码的手机验证码
-      case "sendPasswordResetSms":
-        // 调用处理发送验证用户的手机验证码的方法
-        handleSendPasswordResetSms(call, result);
-        break;
-      // 确认重置密码的手机验证码
-      case "confirmPasswordResetSms":
-        // 调用处理确认重置密码的手机验证码的方法
-        handleConfirmPasswordResetSms(call, result);
-        break;
-      // 更新帐号手机号码
-      case "updatePhone":
-        // 调用处理更新帐号手机号码的方法
-        handleUpdatePhone(call, result);
-        break;
-      // 重新进行手机帐户认证
-      case "reauthenticatePhone":
-        // 调用处理重新进行手机帐户认证的方法
-        handleReauthenticatePhone(call, result);
-        break;
-      // 开始监听认证状态
-      case "startListeningAuthState":
-        // 调用处理开始监听认证状态的方法
-        handleStartListeningAuthState(call, result);
-        break;
-      // 停止监听认证状态
-      case "stopListeningAuthState":
-        // 调用处理停止监听认证状态的方法
-        handleStopListeningAuthState(call, result);
-        break;
-      // 未实现的方法
-      default:
-        // 返回未实现方法的提示
-        result.notImplemented();
-        break;
+  public void onMethodCall(final MethodCall call, Result result) {
+    // 二进制格式下返回用户的方法把用户词典编码后返回，批量调用的子调用保持词典格式
+    if (binaryUsers && !(result instanceof BatchStep)) {
+      MethodSpec spec = registry.get(call.method);
+      if (spec != null && spec.getResultShape() == ResultShape.USER) {
+        result = new BinaryUserResult(result);
+      }
+    }
+    // 是否在工作线程中处理调用，配置方法始终在主线程中处理
+    if (executors.isOffMainThread() && !"configure".equals(call.method)) {
+      // 只在主线程中返回最终结果给Flutter客户端
+      final Result mainResult = executors.onMain(result);
+      // 在工作线程中解析参数并处理调用，线程池饱和时拒绝调用，不在主线程中处理
+      boolean submitted = executors.tryExecute(new Runnable() {
+        @Override
+        public void run() {
+          process(call, mainResult);
+        }
+      });
+      if (!submitted) {
+        metrics.start(call.method, result).error(AuthException.BUSY,
+                "The plugin worker pool is saturated; retry later.", null);
+      }
+    } else {
+      // 在当前线程中处理调用
+      process(call, result);
     }
   }
 
   /**
-   * 处理绑定电子邮箱和密码
+   * 合并相同的进行中调用，并处理方法调用
    * @param call 客户端传递的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleLinkWithEmailAndPassword(MethodCall call, Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
+  private void process(MethodCall call, Result result) {
+    // 方法名称和参数都相同的调用正在进行时，加入其等待列表并共享同一个SDK任务
+    result = coalescer.begin(call, result);
+    // 已加入进行中的调用，不再重复处理
+    if (result == null) {
+      metrics.recordCoalesced(call.method);
+      return;
+    }
+    // 从分发开始计时，到返回结果给客户端为止，获取统计的方法本身不计入
+    if (!"getMetrics".equals(call.method)) {
+      result = metrics.start(call.method, result);
+    }
+    // 按timeoutMs参数或全局默认值设置截止时间，带有requestId参数的调用可以被取消；
+    // 截止时间是最外层的包装，处理方法可以用deadlines.deadlineOf(result)获取调用的截止状态
+    result = deadlines.start(call.method, call.arguments, result);
+    try {
+      // 延迟初始化模式下，第一次需要身份认证的调用初始化后端，暂存的认证状态监听器随之注册
+      if (lazyBackend != null && !LOCAL_METHODS.contains(call.method)) {
+        lazyBackend.backend();
+      }
+      // 切换到其他帐号的会话时，作用于SDK登录用户的方法会修改错误的帐号
+      if (SDK_USER_METHODS.contains(call.method) && !presentsSdkUser()) {
+        result.error(AuthException.USER_MISMATCH,
+                "The active session is not the signed-in user; sign in to this account first.", null);
+        return;
+      }
+      // 分发方法调用
+      dispatch(call, result);
+    } catch (RuntimeException e) {
+      // 返回错误信息给客户端，同时释放合并中的等待者
+      AuthErrors.reply(result, e);
+    }
+  }
+
+  /**
+   * 根据方法名称调用对应的处理方法
+   * @param call 客户端传递的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void dispatch(MethodCall call, Result result) {
+    // 在方法注册表中查找方法，只需一次哈希查找
+    MethodSpec spec = registry.get(call.method);
+    // 方法是否未注册
+    if (spec == null) {
+      result.notImplemented();
+      return;
+    }
+    // 按参数表校验并解析参数，参数不符时抛出的意外由调用方返回给客户端
+    MethodArguments arguments = spec.parse(call.arguments);
+    // 调用处理程序
+    spec.getHandler().onMethodCall(arguments, result);
+  }
+
+  /**
+   * 在方法注册表中注册插件内置的方法
+   */
+  private void registerBuiltInMethods() {
+    // 当前用户
+    registry.register(MethodSpec.builder("currentUser")
+            .returns(ResultShape.USER)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理当前用户的方法
+                handleCurrentUser(arguments, result);
+              }
+            }));
+    // 匿名登录
+    registry.register(MethodSpec.builder("signInAnonymously")
+            .returns(ResultShape.USER)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理匿名登录的方法
+                handleSignInAnonymously(arguments, result);
+              }
+            }));
+    // 更新用户属性
+    registry.register(MethodSpec.builder("updateProfile")
+            .optional("displayName", MethodSpec.ArgumentType.STRING)
+            .optional("photoURL", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理更新用户属性的方法
+                handleUpdateProfile(arguments, result);
+              }
+            }));
+    // 更新用户邮箱或手机号认证密码
+    registry.register(MethodSpec.builder("updatePassword")
+            .required("password", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理更新用户邮箱或手机号认证密码的方法
+                handleUpdatePassword(arguments, result);
+              }
+            }));
+    // 使用电子邮箱和密码创建用户
+    registry.register(MethodSpec.builder("createUserWithEmailAndPassword")
+            .required("email", MethodSpec.ArgumentType.STRING)
+            .required("password", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.USER)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理使用电子邮箱和密码创建用户的方法
+                handleCreateUserWithEmailAndPassword(arguments, result);
+              }
+            }));
+    // 使用电子邮箱和密码登录
+    registry.register(MethodSpec.builder("signInWithEmailAndPassword")
+            .required("email", MethodSpec.ArgumentType.STRING)
+            .required("password", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.USER)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理使用电子邮箱和密码登录的方法
+                handleSignInWithEmailAndPassword(arguments, result);
+              }
+            }));
+    // 登出
+    registry.register(MethodSpec.builder("signOut")
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理登出的方法
+                handleSignOut(arguments, result);
+              }
+            }));
+    // 删除用户
+    registry.register(MethodSpec.builder("delete")
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理删除用户的方法
+                handleDelete(arguments, result);
+              }
+            }));
+    // 重新进行邮箱帐户认证
+    registry.register(MethodSpec.builder("reauthenticateEmail")
+            .required("email", MethodSpec.ArgumentType.STRING)
+            .required("password", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理重新进行邮箱帐户认证的方法
+                handleReauthenticateEmail(arguments, result);
+              }
+            }));
+    // 获取用户ID标识符
+    registry.register(MethodSpec.builder("getIdToken")
+            .optional("refresh", MethodSpec.ArgumentType.BOOLEAN)
+            .returns(ResultShape.STRING)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理获取用户ID标识符的方法
+                handleGetToken(arguments, result);
+              }
+            }));
+    // 绑定电子邮箱和密码
+    registry.register(MethodSpec.builder("linkWithEmailAndPassword")
+            .required("email", MethodSpec.ArgumentType.STRING)
+            .required("password", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.USER)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理绑定电子邮箱和密码的方法
+                handleLinkWithEmailAndPassword(arguments, result);
+              }
+            }));
+    // 发送电子邮箱验证邮件
+    registry.register(MethodSpec.builder("sendEmailVerification")
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理发送电子邮箱验证邮件的方法
+                handleSendEmailVerification(arguments, result);
+              }
+            }));
+    // 发送重置密码邮件
+    registry.register(MethodSpec.builder("sendPasswordResetEmail")
+            .required("email", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理发送重置密码邮件的方法
+                handleSendPasswordResetEmail(arguments, result);
+              }
+            }));
+    // 更新帐号邮箱
+    registry.register(MethodSpec.builder("updateEmail")
+            .required("email", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理更新帐号邮箱的方法
+                handleUpdateEmail(arguments, result);
+              }
+            }));
+    // 使用手机号和密码创建用户
+    registry.register(MethodSpec.builder("createUserWithPhoneAndPassword")
+            .required("phone", MethodSpec.ArgumentType.STRING)
+            .required("password", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.USER)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理使用手机号和密码创建用户的方法
+                handleCreateUserWithPhoneAndPassword(arguments, result);
+              }
+            }));
+    // 使用手机号和密码登录
+    registry.register(MethodSpec.builder("signInWithPhoneAndPassword")
+            .required("phone", MethodSpec.ArgumentType.STRING)
+            .required("password", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.USER)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理使用手机号和密码登录的方法
+                handleSignInWithPhoneAndPassword(arguments, result);
+              }
+            }));
+    // 发送验证用户的手机验证码
+    registry.register(MethodSpec.builder("sendPhoneVerification")
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理发送验证用户的手机验证码的方法
+                handleSendPhoneVerification(arguments, result);
+              }
+            }));
+    // 确认验证用户的手机验证码
+    registry.register(MethodSpec.builder("verifyPhoneSmsCode")
+            .required("realSms", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理确认验证用户的手机验证码的方法
+                handleVerifyPhoneSmsCode(arguments, result);
+              }
+            }));
+    // 发送重置密码的手机验证码
+    registry.register(MethodSpec.builder("sendPasswordResetSms")
+            .required("phone", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理发送验证用户的手机验证码的方法
+                handleSendPasswordResetSms(arguments, result);
+              }
+            }));
+    // 确认重置密码的手机验证码
+    registry.register(MethodSpec.builder("confirmPasswordResetSms")
+            .required("phone", MethodSpec.ArgumentType.STRING)
+            .required("realSms", MethodSpec.ArgumentType.STRING)
+            .required("newPassword", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理确认重置密码的手机验证码的方法
+                handleConfirmPasswordResetSms(arguments, result);
+              }
+            }));
+    // 更新帐号手机号码
+    registry.register(MethodSpec.builder("updatePhone")
+            .required("phone", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理更新帐号手机号码的方法
+                handleUpdatePhone(arguments, result);
+              }
+            }));
+    // 重新进行手机帐户认证
+    registry.register(MethodSpec.builder("reauthenticatePhone")
+            .required("phone", MethodSpec.ArgumentType.STRING)
+            .required("password", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理重新进行手机帐户认证的方法
+                handleReauthenticatePhone(arguments, result);
+              }
+            }));
+    // 开始监听认证状态
+    registry.register(MethodSpec.builder("startListeningAuthState")
+            .optional("multiplexed", MethodSpec.ArgumentType.BOOLEAN)
+            .returns(ResultShape.INTEGER)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理开始监听认证状态的方法
+                handleStartListeningAuthState(arguments, result);
+              }
+            }));
+    // 停止监听认证状态
+    registry.register(MethodSpec.builder("stopListeningAuthState")
+            .required("id", MethodSpec.ArgumentType.INTEGER)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理停止监听认证状态的方法
+                handleStopListeningAuthState(arguments, result);
+              }
+            }));
+    // 停止所有的认证状态监听
+    registry.register(MethodSpec.builder("stopAllListeners")
+            .returns(ResultShape.INTEGER)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理停止所有认证状态监听的方法
+                handleStopAllListeners(result);
+              }
+            }));
+    // 配置插件
+    registry.register(MethodSpec.builder("configure")
+            .optional("offMainThread", MethodSpec.ArgumentType.BOOLEAN)
+            .optional("sendLimits", MethodSpec.ArgumentType.MAP)
+            .optional("retry", MethodSpec.ArgumentType.MAP)
+            .optional("defaultTimeoutMs", MethodSpec.ArgumentType.INTEGER)
+            .optional("persistSession", MethodSpec.ArgumentType.BOOLEAN)
+            .optional("prewarm", MethodSpec.ArgumentType.BOOLEAN)
+            .optional("deltaEvents", MethodSpec.ArgumentType.BOOLEAN)
+            .optional("offlineQueue", MethodSpec.ArgumentType.BOOLEAN)
+            .optional("maxSessions", MethodSpec.ArgumentType.INTEGER)
+            .optional("tokenRefreshWindowMs", MethodSpec.ArgumentType.INTEGER)
+            .optional("binaryUsers", MethodSpec.ArgumentType.BOOLEAN)
+            .returns(ResultShape.NONE)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理配置插件的方法
+                handleConfigure(arguments, result);
+              }
+            }));
+    // 获取调用统计
+    registry.register(MethodSpec.builder("getMetrics")
+            .optional("reset", MethodSpec.ArgumentType.BOOLEAN)
+            .returns(ResultShape.MAP)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理获取调用统计的方法
+                handleGetMetrics(arguments, result);
+              }
+            }));
+    // 取消进行中的调用
+    registry.register(MethodSpec.builder("cancel")
+            .required("id", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.BOOLEAN)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理取消进行中的调用的方法
+                handleCancel(arguments, result);
+              }
+            }));
+    // 获取发送限流状态
+    registry.register(MethodSpec.builder("getSendLimiterState")
+            .returns(ResultShape.MAP)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理获取发送限流状态的方法
+                handleGetSendLimiterState(arguments, result);
+              }
+            }));
+    // 获取离线修改队列状态
+    registry.register(MethodSpec.builder("getMutationQueueState")
+            .returns(ResultShape.MAP)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 返回队列深度和重放进度给Flutter客户端
+                result.success(mutationQueue.snapshot());
+              }
+            }));
+    // 立即重放离线修改队列，例如在网络恢复时调用
+    registry.register(MethodSpec.builder("replayMutations")
+            .returns(ResultShape.MAP)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                mutationQueue.replay();
+                // 返回队列深度和重放进度给Flutter客户端
+                result.success(mutationQueue.snapshot());
+              }
+            }));
+    // 列出已缓存的会话
+    registry.register(MethodSpec.builder("listSessions")
+            .returns(ResultShape.LIST)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理列出已缓存的会话的方法
+                handleListSessions(result);
+              }
+            }));
+    // 切换到已缓存的会话
+    registry.register(MethodSpec.builder("switchSession")
+            .required("uid", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.USER)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理切换会话的方法
+                handleSwitchSession(arguments, result);
+              }
+            }));
+    // 移除已缓存的会话
+    registry.register(MethodSpec.builder("evictSession")
+            .required("uid", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.BOOLEAN)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理移除会话的方法
+                handleEvictSession(arguments, result);
+              }
+            }));
+    // 批量创建测试帐号
+    registry.register(MethodSpec.builder("bulkCreateUsers")
+            .required("credentials", MethodSpec.ArgumentType.LIST)
+            .optional("concurrency", MethodSpec.ArgumentType.INTEGER)
+            .optional("progressEvery", MethodSpec.ArgumentType.INTEGER)
+            .optional("jobId", MethodSpec.ArgumentType.INTEGER)
+            .optional("requestId", MethodSpec.ArgumentType.STRING)
+            .returns(ResultShape.MAP)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理批量创建测试帐号的方法
+                handleBulkCreateUsers(arguments, result);
+              }
+            }));
+    // 批量调用
+    registry.register(MethodSpec.builder("batch")
+            .required("calls", MethodSpec.ArgumentType.LIST)
+            .optional("continueOnError", MethodSpec.ArgumentType.BOOLEAN)
+            .returns(ResultShape.LIST)
+            .handledBy(new MethodHandler() {
+              @Override
+              public void onMethodCall(MethodArguments arguments, Result result) {
+                // 调用处理批量调用的方法
+                handleBatch(arguments, result);
+              }
+            }));
+  }
+
+  /**
+   * 处理配置插件
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleConfigure(MethodArguments arguments, Result result) {
+    // 声明定义工作线程模式变量，未设置时为空值
+    Boolean offMainThread = arguments.get(0);
+    // 是否设置了工作线程模式
+    if (offMainThread != null) {
+      // 工作线程模式下，参数解析、SDK完成回调和结果构建都在有界的工作线程池中进行
+      executors.setOffMainThread(offMainThread);
+    }
+    // 声明定义发送限流参数变量，未设置时为空值
+    Map<String, Object> sendLimits = arguments.get(1);
+    // 是否设置了发送限流参数
+    if (sendLimits != null) {
+      sendGuard.configure(sendLimits);
+    }
+    // 声明定义重试参数变量，未设置时为空值
+    Map<String, Object> retry = arguments.get(2);
+    // 是否设置了重试参数
+    if (retry != null) {
+      retryPolicy.configure(retry);
+    }
+    // 声明定义全局默认截止毫秒数变量，未设置时为空值
+    Integer defaultTimeoutMs = arguments.getInteger(3);
+    // 是否设置了全局默认截止时间，0表示不设截止时间
+    if (defaultTimeoutMs != null) {
+      deadlines.setDefaultTimeoutMillis(defaultTimeoutMs);
+    }
+    // 声明定义会话快照开关变量，未设置时为空值
+    final Boolean persistSession = arguments.get(4);
+    // 是否设置了会话快照开关，开启时立即保存当前用户，关闭时删除已保存的快照
+    if (persistSession != null) {
+      // 声明定义当前用户快照变量
+      final ImmutableMap<String, Object> userMap = userSnapshot;
+      executors.execute(new Runnable() {
+        @Override
+        public void run() {
+          sessionStore.setEnabled(persistSession);
+          if (snapshotReady) {
+            sessionStore.write(userMap, userMap != null ? tokenCache.peek((String) userMap.get("uid")) : null);
+          }
+        }
+      });
+    }
+    // 延迟初始化模式下是否在后台线程中提前初始化后端
+    if (arguments.getBoolean(5) && lazyBackend != null && !lazyBackend.isInitialized()) {
+      executors.execute(new Runnable() {
+        @Override
+        public void run() {
+          lazyBackend.backend();
+        }
+      });
+    }
+    // 声明定义增量编码开关变量，未设置时为空值
+    Boolean delta = arguments.get(6);
+    // 是否设置了增量编码开关，开启后每个句柄的第一条消息仍是完整快照
+    if (delta != null) {
+      deltaEvents = delta;
+    }
+    // 声明定义离线修改队列开关变量，未设置时为空值
+    final Boolean offlineQueue = arguments.get(7);
+    // 是否设置了离线修改队列开关，关闭时删除日志并丢弃未发送的修改
+    if (offlineQueue != null) {
+      executors.execute(new Runnable() {
+        @Override
+        public void run() {
+          mutationQueue.setEnabled(offlineQueue);
+        }
+      });
+    }
+    // 声明定义会话数上限变量，未设置时为空值
+    Integer maxSessions = arguments.getInteger(8);
+    // 是否设置了会话数上限，0表示关闭并删除所有会话，开启时立即记录当前用户
+    if (maxSessions != null) {
+      sessions.setMaxSessions(maxSessions);
+      // 声明定义当前用户快照变量
+      ImmutableMap<String, Object> userMap = userSnapshot;
+      if (userMap != null) {
+        sessions.record(userMap, tokenCache.peek((String) userMap.get("uid")));
+      }
+      executors.execute(new Runnable() {
+        @Override
+        public void run() {
+          sessions.load();
+          sessions.persist();
+        }
+      });
+    }
+    // 声明定义令牌的提前刷新窗口变量，未设置时为空值
+    Integer tokenRefreshWindowMs = arguments.getInteger(9);
+    // 是否设置了提前刷新窗口，在之后缓存的令牌过期前这么多毫秒由后台刷新，令牌流随之推送新令牌
+    if (tokenRefreshWindowMs != null) {
+      tokenCache.setRefreshWindowMillis(Math.max(0, tokenRefreshWindowMs));
+    }
+    // 声明定义二进制用户格式开关变量，未设置时为空值
+    Boolean binary = arguments.get(10);
+    // 是否设置了二进制用户格式开关，之后的用户结果和认证状态消息中的用户以字节数组发送
+    if (binary != null) {
+      binaryUsers = binary;
+    }
+    // 返回结果给Flutter客户端
+    result.success(null);
+  }
+
+  /**
+   * 处理列出已缓存的会话
+   * @param result 返回客户端的结果
+   */
+  private void handleListSessions(Result result) {
+    // 声明定义当前用户快照变量
+    ImmutableMap<String, Object> userMap = userSnapshot;
+    // 返回按最近使用排列的会话列表给Flutter客户端
+    result.success(sessions.list(userMap != null ? (String) userMap.get("uid") : null));
+  }
+
+  /**
+   * 处理切换会话，只在本地改变呈现的当前用户和令牌，不发起网络请求。
+   * 切换到SDK的登录用户时回到呈现SDK的状态
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleSwitchSession(MethodArguments arguments, Result result) {
+    // 声明定义用户ID变量，并获取调用参数中的用户ID
+    String uid = arguments.getString(0);
+    // 声明定义切换到的会话变量
+    SessionManager.Session session = sessions.switchTo(uid);
+    if (session == null) {
+      result.error(AuthException.USER_NOT_FOUND, "No cached session for this user.", null);
+      return;
+    }
+    persistSessions();
+    // 声明定义当前用户快照变量
+    ImmutableMap<String, Object> userMap = userSnapshot;
+    // 切换到SDK的登录用户时返回最新的用户词典
+    if (userMap != null && uid.equals(userMap.get("uid"))) {
+      sessions.clearActive();
+      result.success(userMap);
+      return;
+    }
+    // 返回会话的用户词典给Flutter客户端
+    result.success(session.userMap);
+  }
+
+  /**
+   * 处理移除会话
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleEvictSession(MethodArguments arguments, Result result) {
+    // 声明定义是否移除了会话的变量
+    boolean evicted = sessions.evict(arguments.getString(0));
+    if (evicted) {
+      persistSessions();
+    }
+    // 返回是否移除了会话给Flutter客户端
+    result.success(evicted);
+  }
+
+  /**
+   * 是否正在呈现SDK的登录用户
+   * @return 没有切换到其他帐号的会话时返回true
+   */
+  private boolean presentsSdkUser() {
+    // 声明定义切换到的会话的用户ID变量
+    String activeUid = sessions.activeUid();
+    if (activeUid == null) {
+      return true;
+    }
+    // 声明定义当前用户快照变量
+    ImmutableMap<String, Object> userMap = userSnapshot;
+    return userMap != null && activeUid.equals(userMap.get("uid"));
+  }
+
+  /**
+   * 在工作线程中保存已缓存的会话
+   */
+  private void persistSessions() {
+    executors.execute(new Runnable() {
+      @Override
+      public void run() {
+        sessions.persist();
+      }
+    });
+  }
+
+  /**
+   * 处理获取调用统计
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleGetMetrics(MethodArguments arguments, Result result) {
+    // 声明定义统计快照变量，附带用户词典缓存的命中统计
+    ImmutableMap<String, Object> snapshot = ImmutableMap.<String, Object>builder()
+            .putAll(metrics.snapshot())
+            .put("userMapCache", userMapCache.snapshot())
+            .build();
+    // 是否在获取快照后清零统计
+    if (arguments.getBoolean(0)) {
+      metrics.reset();
+      userMapCache.resetCounts();
+    }
+    // 返回统计快照给Flutter客户端
+    result.success(snapshot);
+  }
+
+  /**
+   * 处理取消进行中的调用，被取消的调用以ERROR_CANCELLED返回，SDK任务本身无法中止，其结果会被丢弃
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleCancel(MethodArguments arguments, Result result) {
+    // 批量创建只停止尚未开始的帐号，已完成的部分仍通过结果表返回
+    BulkCreateJob job = bulkJobs.get(arguments.getString(0));
+    if (job != null) {
+      result.success(job.cancel());
+      return;
+    }
+    // 返回是否找到并取消了调用给Flutter客户端
+    result.success(deadlines.cancel(arguments.getString(0)));
+  }
+
+  /**
+   * 处理获取发送限流状态
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleGetSendLimiterState(MethodArguments arguments, Result result) {
+    // 返回限流器和断路器的状态快照给Flutter客户端
+    result.success(sendGuard.snapshot());
+  }
+
+  /**
+   * 处理批量创建测试帐号，在并发上限内调用SDK，按组向Flutter客户端报告进度
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleBulkCreateUsers(MethodArguments arguments, Result result) {
+    // 声明定义凭据列表变量，并获取调用参数中的凭据列表
+    List<?> credentials = arguments.get(0);
+    // 声明定义并发上限和每组帐号数变量，缺省时使用默认值
+    Integer concurrency = arguments.getInteger(1);
+    Integer progressEvery = arguments.getInteger(2);
+    // 声明定义Flutter端的任务ID变量，没有任务ID时不报告进度
+    final Integer jobId = arguments.getInteger(3);
+    // 声明定义请求ID变量，带有请求ID的批量创建可以被取消
+    final String requestId = arguments.getString(4);
+    BulkCreateJob job = new BulkCreateJob(backend, executors, credentials,
+            concurrency != null ? concurrency : BulkCreateJob.DEFAULT_CONCURRENCY,
+            jobId == null ? 0 : progressEvery != null ? progressEvery : BulkCreateJob.DEFAULT_CHUNK_SIZE,
+            new BulkCreateJob.Listener() {
+      @Override
+      public void onProgress(int completed, int total, List<Integer> indices,
+              List<String> uids, List<String> errors) {
+        final Map<String, Object> progress = new HashMap<>();
+        progress.put("job", jobId);
+        progress.put("completed", completed);
+        progress.put("total", total);
+        progress.put("indices", indices);
+        progress.put("uids", uids);
+        progress.put("errors", errors);
+        // 方法通道只能在主线程中使用
+        executors.runOnMain(new Runnable() {
+          @Override
+          public void run() {
+            channel.invokeMethod("onBulkCreateProgress", progress);
+          }
+        });
+      }
+
+      @Override
+      public void onFinished() {
+        if (requestId != null) {
+          bulkJobs.remove(requestId);
+        }
+      }
+    }, result);
+    if (requestId != null) {
+      bulkJobs.put(requestId, job);
+    }
+    job.start();
+  }
+
+  /**
+   * 处理批量调用，按顺序执行子调用，前一个子调用完成后才开始下一个
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleBatch(MethodArguments arguments, Result result) {
+    // 声明定义子调用列表变量，并获取调用参数中的子调用列表
+    List<Map<String, Object>> calls = arguments.get(0);
+    // 声明定义失败后是否继续的变量，默认在第一个失败处停止
+    boolean continueOnError = arguments.getBoolean(1);
+    // 从第一个子调用开始执行，批量调用超时或被取消后不再开始新的子调用
+    new BatchRun(calls, continueOnError, result, deadlines.deadlineOf(result)).pump();
+  }
+
+  /**
+   * 处理绑定电子邮箱和密码
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleLinkWithEmailAndPassword(MethodArguments arguments, final Result result) {
     // 声明定义邮箱变量，并获取调用参数中的邮箱
-    String email = arguments.get("email");
+    String email = arguments.getString(0);
     // 声明定义密码变量，并获取调用参数中的密码
-    String password = arguments.get("password");
-    // getEmailCredential方法返回一个带有邮箱和密码的用户凭证
-    // 当调用signInWithCredential(AuthCredential)或者linkWithCredential(AuthCredential)时候使用
-    AuthCredential credential = WilddogAuthProvider.getEmailCredential(email, password);
-    // linkWithCredential方法将当前用户与给定的登录认证方式绑定，之后支持绑定的所有登录认证方式
-    wilddogAuth.getCurrentUser().linkWithCredential(credential)
-            .addOnCompleteListener(activity, new SignInCompleteListener(result));
+    String password = arguments.getString(1);
+    // linkWithEmailAndPassword方法将当前用户与给定的邮箱认证方式绑定，之后支持绑定的所有登录认证方式
+    backend.linkWithEmailAndPassword(email, password, executors.onWorker(new SignInCompleteListener(result)));
   }
 
   /**
    * 处理当前用户
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleCurrentUser(MethodCall call, final Result result) {
-    // 当身份验证状态有一个变化的时候调用
-    //
-    // 使用addAuthStateListener(AuthStateListener)和
-    // removeAuthStateListener(AuthStateListener)来注册或者注销监听
-    final WilddogAuth.AuthStateListener listener = new WilddogAuth.AuthStateListener() {
-      @Override
-      public void onAuthStateChanged(WilddogAuth wilddogAuth) {
-        // 使用removeAuthStateListener(listener)注销认证状态的监听
-        wilddogAuth.removeAuthStateListener(this);
-        // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-        // 如果没有登录，则返回为空值
-        WilddogUser user = wilddogAuth.getCurrentUser();
-        // 声明不可变集合实例，并获取ImmutableMap类型的用户词典
-        ImmutableMap<String, Object> userMap = mapFromUser(user);
-        // 返回结果给Flutter客户端
-        result.success(userMap);
+  private void handleCurrentUser(MethodArguments arguments, final Result result) {
+    // 切换到其他帐号的会话时返回会话的用户
+    SessionManager.Session session = sessions.active();
+    if (session != null) {
+      result.success(session.userMap);
+      return;
+    }
+    synchronized (pendingCurrentUser) {
+      // 长期监听器是否还未收到第一次认证状态回调
+      if (!snapshotReady && persistedSnapshot == null) {
+        // 加入等待列表，在第一次回调或读取会话快照后返回结果
+        pendingCurrentUser.add(result);
+        return;
       }
-    };
+    }
+    // 还未收到第一次认证状态回调时返回上次保存的用户，之后的认证状态回调会更新快照
+    if (!snapshotReady) {
+      result.success(persistedSnapshot);
+      return;
+    }
+    // 直接返回当前用户快照给Flutter客户端
+    result.success(userSnapshot);
+  }
+
+  /**
+   * 从SDK获取当前用户并刷新当前用户快照
+   */
+  private void refreshSnapshot() {
+    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
+    // 如果没有登录，则返回为空值
+    updateSnapshot(backend.getCurrentUser());
+  }
 
-    // addAuthStateListener(listener)注册一个认证状态的监听
-    // 一个WilddogAuth对象可以设置多个监听对象，也可以为不同的WilddogAuth添加监听对象
-    wilddogAuth.addAuthStateListener(listener);
+  /**
+   * 更新当前用户快照，并返回结果给等待第一次回调的客户端
+   * @param user 当前用户，未登录时为空值
+   */
+  private void updateSnapshot(AuthUser user) {
+    // 声明定义不可变集合实例，并获取ImmutableMap类型的用户词典
+    ImmutableMap<String, Object> userMap = mapFromUser(user);
+    // 声明定义等待列表变量
+    List<Result> waiters;
+    // 声明定义是否刚登录的变量，登录后重放离线修改队列
+    boolean signedIn = userMap != null && (!snapshotReady || userSnapshot == null);
+    // 声明定义SDK的登录用户是否已改变的变量
+    boolean userChanged;
+    synchronized (pendingCurrentUser) {
+      userChanged = !snapshotReady || !Objects.equal(uidOf(userSnapshot), uidOf(userMap));
+      // 替换当前用户快照
+      userSnapshot = userMap;
+      snapshotReady = true;
+      persistedSnapshot = null;
+      // 取出等待第一次回调的客户端
+      waiters = new ArrayList<>(pendingCurrentUser);
+      pendingCurrentUser.clear();
+    }
+    // 返回结果给所有等待的Flutter客户端
+    for (Result waiter : waiters) {
+      waiter.success(userMap);
+    }
+    // SDK的登录用户改变后回到呈现SDK的登录用户，并记录新的会话
+    if (userChanged) {
+      sessions.clearActive();
+      // 登出时推送空值，登录时请求新用户的令牌
+      idTokenStream.onUserChanged(uidOf(userMap));
+    }
+    if (userMap != null && sessions.isEnabled()) {
+      sessions.record(userMap, tokenCache.peek((String) userMap.get("uid")));
+      persistSessions();
+    }
+    // 用户登录后重放离线修改队列中这个用户的修改
+    if (signedIn && mutationQueue.isEnabled()) {
+      mutationQueue.replay();
+    }
+    // 保存会话快照，未登录时删除快照
+    persistSession(userMap, userMap != null ? tokenCache.peek((String) userMap.get("uid")) : null);
+  }
+
+  /**
+   * 获取用户词典中的用户ID
+   * @param userMap 用户词典，未登录时为空值
+   * @return 用户ID，未登录时返回空值
+   */
+  private static String uidOf(Map<String, Object> userMap) {
+    return userMap != null ? (String) userMap.get("uid") : null;
+  }
+
+  /**
+   * 读取上次保存的会话快照，在第一次认证状态回调之前返回给等待的客户端
+   */
+  private void restoreSession() {
+    // 声明定义会话快照变量
+    SessionSnapshotStore.Snapshot snapshot = sessionStore.read();
+    if (snapshot == null) {
+      return;
+    }
+    // 恢复未过期的令牌，getIdToken无需等待网络请求
+    if (snapshot.idToken != null) {
+      tokenCache.seed((String) snapshot.userMap.get("uid"), snapshot.idToken);
+    }
+    // 声明定义等待列表变量
+    List<Result> waiters;
+    synchronized (pendingCurrentUser) {
+      // 已收到认证状态回调时以SDK的结果为准
+      if (snapshotReady) {
+        return;
+      }
+      persistedSnapshot = snapshot.userMap;
+      // 取出等待的客户端
+      waiters = new ArrayList<>(pendingCurrentUser);
+      pendingCurrentUser.clear();
+    }
+    // 返回上次保存的用户给所有等待的Flutter客户端
+    for (Result waiter : waiters) {
+      waiter.success(snapshot.userMap);
+    }
+  }
+
+  /**
+   * 在工作线程中保存会话快照
+   * @param userMap 当前用户词典，未登录时为空值
+   * @param idToken 当前用户的Wilddog Id令牌，可以为空值
+   */
+  private void persistSession(final ImmutableMap<String, Object> userMap, final String idToken) {
+    // 未开启会话快照时不切换线程
+    if (!sessionStore.isEnabled()) {
+      return;
+    }
+    executors.execute(new Runnable() {
+      @Override
+      public void run() {
+        sessionStore.write(userMap, idToken);
+      }
+    });
   }
 
   /**
    * 处理匿名登录
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleSignInAnonymously(MethodCall call, final Result result) {
+  private void handleSignInAnonymously(MethodArguments arguments, final Result result) {
     // signInAnonymously()使用匿名方法登录，不需要凭据，可以绑定其他认证方式
     // 这个操作将在Wilddog创建一个匿名的用户账号，其中通过getCurrentUser()获取用户信息包含uid
-    wilddogAuth.signInAnonymously()
-            .addOnCompleteListener(activity, new SignInCompleteListener(result));
+    backend.signInAnonymously(executors.onWorker(new SignInCompleteListener(result)));
   }
 
   /**
    * 处理更新用户属性
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleUpdateProfile(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
+  private void handleUpdateProfile(MethodArguments arguments, final Result result) {
     // 声明定义用户名变量，并获取调用参数中的用户名
-    String displayName = arguments.get("displayName");
+    String displayName = arguments.getString(0);
     // 声明定义用户头像变量，并获取调用参数中的用户头像
-    String photoURL = arguments.get("photoURL");
-    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-    // 如果没有登录，则返回为空值
-    WilddogUser user = wilddogAuth.getCurrentUser();
-    // 用来更新用户信息的请求构建器
-    UserProfileChangeRequest profileUpdates = new  UserProfileChangeRequest.Builder()
-            .setDisplayName(displayName)
-            .setPhotoUri(Uri.parse(photoURL))
-            .build();
-    // updateProfile()方法用于更新用户属性
-    user.updateProfile(profileUpdates).addOnCompleteListener(new OnCompleteListener<Void>() {
-      // 完成监听方法
+    String photoURL = arguments.getString(1);
+    // updateProfile()方法用于更新用户的姓名和头像URL，离线时加入离线修改队列
+    runMutation("updateProfile", Arrays.asList(displayName, photoURL), result);
+  }
+
+  /**
+   * 执行用户资料或帐号修改。开启离线修改队列时，网络失败的修改追加到日志并在本地确认，
+   * 同一个用户已有待发送的修改时直接排在它们后面，保持修改的顺序
+   * @param method 方法名称
+   * @param args 方法参数
+   * @param result 返回客户端的结果
+   */
+  private void runMutation(final String method, final List<String> args, final Result result) {
+    // 声明定义修改是否会改变用户信息的变量
+    final boolean refresh = !"updatePassword".equals(method);
+    // 未开启离线修改队列时直接执行
+    if (!mutationQueue.isEnabled()) {
+      applyMutation(method, args, executors.onWorker(new VoidCompleteListener(result, refresh)));
+      return;
+    }
+    // 获取当前用户，未登录时由后端返回错误
+    AuthUser user = backend.getCurrentUser();
+    final String uid = user != null ? user.getUid() : null;
+    if (uid != null && mutationQueue.hasPending(uid)) {
+      mutationQueue.enqueue(uid, method, args, result, null);
+      return;
+    }
+    applyMutation(method, args, executors.onWorker(new AuthBackend.Callback<Void>() {
+      @Override
+      public void onSuccess(Void value) {
+        new VoidCompleteListener(result, refresh).onSuccess(value);
+      }
+
       @Override
-      public void onComplete(Task<Void> task) {
-        // 操作结果是否为成功的
-        if (task.isSuccessful()) {
-          // 返回结果给Flutter客户端
-          result.success(null);
-        }else{
-          Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-          // 返回错误信息给客户端
-          result.success(task.getException().toString());
+      public void onFailure(Exception e) {
+        // 网络失败时加入离线修改队列，其他失败直接返回
+        if (uid != null && AuthException.NETWORK_REQUEST_FAILED.equals(AuthErrors.codeOf(e))) {
+          mutationQueue.enqueue(uid, method, args, result, e);
+        } else {
+          AuthErrors.reply(result, e);
         }
       }
-    });
+    }));
+  }
+
+  /**
+   * 把用户资料或帐号修改发送给后端
+   * @param method 方法名称
+   * @param args 方法参数
+   * @param callback 完成回调
+   */
+  private void applyMutation(String method, List<String> args, AuthBackend.Callback<Void> callback) {
+    switch (method) {
+      case "updateProfile":
+        backend.updateProfile(args.get(0), args.get(1), callback);
+        break;
+      case "updatePassword":
+        backend.updatePassword(args.get(0), callback);
+        break;
+      case "updateEmail":
+        backend.updateEmail(args.get(0), callback);
+        break;
+      case "updatePhone":
+        backend.updatePhone(args.get(0), callback);
+        break;
+      default:
+        callback.onFailure(new AuthException(AuthException.INVALID_ARGUMENT, "Unknown mutation " + method + "."));
+    }
   }
 
   /**
    * 处理更新用户邮箱或手机号认证密码
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleUpdatePassword(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
+  private void handleUpdatePassword(MethodArguments arguments, final Result result) {
     // 声明定义密码变量，并获取调用参数中的密码
-    String password = arguments.get("password");
-    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-    // 如果没有登录，则返回为空值
-    WilddogUser user = wilddogAuth.getCurrentUser();
-    // updatePassword()方法用于更新用户邮箱或手机号认证密码
-    user.updatePassword(password).addOnCompleteListener(new OnCompleteListener<Void>() {
-      // 完成监听方法
-      @Override
-      public void onComplete(Task<Void> task) {
-        // 操作结果是否为成功的
-        if (task.isSuccessful()) {
-          // 返回结果给Flutter客户端
-          result.success(null);
-        }else{
-          Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-          // 返回错误信息给客户端
-          result.success(task.getException().toString());
-        }
-      }
-    });
+    String password = arguments.getString(0);
+    // updatePassword()方法用于更新用户邮箱或手机号认证密码，离线时加入离线修改队列
+    runMutation("updatePassword", Collections.singletonList(password), result);
   }
 
   /**
    * 处理使用电子邮箱和密码创建用户
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleCreateUserWithEmailAndPassword(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
+  private void handleCreateUserWithEmailAndPassword(MethodArguments arguments, final Result result) {
     // 声明定义邮箱变量，并获取调用参数中的邮箱
-    String email = arguments.get("email");
+    String email = arguments.getString(0);
     // 声明定义密码变量，并获取调用参数中的密码
-    String password = arguments.get("password");
+    String password = arguments.getString(1);
     // 用给定的邮箱和密码创建一个用户账号，如果成功，这个用户也将登录成功
     // 然后可以通过getCurrentUser()访问用户信息和进行用户操作
-    wilddogAuth.createUserWithEmailAndPassword(email, password)
-            .addOnCompleteListener(activity, new SignInCompleteListener(result));
+    backend.createUserWithEmailAndPassword(email, password, executors.onWorker(new SignInCompleteListener(result)));
   }
 
   /**
    * 处理使用电子邮箱和密码登录
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleSignInWithEmailAndPassword(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
+  private void handleSignInWithEmailAndPassword(MethodArguments arguments, final Result result) {
     // 声明定义邮箱变量，并获取调用参数中的邮箱
-    String email = arguments.get("email");
+    String email = arguments.getString(0);
     // 声明定义密码变量，并获取调用参数中的密码
-    String password = arguments.get("password");
+    String password = arguments.getString(1);
     // 通过邮箱和密码进行登录认证，可以通过getCurrentUser获取当前登录认证用户信息
-    wilddogAuth.signInWithEmailAndPassword(email, password)
-            .addOnCompleteListener(activity, new SignInCompleteListener(result));
+    backend.signInWithEmailAndPassword(email, password, executors.onWorker(new SignInCompleteListener(result)));
   }
 
   /**
    * 处理发送电子邮箱验证邮件
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleSendEmailVerification(MethodCall call, final Result result) {
-    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-    // 如果没有登录，则返回为空值
-    WilddogUser user = wilddogAuth.getCurrentUser();
-    // 发送邮箱验证，需要登录邮箱进行验证
-    user.sendEmailVerification().addOnCompleteListener(new OnCompleteListener<Void>() {
-      // 完成监听方法
+  private void handleSendEmailVerification(MethodArguments arguments, final Result result) {
+    // 获取当前登录用户，以用户邮箱作为限流目标
+    AuthUser user = backend.getCurrentUser();
+    // 限流或断路时已返回错误信息给客户端
+    if (!sendGuard.tryAcquire("sendEmailVerification", user != null ? user.getEmail() : null, result)) {
+      return;
+    }
+    // 发送邮箱验证，需要登录邮箱进行验证，暂时性失败时按重试策略重试
+    retryPolicy.execute("sendEmailVerification", new RetryPolicy.Attempt<Void>() {
       @Override
-      public void onComplete(Task<Void> task) {
-        // 操作结果是否为成功的
-        if (task.isSuccessful()) {
-          // 返回结果给Flutter客户端
-          result.success(null);
-        }else{
-          Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-          // 返回错误信息给客户端
-          result.success(task.getException().toString());
-        }
+      public void run(AuthBackend.Callback<Void> callback) {
+        backend.sendEmailVerification(callback);
       }
-    });
+    }, executors.onWorker(sendGuard.watch("sendEmailVerification", new VoidCompleteListener(result, false))));
   }
 
   /**
    * 发送重置密码邮件
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleSendPasswordResetEmail(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
+  private void handleSendPasswordResetEmail(MethodArguments arguments, final Result result) {
     // 声明定义邮箱变量，并获取调用参数中的邮箱
-    String email = arguments.get("email");
+    String email = arguments.getString(0);
+    // 限流或断路时已返回错误信息给客户端
+    if (!sendGuard.tryAcquire("sendPasswordResetEmail", email, result)) {
+      return;
+    }
     // sendPasswordResetEmail()方法用于向用户发送重设密码邮件
-    wilddogAuth.sendPasswordResetEmail(email).addOnCompleteListener(
-      // 完整的监听器
-      new OnCompleteListener<Void>(){
-        // 完成监听方法
-        @Override
-        public void onComplete(Task<Void> task) {
-          // 操作结果是否为成功的
-          if (task.isSuccessful()) {
-            // 返回结果给Flutter客户端
-            result.success(null);
-          }else{
-            Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-            // 返回错误信息给客户端
-            result.success(task.getException().toString());
-          }
-        }
-      }
-    );
+    backend.sendPasswordResetEmail(email, executors.onWorker(
+            sendGuard.watch("sendPasswordResetEmail", new VoidCompleteListener(result, false))));
   }
 
   /**
    * 处理更新帐号邮箱
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleUpdateEmail(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
+  private void handleUpdateEmail(MethodArguments arguments, final Result result) {
     // 声明定义邮箱变量，并获取调用参数中的邮箱
-    String email = arguments.get("email");
-    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-    // 如果没有登录，则返回为空值
-    WilddogUser user = wilddogAuth.getCurrentUser();
-    // updateEmail()方法用于更新用户邮箱地址
-    user.updateEmail(email).addOnCompleteListener(new OnCompleteListener<Void>() {
-      // 完成监听方法
-      @Override
-      public void onComplete(Task<Void> task) {
-        // 操作结果是否为成功的
-        if (task.isSuccessful()) {
-          // 返回结果给Flutter客户端
-          result.success(null);
-        }else{
-          Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-          // 返回错误信息给客户端
-          result.success(task.getException().toString());
-        }
-      }
-    });
+    String email = arguments.getString(0);
+    // updateEmail()方法用于更新用户邮箱地址，离线时加入离线修改队列
+    runMutation("updateEmail", Collections.singletonList(email), result);
   }
 
   /**
    * 处理登出
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleSignOut(MethodCall call, final Result result) {
-    // 登出当前用户，清除登录数据
-    wilddogAuth.signOut();
+  private void handleSignOut(MethodArguments arguments, final Result result) {
+    // 登出当前用户，清除登录数据，已缓存的会话保留到被移除为止
+    backend.signOut();
+    // 回到呈现SDK的登录用户
+    sessions.clearActive();
+    // 清除已缓存的Wilddog Id令牌
+    tokenCache.clear();
+    // 用户信息已改变，刷新当前用户快照
+    refreshSnapshot();
     // 返回结果给Flutter客户端
     result.success(null);
   }
 
   /**
    * 处理删除用户
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleDelete(MethodCall call, final Result result) {
-    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-    // 如果没有登录，则返回为空值
-    WilddogUser user = wilddogAuth.getCurrentUser();
+  private void handleDelete(MethodArguments arguments, final Result result) {
     // 通过delete()方法删除用户
-    user.delete().addOnCompleteListener(
-        // 完整的监听器
-        new OnCompleteListener<Void>(){
-          // 完成监听方法
-          @Override
-          public void onComplete(Task<Void> task) {
-            // 操作结果是否为成功的
-            if (task.isSuccessful()) {
-              // 返回结果给Flutter客户端
-              result.success(null);
-            }else{
-              Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-              // 返回错误信息给客户端
-              result.success(task.getException().toString());
-            }
-          }
-        }
-    );
+    backend.delete(executors.onWorker(new VoidCompleteListener(result, true)));
   }
 
   /**
    * 处理重新进行邮箱帐户认证
-   * @param call 客户端传递的调用参数
+   * @param arguments 已校验的调用参数
    * @param result 返回客户端的结果
    */
-  private void handleReauthenticateEmail(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
+  private void handleReauthenticateEmail(MethodArguments arguments, final Result result) {
     // 声明定义邮箱变量，并获取调用参数中的邮箱
-    String email = arguments.get("email");
+    final String email = arguments.getString(0);
     // 声明定义密码变量，并获取调用参数中的密码
-    String password = arguments.get("password");
-    // getEmailCredential方法返回一个带有邮箱和密码的用户凭证
-    // 当调用signInWithCredential(AuthCredential)或者linkWithCredential(AuthCredential)时候使用
-    AuthCredential credential = WilddogAuthProvider.getEmailCredential(email, password);
-    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-    // 如果没有登录，则返回为空值
-    WilddogUser user = wilddogAuth.getCurrentUser();
-    // reauthenticate(credential)方法用于对用户重新进行身份认证
-    user.reauthenticate(credential).addOnCompleteListener(new OnCompleteListener<Void>() {
-      // 完成监听方法
+    final String password = arguments.getString(1);
+    // reauthenticateEmail()方法使用邮箱和密码对用户重新进行身份认证，暂时性失败时按重试策略重试
+    retryPolicy.execute("reauthenticateEmail", new RetryPolicy.Attempt<Void>() {
+      @Override
+      public void run(AuthBackend.Callback<Void> callback) {
+        backend.reauthenticateEmail(email, password, callback);
+      }
+    }, executors.onWorker(new VoidCompleteListener(result, false)));
+  }
+
+  /**
+   * 处理使用手机号和密码创建用户
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleCreateUserWithPhoneAndPassword(MethodArguments arguments, final Result result) {
+    // 声明定义手机号变量，并获取调用参数中的手机号
+    String phone = arguments.getString(0);
+    // 声明定义密码变量，并获取调用参数中的密码
+    String password = arguments.getString(1);
+    // 用给定的手机号和密码创建一个用户账号，如果成功，这个用户也将登录成功
+    backend.createUserWithPhoneAndPassword(phone, password, executors.onWorker(new SignInCompleteListener(result)));
+  }
+
+  /**
+   * 处理使用手机号和密码登录
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleSignInWithPhoneAndPassword(MethodArguments arguments, final Result result) {
+    // 声明定义手机号变量，并获取调用参数中的手机号
+    String phone = arguments.getString(0);
+    // 声明定义密码变量，并获取调用参数中的密码
+    String password = arguments.getString(1);
+    // 将手机号码和密码传递到signInWithPhoneAndPassword即可登录此用户
+    backend.signInWithPhoneAndPassword(phone, password, executors.onWorker(new SignInCompleteListener(result)));
+  }
+
+  /**
+   * 处理发送验证用户的手机验证码
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleSendPhoneVerification(MethodArguments arguments, final Result result) {
+    // 获取当前登录用户，以用户手机号作为限流目标
+    AuthUser user = backend.getCurrentUser();
+    // 限流或断路时已返回错误信息给客户端
+    if (!sendGuard.tryAcquire("sendPhoneVerification", user != null ? user.getPhone() : null, result)) {
+      return;
+    }
+    // 发送验证用户的手机验证码
+    backend.sendPhoneVerification(executors.onWorker(
+            sendGuard.watch("sendPhoneVerification", new VoidCompleteListener(result, false))));
+  }
+
+  /**
+   * 处理确认验证用户的手机验证码
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleVerifyPhoneSmsCode(MethodArguments arguments, final Result result) {
+    // 声明定义验证码变量，并获取调用参数中的验证码
+    String realSms = arguments.getString(0);
+    // 发送验证用户的手机验证码到手机后，通过verifyPhoneSmsCode()方法验证手机验证码
+    backend.verifyPhoneSmsCode(realSms, executors.onWorker(new VoidCompleteListener(result, true)));
+  }
+
+  /**
+   * 处理发送重置密码的手机验证码
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleSendPasswordResetSms(MethodArguments arguments, final Result result) {
+    // 声明定义手机号变量，并获取调用参数中的手机号
+    String phone = arguments.getString(0);
+    // 限流或断路时已返回错误信息给客户端
+    if (!sendGuard.tryAcquire("sendPasswordResetSms", phone, result)) {
+      return;
+    }
+    // 发送重置密码的手机验证码
+    backend.sendPasswordResetSms(phone, executors.onWorker(
+            sendGuard.watch("sendPasswordResetSms", new VoidCompleteListener(result, false))));
+  }
+
+  /**
+   * 处理确认重置密码的手机验证码
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleConfirmPasswordResetSms(MethodArguments arguments, final Result result) {
+    // 声明定义手机号变量，并获取调用参数中的手机号
+    String phone = arguments.getString(0);
+    // 声明定义验证码变量，并获取调用参数中的验证码
+    String realSms = arguments.getString(1);
+    // 声明定义密码变量，并获取调用参数中的密码
+    String newPassword = arguments.getString(2);
+    // 发送重置密码的手机验证码到手机，通过confirmPasswordResetSms方法验证手机验证码
+    backend.confirmPasswordResetSms(phone, realSms, newPassword, executors.onWorker(new VoidCompleteListener(result, false)));
+  }
+
+  /**
+   * 处理更新手机号码
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleUpdatePhone(MethodArguments arguments, final Result result) {
+    // 声明定义手机号码变量，并获取调用参数中的手机号码
+    String phone = arguments.getString(0);
+    // updatePhone()方法用于更新当前用户的手机号信息，离线时加入离线修改队列
+    runMutation("updatePhone", Collections.singletonList(phone), result);
+  }
+
+  /**
+   * 处理重新进行手机帐户认证
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleReauthenticatePhone(MethodArguments arguments, final Result result) {
+    // 声明定义手机号码变量，并获取调用参数中的手机号码
+    final String phone = arguments.getString(0);
+    // 声明定义密码变量，并获取调用参数中的密码
+    final String password = arguments.getString(1);
+    // reauthenticatePhone()方法使用手机号和密码对用户重新进行身份认证，暂时性失败时按重试策略重试
+    retryPolicy.execute("reauthenticatePhone", new RetryPolicy.Attempt<Void>() {
       @Override
-      public void onComplete( Task<Void> task) {
-        // 操作结果是否为成功的
-        if (task.isSuccessful()) {
-          // 返回结果给Flutter客户端
-          result.success(null);
-        }else{
-          Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-          // 返回错误信息给客户端
-          result.success(task.getException().toString());
+      public void run(AuthBackend.Callback<Void> callback) {
+        backend.reauthenticatePhone(phone, password, callback);
+      }
+    }, executors.onWorker(new VoidCompleteListener(result, false)));
+  }
+
+  /**
+   * 处理获取用户ID标识符
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleGetToken(MethodArguments arguments, final Result result) {
+    // 声明定义刷新变量，并获取调用参数中的刷新
+    boolean refresh = arguments.getBoolean(0);
+    // 切换到其他帐号的会话时返回会话的令牌，SDK只能为登录用户刷新令牌
+    if (!presentsSdkUser()) {
+      SessionManager.Session session = sessions.active();
+      String idToken = session != null ? session.idToken : null;
+      if (!refresh && IdTokenCache.decodeExpiry(idToken) > System.currentTimeMillis()) {
+        result.success(idToken);
+      } else {
+        result.error(AuthException.REQUIRES_RECENT_LOGIN,
+                "The cached session token cannot be refreshed; sign in to this account again.", null);
+      }
+      return;
+    }
+    // 从令牌缓存中获取Wilddog Id令牌，缓存有效时立即返回，
+    // 否则合并并发的请求，由getToken()在身份认证成功后返回Wilddog Id token字符串
+    tokenCache.getToken(refresh, result);
+  }
+
+  /**
+   * 处理开始监听认证状态
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleStartListeningAuthState(MethodArguments arguments, final Result result) {
+    // 已从宿主分离时监听器不会收到任何回调
+    if (!listeners.isAttached()) {
+      result.error(AuthException.DETACHED, "The plugin is detached from its host.", null);
+      return;
+    }
+    // 声明定义句柄变量，由注册表原子地分配
+    final int handle = listeners.allocate();
+    // 客户端是否请求多路复用模式
+    if (arguments.getBoolean(0)) {
+      // 在多路复用模式下注册句柄
+      startMultiplexedListening(handle, result);
+      return;
+    }
+    // AuthStateListener会在身份验证状态有一个变化的时候调用
+    AuthBackend.AuthStateListener listener = new HandleAuthStateListener(handle);
+    // 在注册表中添加句柄对应监听器，并注册认证状态的监听
+    listeners.add(handle, listener);
+    // 返回句柄变量
+    result.success(handle);
+  }
+
+  /**
+   * 处理停止监听认证状态
+   * @param arguments 已校验的调用参数
+   * @param result 返回客户端的结果
+   */
+  private void handleStopListeningAuthState(MethodArguments arguments, final Result result) {
+    // 声明定义句柄变量，并获取调用参数中的句柄
+    Integer id = arguments.getInteger(0);
+    // 在注册表中按键移除句柄，独立模式和多路复用模式的句柄都可以移除
+    if (listeners.remove(id)) {
+      // 返回结果给Flutter客户端
+      result.success(null);
+    } else {
+      // 返回错误信息
+      result.error(AuthException.INVALID_ARGUMENT,
+              String.format("Listener with identifier '%d' not found.", id),
+              null);
+    }
+  }
+
+  /**
+   * 处理停止所有认证状态监听，例如Flutter端热重启之后清理上一次运行留下的句柄
+   * @param result 返回客户端的结果
+   */
+  private void handleStopAllListeners(Result result) {
+    // 返回注销的句柄数
+    result.success(listeners.removeAll());
+  }
+
+  /**
+   * 在多路复用模式下注册句柄，所有句柄共享一个SDK监听器和一条批量通道消息
+   * @param handle 句柄
+   * @param result 返回客户端的结果
+   */
+  private void startMultiplexedListening(int handle, Result result) {
+    // 共享监听器已注册时，新句柄不会收到SDK的初始回调
+    boolean sendInitial = listeners.addMultiplexed(handle) && snapshotReady;
+    // 返回句柄变量
+    result.success(handle);
+    // 是否需要单独发送初始状态
+    if (sendInitial) {
+      // 声明定义初始状态消息的参数，增量模式下使用共享监听器上一次发送的快照，
+      // 使新句柄与之后的增量消息版本一致，否则用当前用户快照
+      ImmutableMap<String, Object> snapshot = deltaEvents ? multiplexedListener.encoder.snapshot() : null;
+      final ImmutableMap<String, Object> arguments = snapshot != null
+              ? eventArguments("ids", ImmutableList.of(handle), snapshot)
+              : batchArguments(ImmutableList.of(handle), userSnapshot);
+      // 通道消息只能在主线程中发送
+      executors.runOnMain(new Runnable() {
+        @Override
+        public void run() {
+          channel.invokeMethod("onAuthStateChangedBatch", arguments, new AuthStateReply());
         }
-      }
-    });
+      });
+    }
   }
 
   /**
-   * 处理使用手机号和密码创建用户
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 生成批量认证状态改变消息的参数
+   * @param ids 订阅的句柄列表
+   * @param userMap 用户词典，未登录时为空值
+   * @return 包含句柄列表和用户词典的参数
    */
-  private void handleCreateUserWithPhoneAndPassword(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
-    // 声明定义手机号变量，并获取调用参数中的手机号
-    String phone = arguments.get("phone");
-    // 声明定义密码变量，并获取调用参数中的密码
-    String password = arguments.get("password");
-    // 用给定的手机号和密码创建一个用户账号，如果成功，这个用户也将登录成功
-    wilddogAuth.createUserWithPhoneAndPassword(phone, password)
-            .addOnCompleteListener(activity, new SignInCompleteListener(result));
+  private ImmutableMap<String, Object> batchArguments(
+          ImmutableList<Integer> ids, ImmutableMap<String, Object> userMap) {
+    // 获取ImmutableMap类型的自定义用户词典，包含句柄列表
+    ImmutableMap.Builder<String, Object> builder =
+            ImmutableMap.<String, Object>builder().put("ids", ids);
+    // 用户词典是否不等于空值
+    if (userMap != null) {
+      // 在自定义用户词典中添加用户词典
+      builder.put("user", userPayload(userMap));
+    }
+    return builder.build();
   }
 
   /**
-   * 处理使用手机号和密码登录
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 生成认证状态消息的参数
+   * @param key 句柄的键，独立模式为id，多路复用模式为ids
+   * @param handles 句柄或句柄列表
+   * @param fields 增量编码器生成的字段
+   * @return 包含句柄和编码字段的参数
    */
-  private void handleSignInWithPhoneAndPassword(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
-    // 声明定义手机号变量，并获取调用参数中的手机号
-    String phone = arguments.get("phone");
-    // 声明定义密码变量，并获取调用参数中的密码
-    String password = arguments.get("password");
-    // 将手机号码和密码传递到signInWithPhoneAndPassword即可登录此用户
-    wilddogAuth.signInWithPhoneAndPassword(phone, password)
-            .addOnCompleteListener(activity, new SignInCompleteListener(result));
+  @SuppressWarnings("unchecked")
+  private ImmutableMap<String, Object> eventArguments(
+          String key, Object handles, ImmutableMap<String, Object> fields) {
+    // 声明定义完整快照中的用户词典变量
+    ImmutableMap<String, Object> user = (ImmutableMap<String, Object>) fields.get(UserDeltaEncoder.USER);
+    if (user == null || !binaryUsers) {
+      return ImmutableMap.<String, Object>builder().put(key, handles).putAll(fields).build();
+    }
+    // 二进制格式下编码完整快照中的用户词典，增量消息中改变的字段保持词典格式
+    ImmutableMap.Builder<String, Object> builder = ImmutableMap.<String, Object>builder().put(key, handles);
+    for (Map.Entry<String, Object> entry : fields.entrySet()) {
+      builder.put(entry.getKey(), entry.getValue() == user ? userPayload(user) : entry.getValue());
+    }
+    return builder.build();
   }
 
   /**
-   * 处理发送验证用户的手机验证码
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 按当前的用户格式生成发送给Flutter端的用户
+   * @param userMap 用户词典，可以为空值
+   * @return 二进制格式下为编码后的字节数组，否则或无法编码时为用户词典
    */
-  private void handleSendPhoneVerification(MethodCall call, final Result result) {
-    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-    // 如果没有登录，则返回为空值
-    WilddogUser user = wilddogAuth.getCurrentUser();
-    // 发送邮箱验证，需要登录邮箱进行验证
-    user.sendPhoneVerification().addOnCompleteListener(
-      // 完整的监听器
-      new OnCompleteListener<Void>(){
-        // 完成监听方法
-        @Override
-        public void onComplete(Task<Void> task) {
-          // 操作结果是否为成功的
-          if (task.isSuccessful()) {
-            // 返回结果给Flutter客户端
-            result.success(null);
-          }else{
-            Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-            // 返回错误信息给客户端
-            result.success(task.getException().toString());
-          }
-        }
-      }
-    );
+  private Object userPayload(Map<String, Object> userMap) {
+    if (!binaryUsers || userMap == null) {
+      return userMap;
+    }
+    // 超出二进制格式限制的用户改为发送用户词典，Flutter端两种格式都能读取
+    byte[] encoded = userCodec.encode(userMap);
+    return encoded != null ? encoded : userMap;
   }
 
   /**
-   * 处理确认验证用户的手机验证码
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 编码一次认证状态改变，增量模式下使用编码器，否则发送完整的用户词典
+   * @param key 句柄的键，独立模式为id，多路复用模式为ids
+   * @param handles 句柄或句柄列表
+   * @param userMap 用户词典，未登录时为空值
+   * @param encoder 句柄的增量编码器
+   * @return 认证状态消息的参数
    */
-  private void handleVerifyPhoneSmsCode(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
-    // 声明定义验证码变量，并获取调用参数中的验证码
-    String realSms = arguments.get("realSms");
-    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-    // 如果没有登录，则返回为空值
-    WilddogUser user = wilddogAuth.getCurrentUser();
-    // 发送验证用户的手机验证码到手机，通过verifiyPhone(code)方法验证手机验证码
-    user.verifiyPhone(realSms).addOnCompleteListener(new OnCompleteListener<Void>() {
-      // 完成监听方法
-      @Override
-      public void onComplete( Task<Void> task) {
-        // 操作结果是否为成功的
-        if (task.isSuccessful()) {
-          // 返回结果给Flutter客户端
-          result.success(null);
-        }else{
-          Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-          // 返回错误信息给客户端
-          result.success(task.getException().toString());
-        }
-      }
-    });
+  private ImmutableMap<String, Object> encodeEvent(
+          String key, Object handles, ImmutableMap<String, Object> userMap, UserDeltaEncoder encoder) {
+    // 增量模式下只发送改变的字段
+    if (deltaEvents) {
+      return eventArguments(key, handles, encoder.encode(userMap));
+    }
+    // 关闭增量模式后清除编码状态，重新开启时先发送完整快照
+    encoder.reset();
+    // 获取ImmutableMap类型的自定义用户词典，包含句柄变量
+    ImmutableMap.Builder<String, Object> builder = ImmutableMap.<String, Object>builder().put(key, handles);
+    // 用户词典是否不等于空值
+    if (userMap != null) {
+      // 在自定义用户词典中添加用户词典
+      builder.put("user", userPayload(userMap));
+    }
+    return builder.build();
   }
 
   /**
-   * 处理发送重置密码的手机验证码
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 独立模式的监听器，每个句柄单独发送通道消息
    */
-  private void handleSendPasswordResetSms(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
-    // 声明定义手机号变量，并获取调用参数中的手机号
-    String phone = arguments.get("phone");
-    // 发送重置密码的手机验证码
-    wilddogAuth.sendPasswordResetSms(phone).addOnCompleteListener(
-        // 完整的监听器
-        new OnCompleteListener<Void>(){
-          // 完成监听方法
-          @Override
-          public void onComplete(Task<Void> task) {
-            // 操作结果是否为成功的
-            if (task.isSuccessful()) {
-              // 返回结果给Flutter客户端
-              result.success(null);
-            }else{
-              Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-              // 返回错误信息给客户端
-              result.success(task.getException().toString());
-            }
-          }
-        }
-    );
+  private class HandleAuthStateListener implements AuthBackend.AuthStateListener {
+    // 声明私有、不可变的句柄
+    private final int handle;
+    // 声明私有、不可变的这个句柄的增量编码器
+    private final UserDeltaEncoder encoder = new UserDeltaEncoder();
+
+    HandleAuthStateListener(int handle) {
+      this.handle = handle;
+    }
+
+    // onAuthStateChanged会在状态发生变化的时候调用：
+    // 注册监听时、用户登录时、用户登出时、当前用户改变时、当前用户的token改变时
+    @Override
+    public void onAuthStateChanged(AuthUser user) {
+      // 获取ImmutableMap类型的用户词典
+      ImmutableMap<String, Object> userMap = mapFromUser(user);
+      // 用指定的参数调用指定的Flutter方法，Flutter端的流已不存在时注销句柄
+      channel.invokeMethod("onAuthStateChanged", encodeEvent("id", handle, userMap, encoder), new AuthStateReply());
+    }
+
+    /**
+     * Flutter端报告版本不连续后重新发送完整快照
+     */
+    void resync() {
+      // 声明定义完整快照变量
+      ImmutableMap<String, Object> snapshot = encoder.snapshot();
+      if (snapshot != null) {
+        channel.invokeMethod("onAuthStateChanged", eventArguments("id", handle, snapshot), new AuthStateReply());
+      }
+    }
   }
 
   /**
-   * 处理确认重置密码的手机验证码
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 多路复用模式的共享监听器，每次状态改变只发送一条批量通道消息
    */
-  private void handleConfirmPasswordResetSms(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
-    // 声明定义手机号变量，并获取调用参数中的手机号
-    String phone = arguments.get("phone");
-    // 声明定义验证码变量，并获取调用参数中的验证码
-    String realSms = arguments.get("realSms");
-    // 声明定义密码变量，并获取调用参数中的密码
-    String newPassword = arguments.get("newPassword");
-    // 发送重置密码的手机验证码到手机，通过confirmPasswordResetSms方法验证手机验证码
-    wilddogAuth.confirmPasswordResetSms(phone,realSms,newPassword).addOnCompleteListener(
-            new OnCompleteListener<Void>() {
-      // 完成监听方法
-      @Override
-      public void onComplete( Task<Void> task) {
-        // 操作结果是否为成功的
-        if (task.isSuccessful()) {
-          // 返回结果给Flutter客户端
-          result.success(null);
-        }else{
-          Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-          // 返回错误信息给客户端
-          result.success(task.getException().toString());
-        }
+  private class MultiplexedAuthStateListener implements AuthBackend.AuthStateListener {
+    // 声明不可变的所有多路复用句柄共享的增量编码器
+    final UserDeltaEncoder encoder = new UserDeltaEncoder();
+
+    @Override
+    public void onAuthStateChanged(AuthUser currentUser) {
+      // 声明定义订阅的句柄列表变量，读取写时复制的快照，不需要加锁
+      ImmutableList<Integer> ids = listeners.multiplexedHandles();
+      // 没有订阅的句柄时不发送消息
+      if (ids.isEmpty()) {
+        return;
       }
-    });
+      // 获取ImmutableMap类型的用户词典，所有句柄共享同一个用户词典
+      ImmutableMap<String, Object> userMap = mapFromUser(currentUser);
+      // 用指定的参数调用指定的Flutter方法，一条消息携带所有订阅的句柄
+      channel.invokeMethod("onAuthStateChangedBatch", encodeEvent("ids", ids, userMap, encoder), new AuthStateReply());
+    }
+
+    /**
+     * Flutter端报告版本不连续后给这些句柄重新发送完整快照
+     * @param ids 需要重新同步的句柄列表
+     */
+    void resync(ImmutableList<Integer> ids) {
+      // 声明定义完整快照变量
+      ImmutableMap<String, Object> snapshot = encoder.snapshot();
+      if (snapshot != null && !ids.isEmpty()) {
+        channel.invokeMethod("onAuthStateChangedBatch", eventArguments("ids", ids, snapshot), new AuthStateReply());
+      }
+    }
   }
 
   /**
-   * 处理更新手机号码
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 认证状态消息的结果回调
+   *
+   * Flutter端返回已不存在流的句柄（stale），插件注销这些句柄，避免Flutter端的流被丢弃或热重启之后监听器一直泄漏；
+   * 以及增量消息版本不连续的句柄（resync），插件给这些句柄重新发送完整快照
    */
-  private void handleUpdatePhone(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
-    // 声明定义手机号码变量，并获取调用参数中的手机号码
-    String phone = arguments.get("phone");
-    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-    // 如果没有登录，则返回为空值
-    WilddogUser user = wilddogAuth.getCurrentUser();
-    // updatePhone()方法用于更新当前用户的手机号信息
-    user.updatePhone(phone).addOnCompleteListener(new OnCompleteListener<Void>() {
-      // 完成监听方法
-      @Override
-      public void onComplete(Task<Void> task) {
-        // 操作结果是否为成功的
-        if (task.isSuccessful()) {
-          // 返回结果给Flutter客户端
-          result.success(null);
-        }else{
-          Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-          // 返回错误信息给客户端
-          result.success(task.getException().toString());
+  private class AuthStateReply implements Result {
+    @Override
+    public void success(Object reply) {
+      // 只返回句柄列表的Flutter端没有增量模式
+      if (reply instanceof List) {
+        removeStale((List<?>) reply);
+      } else if (reply instanceof Map) {
+        Object stale = ((Map<?, ?>) reply).get("stale");
+        if (stale instanceof List) {
+          removeStale((List<?>) stale);
+        }
+        Object resync = ((Map<?, ?>) reply).get("resync");
+        if (resync instanceof List) {
+          resync((List<?>) resync);
         }
       }
-    });
+    }
+
+    /**
+     * 注销已不存在流的句柄
+     * @param handles 句柄列表
+     */
+    private void removeStale(List<?> handles) {
+      for (Object handle : handles) {
+        if (handle instanceof Integer) {
+          listeners.remove((Integer) handle);
+        }
+      }
+    }
+
+    /**
+     * 给版本不连续的句柄重新发送完整快照，多路复用模式的句柄合并为一条消息
+     * @param handles 句柄列表
+     */
+    private void resync(List<?> handles) {
+      // 声明定义多路复用模式的句柄列表的构造器
+      ImmutableList.Builder<Integer> multiplexed = ImmutableList.builder();
+      for (Object handle : handles) {
+        if (!(handle instanceof Integer)) {
+          continue;
+        }
+        AuthBackend.AuthStateListener listener = listeners.get((Integer) handle);
+        if (listener instanceof HandleAuthStateListener) {
+          ((HandleAuthStateListener) listener).resync();
+        } else if (listeners.isMultiplexed((Integer) handle)) {
+          multiplexed.add((Integer) handle);
+        }
+      }
+      multiplexedListener.resync(multiplexed.build());
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      // 回调中的错误不影响监听
+    }
+
+    @Override
+    public void notImplemented() {
+      // Flutter端还没有设置方法调用处理程序
+    }
   }
 
   /**
-   * 处理重新进行手机帐户认证
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 宿主Activity的生命周期回调，Activity销毁时分离插件并注销自身
    */
-  private void handleReauthenticatePhone(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, String> arguments = (Map<String, String>) call.arguments;
-    // 声明定义手机号码变量，并获取调用参数中的手机号码
-    String phone = arguments.get("phone");
-    // 声明定义密码变量，并获取调用参数中的密码
-    String password = arguments.get("password");
-    // getPhoneCredential方法返回一个带有手机号和密码的用户凭证
-    // 当调用signInWithCredential(AuthCredential)或者linkWithCredential(AuthCredential)时候使用
-    AuthCredential credential = WilddogAuthProvider.getPhoneCredential(phone, password);
-    // getCurrentUser()方法在如果有用户认证登录时返回登录用户
-    // 如果没有登录，则返回为空值
-    WilddogUser user = wilddogAuth.getCurrentUser();
-    // reauthenticate(credential)方法用于对用户重新进行身份认证
-    user.reauthenticate(credential).addOnCompleteListener(new OnCompleteListener<Void>() {
-      // 完成监听方法
-      @Override
-      public void onComplete( Task<Void> task) {
-        // 操作结果是否为成功的
-        if (task.isSuccessful()) {
-          // 返回结果给Flutter客户端
-          result.success(null);
-        }else{
-          Log.e(ERROR_REASON_EXCEPTION,task.getException().toString());
-          // 返回错误信息给客户端
-          result.success(task.getException().toString());
-        }
+  private static class HostLifecycleCallbacks implements Application.ActivityLifecycleCallbacks {
+    // 声明私有、不可变的宿主Activity，销毁后随回调一起注销，不会泄漏
+    private final Activity host;
+    // 声明私有、不可变的插件实例
+    private final WilddogAuthPlugin plugin;
+    // 声明私有、不可变的注册时的宿主代数
+    private final int generation;
+
+    HostLifecycleCallbacks(Activity host, WilddogAuthPlugin plugin, int generation) {
+      this.host = host;
+      this.plugin = plugin;
+      this.generation = generation;
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+      // 只处理宿主Activity
+      if (activity != host) {
+        return;
       }
-    });
+      plugin.detachFromHost(generation);
+      activity.getApplication().unregisterActivityLifecycleCallbacks(this);
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
   }
 
   /**
-   * 处理获取用户ID标识符
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 批量调用，按顺序执行子调用，前一个子调用完成后才开始下一个
+   *
+   * 同步完成的子调用不会递归开始下一个，由外层的循环继续执行；批量调用超时或被取消后不再开始新的子调用
    */
-  private void handleGetToken(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    @SuppressWarnings("unchecked")
-    Map<String, Boolean> arguments = (Map<String, Boolean>) call.arguments;
-    // 声明定义刷新变量，并获取调用参数中的刷新
-    boolean refresh = arguments.get("refresh");
-    // getCurrentUser()在如果有用户认证登录返回登录用户，如果没有登录，则返回为空
-    // 可以通过getCurrentUser() != null 来判断当前是否有用户登录
-    //
-    // getToken()在身份认证成功后返回的Wilddog Id token字符串，
-    // 用于验证之后操作的身份完整性和安全性
-    wilddogAuth.getCurrentUser().getToken(refresh).addOnCompleteListener(
-      // 完整的监听器
-      new OnCompleteListener<GetTokenResult>() {
-        // 完成监听方法
-        public void onComplete(Task<GetTokenResult> task) {
-          // 操作结果是否不为成功的
-          if (task.isSuccessful()) {
-            // 声明定义Wilddog Id令牌变量
-            String idToken = task.getResult().getToken();
-            // 返回Wilddog Id令牌给Flutter客户端
-            result.success(idToken);
-          } else {
-            // 返回错误信息给客户端
-            result.error(ERROR_REASON_EXCEPTION, task.getException().getMessage(), null);
+  private class BatchRun {
+    // 声明私有、不可变的子调用列表
+    private final List<Map<String, Object>> calls;
+    // 声明私有、不可变的失败后是否继续
+    private final boolean continueOnError;
+    // 声明私有、不可变的批量调用的结果回调
+    private final Result result;
+    // 声明私有、不可变的批量调用的截止状态
+    private final CallDeadlines.Deadline deadline;
+
+    // 以下字段由this保护
+    // 声明私有、不可变的结果列表
+    private final List<Map<String, Object>> results = new ArrayList<>();
+    // 声明私有的是否已有线程在执行子调用的循环
+    private boolean running = false;
+    // 声明私有的是否因子调用失败而停止
+    private boolean stopped = false;
+
+    BatchRun(List<Map<String, Object>> calls, boolean continueOnError, Result result,
+             CallDeadlines.Deadline deadline) {
+      this.calls = calls;
+      this.continueOnError = continueOnError;
+      this.result = result;
+      this.deadline = deadline;
+    }
+
+    /**
+     * 依次执行子调用，直到遇到尚未完成的子调用。同步完成的子调用在这里返回，由循环继续执行下一个
+     */
+    void pump() {
+      synchronized (this) {
+        if (running) {
+          return;
+        }
+        running = true;
+      }
+      while (true) {
+        // 声明定义要执行的步骤变量
+        BatchStep step;
+        synchronized (this) {
+          // 批量调用已经超时或被取消时放弃，之后的子调用不再执行
+          if (deadline.isDone()) {
+            running = false;
+            return;
+          }
+          if (stopped || results.size() >= calls.size()) {
+            running = false;
+            break;
+          }
+          step = new BatchStep(this, results.size());
+        }
+        step.start();
+        synchronized (this) {
+          if (results.size() <= step.index) {
+            // 子调用异步完成，由它的完成回调重新开始循环
+            running = false;
+            return;
           }
         }
       }
-    );
+      // 返回结果列表给Flutter客户端
+      result.success(results);
+    }
+
+    /**
+     * 记录子调用的结果，在循环之外完成时重新开始循环
+     * @param index 子调用的索引
+     * @param entry 子调用的结果
+     * @param failed 子调用是否失败
+     */
+    void record(int index, Map<String, Object> entry, boolean failed) {
+      entry.put("method", calls.get(index).get("method"));
+      synchronized (this) {
+        results.add(entry);
+        // 失败且不继续时，不再执行之后的子调用
+        if (failed && !continueOnError) {
+          stopped = true;
+        }
+        if (running) {
+          // 同步完成，由正在执行的循环继续
+          return;
+        }
+      }
+      pump();
+    }
   }
 
   /**
-   * 处理开始监听认证状态
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 批量调用的一个步骤，每个子调用使用独立的结果回调，只记录第一次返回的结果
    */
-  private void handleStartListeningAuthState(MethodCall call, final Result result) {
-    // 声明定义句柄变量，并调用全局句柄自增
-    final int handle = nextHandle++;
-    // WilddogAuth.AuthStateListener会在身份验证状态有一个变化的时候调用
-    WilddogAuth.AuthStateListener listener = new WilddogAuth.AuthStateListener() {
-      // onAuthStateChanged会在状态发生变化的时候，这个方法在UI线程中调用：
-      // 注册监听时、用户登录时、用户登出时、当前用户改变时、当前用户的token改变时
-      @Override
-      public void onAuthStateChanged(WilddogAuth firebaseAuth) {
-        // getCurrentUser方法在有用户认证登录返回登录用户，如果没有登录，则返回为空
-        WilddogUser user = firebaseAuth.getCurrentUser();
-        // 获取ImmutableMap类型的用户词典
-        ImmutableMap<String, Object> userMap = mapFromUser(user);
-        // 获取ImmutableMap类型的自定义用户词典，包含句柄变量
-        ImmutableMap.Builder<String, Object> builder =
-                ImmutableMap.<String, Object>builder().put("id", handle);
-        // 用户词典是否不等于空值
-        if (userMap != null) {
-          // 在自定义用户词典中添加用户词典
-          builder.put("user", userMap);
-        }
-        // 用指定的参数调用指定的Flutter方法，期望获得异步结果
-        channel.invokeMethod("onAuthStateChanged", builder.build());
+  private class BatchStep implements Result {
+    // 声明私有、不可变的批量调用
+    private final BatchRun run;
+    // 声明私有、不可变的子调用的索引
+    private final int index;
+    // 声明私有、不可变的子调用是否已返回
+    private final AtomicBoolean done = new AtomicBoolean(false);
+
+    BatchStep(BatchRun run, int index) {
+      this.run = run;
+      this.index = index;
+    }
+
+    /**
+     * 执行子调用
+     */
+    void start() {
+      // 声明定义子调用变量
+      Map<String, Object> subCall = run.calls.get(index);
+      // 声明定义子调用的方法名称
+      String method = (String) subCall.get("method");
+      // 不允许嵌套批量调用
+      if ("batch".equals(method)) {
+        error(AuthException.INVALID_ARGUMENT, "Nested batch calls are not supported.", null);
+        return;
       }
-    };
-    // 在返回初始化之后，可以用getInstance方法获取当前WilddogAuth实例对象
-    //
-    // addAuthStateListener方法注册一个认证状态的监听
-    // 一个WilddogAuth对象可以设置多个监听对象，也可以为不同的WilddogAuth添加监听对象
-    WilddogAuth.getInstance().addAuthStateListener(listener);
-    // 在AuthStateListener对象稀疏数组中添加句柄对应监听器
-    authStateListeners.append(handle, listener);
-    // 返回句柄变量
-    result.success(handle);
+      // 使用已有的方法名称和参数执行子调用，结果回调为当前步骤
+      onMethodCall(new MethodCall(method, subCall.get("arguments")), this);
+    }
+
+    /**
+     * 记录子调用的结果，重复的返回被忽略
+     * @param entry 子调用的结果
+     * @param failed 子调用是否失败
+     */
+    private void record(Map<String, Object> entry, boolean failed) {
+      if (done.compareAndSet(false, true)) {
+        run.record(index, entry, failed);
+      }
+    }
+
+    @Override
+    public void success(Object value) {
+      // 声明定义子调用的结果变量
+      Map<String, Object> entry = new HashMap<>();
+      entry.put("success", true);
+      entry.put("result", value);
+      record(entry, false);
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      // 声明定义子调用的结果变量
+      Map<String, Object> entry = new HashMap<>();
+      entry.put("success", false);
+      entry.put("code", errorCode);
+      entry.put("message", errorMessage);
+      entry.put("details", errorDetails);
+      record(entry, true);
+    }
+
+    @Override
+    public void notImplemented() {
+      // 声明定义子调用的结果变量
+      Map<String, Object> entry = new HashMap<>();
+      entry.put("success", false);
+      entry.put("code", "notImplemented");
+      record(entry, true);
+    }
   }
 
   /**
-   * 处理停止监听认证状态
-   * @param call 客户端传递的调用参数
-   * @param result 返回客户端的结果
+   * 没有结果的操作的完成监听器，所有无返回值的处理方法共用
    */
-  private void handleStopListeningAuthState(MethodCall call, final Result result) {
-    // 声明定义参数变量，并获取客户端传递的调用参数
-    Map<String, Integer> arguments = call.arguments();
-    // 声明定义句柄变量，并获取调用参数中的句柄
-    Integer id = arguments.get("id");
-    // 获取AuthStateListener对象稀疏数组的指定句柄对应监听器
-    WilddogAuth.AuthStateListener listener = authStateListeners.get(id);
-    // 监听器是否不等于空值
-    if (listener != null) {
-      // removeAuthStateListener方法注销认证状态的监听
-      WilddogAuth.getInstance().removeAuthStateListener(listener);
-      // 在AuthStateListener对象稀疏数组中移除句柄对应监听器
-      authStateListeners.removeAt(id);
+  private class VoidCompleteListener implements AuthBackend.Callback<Void> {
+    // 声明私有、不可变的方法调用结果回调
+    private final Result result;
+    // 声明私有、不可变的成功后是否刷新当前用户快照
+    private final boolean refreshSnapshot;
+
+    /**
+     * 默认的构造方法
+     * @param result 方法调用结果回调
+     * @param refreshSnapshot 操作会改变用户信息时为true，成功后刷新当前用户快照
+     */
+    VoidCompleteListener(Result result, boolean refreshSnapshot) {
+      this.result = result;
+      this.refreshSnapshot = refreshSnapshot;
+    }
+
+    @Override
+    public void onSuccess(Void value) {
+      // 用户信息已改变，刷新当前用户快照
+      if (refreshSnapshot) {
+        refreshSnapshot();
+      }
       // 返回结果给Flutter客户端
       result.success(null);
-    } else {
-      // 返回错误信息
-      result.error(ERROR_REASON_EXCEPTION,
-              String.format("Listener with identifier '%d' not found.", id),
-              null);
+    }
+
+    @Override
+    public void onFailure(Exception e) {
+      // 返回带有错误代码的错误信息给客户端
+      AuthErrors.reply(result, e);
+    }
+  }
+
+  /**
+   * 把返回的用户词典编码为二进制格式的结果回调
+   */
+  private class BinaryUserResult implements Result {
+    // 声明私有、不可变的被包装的结果回调
+    private final Result result;
+
+    BinaryUserResult(Result result) {
+      this.result = result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void success(Object value) {
+      // 用户词典编码为字节数组，空值和无法编码的用户词典保持不变
+      result.success(value instanceof Map ? userPayload((Map<String, Object>) value) : value);
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      result.error(errorCode, errorMessage, errorDetails);
+    }
+
+    @Override
+    public void notImplemented() {
+      result.notImplemented();
     }
   }
 
   /**
    * 登录的登录监听器
    */
-  private class SignInCompleteListener implements OnCompleteListener<AuthResult> {
+  class SignInCompleteListener implements AuthBackend.Callback<AuthUser> {
     // 声明私有、不可变的方法调用结果回调
     private final Result result;
 
@@ -899,35 +2394,38 @@ public class WilddogAuthPlugin implements MethodCallHandler {
     }
 
     /**
-     * 覆盖完成监听方法
-     * @param task 包含操作结果的任务对象
+     * 覆盖操作成功方法
+     * @param user 登录用户
      */
     @Override
-    public void onComplete(Task<AuthResult> task) {
-      // 操作结果是否不为成功的
-      if (!task.isSuccessful()) {
-        // 得到意外信息
-        Exception e = task.getException();
-        // 返回错误信息给客户端
-        Log.e(ERROR_REASON_EXCEPTION,e.toString());
-        result.success(e.toString());
-      } else {
-        // 得到Wilddog用户实例
-        WilddogUser user = task.getResult().getWilddogUser();
-        // 声明不可变集合实例，并获取ImmutableMap类型的用户词典
-        ImmutableMap<String, Object> userMap = mapFromUser(user);
-        // 返回结果给Flutter客户端
-        result.success(userMap);
-      }
+    public void onSuccess(AuthUser user) {
+      // 声明不可变集合实例，并获取ImmutableMap类型的用户词典
+      ImmutableMap<String, Object> userMap = mapFromUser(user);
+      // 登录的帐号成为呈现的当前用户，即使它与SDK之前的登录用户相同
+      sessions.clearActive();
+      // 登录用户已改变，刷新当前用户快照
+      refreshSnapshot();
+      // 返回结果给Flutter客户端
+      result.success(userMap);
+    }
+
+    /**
+     * 覆盖操作失败方法
+     * @param e 操作失败的意外
+     */
+    @Override
+    public void onFailure(Exception e) {
+      // 返回带有错误代码的错误信息给客户端
+      AuthErrors.reply(result, e);
     }
   }
 
   /**
    * 生成不可变集合的构造器实例
-   * @param userInfo UserInfo实例，获取一个用户的标准用户配置信息
+   * @param userInfo AuthUserInfo实例，获取一个用户的标准用户配置信息
    * @return ImmutableMap类型的构造器实例
    */
-  private ImmutableMap.Builder<String, Object> userInfoToMap(UserInfo userInfo) {
+  ImmutableMap.Builder<String, Object> userInfoToMap(AuthUserInfo userInfo) {
     // 声明定义ImmutableMap类型的构造器实例
     // 不可变集合，顾名思义就是说集合是不可被修改的
     // 集合的数据项是在创建的时候提供，并且在整个生命周期中都不可改变
@@ -942,7 +2440,7 @@ public class WilddogAuthPlugin implements MethodCallHandler {
     // 用户用户形象照片是否不为空值
     if (userInfo.getPhotoUrl() != null) {
       // 如果UserInfo实例可用，返回用户形象照片
-      builder.put("photoUrl", userInfo.getPhotoUrl().toString());
+      builder.put("photoUrl", userInfo.getPhotoUrl());
     }
     // 用户帐户的电子邮件地址是否不为空值
     if (userInfo.getEmail() != null) {
@@ -950,7 +2448,7 @@ public class WilddogAuthPlugin implements MethodCallHandler {
       builder.put("email", userInfo.getEmail());
     }
     // 用户帐户的手机号码是否不为空值
-    if (userInfo.getEmail() != null) {
+    if (userInfo.getPhone() != null) {
       // 如果UserInfo实例可用，返回对应于指定提供者的用户帐户的手机号码，包含可选
       builder.put("phone", userInfo.getPhone());
     }
@@ -960,19 +2458,24 @@ public class WilddogAuthPlugin implements MethodCallHandler {
 
   /**
    * 获取ImmutableMap类型的用户词典
-   * @param user WilddogUser实例对象
+   * @param user AuthUser实例对象
    * @return ImmutableMap类型的用户词典
    */
-  private ImmutableMap<String, Object> mapFromUser(WilddogUser user) {
-    // WilddogUser实例是否不为空值
+  ImmutableMap<String, Object> mapFromUser(AuthUser user) {
+    // AuthUser实例是否不为空值
     if (user != null) {
+      // 用户内容未改变时复用已缓存的用户词典
+      ImmutableMap<String, Object> cached = userMapCache.get(user);
+      if (cached != null) {
+        return cached;
+      }
       // 声明定义ImmutableList类型的提供方数据变量
       // ImmutableMap可以让java代码创建一个对象常量映射，来保存一些常量映射的键值对
       ImmutableList.Builder<ImmutableMap<String, Object>> providerDataBuilder =
               ImmutableList.<ImmutableMap<String, Object>>builder();
       // 增强型循环，即遍历数组中的元素
       // getProviderData()方法获取在WilddogAuth中用户绑定的所有认证类型的用户信息列表
-      for (UserInfo userInfo : user.getProviderData()) {
+      for (AuthUserInfo userInfo : user.getProviderData()) {
         // 在提供方数据中添加一个包含用户配置信息的不可变集合
         providerDataBuilder.add(userInfoToMap(userInfo).build());
       }
@@ -987,6 +2490,8 @@ public class WilddogAuthPlugin implements MethodCallHandler {
               .put("isPhoneVerified", user.isPhoneVerified())
               .put("providerData", providerDataBuilder.build())
               .build();
+      // 缓存用户词典，供之后的调用和监听器复用
+      userMapCache.put(user, userMap);
       // 返回ImmutableMap类型的用户词典
       return userMap;
     } else {
@@ -1,6 +1,68 @@
 #import "WilddogAuthPlugin.h"
 #import "Wilddog.h"
 
+// 把野狗云SDK的错误转换为与Android端一致的错误代码
+//
+// SDK在userInfo的error_name中给出错误名称，例如ERROR_WRONG_PASSWORD，
+// 与插件的错误代码不同名的几个名称在这里转换，其余原样返回
+static NSString *authErrorCode(NSError *error) {
+  // 网络请求失败
+  if ([error.domain isEqualToString:NSURLErrorDomain]) {
+    return @"ERROR_NETWORK_REQUEST_FAILED";
+  }
+  NSString *name = error.userInfo[@"error_name"];
+  if (![name isKindOfClass:[NSString class]]) {
+    return @"ERROR_UNKNOWN";
+  }
+  NSDictionary *aliases = @{
+    @"ERROR_ACCOUNT_EXISTS_WITH_DIFFERENT_CREDENTIAL" : @"ERROR_ACCOUNT_EXISTS",
+    @"ERROR_CREDENTIAL_ALREADY_IN_USE" : @"ERROR_ACCOUNT_EXISTS",
+    @"ERROR_NETWORK_ERROR" : @"ERROR_NETWORK_REQUEST_FAILED",
+    @"ERROR_INVALID_CUSTOM_TOKEN" : @"ERROR_INVALID_CREDENTIAL",
+    @"ERROR_USER_TOKEN_EXPIRED" : @"ERROR_REQUIRES_RECENT_LOGIN",
+  };
+  return aliases[name] ?: name;
+}
+
+// 只在Android端实现的方法，iOS端以ERROR_UNSUPPORTED_PLATFORM返回，
+// 不返回FlutterMethodNotImplemented，避免Flutter端收到含义不明的MissingPluginException
+static NSSet<NSString *> *androidOnlyMethods() {
+  static NSSet<NSString *> *methods;
+  static dispatch_once_t once;
+  dispatch_once(&once, ^{
+    methods = [NSSet setWithArray:@[
+      @"configure", @"getMetrics", @"cancel", @"batch", @"bulkCreateUsers",
+      @"listSessions", @"switchSession", @"evictSession", @"stopAllListeners",
+      @"getSendLimiterState", @"getMutationQueueState", @"replayMutations",
+    ]];
+  });
+  return methods;
+}
+
+// 返回平台不支持的错误
+static FlutterError *unsupportedError(NSString *feature) {
+  return [FlutterError errorWithCode:@"ERROR_UNSUPPORTED_PLATFORM"
+    message:[NSString stringWithFormat:@"%@ is only supported on Android.", feature]
+    details:nil];
+}
+
+// 声明Id令牌事件通道的处理类，iOS端没有实现令牌推送，订阅时以错误事件报告
+@interface WilddogAuthIdTokenStreamHandler : NSObject<FlutterStreamHandler>
+@end
+
+// 实现Id令牌事件通道的处理类
+@implementation WilddogAuthIdTokenStreamHandler
+- (FlutterError *)onListenWithArguments:(id)arguments eventSink:(FlutterEventSink)events {
+  // 以错误事件发送给订阅者，onIdTokenChanged的流收到PlatformException
+  events(unsupportedError(@"onIdTokenChanged"));
+  return nil;
+}
+
+- (FlutterError *)onCancelWithArguments:(id)arguments {
+  return nil;
+}
+@end
+
 // 声明NSError类
 @interface NSError (FlutterError)
 // 声明一个FlutterError类型的对象
@@ -13,10 +75,10 @@
 // 实现NSError类
 @implementation NSError (FlutterError)
 - (FlutterError *)flutterError {
-  // 返回错误代码、信息和细节
-  return [FlutterError errorWithCode:[NSString stringWithFormat:@"Error %d", (int)self.code]
-    message:self.domain
-    details:self.localizedDescription];
+  // 返回与Android端一致的错误代码、信息和细节
+  return [FlutterError errorWithCode:authErrorCode(self)
+    message:self.localizedDescription
+    details:@{@"domain" : self.domain, @"code" : @(self.code)}];
 }
 // 类的实现已结束
 @end
@@ -81,6 +143,11 @@ int nextHandle = 0;
   // addMethodCallDelegate的值为WilddogAuthPlugin对像实例
   // channel表示通道，值为FlutterMethodChannel对像实例
   [registrar addMethodCallDelegate:instance channel:channel];
+  // 注册Id令牌事件通道，订阅时报告平台不支持
+  FlutterEventChannel* idTokenChannel = [FlutterEventChannel
+      eventChannelWithName:@"wilddog_auth/id_token"
+           binaryMessenger:[registrar messenger]];
+  [idTokenChannel setStreamHandler:[[WilddogAuthIdTokenStreamHandler alloc] init]];
 }
 
 // 重写对象的init方法
@@ -103,6 +170,11 @@ int nextHandle = 0;
 // 接受客户端参数并调用方法
 // call为客户端传递的调用参数，result为返回客户端的结果
 - (void)handleMethodCall:(FlutterMethodCall*)call result:(FlutterResult)result {
+  // 只在Android端实现的方法
+  if ([androidOnlyMethods() containsObject:call.method]) {
+    result(unsupportedError(call.method));
+    return;
+  }
   // 当前用户
   if ([@"currentUser" isEqualToString:call.method]) {
     // addAuthStateDidChangeListener用于添加身份验证状态变更监听程序
@@ -436,8 +508,8 @@ int nextHandle = 0;
   if (error != nil) {
     // 打印错误信息
     NSLog(@"%@",error);
-    // 返回错误信息
-    result([NSString stringWithFormat: @"%@",error]);
+    // 以带有错误代码的FlutterError返回，与Android端一致
+    result(error.flutterError);
   // user变量是否为空
   } else if (user == nil) {
     // 返回空值
@@ -1,4 +1,6 @@
 import 'dart:async';
+import 'dart:convert';
+import 'dart:typed_data';
 import 'package:flutter/services.dart';
 
 /// 从身份认证提供方返回的用户数据，WilddogAuth目前支持以下提供方：
@@ -45,7 +47,12 @@ class WilddogUser extends UserInfo {
   //
   // 在构造函数体运行之前初始化实例变量，并调用父类的构造函数。
   // 子类构造函数手动调用父类的构造函数，在 : 号后面指定父类的构造函数。
-  WilddogUser._(Map<String, dynamic> data)
+  //
+  // 平台端以二进制格式发送的用户先解码为与词典格式相同的数据词典。
+  WilddogUser._(dynamic payload) : this._fromData(_userData(payload));
+
+  // 使用数据词典创建用户。
+  WilddogUser._fromData(Map<String, dynamic> data)
       : providerData = data['providerData']
       .map((Map<String, dynamic> info) => new UserInfo._(info))
       .toList(),
@@ -77,11 +84,18 @@ class WilddogUser extends UserInfo {
   }
 }
 
+/// [WilddogAuth.bulkCreateUsers]每完成一组帐号时的回调。
+typedef void BulkCreateProgressCallback(Map<String, dynamic> progress);
+
 class WilddogAuth {
   // MethodChannel类是一个使用异步方法调用与平台插件通信的命名通道，
   // 这里创建一个指定名称为'wilddog_auth'的MethodChannel。
   static const MethodChannel channel = const MethodChannel('wilddog_auth');
 
+  // 平台端推送Wilddog Id令牌的事件通道，只在令牌改变时发送，登出时发送null。
+  static const EventChannel _idTokenChannel =
+      const EventChannel('wilddog_auth/id_token');
+
   /*
   StreamController类是能控制stream的控制器。
   构造函数StreamController.broadcast创建一个控制器，其中stream可以被多次监听。
@@ -117,6 +131,26 @@ class WilddogAuth {
   final Map<int, StreamController<WilddogUser>> _authStateChangedControllers =
   <int, StreamController<WilddogUser>>{};
 
+  // 增量模式下按句柄保存的上一次认证状态，增量消息在此基础上合并。
+  final Map<int, _AuthState> _authStates = <int, _AuthState>{};
+
+  // 尚未返回句柄的startListeningAuthState调用数。
+  // 平台端在返回句柄之前就会发送初始状态，此时不能把未知句柄当作已不存在的流。
+  int _pendingListens = 0;
+
+  // 所有[onIdTokenChanged]订阅者共享的广播控制器，只订阅一次平台端的事件通道。
+  StreamController<String> _idTokenController;
+  // 平台端事件通道的订阅，没有订阅者时为null。
+  StreamSubscription<dynamic> _idTokenSubscription;
+  // 是否已收到平台端的令牌，以及最新的令牌，用于向之后的订阅者重放。
+  bool _hasIdToken = false;
+  String _latestIdToken;
+
+  // 下一个批量创建任务的ID，以及进行中的任务的进度回调。
+  int _nextBulkJob = 0;
+  final Map<int, BulkCreateProgressCallback> _bulkCreateProgress =
+  <int, BulkCreateProgressCallback>{};
+
   /// 提供与默认应用程序相对应的此类的实例，支持非默认的应用程序。
   static WilddogAuth instance = new WilddogAuth._();
 
@@ -136,11 +170,17 @@ class WilddogAuth {
     // 使用onListen回调开始生成事件。
     controller = new StreamController<WilddogUser>.broadcast(onListen: () {
       // 定义句柄变量，并接收startListeningAuthState方法调用的结果。
-      _handle = channel.invokeMethod('startListeningAuthState');
+      // 使用多路复用模式，所有句柄共享一个平台监听器和一条批量消息。
+      _pendingListens++;
+      _handle = channel.invokeMethod('startListeningAuthState', <String, bool>{
+        'multiplexed': true,
+      });
       // then方法注册回调将在这个Future完成时被调用。
       _handle.then((int handle) {
         // 在_authStateChangedControllers词典中添加一个字典。
         _authStateChangedControllers[handle] = controller;
+      }).whenComplete(() {
+        _pendingListens--;
       });
     // 当不再有任何活动的监听器时调用onCancel。
     }, onCancel: () {
@@ -151,6 +191,7 @@ class WilddogAuth {
             "stopListeningAuthState", <String, int>{"id": handle});
         // 在_authStateChangedControllers词典中移除指定字典。
         _authStateChangedControllers.remove(handle);
+        _authStates.remove(handle);
       });
     });
 
@@ -158,6 +199,65 @@ class WilddogAuth {
     return controller.stream;
   }
 
+  /// 当前用户的Wilddog Id令牌改变时接收新的令牌，登出时接收null。
+  ///
+  /// 平台端在登录、后台刷新和登出时推送令牌，不需要定时调用[WilddogUser.getIdToken]。
+  /// 新的订阅者立即收到最新的令牌。订阅暂停期间只保留最新的令牌，恢复后收到它。
+  /// 提前刷新的时间可以用[configure]的`tokenRefreshWindowMs`调整。
+  ///
+  /// 仅Android支持，iOS上的流以`ERROR_UNSUPPORTED_PLATFORM`的[PlatformException]报告错误。
+  Stream<String> get onIdTokenChanged {
+    // 所有订阅者共享一个平台端订阅，最后一个订阅者取消时取消平台端订阅。
+    _idTokenController ??= new StreamController<String>.broadcast(onListen: () {
+      _idTokenSubscription =
+          _idTokenChannel.receiveBroadcastStream().listen((dynamic token) {
+        // 平台端重新订阅时会重放最新的令牌，未改变时不重复发送。
+        if (_hasIdToken && token == _latestIdToken) {
+          return;
+        }
+        _hasIdToken = true;
+        _latestIdToken = token;
+        _idTokenController.add(token);
+      }, onError: (dynamic error) {
+        _idTokenController.addError(error);
+      });
+    }, onCancel: () {
+      _idTokenSubscription.cancel();
+      _idTokenSubscription = null;
+      // 没有订阅期间令牌可能改变，重新订阅时以平台端重放的值为准。
+      _hasIdToken = false;
+    });
+    // 声明每个订阅者的控制器和对共享流的订阅。
+    StreamController<String> controller;
+    StreamSubscription<String> subscription;
+    // 暂停期间只保留最新的令牌。
+    bool hasPending = false;
+    String pending;
+    controller = new StreamController<String>(onListen: () {
+      // 重放最新的令牌。
+      if (_hasIdToken) {
+        controller.add(_latestIdToken);
+      }
+      subscription = _idTokenController.stream.listen((String token) {
+        if (controller.isPaused) {
+          hasPending = true;
+          pending = token;
+        } else {
+          controller.add(token);
+        }
+      }, onError: controller.addError);
+    }, onResume: () {
+      // 恢复后发送暂停期间最新的令牌。
+      if (hasPending) {
+        hasPending = false;
+        controller.add(pending);
+      }
+    }, onCancel: () {
+      return subscription.cancel();
+    });
+    return controller.stream;
+  }
+
   /// 异步创建并成为匿名用户。
   ///
   /// 如果已经有一个匿名用户登录，则该用户将被返回。如果有其他现有用户登录，该用户将被注销。
@@ -172,13 +272,8 @@ class WilddogAuth {
     WilddogUser currentUser;
     // 调用signInAnonymously方法。
     await channel.invokeMethod('signInAnonymously').then((onValue){
-      if(onValue.runtimeType==String){
-        // 返回null说明操作失败。
-        currentUser = null;
-      }else{
-        // 定义数据词典，并接收调用的结果。
-        currentUser = new WilddogUser._(onValue);
-      }
+      // 定义数据词典，并接收调用的结果，操作失败时抛出[PlatformException]。
+      currentUser = new WilddogUser._(onValue);
     });
     // 返回WilddogUser实例。
     return currentUser;
@@ -220,13 +315,8 @@ class WilddogAuth {
         'password': password,
       },
     ).then((onValue){
-      if(onValue.runtimeType==String){
-        // 返回null说明操作失败。
-        currentUser = null;
-      }else{
-        // 定义数据词典，并接收调用的结果。
-        currentUser = new WilddogUser._(onValue);
-      }
+      // 定义数据词典，并接收调用的结果，操作失败时抛出[PlatformException]。
+      currentUser = new WilddogUser._(onValue);
     });
     // 返回WilddogUser实例。
     return currentUser;
@@ -250,13 +340,8 @@ class WilddogAuth {
         'password': password,
       },
     ).then((onValue){
-      if(onValue.runtimeType==String){
-        // 返回null说明操作失败。
-        currentUser = null;
-      }else{
-        // 定义数据词典，并接收调用的结果。
-        currentUser = new WilddogUser._(onValue);
-      }
+      // 定义数据词典，并接收调用的结果，操作失败时抛出[PlatformException]。
+      currentUser = new WilddogUser._(onValue);
     });
     // 返回WilddogUser实例。
     return currentUser;
@@ -349,7 +434,7 @@ class WilddogAuth {
   /// 获取当前登录用户是管理用户的基础。
   Future<WilddogUser> currentUser() async {
     // 声明定义数据词典，并接收currentUser方法调用的结果。
-    final Map<String, dynamic> data = await channel.invokeMethod("currentUser");
+    final dynamic data = await channel.invokeMethod("currentUser");
     // 声明定义WilddogUser类的实例变量，如果数据词典为空，则返回null值。
     final WilddogUser currentUser = data == null ? null : new WilddogUser._(data);
     // 返回WilddogUser实例。
@@ -382,13 +467,8 @@ class WilddogAuth {
         'password': password,
       },
     ).then((onValue){
-      if(onValue.runtimeType==String){
-        // 返回null说明操作失败。
-        currentUser = null;
-      }else{
-        // 定义数据词典，并接收调用的结果。
-        currentUser = new WilddogUser._(onValue);
-      }
+      // 定义数据词典，并接收调用的结果，操作失败时抛出[PlatformException]。
+      currentUser = new WilddogUser._(onValue);
     });
     // 返回WilddogUser实例。
     return currentUser;
@@ -432,13 +512,8 @@ class WilddogAuth {
         'password': password,
       },
     ).then((onValue){
-      if(onValue.runtimeType==String){
-        // 返回null说明操作失败。
-        currentUser = null;
-      }else{
-        // 定义数据词典，并接收调用的结果。
-        currentUser = new WilddogUser._(onValue);
-      }
+      // 定义数据词典，并接收调用的结果，操作失败时抛出[PlatformException]。
+      currentUser = new WilddogUser._(onValue);
     });
     // 返回WilddogUser实例。
     return currentUser;
@@ -462,13 +537,8 @@ class WilddogAuth {
         'password': password,
       },
     ).then((onValue){
-      if(onValue.runtimeType==String){
-        // 返回null说明操作失败。
-        currentUser = null;
-      }else{
-        // 定义数据词典，并接收调用的结果。
-        currentUser = new WilddogUser._(onValue);
-      }
+      // 定义数据词典，并接收调用的结果，操作失败时抛出[PlatformException]。
+      currentUser = new WilddogUser._(onValue);
     });
     // 返回WilddogUser实例。
     return currentUser;
@@ -573,17 +643,367 @@ class WilddogAuth {
     );
   }
 
+  /// 配置插件的平台端行为，只更新传入的非空选项。
+  ///
+  /// [offMainThread]为true时，平台端在有界的工作线程池中解析参数、处理SDK完成回调
+  /// 和构建结果，只在主线程中返回最终结果，避免大量登录请求时阻塞UI线程。
+  /// 工作线程池饱和时新的调用以`ERROR_BUSY`抛出[PlatformException]，不会退回到UI线程中处理。
+  ///
+  /// [sendLimits]调整发送短信和邮件的方法的限流和断路参数，可以包含
+  /// `methodBurst`、`methodRefillMillis`（每个方法的令牌桶容量和恢复一个令牌的毫秒数）、
+  /// `targetBurst`、`targetRefillMillis`（每个手机号或邮箱的令牌桶容量和恢复一个令牌的毫秒数）、
+  /// `breakerFailureThreshold`和`breakerOpenMillis`（断开前允许的连续后端失败次数和断开的毫秒数）。
+  ///
+  /// [retry]调整幂等操作在网络失败或服务端限流后的重试策略，可以包含`maxAttempts`
+  /// （包括第一次执行的最多执行次数）、`baseDelayMillis`、`maxDelayMillis`（退避的上下限）、
+  /// `deadlineMillis`（每次调用的截止时间）和`methods`（重试的方法名称列表）。
+  /// 默认只重试`getIdToken`、`sendEmailVerification`和`reauthenticate*`，创建用户等非幂等的方法不重试。
+  ///
+  /// [defaultTimeoutMs]设置每个方法调用的全局默认截止时间，默认为30000毫秒，0表示不设截止时间。
+  /// 超时的调用以`ERROR_TIMEOUT`抛出[PlatformException]，之后到达的平台端结果会被丢弃。
+  ///
+  /// [persistSession]为true时，平台端把当前用户和Id令牌加密保存在应用私有存储中，
+  /// 下次冷启动时[currentUser]无需等待SDK的第一次认证状态回调即可返回上次的用户，
+  /// 之后以SDK的结果为准。为false时删除已保存的快照。需要Android 6.0及以上版本。
+  ///
+  /// [prewarm]为true时，如果宿主应用在插件注册前调用了`WilddogAuthPlugin.setLazyInitialization(true)`，
+  /// 平台端在后台线程中提前初始化野狗云SDK，适合在首帧之后调用。
+  ///
+  /// [deltaEvents]为true时，[onAuthStateChanged]的平台端消息只携带改变的字段和版本号，
+  /// 每个流的第一条消息和版本不连续后的消息仍是完整快照，减少令牌刷新等频繁事件的传输和解码开销。
+  ///
+  /// [offlineQueue]为true时，[updateProfile]、[updateEmail]、[updatePhone]和[updatePassword]
+  /// 因网络失败而失败时，修改被加密追加到应用私有存储中的日志并立即在本地确认，
+  /// 网络恢复后按顺序重放，同一个方法尚未发送的修改只发送最后一次。
+  /// 重放时被服务端拒绝的修改会被丢弃，见[getMutationQueueState]。
+  /// 为false时删除日志并丢弃未发送的修改。需要Android 6.0及以上版本。
+  ///
+  /// [maxSessions]大于0时，平台端按最近使用顺序缓存最多这么多个已登录过的帐号的用户和Id令牌，
+  /// 并加密保存在应用私有存储中，见[listSessions]和[switchSession]。0表示关闭并删除所有会话，
+  /// 最大为64。需要Android 6.0及以上版本才会保存到存储中。
+  ///
+  /// [tokenRefreshWindowMs]设置在Id令牌过期前多少毫秒由平台端后台刷新，默认为300000毫秒，
+  /// 对之后获取的令牌生效，最多为令牌剩余有效期的一半，两次后台刷新至少间隔10秒，
+  /// 刷新得到的令牌通过[onIdTokenChanged]推送。
+  ///
+  /// [binaryUsers]为true时，平台端以紧凑的二进制格式发送返回用户的方法结果和认证状态消息中的用户：
+  /// 字段按固定顺序编码而不重复字段名，常见的提供方ID编码为一个字节，存在的字段由位图表示。
+  /// 插件在Dart端解码，[WilddogUser]的用法不变，适合绑定了较多提供方的用户的高频认证状态流。
+  /// [batch]的子调用结果仍是词典格式，字段超过65535字节或提供方超过255个的用户也以词典格式发送。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<Null> configure({
+    bool offMainThread,
+    Map<String, int> sendLimits,
+    Map<String, dynamic> retry,
+    int defaultTimeoutMs,
+    bool persistSession,
+    bool prewarm,
+    bool deltaEvents,
+    bool offlineQueue,
+    int maxSessions,
+    int tokenRefreshWindowMs,
+    bool binaryUsers,
+  }) async {
+    // 声明定义配置选项词典。
+    final Map<String, dynamic> options = <String, dynamic>{};
+    // 只传递设置了的选项。
+    if (offMainThread != null) {
+      options['offMainThread'] = offMainThread;
+    }
+    if (sendLimits != null) {
+      options['sendLimits'] = sendLimits;
+    }
+    if (retry != null) {
+      options['retry'] = retry;
+    }
+    if (defaultTimeoutMs != null) {
+      options['defaultTimeoutMs'] = defaultTimeoutMs;
+    }
+    if (persistSession != null) {
+      options['persistSession'] = persistSession;
+    }
+    if (prewarm != null) {
+      options['prewarm'] = prewarm;
+    }
+    if (deltaEvents != null) {
+      options['deltaEvents'] = deltaEvents;
+    }
+    if (offlineQueue != null) {
+      options['offlineQueue'] = offlineQueue;
+    }
+    if (maxSessions != null) {
+      options['maxSessions'] = maxSessions;
+    }
+    if (tokenRefreshWindowMs != null) {
+      options['tokenRefreshWindowMs'] = tokenRefreshWindowMs;
+    }
+    if (binaryUsers != null) {
+      options['binaryUsers'] = binaryUsers;
+    }
+    // 调用configure方法。
+    await channel.invokeMethod('configure', options);
+  }
+
+  /// 获取平台端按方法统计的调用次数、结果和延迟。
+  ///
+  /// 返回的词典包含`sinceMillis`（统计开始时间）和`methods`，`methods`中每个方法包含
+  /// `calls`、`coalesced`、`successes`、`failures`、`notImplemented`、暂时性失败后的重试次数`retries`、
+  /// 超时或取消之后才到达而被丢弃的平台端结果数`droppedLate`、
+  /// 按意外类型或错误代码统计的`failureTypes`，以及以微秒为单位的`latencyMicros`
+  /// （`count`、`mean`、`p50`、`p90`、`p99`、`max`）。
+  /// `userMapCache`为用户词典缓存的命中次数`hits`和未命中次数`misses`。
+  /// [reset]为true时在获取后清零统计。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<Map<String, dynamic>> getMetrics({bool reset: false}) async {
+    // 接收getMetrics方法调用的结果。
+    return await channel.invokeMethod(
+      'getMetrics',
+      <String, bool>{
+        'reset': reset,
+      },
+    );
+  }
+
+  /// 以单独的截止时间或可取消的方式调用平台端方法。
+  ///
+  /// [arguments]为方法原有的参数，[timeoutMs]覆盖全局默认截止时间，0表示不设截止时间。
+  /// 传递[requestId]的调用可以用[cancel]取消。返回平台端的原始结果，例如用户词典。
+  ///
+  /// 截止时间和取消仅Android支持，iOS上忽略[timeoutMs]和[requestId]。
+  Future<dynamic> invokeWithDeadline(
+    String method, {
+    Map<String, dynamic> arguments,
+    int timeoutMs,
+    String requestId,
+  }) async {
+    // 声明定义调用参数词典，复制原有的参数。
+    final Map<String, dynamic> options = <String, dynamic>{};
+    if (arguments != null) {
+      options.addAll(arguments);
+    }
+    // 只传递设置了的选项。
+    if (timeoutMs != null) {
+      options['timeoutMs'] = timeoutMs;
+    }
+    if (requestId != null) {
+      options['requestId'] = requestId;
+    }
+    // 接收方法调用的结果。
+    return await channel.invokeMethod(method, options);
+  }
+
+  /// 取消以[requestId]调用的进行中的方法，被取消的调用以`ERROR_CANCELLED`抛出[PlatformException]。
+  ///
+  /// 平台端的SDK任务本身无法中止，其结果会被丢弃。找到并取消了调用时返回true。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<bool> cancel(String requestId) async {
+    // 请求ID不能为空。
+    assert(requestId != null);
+    // 接收cancel方法调用的结果。
+    return await channel.invokeMethod(
+      'cancel',
+      <String, String>{
+        'id': requestId,
+      },
+    );
+  }
+
+  /// 获取发送短信和邮件的方法的限流和断路状态。
+  ///
+  /// 返回的词典包含`limiter`（限流参数、每个方法的剩余令牌`methods`、
+  /// 跟踪和被限流的目标数`trackedTargets`、`throttledTargets`）和`breakers`
+  /// （每个方法的断路器`state`、`consecutiveFailures`和`retryAfterMillis`）。
+  /// 被限流或断路的发送调用以`ERROR_RATE_LIMITED`或`ERROR_CIRCUIT_OPEN`抛出
+  /// [PlatformException]，其`details`中的`retryAfterMillis`为建议的等待时间。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<Map<String, dynamic>> getSendLimiterState() async {
+    // 接收getSendLimiterState方法调用的结果。
+    return await channel.invokeMethod('getSendLimiterState');
+  }
+
+  /// 获取离线修改队列的状态。
+  ///
+  /// 返回的词典包含`enabled`、`depth`（待发送的修改数）、`pending`（待发送的方法名称列表）、
+  /// `replaying`（是否正在发送）、`replayed`、`collapsed`、`dropped`（已发送、已合并和被丢弃的修改数）、
+  /// `nextReplayInMillis`（距下一次重放的毫秒数，0表示没有安排），
+  /// 以及可选的`lastError`（最近一次被丢弃的修改的`method`、`code`和`message`）。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<Map<String, dynamic>> getMutationQueueState() async {
+    // 接收getMutationQueueState方法调用的结果。
+    return await channel.invokeMethod('getMutationQueueState');
+  }
+
+  /// 立即重放离线修改队列，例如在应用检测到网络恢复时调用，返回队列的状态。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<Map<String, dynamic>> replayMutations() async {
+    // 接收replayMutations方法调用的结果。
+    return await channel.invokeMethod('replayMutations');
+  }
+
+  /// 获取已缓存的会话，最近使用的在最前。
+  ///
+  /// 每一项包含`uid`、`user`（用户词典）、`lastUsedMillis`（最近一次登录或切换的时间）、
+  /// `active`（是否为[currentUser]返回的帐号）和`signedIn`（是否为SDK的登录用户）。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<List<Map<String, dynamic>>> listSessions() async {
+    // 接收listSessions方法调用的结果。
+    return await channel.invokeMethod('listSessions');
+  }
+
+  /// 在本地切换到已缓存的会话，不发起网络请求，返回切换到的用户。
+  ///
+  /// 野狗云SDK同时只有一个登录用户，切换后[currentUser]返回这个用户，
+  /// [WilddogUser.getIdToken]返回缓存的未过期令牌，[onAuthStateChanged]仍报告SDK的登录用户。
+  /// 修改用户资料等作用于SDK登录用户的方法以`ERROR_USER_MISMATCH`抛出[PlatformException]，
+  /// 令牌过期或强制刷新时以`ERROR_REQUIRES_RECENT_LOGIN`抛出，此时需要重新登录这个帐号。
+  /// 任何登录或登出之后回到SDK的登录用户。没有缓存时以`ERROR_USER_NOT_FOUND`抛出。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<WilddogUser> switchSession(String uid) async {
+    // 用户ID不能为空。
+    assert(uid != null);
+    // 声明定义数据词典，并接收switchSession方法调用的结果。
+    final dynamic data = await channel.invokeMethod(
+      'switchSession',
+      <String, String>{
+        'uid': uid,
+      },
+    );
+    return new WilddogUser._(data);
+  }
+
+  /// 移除已缓存的会话，切换到的会话被移除时回到SDK的登录用户。会话已缓存时返回true。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<bool> evictSession(String uid) async {
+    // 用户ID不能为空。
+    assert(uid != null);
+    // 接收evictSession方法调用的结果。
+    return await channel.invokeMethod(
+      'evictSession',
+      <String, String>{
+        'uid': uid,
+      },
+    );
+  }
+
+  /// 停止平台端所有的认证状态监听，返回注销的句柄数。
+  ///
+  /// 已订阅[onAuthStateChanged]的流不会再收到事件，通常在热重启之后或退出登录界面时调用。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<int> stopAllListeners() async {
+    // 接收stopAllListeners方法调用的结果。
+    final int removed = await channel.invokeMethod('stopAllListeners');
+    // 平台端已不再发送事件，清空句柄对应的控制器。
+    _authStateChangedControllers.clear();
+    _authStates.clear();
+    return removed;
+  }
+
+  /// 在一次通道调用中按顺序执行多个方法调用。
+  ///
+  /// [calls]中的每一项包含`method`（已有的方法名称）和可选的`arguments`，
+  /// 前一个调用完成后才开始下一个调用。返回的列表中每一项包含`method`、`success`，
+  /// 成功时包含`result`，失败时包含`code`、`message`和`details`。
+  /// 默认在第一个失败处停止，[continueOnError]为true时继续执行剩余的调用。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<List<Map<String, dynamic>>> batch(
+    List<Map<String, dynamic>> calls, {
+    bool continueOnError: false,
+  }) async {
+    // 子调用列表不能为空。
+    assert(calls != null);
+    // 接收batch方法调用的结果。
+    return await channel.invokeMethod(
+      'batch',
+      <String, dynamic>{
+        'calls': calls,
+        'continueOnError': continueOnError,
+      },
+    );
+  }
+
+  /// 批量创建测试帐号，平台端同时进行的创建调用不超过[concurrency]个（默认4，最大32）。
+  ///
+  /// [credentials]中的每一项包含`password`和`email`、`phone`之一。返回的词典包含
+  /// `total`、`created`、`failed`，以及与[credentials]顺序一致的`uids`（失败的位置为null）
+  /// 和`errors`（错误代码，成功的位置为null），格式不符的凭据为`ERROR_INVALID_ARGUMENT`。
+  /// 每完成[progressEvery]个帐号（默认50）调用一次[onProgress]，参数包含`completed`、`total`
+  /// 和这一组的`indices`、`uids`、`errors`。传递[requestId]时可以用[cancel]停止尚未开始的帐号，
+  /// 它们以`ERROR_CANCELLED`返回，已完成的部分照常返回。批量创建不设截止时间。
+  /// 每个帐号创建后都会登录，结束时的当前用户为最后创建的帐号。
+  ///
+  /// 仅Android支持，iOS上以`ERROR_UNSUPPORTED_PLATFORM`抛出[PlatformException]。
+  Future<Map<String, dynamic>> bulkCreateUsers(
+    List<Map<String, String>> credentials, {
+    int concurrency,
+    int progressEvery,
+    BulkCreateProgressCallback onProgress,
+    String requestId,
+  }) async {
+    // 凭据列表不能为空。
+    assert(credentials != null);
+    // 声明定义调用参数词典，只传递设置了的选项。
+    final Map<String, dynamic> arguments = <String, dynamic>{
+      'credentials': credentials,
+      'timeoutMs': 0,
+    };
+    if (concurrency != null) {
+      arguments['concurrency'] = concurrency;
+    }
+    if (progressEvery != null) {
+      arguments['progressEvery'] = progressEvery;
+    }
+    if (requestId != null) {
+      arguments['requestId'] = requestId;
+    }
+    // 有进度回调时分配任务ID，平台端按任务ID报告进度。
+    int job;
+    if (onProgress != null) {
+      job = _nextBulkJob++;
+      _bulkCreateProgress[job] = onProgress;
+      arguments['jobId'] = job;
+    }
+    try {
+      // 接收bulkCreateUsers方法调用的结果。
+      return await channel.invokeMethod('bulkCreateUsers', arguments);
+    } finally {
+      _bulkCreateProgress.remove(job);
+    }
+  }
+
   // 接收方法调用的回调。
   // MethodCall类表示调用命名方法的命令对象，method属性是要调用的方法的名称。
-  Future<Null> _callHandler(MethodCall call) async {
+  // 认证状态消息返回已没有StreamController的句柄列表（stale），平台端会注销这些句柄；
+  // 以及增量消息版本不连续的句柄列表（resync），平台端会重新发送完整快照。
+  Future<dynamic> _callHandler(MethodCall call) async {
     // 判断要调用的方法的名称
     switch (call.method) {
       // 如果方法名称等于指定字符串
       case "onAuthStateChanged":
         // 在认证阶段更改处理程序。
-        _onAuthStageChangedHandler(call);
-        // 结束判断
-        break;
+        return _onAuthStageChangedHandler(call);
+      // 如果方法名称等于指定字符串
+      case "onAuthStateChangedBatch":
+        // 在认证阶段批量更改处理程序。
+        return _onAuthStageChangedBatchHandler(call);
+      // 如果方法名称等于指定字符串
+      case "onBulkCreateProgress":
+        // 调用批量创建任务的进度回调。
+        final BulkCreateProgressCallback onProgress = _bulkCreateProgress[call.arguments["job"]];
+        if (onProgress != null) {
+          onProgress(new Map<String, dynamic>.from(call.arguments));
+        }
+        return null;
     }
     // 返回空值
     return null;
@@ -591,15 +1011,226 @@ class WilddogAuth {
 
   // 在认证阶段更改处理程序。
   // arguments属性是该方法的参数，返回的是dynamic(动态)类型数据。
-  void _onAuthStageChangedHandler(MethodCall call) {
-    // 声明定义数据词典，并获取调用参数中的user键
-    final Map<String, dynamic> data = call.arguments["user"];
+  Map<String, List<int>> _onAuthStageChangedHandler(MethodCall call) {
     // 声明定义ID变量，并获取调用参数中的id键
     final int id = call.arguments["id"];
-    // 声明定义WilddogUser类实例，
-    // 数据词典不等于空，则调用WilddogUser的默认构造方法，否则返回空值。
-    final WilddogUser currentUser = data != null ? new WilddogUser._(data) : null;
-    // 在管理StreamController<WilddogUser>的词典中添加一个字典
-    _authStateChangedControllers[id].add(currentUser);
+    // 解析用户数据，流还未注册时也要保存状态，之后的增量消息基于它合并
+    final _AuthState state = _resolveAuthState(id, call.arguments, <int, _AuthState>{});
+    // 获取句柄对应的StreamController<WilddogUser>
+    final StreamController<WilddogUser> controller = _authStateChangedControllers[id];
+    // 流已不存在时返回句柄，由平台端注销
+    if (controller == null) {
+      if (_pendingListens == 0) {
+        _authStates.remove(id);
+        return _authStateReply(<int>[id], const <int>[]);
+      }
+      return _authStateReply(const <int>[], const <int>[]);
+    }
+    // 版本不连续时返回句柄，由平台端重新发送完整快照
+    if (state == null) {
+      return _authStateReply(const <int>[], <int>[id]);
+    }
+    controller.add(state.user);
+    return _authStateReply(const <int>[], const <int>[]);
   }
-}
\ No newline at end of file
+
+  // 在认证阶段批量更改处理程序。
+  // 一条消息携带所有订阅的句柄，基于相同版本的句柄共享同一个用户实例，用户数据只解码一次。
+  Map<String, List<int>> _onAuthStageChangedBatchHandler(MethodCall call) {
+    // 声明定义句柄列表，并获取调用参数中的ids键
+    final List<int> ids = call.arguments["ids"];
+    // 声明定义这条消息中已解析的状态，按所基于的版本号共享
+    final Map<int, _AuthState> resolved = <int, _AuthState>{};
+    // 声明定义流已不存在的句柄列表和版本不连续的句柄列表
+    final List<int> stale = <int>[];
+    final List<int> resync = <int>[];
+    // 遍历句柄列表
+    for (int id in ids) {
+      // 解析用户数据
+      final _AuthState state = _resolveAuthState(id, call.arguments, resolved);
+      // 获取句柄对应的StreamController<WilddogUser>
+      final StreamController<WilddogUser> controller = _authStateChangedControllers[id];
+      // 句柄可能已经停止监听，或者是热重启之前留下的句柄
+      if (controller == null) {
+        if (_pendingListens == 0) {
+          _authStates.remove(id);
+          stale.add(id);
+        }
+      } else if (state == null) {
+        resync.add(id);
+      } else {
+        controller.add(state.user);
+      }
+    }
+    return _authStateReply(stale, resync);
+  }
+
+  // 生成认证状态消息的返回值。
+  Map<String, List<int>> _authStateReply(List<int> stale, List<int> resync) {
+    return <String, List<int>>{'stale': stale, 'resync': resync};
+  }
+
+  // 解析认证状态消息中的用户，增量消息在句柄上一次的状态上合并。
+  // 返回空值表示版本不连续，需要平台端重新发送完整快照。
+  // [resolved]按所基于的版本号缓存同一条消息中已解析的状态，完整快照使用键-1。
+  _AuthState _resolveAuthState(int id, dynamic arguments, Map<int, _AuthState> resolved) {
+    // 声明定义版本号，非增量模式的消息没有版本号
+    final int version = arguments['version'];
+    // 声明定义所基于的版本号，完整快照没有这个键
+    final int base = arguments['base'];
+    // 完整的用户词典
+    if (version == null || base == null) {
+      final _AuthState state = resolved.putIfAbsent(
+          -1, () => new _AuthState(version, arguments['user']));
+      // 非增量模式下不保存状态，之后的增量消息会请求完整快照
+      if (version == null) {
+        _authStates.remove(id);
+      } else {
+        _authStates[id] = state;
+      }
+      return state;
+    }
+    // 句柄上一次的状态
+    final _AuthState previous = _authStates[id];
+    // 版本不连续
+    if (previous == null || previous.version != base || previous.data == null) {
+      _authStates.remove(id);
+      return null;
+    }
+    final _AuthState state = resolved.putIfAbsent(base, () {
+      final Map<String, dynamic> changed = arguments['changed'];
+      final List<String> removed = arguments['removed'];
+      // 没有改变的字段时复用上一次的用户
+      if (changed.isEmpty && removed.isEmpty) {
+        return new _AuthState.unchanged(version, previous);
+      }
+      // 在上一次的用户词典上合并改变的字段
+      final Map<String, dynamic> data = new Map<String, dynamic>.from(previous.data)
+        ..addAll(changed);
+      for (String key in removed) {
+        data.remove(key);
+      }
+      return new _AuthState(version, data);
+    });
+    _authStates[id] = state;
+    return state;
+  }
+}
+
+// 增量模式下一个句柄的认证状态。
+class _AuthState {
+  // 默认的构造方法，二进制格式的用户先解码为数据词典。
+  _AuthState(int version, dynamic payload)
+      : this._decoded(version, _userData(payload));
+
+  // 使用数据词典创建状态，解码用户数据。
+  _AuthState._decoded(this.version, this.data)
+      : user = data != null ? new WilddogUser._fromData(data) : null;
+
+  // 没有改变的字段时复用上一次的用户。
+  _AuthState.unchanged(this.version, _AuthState previous)
+      : data = previous.data,
+        user = previous.user;
+
+  // 版本号，非增量模式的消息为空值。
+  final int version;
+
+  // 用户词典，未登录时为空值。
+  final Map<String, dynamic> data;
+
+  // 用户，未登录时为空值。
+  final WilddogUser user;
+}
+
+// 二进制格式的用户的常见提供方ID，与平台端的UserPayloadCodec一致，编码为索引加1。
+const List<String> _providerIds = const <String>[
+  'password', 'anonymous', 'phone', 'qq', 'weixin', 'weixinmp', 'weibo'
+];
+
+// 二进制格式的用户信息字段，顺序即编码顺序。
+const List<String> _infoKeys = const <String>[
+  'providerId', 'uid', 'displayName', 'photoUrl', 'email', 'phone'
+];
+
+// 二进制格式的用户状态字段，顺序即状态位的顺序。
+const List<String> _flagKeys = const <String>[
+  'isAnonymous', 'isEmailVerified', 'isPhoneVerified'
+];
+
+// 把平台端发送的用户转换为数据词典。
+// 词典格式原样返回，二进制格式（[configure]的`binaryUsers`）按UserPayloadCodec的格式解码。
+Map<String, dynamic> _userData(dynamic payload) {
+  if (payload is! Uint8List) {
+    return payload;
+  }
+  return new _UserPayloadReader(payload).readUser();
+}
+
+// 二进制格式的用户的读取器。
+class _UserPayloadReader {
+  _UserPayloadReader(Uint8List bytes)
+      : _bytes = bytes,
+        _view = new ByteData.view(bytes.buffer, bytes.offsetInBytes, bytes.lengthInBytes);
+
+  // 编码后的字节和读取多字节整数的视图。
+  final Uint8List _bytes;
+  final ByteData _view;
+
+  // 当前读取位置。
+  int _offset = 0;
+
+  // 读取完整的用户：版本、用户信息、状态位、提供方数据。
+  Map<String, dynamic> readUser() {
+    final int version = _readByte();
+    if (version != 1) {
+      throw new FormatException('Unknown user payload format: $version');
+    }
+    final Map<String, dynamic> user = _readInfo();
+    final int flags = _readByte();
+    for (int i = 0; i < _flagKeys.length; i++) {
+      user[_flagKeys[i]] = (flags & (1 << i)) != 0;
+    }
+    final int count = _readByte();
+    final List<Map<String, dynamic>> providerData = <Map<String, dynamic>>[];
+    for (int i = 0; i < count; i++) {
+      providerData.add(_readInfo());
+    }
+    user['providerData'] = providerData;
+    return user;
+  }
+
+  // 读取存在位图和用户信息字段，不存在的字段不放入词典。
+  Map<String, dynamic> _readInfo() {
+    final Map<String, dynamic> info = <String, dynamic>{};
+    final int presence = _readByte();
+    for (int i = 0; i < _infoKeys.length; i++) {
+      if ((presence & (1 << i)) == 0) {
+        continue;
+      }
+      if (i == 0) {
+        final int index = _readByte();
+        if (index != 0) {
+          info[_infoKeys[i]] = _providerIds[index - 1];
+          continue;
+        }
+      }
+      info[_infoKeys[i]] = _readString();
+    }
+    return info;
+  }
+
+  // 读取一个无符号字节。
+  int _readByte() {
+    return _view.getUint8(_offset++);
+  }
+
+  // 读取两字节长度和UTF-8字节组成的字符串。
+  String _readString() {
+    final int length = _view.getUint16(_offset);
+    _offset += 2;
+    final String value =
+        const Utf8Decoder().convert(_bytes, _offset, _offset + length);
+    _offset += length;
+    return value;
+  }
+}